@@ -7,9 +7,13 @@ import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.madz.bcel.intercept.TransitionInvoker;
 import net.madz.lifecycle.annotations.LifecycleMeta;
 import net.madz.lifecycle.annotations.ReactiveObject;
 import net.madz.lifecycle.annotations.Transition;
@@ -21,7 +25,6 @@ import org.apache.bcel.classfile.InnerClasses;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.ClassGen;
-import org.apache.bcel.generic.ObjectType;
 import org.apache.bcel.generic.Type;
 
 public class BCELClassFileTransformer implements ClassFileTransformer {
@@ -30,22 +33,178 @@ public class BCELClassFileTransformer implements ClassFileTransformer {
     public static final String TRANSITION_ANNOTATION_TYPE = "L" + Transition.class.getName().replaceAll("\\.", "/") + ";";
     public static final String LIFECYLEMETA_ANNOTATION_TYPE = "L" + LifecycleMeta.class.getName().replaceAll("\\.", "/") + ";";
     public static final String REACTIVE_ANNOTATION_TYPE = "L" + ReactiveObject.class.getName().replaceAll("\\.", "/") + ";";
-    private String[] ignoredPackages = new String[] { "java.", "javax.", "sun.", "org." };
+    /**
+     * Comma separated package prefixes to be transformed, all packages
+     * except excluded ones are transformed if absent.
+     */
+    public static final String INCLUDED_PACKAGES = "net.madz.bcel.packages.include";
+    /**
+     * Comma separated package prefixes never to be transformed, overriding
+     * the default JDK packages.
+     */
+    public static final String EXCLUDED_PACKAGES = "net.madz.bcel.packages.exclude";
+    private static final String DEFAULT_EXCLUDED_PACKAGES = "java.,javax.,sun.,com.sun.,jdk.";
+    private static final byte[][] CANDIDATE_ANNOTATION_TYPES = new byte[][] { asciiBytesOf(LIFECYLEMETA_ANNOTATION_TYPE),
+            asciiBytesOf(REACTIVE_ANNOTATION_TYPE) };
+    private static final Statistics statistics = new Statistics();
+    private final String[] includedPackages;
+    private final String[] excludedPackages;
+
+    public BCELClassFileTransformer() {
+        this.includedPackages = parsePackages(System.getProperty(INCLUDED_PACKAGES, ""));
+        this.excludedPackages = parsePackages(System.getProperty(EXCLUDED_PACKAGES, DEFAULT_EXCLUDED_PACKAGES));
+    }
+
+    public static Statistics getStatistics() {
+        return statistics;
+    }
 
     @Override
     public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer)
             throws IllegalClassFormatException {
-        if ( shouldIgnore(className) ) {
+        if ( null == className || shouldIgnore(className) ) {
             return classfileBuffer;
         }
-        final String location = protectionDomain.getCodeSource().getLocation().getPath();
+        final long start = System.nanoTime();
+        try {
+            if ( !hasCandidateAnnotation(classfileBuffer) ) {
+                statistics.rejectedClasses.incrementAndGet();
+                return classfileBuffer;
+            }
+            final String location = protectionDomain.getCodeSource().getLocation().getPath();
+            final byte[] wovenBuffer = weave(className, classfileBuffer, location);
+            if ( null == wovenBuffer ) {
+                statistics.rejectedClasses.incrementAndGet();
+                return classfileBuffer;
+            }
+            statistics.transformedClasses.incrementAndGet();
+            if ( log.isLoggable(Level.FINE) ) {
+                log.fine("Transformed class " + className + ", " + statistics);
+            }
+            return wovenBuffer;
+        } catch (Throwable e) {
+            log.log(Level.SEVERE, "Failed to transform class " + className, e);
+            throw new IllegalClassFormatException();
+        } finally {
+            statistics.scannedClasses.incrementAndGet();
+            statistics.scanningNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Scans the constant pool of a class file for @LifecycleMeta or
+     * @ReactiveObject descriptors without parsing the whole class. A true
+     * result does not guarantee the annotation is on the class itself.
+     */
+    public static boolean hasCandidateAnnotation(byte[] classfileBuffer) {
+        try {
+            // skip magic, minor_version and major_version
+            int offset = 8;
+            final int constantPoolCount = readUnsignedShort(classfileBuffer, offset);
+            offset += 2;
+            for ( int index = 1; index < constantPoolCount; index++ ) {
+                final int tag = classfileBuffer[offset++];
+                switch (tag) {
+                    case 1: // Utf8
+                        final int length = readUnsignedShort(classfileBuffer, offset);
+                        offset += 2;
+                        if ( isCandidateAnnotationType(classfileBuffer, offset, length) ) {
+                            return true;
+                        }
+                        offset += length;
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        offset += 8;
+                        index++;
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        offset += 4;
+                        break;
+                    case 15: // MethodHandle
+                        offset += 3;
+                        break;
+                    case 7: // Class
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        offset += 2;
+                        break;
+                    default:
+                        // Unknown class file format, leave it to ClassParser.
+                        return true;
+                }
+            }
+            return false;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return true;
+        }
+    }
+
+    private static boolean isCandidateAnnotationType(byte[] classfileBuffer, int offset, int length) {
+        for ( final byte[] candidate : CANDIDATE_ANNOTATION_TYPES ) {
+            if ( candidate.length != length ) {
+                continue;
+            }
+            int i = 0;
+            while ( i < length && candidate[i] == classfileBuffer[offset + i] ) {
+                i++;
+            }
+            if ( i == length ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int readUnsignedShort(byte[] buffer, int offset) {
+        return ( ( buffer[offset] & 0xFF ) << 8 ) | ( buffer[offset + 1] & 0xFF );
+    }
+
+    private static byte[] asciiBytesOf(String descriptor) {
+        final byte[] bytes = new byte[descriptor.length()];
+        for ( int i = 0; i < bytes.length; i++ ) {
+            bytes[i] = (byte) descriptor.charAt(i);
+        }
+        return bytes;
+    }
+
+    private static String[] parsePackages(String packages) {
+        final ArrayList<String> result = new ArrayList<>();
+        for ( final String item : packages.split(",") ) {
+            final String trimmed = item.trim();
+            if ( 0 < trimmed.length() ) {
+                // class names passed to transformers are in internal form
+                result.add(trimmed.replace('.', '/'));
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Weaves the @Transition methods of one class, and writes the generated
+     * inner classes under location.
+     * 
+     * @return woven class bytes, or null if the class has no transition
+     *         method to weave or it has been woven already.
+     */
+    public static byte[] weave(String className, byte[] classfileBuffer, String location) throws Throwable {
         try (final ByteArrayInputStream bais = new ByteArrayInputStream(classfileBuffer)) {
             final JavaClass jclas = new ClassParser(bais, className).parse();
-            if ( !isTransformNeeded(jclas) ) {
-                return classfileBuffer;
+            if ( !isTransformNeeded(jclas) || MethodInterceptor.isIntercepted(jclas) ) {
+                return null;
             }
             final ClassGen classGen = new ClassGen(jclas);
-            int innerClassSeq = nextInnerClassSeqOf(classGen);
+            final int firstInnerClassSeq = nextInnerClassSeqOf(classGen);
+            int innerClassSeq = firstInnerClassSeq;
             for ( final Method method : jclas.getMethods() ) {
                 if ( null == method.getAnnotationEntries() ) {
                     continue;
@@ -57,27 +216,35 @@ public class BCELClassFileTransformer implements ClassFileTransformer {
                     }
                 }
             }
+            if ( firstInnerClassSeq == innerClassSeq ) {
+                return null;
+            }
             return classGen.getJavaClass().getBytes();
-        } catch (Throwable e) {
-            log.log(Level.SEVERE, "Failed to transform class " + className, e);
-            throw new IllegalClassFormatException();
         }
     }
 
     private boolean shouldIgnore(String className) {
-        for ( int i = 0; i < ignoredPackages.length; i++ ) {
-            if ( className.startsWith(ignoredPackages[i]) ) {
+        for ( int i = 0; i < excludedPackages.length; i++ ) {
+            if ( className.startsWith(excludedPackages[i]) ) {
                 return true;
             }
         }
-        return false;
+        if ( 0 == includedPackages.length ) {
+            return false;
+        }
+        for ( int i = 0; i < includedPackages.length; i++ ) {
+            if ( className.startsWith(includedPackages[i]) ) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private boolean isTransformNeeded(AnnotationEntry entry) {
+    private static boolean isTransformNeeded(AnnotationEntry entry) {
         return TRANSITION_ANNOTATION_TYPE.equals(entry.getAnnotationType());
     }
 
-    private int nextInnerClassSeqOf(final ClassGen cgen) {
+    private static int nextInnerClassSeqOf(final ClassGen cgen) {
         int innerClassSeq = 1;
         for ( final Attribute attribute : cgen.getAttributes() ) {
             if ( attribute instanceof InnerClasses ) {
@@ -88,7 +255,7 @@ public class BCELClassFileTransformer implements ClassFileTransformer {
         return innerClassSeq;
     }
 
-    private boolean isTransformNeeded(final JavaClass jclas) {
+    private static boolean isTransformNeeded(final JavaClass jclas) {
         final AnnotationEntry[] annotationEntries = jclas.getAnnotationEntries();
         boolean foundLifecycleMeta = false;
         for ( final AnnotationEntry annotationEntry : annotationEntries ) {
@@ -125,8 +292,7 @@ public class BCELClassFileTransformer implements ClassFileTransformer {
 
     private static void doTransform(ClassGen cgen, int innerClassSeq, Method interceptingMethod, String location) throws Throwable {
         JavaAnonymousInnerClass c = new JavaAnonymousInnerClass(cgen.getClassName(), interceptingMethod.getName(), interceptingMethod.getArgumentTypes(),
-                innerClassSeq, Object.class.getName(), new Type[0], java.util.concurrent.Callable.class.getName(), new Type[] { new ObjectType(
-                        Void.class.getName()) }, location);
+                innerClassSeq, Object.class.getName(), new Type[0], TransitionInvoker.class.getName(), new Type[0], location);
         ClassGen doGenerate = c.doGenerate();
         doGenerate.getJavaClass().getBytes();
         MethodInterceptor.addWrapper(cgen, interceptingMethod, innerClassSeq);
@@ -142,4 +308,36 @@ public class BCELClassFileTransformer implements ClassFileTransformer {
             fos.close();
         }
     }
+
+    public static final class Statistics {
+
+        private final AtomicLong scannedClasses = new AtomicLong();
+        private final AtomicLong rejectedClasses = new AtomicLong();
+        private final AtomicLong transformedClasses = new AtomicLong();
+        private final AtomicLong scanningNanos = new AtomicLong();
+
+        private Statistics() {}
+
+        public long getScannedClasses() {
+            return scannedClasses.get();
+        }
+
+        public long getRejectedClasses() {
+            return rejectedClasses.get();
+        }
+
+        public long getTransformedClasses() {
+            return transformedClasses.get();
+        }
+
+        public long getScanningNanos() {
+            return scanningNanos.get();
+        }
+
+        @Override
+        public String toString() {
+            return "scanned: " + getScannedClasses() + ", rejected: " + getRejectedClasses() + ", transformed: " + getTransformedClasses()
+                    + ", time spent: " + TimeUnit.NANOSECONDS.toMillis(getScanningNanos()) + "ms";
+        }
+    }
 }
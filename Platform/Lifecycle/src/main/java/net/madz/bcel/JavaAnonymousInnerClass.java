@@ -2,20 +2,21 @@ package net.madz.bcel;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.madz.bcel.intercept.InterceptPoint;
+import net.madz.bcel.intercept.TransitionInvoker;
+
 import org.apache.bcel.Constants;
-import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.InnerClass;
 import org.apache.bcel.classfile.InnerClasses;
 import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.classfile.LocalVariableTable;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.classfile.Signature;
 import org.apache.bcel.classfile.Unknown;
+import org.apache.bcel.generic.ArrayType;
+import org.apache.bcel.generic.BasicType;
 import org.apache.bcel.generic.ClassGen;
 import org.apache.bcel.generic.ConstantPoolGen;
 import org.apache.bcel.generic.FieldGen;
@@ -23,10 +24,11 @@ import org.apache.bcel.generic.Instruction;
 import org.apache.bcel.generic.InstructionConstants;
 import org.apache.bcel.generic.InstructionFactory;
 import org.apache.bcel.generic.InstructionList;
-import org.apache.bcel.generic.LocalVariableInstruction;
+import org.apache.bcel.generic.LDC;
 import org.apache.bcel.generic.MethodGen;
 import org.apache.bcel.generic.ObjectType;
-import org.apache.bcel.generic.ReturnInstruction;
+import org.apache.bcel.generic.PUSH;
+import org.apache.bcel.generic.ReferenceType;
 import org.apache.bcel.generic.Type;
 import org.apache.bcel.util.ClassPath;
 import org.apache.bcel.util.SyntheticRepository;
@@ -36,6 +38,7 @@ public class JavaAnonymousInnerClass {
 
     private static final Logger logger = Logger.getLogger("Lifecycle Framework Byte Code Transformer");
     private static final String POSTFIX = "$Impl";
+    public static final String INTERCEPT_POINT = "INTERCEPT_POINT";
     private final String outerClassName;
     private final String enclosingMethodName;
     private final Type[] enclosingMethodArguments;
@@ -95,8 +98,8 @@ public class JavaAnonymousInnerClass {
         {// generate inner classes attribute
             generateInnerClassesAttribute(cgen);
         }
-        {// generate fields
-            doGenerateFields(cgen);
+        {// generate intercept point field and static initializer
+            doGenerateInterceptPoint(cgen);
         }
         {// generate constructor
             doGenerateConstructor(cgen);
@@ -167,57 +170,53 @@ public class JavaAnonymousInnerClass {
     }
 
     private void doGenerateMethods(ClassGen cgen) throws ClassNotFoundException {
-        createCall(cgen);
-        final Type returnType = lookupEnclosingMethodReturnType();
-        if ( !returnType.equals(new ObjectType(Object.class.getName())) ) {
-            createBridgeCall(cgen);
-        }
+        createInvoke(cgen);
     }
 
-    private void createBridgeCall(ClassGen cgen) throws ClassNotFoundException {
-        InstructionFactory ifact = new InstructionFactory(cgen);
-        InstructionList iList = new InstructionList();
-        final LocalVariableInstruction start = InstructionConstants.ALOAD_0;
-        iList.append(start);
-        final Type returnType = lookupEnclosingMethodReturnType();
-        final Type wrappedReturnType = convertWrappedReturnType(returnType);
-        iList.append(ifact.createInvoke(thisClassName, "call", wrappedReturnType, Type.NO_ARGS, Constants.INVOKEVIRTUAL));
-        ReturnInstruction end = InstructionConstants.ARETURN;
-        iList.append(end);
-        final MethodGen callMethodGen = new MethodGen(4161, new ObjectType("java.lang.Object"), Type.NO_ARGS, new String[] {}, "call", thisClassName, iList,
-                cgen.getConstantPool());
-        callMethodGen.addException("java.lang.Exception");
-        addMethod(cgen, callMethodGen);
-        iList.dispose();
-    }
-
-    private void createCall(ClassGen cgen) throws ClassNotFoundException {
+    /**
+     * Generates a stateless invoke(Object target, Object[] arguments), which
+     * unboxes the arguments and calls the renamed transition method, so that
+     * one invoker instance can be shared by all calls of the method.
+     */
+    private void createInvoke(ClassGen cgen) throws ClassNotFoundException {
         final InstructionFactory ifact = new InstructionFactory(cgen);
         final InstructionList iList = new InstructionList();
-        final List<LocalVariable> argumentVariables = lookupEnclosingMethodArgumentVariables();
-        for ( LocalVariable var : argumentVariables ) {
-            iList.append(InstructionConstants.ALOAD_0);
-            if ( "this".equals(var.getName()) ) {
-                iList.append(ifact.createGetField(thisClassName, "this$0", convertSignature2Type(var.getSignature())));
-            } else {
-                iList.append(ifact.createGetField(thisClassName, "val$" + var.getName(), convertSignature2Type(var.getSignature())));
-            }
-        }
+        iList.append(InstructionConstants.ALOAD_1);
+        iList.append(ifact.createCheckCast(new ObjectType(outerClassName)));
         final Type returnType = lookupEnclosingMethodReturnType();
         final Type[] argTypes = lookupEnclosingMethodArgType();
+        for ( int i = 0; i < argTypes.length; i++ ) {
+            iList.append(InstructionConstants.ALOAD_2);
+            iList.append(new PUSH(cgen.getConstantPool(), i));
+            iList.append(InstructionConstants.AALOAD);
+            createUnboxing(ifact, iList, argTypes[i]);
+        }
         iList.append(ifact.createInvoke(outerClassName, enclosingMethodName + POSTFIX, returnType, argTypes, Constants.INVOKEVIRTUAL));
         final Instruction valueOfInstruction = createValueOf(ifact, returnType);
         if ( null != valueOfInstruction ) {
             iList.append(valueOfInstruction);
         }
-        final Type wrappedReturnType = convertWrappedReturnType(returnType);
         iList.append(InstructionFactory.createReturn(Type.OBJECT));
-        final MethodGen callMethodGen = new MethodGen(1, wrappedReturnType, Type.NO_ARGS, new String[] {}, "call", thisClassName, iList, cgen.getConstantPool());
-        callMethodGen.addException("java.lang.Exception");
-        addMethod(cgen, callMethodGen);
+        final MethodGen invokeMethodGen = new MethodGen(Constants.ACC_PUBLIC, Type.OBJECT, new Type[] { Type.OBJECT, new ArrayType(Type.OBJECT, 1) },
+                new String[] { "target", "arguments" }, "invoke", thisClassName, iList, cgen.getConstantPool());
+        invokeMethodGen.addException("java.lang.Exception");
+        addMethod(cgen, invokeMethodGen);
         iList.dispose();
     }
 
+    private void createUnboxing(final InstructionFactory ifact, final InstructionList iList, final Type argType) {
+        if ( argType instanceof ReferenceType ) {
+            if ( !argType.equals(Type.OBJECT) ) {
+                iList.append(ifact.createCheckCast((ReferenceType) argType));
+            }
+            return;
+        }
+        final ObjectType wrappedType = (ObjectType) convertWrappedType(argType);
+        iList.append(ifact.createCheckCast(wrappedType));
+        iList.append(ifact.createInvoke(wrappedType.getClassName(), Constants.TYPE_NAMES[argType.getType()] + "Value", argType, Type.NO_ARGS,
+                Constants.INVOKEVIRTUAL));
+    }
+
     private Instruction createValueOf(final InstructionFactory ifact, final Type returnType) {
         final Instruction valueOfInstruction;
         if ( returnType.getType() == Constants.T_VOID ) {
@@ -252,72 +251,85 @@ public class JavaAnonymousInnerClass {
         return valueOfInstruction;
     }
 
-    private Type convertWrappedReturnType(final Type returnType) {
-        final Type wrappedReturnType;
-        if ( returnType.getType() == Constants.T_VOID ) {
-            wrappedReturnType = new ObjectType("java.lang.Void");
-        } else if ( returnType.getType() == Type.INT.getType() ) {
-            wrappedReturnType = new ObjectType(Integer.class.getName());
-        } else if ( returnType.getType() == Type.LONG.getType() ) {
-            wrappedReturnType = new ObjectType(Long.class.getName());
-        } else if ( returnType.getType() == Type.FLOAT.getType() ) {
-            wrappedReturnType = new ObjectType(Float.class.getName());
-        } else if ( returnType.getType() == Type.DOUBLE.getType() ) {
-            wrappedReturnType = new ObjectType(Double.class.getName());
-        } else if ( returnType.getType() == Type.BYTE.getType() ) {
-            wrappedReturnType = new ObjectType(Byte.class.getName());
-        } else if ( returnType.getType() == Type.SHORT.getType() ) {
-            wrappedReturnType = new ObjectType(Short.class.getName());
-        } else if ( returnType.getType() == Type.CHAR.getType() ) {
-            wrappedReturnType = new ObjectType(Character.class.getName());
-        } else if ( returnType.getType() == Type.BOOLEAN.getType() ) {
-            wrappedReturnType = new ObjectType(Boolean.class.getName());
+    private Type convertWrappedType(final Type type) {
+        final Type wrappedType;
+        if ( type.getType() == Constants.T_VOID ) {
+            wrappedType = new ObjectType("java.lang.Void");
+        } else if ( type.getType() == Type.INT.getType() ) {
+            wrappedType = new ObjectType(Integer.class.getName());
+        } else if ( type.getType() == Type.LONG.getType() ) {
+            wrappedType = new ObjectType(Long.class.getName());
+        } else if ( type.getType() == Type.FLOAT.getType() ) {
+            wrappedType = new ObjectType(Float.class.getName());
+        } else if ( type.getType() == Type.DOUBLE.getType() ) {
+            wrappedType = new ObjectType(Double.class.getName());
+        } else if ( type.getType() == Type.BYTE.getType() ) {
+            wrappedType = new ObjectType(Byte.class.getName());
+        } else if ( type.getType() == Type.SHORT.getType() ) {
+            wrappedType = new ObjectType(Short.class.getName());
+        } else if ( type.getType() == Type.CHAR.getType() ) {
+            wrappedType = new ObjectType(Character.class.getName());
+        } else if ( type.getType() == Type.BOOLEAN.getType() ) {
+            wrappedType = new ObjectType(Boolean.class.getName());
         } else {
-            wrappedReturnType = returnType;
+            wrappedType = type;
         }
-        return wrappedReturnType;
+        return wrappedType;
     }
 
-    private void doGenerateConstructor(ClassGen cgen) throws Throwable {
-        InstructionFactory ifact = new InstructionFactory(cgen);
-        InstructionList iList = new InstructionList();
-        Field[] fields = cgen.getFields();
-        int fieldIndex = 1;
-        for ( int i = 0; i < fields.length; i++ ) {
-            if ( "this$0".equals(fields[i].getName()) ) {
-                iList.append(InstructionConstants.ALOAD_0);
-                iList.append(InstructionConstants.ALOAD_1);
-                iList.append(ifact.createPutField(this.thisClassName, "this$0", new ObjectType(this.outerClassName)));
-                fieldIndex++;
+    /**
+     * Generates static final INTERCEPT_POINT holding the metadata of the
+     * enclosing transition method, so that it is resolved once when the
+     * woven method is called for the first time.
+     */
+    private void doGenerateInterceptPoint(ClassGen cgen) {
+        final ConstantPoolGen constantPoolGen = cgen.getConstantPool();
+        final ObjectType interceptPointType = new ObjectType(InterceptPoint.class.getName());
+        final FieldGen interceptPointField = new FieldGen(Constants.ACC_STATIC | Constants.ACC_FINAL | Constants.ACC_SYNTHETIC, interceptPointType,
+                INTERCEPT_POINT, constantPoolGen);
+        cgen.addField(interceptPointField.getField());
+        final InstructionFactory ifact = new InstructionFactory(cgen);
+        final InstructionList iList = new InstructionList();
+        iList.append(new LDC(constantPoolGen.addClass(outerClassName)));
+        iList.append(new PUSH(constantPoolGen, enclosingMethodName));
+        iList.append(new PUSH(constantPoolGen, enclosingMethodArguments.length));
+        iList.append(ifact.createNewArray(new ObjectType(Class.class.getName()), (short) 1));
+        for ( int i = 0; i < enclosingMethodArguments.length; i++ ) {
+            final Type type = enclosingMethodArguments[i];
+            iList.append(InstructionConstants.DUP);
+            iList.append(new PUSH(constantPoolGen, i));
+            if ( type instanceof BasicType ) {
+                final ObjectType wrappedType = (ObjectType) convertWrappedType(type);
+                iList.append(ifact.createGetStatic(wrappedType.getClassName(), "TYPE", new ObjectType(Class.class.getName())));
+            } else if ( type instanceof ArrayType ) {
+                iList.append(new LDC(constantPoolGen.addArrayClass((ArrayType) type)));
             } else {
-                iList.append(InstructionConstants.ALOAD_0);
-                iList.append(InstructionFactory.createLoad(fields[i].getType(), fieldIndex));
-                iList.append(ifact.createPutField(this.thisClassName, fields[i].getName(), fields[i].getType()));
-                fieldIndex += fields[i].getType().getSize();
+                iList.append(new LDC(constantPoolGen.addClass((ObjectType) type)));
             }
+            iList.append(InstructionConstants.AASTORE);
         }
+        iList.append(ifact.createNew(thisClassName));
+        iList.append(InstructionConstants.DUP);
+        iList.append(ifact.createInvoke(thisClassName, "<init>", Type.VOID, Type.NO_ARGS, Constants.INVOKESPECIAL));
+        iList.append(ifact.createInvoke(InterceptPoint.class.getName(), "create", interceptPointType, new Type[] { new ObjectType(Class.class.getName()),
+                Type.STRING, new ArrayType(new ObjectType(Class.class.getName()), 1), new ObjectType(TransitionInvoker.class.getName()) },
+                Constants.INVOKESTATIC));
+        iList.append(ifact.createPutStatic(thisClassName, INTERCEPT_POINT, interceptPointType));
+        iList.append(InstructionConstants.RETURN);
+        final MethodGen clinitGen = new MethodGen(Constants.ACC_STATIC, Type.VOID, Type.NO_ARGS, new String[0], "<clinit>", thisClassName, iList,
+                constantPoolGen);
+        addMethod(cgen, clinitGen);
+        iList.dispose();
+    }
+
+    private void doGenerateConstructor(ClassGen cgen) throws Throwable {
+        InstructionFactory ifact = new InstructionFactory(cgen);
+        InstructionList iList = new InstructionList();
         iList.append(InstructionConstants.ALOAD_0);
         iList.append(ifact.createInvoke("java.lang.Object", "<init>", Type.VOID, Type.NO_ARGS, Constants.INVOKESPECIAL));
         iList.append(InstructionFactory.createReturn(Type.VOID));
-        final List<LocalVariable> arguments = lookupEnclosingMethodArgumentVariables();
-        final ArrayList<Type> typeList = new ArrayList<Type>();
-        final String[] argumentNames = new String[arguments.size()];
-        for ( int i = 0; i < arguments.size(); i++ ) {
-            if ( "this$0".equals(arguments.get(i).getName()) ) {
-                int lastDot = this.outerClassName.lastIndexOf(".");
-                String substring = this.outerClassName.substring(lastDot + 1);
-                if ( substring.charAt(0) >= 'A' && substring.charAt(0) <= 'Z' ) {
-                    substring = ( substring.charAt(0) + "" ).toLowerCase() + substring.substring(1);
-                }
-                typeList.add(convertSignature2Type(arguments.get(i).getSignature()));
-                argumentNames[i] = substring;
-            } else {
-                typeList.add(convertSignature2Type(arguments.get(i).getSignature()));
-                argumentNames[i] = arguments.get(i).getName();
-            }
-        }
-        final MethodGen constructorGen = new MethodGen(0, org.apache.bcel.generic.Type.VOID, typeList.toArray(new Type[0]), argumentNames, "<init>",
-                this.thisClassName, iList, cgen.getConstantPool());
+        final MethodGen constructorGen = new MethodGen(0, org.apache.bcel.generic.Type.VOID, Type.NO_ARGS, new String[0], "<init>", this.thisClassName,
+                iList, cgen.getConstantPool());
         addMethod(cgen, constructorGen);
         iList.dispose();
     }
@@ -367,104 +379,6 @@ public class JavaAnonymousInnerClass {
         return new ObjectType(klass + sb.toString()).getSignature();
     }
 
-    private void doGenerateFields(final ClassGen cgen) throws ClassNotFoundException {
-        final List<LocalVariable> arguments = lookupEnclosingMethodArgumentVariables();
-        for ( LocalVariable localVariable : arguments ) {
-            doGenField(localVariable, cgen);
-        }
-    }
-
-    private void doGenField(LocalVariable localVariable, ClassGen cgen) {
-        if ( localVariable.getName().equals("this") ) {
-            createField("this$0", localVariable.getSignature(), cgen);
-        } else {
-            createField("val$" + localVariable.getName(), localVariable.getSignature(), cgen);
-        }
-    }
-
-    private void createField(String fieldName, String signature, ClassGen cgen) {
-        Type type = null;
-        if ( "this$0".equals(fieldName) ) {
-            type = new ObjectType(this.outerClassName);
-        } else {
-            type = convertSignature2Type(signature);
-        }
-        final FieldGen serviceOrderField = new FieldGen(0x1010, type, fieldName, cgen.getConstantPool());
-        cgen.addField(serviceOrderField.getField());
-    }
-
-    private Type convertSignature2Type(String signature) {
-        switch (signature.charAt(0)) {
-            case 'Z':
-                return Type.BOOLEAN;
-            case 'C':
-                return Type.CHAR;
-            case 'F':
-                return Type.FLOAT;
-            case 'D':
-                return Type.DOUBLE;
-            case 'B':
-                return Type.BYTE;
-            case 'S':
-                return Type.SHORT;
-            case 'I':
-                return Type.INT;
-            case 'J':
-                return Type.LONG;
-            default:
-                /*
-                 * //process type with TypeParameters, such as
-                 * Ljava.util.concurrent.Call<Ljava.lang.Void;>;
-                 * if ( signature.startsWith("L") ) {
-                 * signature = ";" + signature;
-                 * }
-                 * signature = signature.replace(";L", "");
-                 * signature = signature.replace(";", "");
-                 */
-                if ( signature.startsWith("L") ) {
-                    int firstLeftArrow = signature.indexOf("<");
-                    if ( -1 == firstLeftArrow ) {
-                        signature = signature.substring(1);
-                    } else {
-                        signature = signature.substring(1, firstLeftArrow);
-                    }
-                    if ( signature.endsWith(";") ) {
-                        signature = signature.substring(0, signature.length() - 1);
-                    }
-                }
-                return new ObjectType(signature);
-        }
-    }
-
-    private List<LocalVariable> lookupEnclosingMethodArgumentVariables() throws ClassNotFoundException {
-        final JavaClass outerClass = lookupOuterClass();
-        for ( Method method : outerClass.getMethods() ) {
-            if ( !enclosingMethodName.equals(method.getName()) ) {
-                continue;
-            }
-            if ( !argumentsMatch(method.getArgumentTypes()) ) {
-                continue;
-            }
-            final List<LocalVariable> result = new ArrayList<LocalVariable>();
-            final LocalVariableTable localVariableTable = method.getLocalVariableTable();
-            if ( null != localVariableTable ) {
-                for ( org.apache.bcel.classfile.LocalVariable localVariable : localVariableTable.getLocalVariableTable() ) {
-                    if ( localVariable.getStartPC() == 0 ) {
-                        result.add(new LocalVariable(localVariable.getName(), localVariable.getSignature()));
-                    }
-                }
-            } else {
-                int i = 1;
-                result.add(new LocalVariable("this", new ObjectType(outerClassName).getSignature()));
-                for ( Type argumentType : method.getArgumentTypes() ) {
-                    result.add(new LocalVariable("" + i++, argumentType.getSignature()));
-                }
-            }
-            return result;
-        }
-        return new ArrayList<LocalVariable>();
-    }
-
     private Type lookupEnclosingMethodReturnType() throws ClassNotFoundException {
         final JavaClass outerClass = lookupOuterClass();
         for ( Method method : outerClass.getMethods() ) {
@@ -509,24 +423,4 @@ public class JavaAnonymousInnerClass {
         }
         return true;
     }
-
-    public static class LocalVariable {
-
-        private final String name;
-        private final String signature;
-
-        public LocalVariable(String name, String signature) {
-            super();
-            this.name = name;
-            this.signature = signature;
-        }
-
-        String getName() {
-            return name;
-        }
-
-        String getSignature() {
-            return signature;
-        }
-    }
 }
@@ -0,0 +1,15 @@
+package net.madz.bcel;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Invokes one instance method without going through Method.invoke. Instances
+ * are created by {@link MethodAccessorGenerator} while state machines are
+ * being registered.
+ */
+public interface MethodAccessor {
+
+    Object invoke(Object target) throws InvocationTargetException;
+
+    Object invoke(Object target, Object argument) throws InvocationTargetException;
+}
@@ -0,0 +1,231 @@
+package net.madz.bcel;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.InstructionConstants;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.ReferenceType;
+import org.apache.bcel.generic.Type;
+
+/**
+ * Generates a small {@link MethodAccessor} class per method, which invokes
+ * the method with invokevirtual/invokeinterface directly. Generated classes
+ * are defined in a child class loader of the declaring class' loader, so
+ * only public methods of public classes can be generated. Any other method
+ * gets a reflective accessor, which is made accessible once on creation
+ * instead of toggling the accessible flag on every call.
+ */
+public final class MethodAccessorGenerator {
+
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework Byte Code Transformer");
+    private static final String ACCESSOR_POSTFIX = "$$MethodAccessor$";
+    private static final AtomicInteger accessorSeq = new AtomicInteger();
+    private static final WeakHashMap<ClassLoader, WeakReference<AccessorClassLoader>> accessorClassLoaders = new WeakHashMap<>();
+
+    private MethodAccessorGenerator() {}
+
+    public static MethodAccessor create(Method method) {
+        if ( isGeneratable(method) ) {
+            try {
+                return generate(method);
+            } catch (Throwable t) {
+                if ( logger.isLoggable(Level.FINE) ) {
+                    logger.log(Level.FINE, "Failed to generate accessor for " + method + ", falling back to reflection.", t);
+                }
+            }
+        }
+        return new ReflectiveMethodAccessor(method);
+    }
+
+    private static boolean isGeneratable(Method method) {
+        if ( Modifier.isStatic(method.getModifiers()) || !Modifier.isPublic(method.getModifiers()) ) {
+            return false;
+        }
+        if ( 1 < method.getParameterTypes().length ) {
+            return false;
+        }
+        if ( null == method.getDeclaringClass().getClassLoader() ) {
+            return false;
+        }
+        if ( !isPublic(method.getDeclaringClass()) ) {
+            return false;
+        }
+        for ( final Class<?> parameterType : method.getParameterTypes() ) {
+            if ( !isPublic(parameterType) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        Class<?> componentType = type;
+        while ( componentType.isArray() ) {
+            componentType = componentType.getComponentType();
+        }
+        return componentType.isPrimitive() || Modifier.isPublic(componentType.getModifiers());
+    }
+
+    private static MethodAccessor generate(Method method) throws Exception {
+        final Class<?> declaringClass = method.getDeclaringClass();
+        final String accessorClassName = declaringClass.getName() + ACCESSOR_POSTFIX + accessorSeq.incrementAndGet();
+        final ClassGen cgen = new ClassGen(accessorClassName, Object.class.getName(), "<generated>", Constants.ACC_PUBLIC | Constants.ACC_FINAL
+                | Constants.ACC_SUPER, new String[] { MethodAccessor.class.getName() });
+        cgen.addEmptyConstructor(Constants.ACC_PUBLIC);
+        final int arity = method.getParameterTypes().length;
+        doGenerateInvoke(cgen, method, 0 == arity, new Type[] { Type.OBJECT });
+        doGenerateInvoke(cgen, method, 1 == arity, new Type[] { Type.OBJECT, Type.OBJECT });
+        final byte[] bytes = cgen.getJavaClass().getBytes();
+        final Class<?> accessorClass = getAccessorClassLoader(declaringClass.getClassLoader()).define(accessorClassName, bytes);
+        return (MethodAccessor) accessorClass.newInstance();
+    }
+
+    private static void doGenerateInvoke(ClassGen cgen, Method method, boolean arityMatched, Type[] argTypes) {
+        final InstructionFactory ifact = new InstructionFactory(cgen);
+        final InstructionList iList = new InstructionList();
+        final MethodGen methodGen = new MethodGen(Constants.ACC_PUBLIC, Type.OBJECT, argTypes, null, "invoke", cgen.getClassName(), iList,
+                cgen.getConstantPool());
+        methodGen.addException(InvocationTargetException.class.getName());
+        if ( arityMatched ) {
+            final Class<?> declaringClass = method.getDeclaringClass();
+            iList.append(InstructionFactory.createLoad(Type.OBJECT, 1));
+            iList.append(ifact.createCheckCast(new ObjectType(declaringClass.getName())));
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+            if ( 1 == parameterTypes.length ) {
+                iList.append(InstructionFactory.createLoad(Type.OBJECT, 2));
+                appendUnboxing(ifact, iList, parameterTypes[0]);
+            }
+            final Type returnType = Type.getType(method.getReturnType());
+            final short kind = declaringClass.isInterface() ? Constants.INVOKEINTERFACE : Constants.INVOKEVIRTUAL;
+            final InstructionHandle invokeHandle = iList.append(ifact.createInvoke(declaringClass.getName(), method.getName(), returnType,
+                    Type.getTypes(parameterTypes), kind));
+            appendBoxing(ifact, iList, method.getReturnType());
+            iList.append(InstructionConstants.ARETURN);
+            // Exceptions thrown by the target method are wrapped as
+            // Method.invoke does, so that callers keep one error contract.
+            final InstructionHandle handler = iList.append(InstructionFactory.createStore(Type.OBJECT, 3));
+            iList.append(ifact.createNew(InvocationTargetException.class.getName()));
+            iList.append(InstructionConstants.DUP);
+            iList.append(InstructionFactory.createLoad(Type.OBJECT, 3));
+            iList.append(ifact.createInvoke(InvocationTargetException.class.getName(), "<init>", Type.VOID, new Type[] { new ObjectType(
+                    Throwable.class.getName()) }, Constants.INVOKESPECIAL));
+            iList.append(InstructionConstants.ATHROW);
+            methodGen.addExceptionHandler(invokeHandle, invokeHandle, handler, new ObjectType(Throwable.class.getName()));
+        } else {
+            iList.append(ifact.createNew(IllegalArgumentException.class.getName()));
+            iList.append(InstructionConstants.DUP);
+            iList.append(ifact.createInvoke(IllegalArgumentException.class.getName(), "<init>", Type.VOID, Type.NO_ARGS, Constants.INVOKESPECIAL));
+            iList.append(InstructionConstants.ATHROW);
+        }
+        methodGen.setMaxStack();
+        methodGen.setMaxLocals(4);
+        cgen.addMethod(methodGen.getMethod());
+        iList.dispose();
+    }
+
+    private static void appendUnboxing(InstructionFactory ifact, InstructionList iList, Class<?> parameterType) {
+        if ( !parameterType.isPrimitive() ) {
+            if ( Object.class != parameterType ) {
+                iList.append(ifact.createCheckCast((ReferenceType) Type.getType(parameterType)));
+            }
+            return;
+        }
+        final Class<?> wrapperType = wrapperTypeOf(parameterType);
+        iList.append(ifact.createCheckCast(new ObjectType(wrapperType.getName())));
+        iList.append(ifact.createInvoke(wrapperType.getName(), parameterType.getName() + "Value", Type.getType(parameterType), Type.NO_ARGS,
+                Constants.INVOKEVIRTUAL));
+    }
+
+    private static void appendBoxing(InstructionFactory ifact, InstructionList iList, Class<?> returnType) {
+        if ( void.class == returnType ) {
+            iList.append(InstructionConstants.ACONST_NULL);
+        } else if ( returnType.isPrimitive() ) {
+            final Class<?> wrapperType = wrapperTypeOf(returnType);
+            iList.append(ifact.createInvoke(wrapperType.getName(), "valueOf", new ObjectType(wrapperType.getName()), new Type[] { Type
+                    .getType(returnType) }, Constants.INVOKESTATIC));
+        }
+    }
+
+    private static Class<?> wrapperTypeOf(Class<?> primitiveType) {
+        if ( int.class == primitiveType ) {
+            return Integer.class;
+        } else if ( long.class == primitiveType ) {
+            return Long.class;
+        } else if ( boolean.class == primitiveType ) {
+            return Boolean.class;
+        } else if ( double.class == primitiveType ) {
+            return Double.class;
+        } else if ( float.class == primitiveType ) {
+            return Float.class;
+        } else if ( short.class == primitiveType ) {
+            return Short.class;
+        } else if ( byte.class == primitiveType ) {
+            return Byte.class;
+        } else if ( char.class == primitiveType ) {
+            return Character.class;
+        }
+        throw new IllegalArgumentException("Not a primitive type: " + primitiveType);
+    }
+
+    private static synchronized AccessorClassLoader getAccessorClassLoader(ClassLoader parent) {
+        final WeakReference<AccessorClassLoader> reference = accessorClassLoaders.get(parent);
+        AccessorClassLoader loader = null == reference ? null : reference.get();
+        if ( null == loader ) {
+            loader = new AccessorClassLoader(parent);
+            accessorClassLoaders.put(parent, new WeakReference<>(loader));
+        }
+        return loader;
+    }
+
+    private static final class AccessorClassLoader extends ClassLoader {
+
+        private AccessorClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class ReflectiveMethodAccessor implements MethodAccessor {
+
+        private final Method method;
+
+        private ReflectiveMethodAccessor(Method method) {
+            this.method = method;
+            this.method.setAccessible(true);
+        }
+
+        @Override
+        public Object invoke(Object target) throws InvocationTargetException {
+            try {
+                return method.invoke(target);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public Object invoke(Object target, Object argument) throws InvocationTargetException {
+            try {
+                return method.invoke(target, argument);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
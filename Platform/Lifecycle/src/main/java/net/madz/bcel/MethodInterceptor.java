@@ -3,15 +3,14 @@ package net.madz.bcel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Callable;
 
-import net.madz.bcel.intercept.InterceptContext;
-import net.madz.bcel.intercept.InterceptorController;
+import net.madz.bcel.intercept.InterceptPoint;
 
 import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.Attribute;
 import org.apache.bcel.classfile.InnerClass;
 import org.apache.bcel.classfile.InnerClasses;
+import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.LocalVariable;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.ArrayType;
@@ -19,13 +18,10 @@ import org.apache.bcel.generic.BasicType;
 import org.apache.bcel.generic.ClassGen;
 import org.apache.bcel.generic.ClassGenException;
 import org.apache.bcel.generic.ConstantPoolGen;
-import org.apache.bcel.generic.ICONST;
 import org.apache.bcel.generic.InstructionConstants;
 import org.apache.bcel.generic.InstructionFactory;
 import org.apache.bcel.generic.InstructionHandle;
 import org.apache.bcel.generic.InstructionList;
-import org.apache.bcel.generic.LDC;
-import org.apache.bcel.generic.LDC_W;
 import org.apache.bcel.generic.MethodGen;
 import org.apache.bcel.generic.ObjectType;
 import org.apache.bcel.generic.PUSH;
@@ -36,6 +32,19 @@ public class MethodInterceptor {
 
     private static final String POST_FIX = "$Impl";
 
+    /**
+     * @return true if the class already carries renamed transition methods,
+     *         e.g. it has been woven at build time.
+     */
+    public static boolean isIntercepted(JavaClass jclas) {
+        for ( final Method method : jclas.getMethods() ) {
+            if ( method.getName().endsWith(POST_FIX) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static void addWrapper(ClassGen classGen, Method method, int anonymousInnerClassSeq) {
         renameOriginalMethod(classGen, method, classGen.getConstantPool(), classGen.getClassName());
         createWrapperMethodWithCreateNewInnerClass(classGen, method, anonymousInnerClassSeq, classGen.getClassName(), method.getName(),
@@ -114,98 +123,17 @@ public class MethodInterceptor {
         }
         final int argumentsArrayLocalVariableIndex = localVariableSlotCursor++;
         ilist.append(InstructionFactory.createStore(Type.OBJECT, argumentsArrayLocalVariableIndex));
-        // Step 1. InterceptorController controller = new
-        // InterceptorController();
-        ilist.append(ifact.createNew(InterceptorController.class.getName()));
-        ilist.append(InstructionFactory.DUP);
-        ilist.append(ifact.createInvoke(InterceptorController.class.getName(), "<init>", Type.VOID, Type.NO_ARGS, Constants.INVOKESPECIAL));
-        final int controllerIndex = localVariableSlotCursor;
-        final ObjectType controllerType = new ObjectType(InterceptorController.class.getName());
-        localVariableSlotCursor += controllerType.getSize();
-        ilist.append(InstructionFactory.createStore(controllerType, controllerIndex));
-        // Step 2. final InterceptContext<Void> context = new
-        // InterceptContext<Void>(getClass(), this, methodName,
-        // new Class[] { Long.class, Long.class, Long.class },
-        // Object[] arguments);
-        // 2.1 getClass()
-        ilist.append(ifact.createNew(InterceptContext.class.getName()));
-        ilist.append(InstructionFactory.DUP);
-        ilist.append(new LDC(constantPoolGen.lookupClass(interceptingClass)));
-        // 2.2 load this
-        ilist.append(InstructionFactory.createLoad(new ObjectType(interceptingClass), 0));// this
-        // 2.3 load intercepting method
-        int methodNameIndex = constantPoolGen.lookupString(interceptingMethod);
-        if ( -1 >= methodNameIndex ) {
-            methodNameIndex = constantPoolGen.addString(interceptingMethod);
-        }
-        ilist.append(new LDC(methodNameIndex));// methodName
-        // 2.4 calculate argument size and allocate an array with same size
-        ilist.append(new ICONST(argumentTypes.length));
-        ilist.append(ifact.createNewArray(new ObjectType("java.lang.Class"), (short) 1));
-        // 2.5 assign value for each element in array
-        for ( int i = 0; i < argumentTypes.length; i++ ) {
-            ilist.append(InstructionFactory.DUP);
-            ilist.append(new ICONST(i));
-            Type type = argumentTypes[i];
-            if ( type instanceof BasicType ) {
-                ilist.append(ifact.createGetStatic(convertType2ClassName(type), "TYPE", new ObjectType("java.lang.Class")));
-            } else {
-                int argumentClassIndex = convertType2ClassIndex(classGen, type);
-                if ( type.getSize() > 4 ) {
-                    ilist.append(new LDC_W(argumentClassIndex));
-                } else {
-                    ilist.append(new LDC(argumentClassIndex));
-                }
-            }
-            ilist.append(InstructionConstants.AASTORE);
-        }
-        // 2.6 new InterceptContext<Void>(...
-        ilist.append(InstructionFactory.createLoad(new ArrayType("java.lang.Object", 1), argumentsArrayLocalVariableIndex));
-        final Type[] interceptor_method_arg_types = new Type[5];
-        interceptor_method_arg_types[0] = new ObjectType("java.lang.Class");
-        interceptor_method_arg_types[1] = new ObjectType("java.lang.Object");
-        interceptor_method_arg_types[2] = new ObjectType("java.lang.String");
-        interceptor_method_arg_types[3] = new ArrayType("java.lang.Class", 1);
-        interceptor_method_arg_types[4] = new ArrayType("java.lang.Object", 1);
-        ilist.append(ifact.createInvoke(InterceptContext.class.getName(), "<init>", Type.VOID, interceptor_method_arg_types, Constants.INVOKESPECIAL));
-        /*
-         * ilist.append(new LDC_W(interceptingMethodIndex));
-         * ilist.append(ifact.createInvoke(InterceptContext.class.getName(),
-         * "<init>", Type.VOID, new Type[]{new ObjectType("java.lang.Class"),
-         * new ObjectType("java.lang.Object"), new
-         * ObjectType("java.lang.reflect.Method")}, Constants.INVOKESPECIAL));
-         */
-        final int contextIndex = localVariableSlotCursor;
-        final ObjectType contextType = new ObjectType(InterceptContext.class.getName());
-        localVariableSlotCursor += contextType.getSize();
-        ilist.append(InstructionFactory.createStore(contextType, contextIndex));
-        ilist.append(InstructionFactory.createLoad(controllerType, controllerIndex));
-        ilist.append(InstructionFactory.createLoad(contextType, contextIndex));
-        // Step 3 Create Inner Class Instance.
-        // net.madz.lifecycle.solutionOne.ServiceOrder$1(net.madz.lifecycle.solutionOne.ServiceOrder
-        // summaryPlanId, long arg1, long truckResourceId, long arg3)
+        // Step 1. return Outer$N.INTERCEPT_POINT.invoke(this, arguments);
+        // the intercept point is a static final field of the generated
+        // stateless invoker class, resolved once on its initialization.
         final String innerClassName = interceptingClass + "$" + anonymousInnerClassSeq;
-        ilist.append(ifact.createNew(innerClassName));
-        ilist.append(InstructionFactory.DUP);
-        // 3.1 load constructor arguments variables
+        final ObjectType interceptPointType = new ObjectType(InterceptPoint.class.getName());
+        ilist.append(ifact.createGetStatic(innerClassName, JavaAnonymousInnerClass.INTERCEPT_POINT, interceptPointType));
         ilist.append(InstructionFactory.createThis());
-        int localIndex = 1;
-        for ( int i = 0; i < argumentTypes.length; i++ ) {
-            ilist.append(InstructionFactory.createLoad(argumentTypes[i], localIndex));
-            localIndex += argumentTypes[i].getSize();
-        }
-        // 3.2 calculating constructor argument types
-        Type[] inner_constructor_arg_types = new Type[argumentTypes.length + 1];
-        inner_constructor_arg_types[0] = new ObjectType(interceptingClass);
-        for ( int i = 1; i <= argumentTypes.length; i++ ) {
-            inner_constructor_arg_types[i] = argumentTypes[i - 1];
-        }
-        // 3.3 invoke constructor method
-        ilist.append(ifact.createInvoke(innerClassName, "<init>", Type.VOID, inner_constructor_arg_types, Constants.INVOKESPECIAL));
-        // Step 4. Invoke InterceptorController.exec
-        ilist.append(ifact.createInvoke(InterceptorController.class.getName(), "exec", Type.OBJECT,
-                new Type[] { new ObjectType(InterceptContext.class.getName()), new ObjectType(Callable.class.getName()) }, Constants.INVOKEVIRTUAL));
-        // Step 5.
+        ilist.append(InstructionFactory.createLoad(new ArrayType("java.lang.Object", 1), argumentsArrayLocalVariableIndex));
+        ilist.append(ifact.createInvoke(InterceptPoint.class.getName(), "invoke", Type.OBJECT, new Type[] { Type.OBJECT,
+                new ArrayType("java.lang.Object", 1) }, Constants.INVOKEVIRTUAL));
+        // Step 2. Unbox and return the result.
         if ( originalMethod.getReturnType().getType() == Type.VOID.getType() ) {
             ilist.append(InstructionConstants.POP);
             ilist.append(InstructionConstants.RETURN);
@@ -322,52 +250,6 @@ public class MethodInterceptor {
             classGen.addAttribute(inner);
         }
     }
-
-    private static int convertType2ClassIndex(ClassGen cgen, Type type) {
-        if ( type instanceof ObjectType ) {
-            String className = type.getSignature();
-            if ( className.startsWith("L") ) {
-                className = className.substring(1);
-            }
-            int leftArrow = className.indexOf("<");
-            if ( -1 < leftArrow ) {
-                className = className.substring(0, leftArrow);
-            }
-            if ( className.endsWith(";") ) {
-                className = className.substring(0, className.length() - 1);
-            }
-            int argumentClassIndex = cgen.getConstantPool().lookupClass(className);
-            if ( -1 >= argumentClassIndex ) {
-                argumentClassIndex = cgen.getConstantPool().addClass(className);
-            }
-            return argumentClassIndex;
-        } else if ( type instanceof ArrayType ) {
-            // unsupport for now
-        }
-        // wrong return
-        throw new UnsupportedOperationException();
-    }
-
-    private static String convertType2ClassName(Type type) {
-        if ( Type.BOOLEAN.equals(type) ) {
-            return Boolean.class.getName();
-        } else if ( Type.BYTE.equals(type) ) {
-            return Byte.class.getName();
-        } else if ( Type.CHAR.equals(type) ) {
-            return Character.class.getName();
-        } else if ( Type.DOUBLE.equals(type) ) {
-            return Double.class.getName();
-        } else if ( Type.FLOAT.equals(type) ) {
-            return Float.class.getName();
-        } else if ( Type.INT.equals(type) ) {
-            return Integer.class.getName();
-        } else if ( Type.LONG.equals(type) ) {
-            return Long.class.getName();// long.class.getName();
-        } else if ( Type.SHORT.equals(type) ) {
-            return Short.class.getName();
-        } else if ( type instanceof ArrayType ) {}
-        throw new UnsupportedOperationException();
-    }
     // public static void main(String[] argv) throws Throwable {
     // if ( argv.length == 2 && argv[0].endsWith(".class") ) {
     // try {
@@ -0,0 +1,78 @@
+package net.madz.bcel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Build time alternative of {@link BCELClassFileTransformer}: weaves all
+ * lifecycle classes under class output directories, and writes the woven
+ * classes together with their generated inner classes back into the same
+ * directories. Classes woven this way are skipped by the runtime agent, so
+ * the agent is no longer required.
+ *
+ * Usage: java net.madz.bcel.OfflineWeaver classesDirectory...
+ */
+public class OfflineWeaver {
+
+    private static final Logger log = Logger.getLogger("Lifecycle Framework Byte Code Transformer");
+    private static final String CLASS_FILE_POSTFIX = ".class";
+
+    public static void main(String[] args) throws Throwable {
+        if ( 0 >= args.length ) {
+            System.err.println("Usage: java " + OfflineWeaver.class.getName() + " classesDirectory...");
+            System.exit(1);
+        }
+        for ( final String directory : args ) {
+            final int count = weave(new File(directory));
+            if ( log.isLoggable(Level.INFO) ) {
+                log.info("Woven " + count + " classes under " + directory);
+            }
+        }
+    }
+
+    /**
+     * @return number of classes woven under the classes directory
+     */
+    public static int weave(File classesDirectory) throws Throwable {
+        if ( !classesDirectory.isDirectory() ) {
+            throw new IllegalArgumentException("Not a classes directory: " + classesDirectory);
+        }
+        String location = classesDirectory.getAbsolutePath();
+        if ( !location.endsWith(File.separator) ) {
+            location += File.separator;
+        }
+        return weave(classesDirectory, location, "");
+    }
+
+    private static int weave(File directory, String location, String packagePrefix) throws Throwable {
+        final File[] files = directory.listFiles();
+        if ( null == files ) {
+            throw new IOException("Cannot list files under: " + directory);
+        }
+        int count = 0;
+        for ( final File file : files ) {
+            if ( file.isDirectory() ) {
+                count += weave(file, location, packagePrefix + file.getName() + "/");
+            } else if ( file.getName().endsWith(CLASS_FILE_POSTFIX) ) {
+                final String fileName = file.getName();
+                final String className = packagePrefix + fileName.substring(0, fileName.length() - CLASS_FILE_POSTFIX.length());
+                final byte[] classfileBuffer = Files.readAllBytes(file.toPath());
+                if ( !BCELClassFileTransformer.hasCandidateAnnotation(classfileBuffer) ) {
+                    continue;
+                }
+                final byte[] wovenBuffer = BCELClassFileTransformer.weave(className, classfileBuffer, location);
+                if ( null != wovenBuffer ) {
+                    Files.write(file.toPath(), wovenBuffer);
+                    if ( log.isLoggable(Level.FINE) ) {
+                        log.fine("Woven class " + className);
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
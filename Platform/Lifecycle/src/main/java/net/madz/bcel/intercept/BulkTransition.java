@@ -0,0 +1,90 @@
+package net.madz.bcel.intercept;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Stack;
+
+import net.madz.lifecycle.LifecycleEvent;
+
+/**
+ * State shared by the transitions of one {@link LifecycleEngine#transitAll}
+ * call: locks taken by any transition of the batch are held until the whole
+ * batch completes, relation validations are cached for the whole batch, and
+ * events are collected to be fired together.
+ *
+ * Read locks of related objects are kept apart, since a read lock cannot be
+ * upgraded: one the batch is about to transit is released first.
+ */
+final class BulkTransition implements UnlockableStack {
+
+    private final Stack<Unlockable> unlockables = new Stack<>();
+    private final IdentityHashMap<Object, ArrayList<Unlockable>> readUnlockables = new IdentityHashMap<>();
+    private final RelationValidationCache relationValidationCache = new RelationValidationCache();
+    private final ArrayList<LifecycleEvent> events = new ArrayList<>();
+
+    @Override
+    public Unlockable popUnlockable() {
+        return unlockables.pop();
+    }
+
+    @Override
+    public void pushUnlockable(Unlockable unlockable) {
+        unlockables.push(unlockable);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return unlockables.isEmpty();
+    }
+
+    void pushReadUnlockable(Object relatedTarget, Unlockable unlockable) {
+        ArrayList<Unlockable> unlockablesOfTarget = readUnlockables.get(relatedTarget);
+        if ( null == unlockablesOfTarget ) {
+            unlockablesOfTarget = new ArrayList<>(1);
+            readUnlockables.put(relatedTarget, unlockablesOfTarget);
+        }
+        unlockablesOfTarget.add(unlockable);
+    }
+
+    /**
+     * Releases the read locks taken on the reactive object as a related object
+     * of earlier transitions, before its write lock is taken.
+     */
+    void releaseReadLocks(Object reactiveObject) {
+        final ArrayList<Unlockable> unlockablesOfTarget = readUnlockables.remove(reactiveObject);
+        if ( null == unlockablesOfTarget ) {
+            return;
+        }
+        relationValidationCache.releaseReadLock(reactiveObject);
+        unlock(unlockablesOfTarget);
+    }
+
+    RelationValidationCache getRelationValidationCache() {
+        return relationValidationCache;
+    }
+
+    void addEvent(LifecycleEvent event) {
+        events.add(event);
+    }
+
+    List<LifecycleEvent> getEvents() {
+        return events;
+    }
+
+    void unlockAll() {
+        while ( !unlockables.isEmpty() ) {
+            unlockables.pop().unlock();
+        }
+        for ( final ArrayList<Unlockable> unlockablesOfTarget : readUnlockables.values() ) {
+            unlock(unlockablesOfTarget);
+        }
+        readUnlockables.clear();
+    }
+
+    private static void unlock(ArrayList<Unlockable> unlockablesOfTarget) {
+        for ( int i = unlockablesOfTarget.size() - 1; i >= 0; i-- ) {
+            unlockablesOfTarget.get(i).unlock();
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.madz.lifecycle.metrics.TransitionSample.Phase;
+
 public class CallableInterceptor<V, R> extends Interceptor<V, R> {
 
     private static final Logger logger = Logger.getLogger("Lifecycle Framework");
@@ -14,7 +16,15 @@ public class CallableInterceptor<V, R> extends Interceptor<V, R> {
             if ( logger.isLoggable(Level.FINE) ) {
                 logger.fine("intercepting with: " + getClass().getName() + " @intercept");
             }
-            return callable.call();
+            if ( !context.isTimed() ) {
+                return callable.call();
+            }
+            final long methodStart = System.nanoTime();
+            try {
+                return callable.call();
+            } finally {
+                context.addPhaseNanos(Phase.METHOD, methodStart);
+            }
         } catch (Exception e) {
             logger.log(Level.SEVERE, e.getMessage(), e);
             throw e;
@@ -2,23 +2,40 @@ package net.madz.bcel.intercept;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Stack;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import net.madz.lifecycle.annotations.Null;
-import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.locks.OptimisticLockStrategy;
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
+import net.madz.lifecycle.meta.instance.TransitionPlan;
 import net.madz.lifecycle.meta.template.TransitionMetadata.TransitionTypeEnum;
-import net.madz.util.StringUtil;
+import net.madz.lifecycle.metrics.TransitionSample;
 
-public class InterceptContext<V, R> implements UnlockableStack {
+public class InterceptContext<V, R> implements UnlockableStack, Callable<R>, TransitionSample {
 
     private static Logger logger = Logger.getLogger("Lifecycle Framework");
-    private final Annotation[] annotation;
-    private final Class<?> klass;
-    private final Method method;
-    private final V target;
-    private final Object[] arguments;
+    private static final int MAX_POOLED_CONTEXTS = 8;
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static final Interceptor INTERCEPTOR_CHAIN = new LifecycleInterceptor(new CallableInterceptor());
+    private static final ThreadLocal<ContextPool> contextPools = new ThreadLocal<ContextPool>() {
+
+        @Override
+        protected ContextPool initialValue() {
+            return new ContextPool();
+        }
+    };
+    private final ContextPool pool;
+    private InterceptPoint interceptPoint;
+    private Annotation[] annotation;
+    private Class<?> klass;
+    private Method method;
+    private V target;
+    private Object[] arguments;
     private String fromState;
     private String nextState;
     private String transition;
@@ -27,30 +44,145 @@ public class InterceptContext<V, R> implements UnlockableStack {
     private long endTime;
     private TransitionTypeEnum transitionType;
     private boolean success;
+    private OptimisticLockStrategy conflictingLock;
+    private long stateStamp;
+    private TransitionPlan transitionPlan;
+    private StateMachineObject<?> stateMachine;
+    private int transitionOrdinal = StateTransitionTable.UNKNOWN;
+    private int fromStateOrdinal = StateTransitionTable.UNKNOWN;
+    private BulkTransition bulkTransition;
+    private RelationValidationCache relationValidationCache;
+    private boolean timed;
+    private long startNanos;
+    private long durationNanos;
+    private final long[] phaseNanos = new long[Phase.values().length];
     private final Stack<Unlockable> lockedRelatedObjectStack = new Stack<>();
 
     public InterceptContext(Class<?> klass, V target, String methodName, Class<?>[] argsType, Object[] arguments) {
         super();
+        this.pool = null;
         this.klass = klass;
         this.method = findMethod(klass, methodName, argsType);
         this.annotation = method.getAnnotations();
         this.target = target;
-        if ( null == arguments ) {
-            this.arguments = new Object[0];
+        this.arguments = null == arguments ? NO_ARGUMENTS : arguments;
+        this.startTime = System.currentTimeMillis();
+        logInterceptPoint();
+    }
+
+    private InterceptContext(ContextPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Takes a context from the pool confined to the current thread, the
+     * context must be released by the same thread in LIFO order. Nested
+     * transitions beyond the pool size get unpooled contexts.
+     */
+    @SuppressWarnings("unchecked")
+    static <V, R> InterceptContext<V, R> acquire(InterceptPoint interceptPoint, V target, Object[] arguments) {
+        final ContextPool pool = contextPools.get();
+        final InterceptContext<?, ?> enclosing = 0 == pool.depth ? null : pool.contexts[Math.min(pool.depth, MAX_POOLED_CONTEXTS) - 1];
+        final InterceptContext<V, R> context;
+        if ( pool.depth < MAX_POOLED_CONTEXTS ) {
+            if ( null == pool.contexts[pool.depth] ) {
+                pool.contexts[pool.depth] = new InterceptContext<>(pool);
+            }
+            context = (InterceptContext<V, R>) pool.contexts[pool.depth++];
         } else {
-            this.arguments = arguments;
+            context = new InterceptContext<>((ContextPool) null);
         }
-        StringBuilder sb = new StringBuilder(" ");
-        for ( Object o : this.arguments ) {
-            sb.append(String.valueOf(o)).append(" ");
+        context.interceptPoint = interceptPoint;
+        context.klass = interceptPoint.getKlass();
+        context.method = interceptPoint.getMethod();
+        context.annotation = interceptPoint.getAnnotations();
+        context.target = target;
+        context.arguments = null == arguments ? NO_ARGUMENTS : arguments;
+        context.startTime = System.currentTimeMillis();
+        context.bulkTransition = pool.pendingBulkTransition;
+        pool.pendingBulkTransition = null;
+        if ( null != context.bulkTransition ) {
+            context.relationValidationCache = context.bulkTransition.getRelationValidationCache();
+        } else if ( null != enclosing ) {
+            // Related objects locked by the enclosing transition stay locked
+            // while the nested one runs.
+            context.relationValidationCache = enclosing.getRelationValidationCache();
+        } else {
+            context.relationValidationCache = pool.relationValidationCache;
+        }
+        context.logInterceptPoint();
+        return context;
+    }
+
+    /**
+     * Hands the bulk transition to the next context acquired by the current
+     * thread, i.e. the one of the woven transition method called next, so
+     * that nested transitions fired by it do not join the batch.
+     */
+    static void joinNextTransition(BulkTransition bulkTransition) {
+        contextPools.get().pendingBulkTransition = bulkTransition;
+    }
+
+    /**
+     * Clears all per-call state and returns the context to its pool.
+     */
+    void release() {
+        this.interceptPoint = null;
+        this.klass = null;
+        this.method = null;
+        this.annotation = null;
+        this.target = null;
+        this.arguments = null;
+        this.fromState = null;
+        this.nextState = null;
+        this.transition = null;
+        this.failureCause = null;
+        this.startTime = 0L;
+        this.endTime = 0L;
+        this.transitionType = null;
+        this.success = false;
+        this.conflictingLock = null;
+        this.stateStamp = 0L;
+        this.transitionPlan = null;
+        this.stateMachine = null;
+        this.transitionOrdinal = StateTransitionTable.UNKNOWN;
+        this.fromStateOrdinal = StateTransitionTable.UNKNOWN;
+        forgetRelatedObjectLocks();
+        this.bulkTransition = null;
+        this.relationValidationCache = null;
+        this.timed = false;
+        this.startNanos = 0L;
+        this.durationNanos = 0L;
+        Arrays.fill(this.phaseNanos, 0L);
+        this.lockedRelatedObjectStack.clear();
+        if ( null != pool ) {
+            pool.depth--;
+            if ( 0 == pool.depth ) {
+                pool.relationValidationCache.clear();
+            }
         }
-        startTime = System.currentTimeMillis();
+    }
+
+    private void logInterceptPoint() {
         if ( logger.isLoggable(Level.FINE) ) {
-            logger.fine("Found Intercept Point: " + klass + "." + methodName + "( " + sb.toString() + " )");
+            StringBuilder sb = new StringBuilder(" ");
+            for ( Object o : this.arguments ) {
+                sb.append(String.valueOf(o)).append(" ");
+            }
+            logger.fine("Found Intercept Point: " + klass + "." + method.getName() + "( " + sb.toString() + " )");
             logger.fine("Intercepting....instatiating InterceptContext ...");
         }
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public R call() throws Exception {
+        if ( null == interceptPoint ) {
+            throw new IllegalStateException("No transition invoker bound to context of method: " + method);
+        }
+        return (R) interceptPoint.getInvoker().invoke(target, arguments);
+    }
+
     public String getFromState() {
         return fromState;
     }
@@ -117,16 +249,19 @@ public class InterceptContext<V, R> implements UnlockableStack {
     }
 
     public Object getTransitionKey() {
-        final Class<?> keyClass = method.getAnnotation(Transition.class).value();
-        if ( Null.class.equals(keyClass) ) {
-            return StringUtil.toUppercaseFirstCharacter(method.getName());
-        } else {
-            return keyClass;
+        if ( null != interceptPoint ) {
+            return interceptPoint.getTransitionKey();
         }
+        return InterceptPoint.resolveTransitionKey(method);
     }
 
+    /**
+     * @return the interceptor chain shared by all contexts, interceptors keep
+     *         no per-call state.
+     */
+    @SuppressWarnings("unchecked")
     public Interceptor<V, R> createInterceptorChain() {
-        return new LifecycleInterceptor<V, R>(new CallableInterceptor<V, R>());
+        return INTERCEPTOR_CHAIN;
     }
 
     protected Method findMethod(Class<?> klass, String methodName, Class<?>[] classes) {
@@ -154,17 +289,223 @@ public class InterceptContext<V, R> implements UnlockableStack {
         return success;
     }
 
+    /**
+     * @return the optimistic lock strategy that rejected committing the next
+     *         state of this transition, or null
+     */
+    OptimisticLockStrategy getConflictingLock() {
+        return conflictingLock;
+    }
+
+    void setConflictingLock(OptimisticLockStrategy conflictingLock) {
+        this.conflictingLock = conflictingLock;
+    }
+
+    /**
+     * @return the stamp read by the optimistic lock strategy before the from
+     *         state was evaluated
+     */
+    long getStateStamp() {
+        return stateStamp;
+    }
+
+    void setStateStamp(long stateStamp) {
+        this.stateStamp = stateStamp;
+    }
+
+    public TransitionPlan getTransitionPlan() {
+        return transitionPlan;
+    }
+
+    public void setTransitionPlan(TransitionPlan transitionPlan) {
+        this.transitionPlan = transitionPlan;
+    }
+
+    @Override
+    public StateMachineObject<?> getStateMachine() {
+        return stateMachine;
+    }
+
+    public void setStateMachine(StateMachineObject<?> stateMachine) {
+        this.stateMachine = stateMachine;
+    }
+
+    /**
+     * @return ordinal of the transition in the state machine's
+     *         {@link StateTransitionTable}, or StateTransitionTable.UNKNOWN.
+     */
+    public int getTransitionOrdinal() {
+        return transitionOrdinal;
+    }
+
+    public void setTransitionOrdinal(int transitionOrdinal) {
+        this.transitionOrdinal = transitionOrdinal;
+    }
+
+    /**
+     * @return ordinal of the from state in the state machine's
+     *         {@link StateTransitionTable}, or StateTransitionTable.UNKNOWN.
+     */
+    public int getFromStateOrdinal() {
+        return fromStateOrdinal;
+    }
+
+    public void setFromStateOrdinal(int fromStateOrdinal) {
+        this.fromStateOrdinal = fromStateOrdinal;
+    }
+
+    /**
+     * Starts taking phase timings, which are only taken while lifecycle
+     * metrics are enabled.
+     */
+    public void startTiming() {
+        this.timed = true;
+        this.startNanos = System.nanoTime();
+    }
+
+    public void stopTiming() {
+        this.durationNanos = System.nanoTime() - startNanos;
+    }
+
+    public boolean isTimed() {
+        return timed;
+    }
+
+    /**
+     * @return current nano time, as the start of the next phase
+     */
+    public long addPhaseNanos(Phase phase, long phaseStartNanos) {
+        final long now = System.nanoTime();
+        this.phaseNanos[phase.ordinal()] += now - phaseStartNanos;
+        return now;
+    }
+
+    @Override
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    @Override
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
     public Unlockable popUnlockable() {
         return lockedRelatedObjectStack.pop();
     }
 
+    /**
+     * Within a bulk transition the unlockable is kept by the batch, so that
+     * the lock is held until all transitions of the batch complete.
+     */
     @Override
     public void pushUnlockable(Unlockable unlockable) {
-        this.lockedRelatedObjectStack.push(unlockable);
+        if ( null != bulkTransition ) {
+            bulkTransition.pushUnlockable(unlockable);
+        } else {
+            this.lockedRelatedObjectStack.push(unlockable);
+        }
     }
 
     @Override
     public boolean isEmpty() {
         return this.lockedRelatedObjectStack.isEmpty();
     }
+
+    BulkTransition getBulkTransition() {
+        return bulkTransition;
+    }
+
+    RelationValidationCache getRelationValidationCache() {
+        if ( null == relationValidationCache ) {
+            relationValidationCache = new RelationValidationCache();
+        }
+        return relationValidationCache;
+    }
+
+    /**
+     * @return the state of the related object evaluated earlier by this
+     *         transition, an enclosing one or the same bulk transition, or
+     *         null if it has to be evaluated.
+     */
+    public String getRelatedState(Object relatedTarget, StateMachineObject<?> relatedStateMachine) {
+        return getRelationValidationCache().getEvaluatedState(relatedTarget, relatedStateMachine);
+    }
+
+    public void setRelatedState(Object relatedTarget, StateMachineObject<?> relatedStateMachine, String stateName) {
+        getRelationValidationCache().setEvaluatedState(relatedTarget, relatedStateMachine, stateName);
+    }
+
+    /**
+     * @return true if the read lock of the related object is already held
+     *         for this transition.
+     */
+    public boolean isRelatedObjectLocked(Object relatedTarget) {
+        return getRelationValidationCache().isReadLocked(relatedTarget);
+    }
+
+    /**
+     * Pushes the unlockable of the read lock just taken on the related object.
+     */
+    public void pushRelatedObjectUnlockable(Object relatedTarget, Unlockable unlockable) {
+        if ( null != bulkTransition ) {
+            bulkTransition.pushReadUnlockable(relatedTarget, unlockable);
+            getRelationValidationCache().setReadLocked(relatedTarget, bulkTransition);
+        } else {
+            this.lockedRelatedObjectStack.push(unlockable);
+            getRelationValidationCache().setReadLocked(relatedTarget, this);
+        }
+    }
+
+    /**
+     * @return true if the valid while constraints of the related object itself
+     *         have been verified while it is locked.
+     */
+    public boolean isValidWhilesVerified(Object relatedTarget, StateMachineObject<?> relatedStateMachine) {
+        return getRelationValidationCache().isValidWhilesVerified(relatedTarget, relatedStateMachine);
+    }
+
+    public void setValidWhilesVerified(Object relatedTarget, StateMachineObject<?> relatedStateMachine) {
+        getRelationValidationCache().setValidWhilesVerified(relatedTarget, relatedStateMachine);
+    }
+
+    /**
+     * @return true if the relation constraint has been verified against the
+     *         related object while it is locked.
+     */
+    public boolean isRelationVerified(Object constraint, Object relatedTarget) {
+        return getRelationValidationCache().isRelationVerified(constraint, relatedTarget);
+    }
+
+    public void setRelationVerified(Object constraint, Object relatedTarget) {
+        getRelationValidationCache().setRelationVerified(constraint, relatedTarget);
+    }
+
+    /**
+     * Drops cached validations depending on the state of the reactive object,
+     * which has just been transited.
+     */
+    void invalidateRelatedState(Object reactiveObject) {
+        if ( null != relationValidationCache ) {
+            relationValidationCache.invalidate(reactiveObject);
+        }
+    }
+
+    /**
+     * Drops cached validations of the related objects whose read locks this
+     * context has just released.
+     */
+    void forgetRelatedObjectLocks() {
+        if ( null != relationValidationCache ) {
+            relationValidationCache.releaseReadLocks(this);
+        }
+    }
+
+    private static final class ContextPool {
+
+        private final InterceptContext<?, ?>[] contexts = new InterceptContext<?, ?>[MAX_POOLED_CONTEXTS];
+        private int depth;
+        private BulkTransition pendingBulkTransition;
+        private final RelationValidationCache relationValidationCache = new RelationValidationCache();
+    }
 }
\ No newline at end of file
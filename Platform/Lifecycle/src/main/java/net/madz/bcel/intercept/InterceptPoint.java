@@ -0,0 +1,71 @@
+package net.madz.bcel.intercept;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+import net.madz.lifecycle.annotations.Null;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.util.StringUtil;
+
+/**
+ * Static metadata of one woven transition method. Woven classes create one
+ * instance per transition method while they are initialized, and the wrapper
+ * methods pass it to {@link InterceptorController} on every call.
+ */
+public final class InterceptPoint {
+
+    private final Class<?> klass;
+    private final Method method;
+    private final Annotation[] annotations;
+    private final Object transitionKey;
+    private final TransitionInvoker invoker;
+
+    private InterceptPoint(Class<?> klass, Method method, TransitionInvoker invoker) {
+        this.klass = klass;
+        this.method = method;
+        this.annotations = method.getAnnotations();
+        this.transitionKey = resolveTransitionKey(method);
+        this.invoker = invoker;
+    }
+
+    public static InterceptPoint create(Class<?> klass, String methodName, Class<?>[] argsType, TransitionInvoker invoker) {
+        try {
+            return new InterceptPoint(klass, klass.getDeclaredMethod(methodName, argsType), invoker);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Object resolveTransitionKey(Method method) {
+        final Class<?> keyClass = method.getAnnotation(Transition.class).value();
+        if ( Null.class.equals(keyClass) ) {
+            return StringUtil.toUppercaseFirstCharacter(method.getName());
+        } else {
+            return keyClass;
+        }
+    }
+
+    public Object invoke(Object target, Object[] arguments) throws Exception {
+        return InterceptorController.getInstance().exec(this, target, arguments);
+    }
+
+    public Class<?> getKlass() {
+        return klass;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Annotation[] getAnnotations() {
+        return annotations;
+    }
+
+    public Object getTransitionKey() {
+        return transitionKey;
+    }
+
+    public TransitionInvoker getInvoker() {
+        return invoker;
+    }
+}
@@ -4,9 +4,19 @@ import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.locks.OptimisticLockStrategy;
+
 public class InterceptorController<V, R> {
 
     private static Logger logger = Logger.getLogger("Lifecycle Framework");
+    @SuppressWarnings("rawtypes")
+    private static final InterceptorController INSTANCE = new InterceptorController();
+
+    @SuppressWarnings("unchecked")
+    public static <V, R> InterceptorController<V, R> getInstance() {
+        return INSTANCE;
+    }
 
     public R exec(InterceptContext<V, R> context, Callable<R> callable) throws Exception {
         if ( logger.isLoggable(Level.FINE) ) {
@@ -20,4 +30,29 @@ public class InterceptorController<V, R> {
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Entry of woven transition methods. The context is taken from a thread
+     * confined pool and reset once the transition completes. Transitions of
+     * objects with an {@link OptimisticLockStrategy} that lost a state
+     * conflict are invoked again only if the strategy rolled the object back,
+     * and as long as it allows.
+     */
+    public R exec(InterceptPoint interceptPoint, V target, Object[] arguments) throws Exception {
+        for ( int attempts = 1;; attempts++ ) {
+            final InterceptContext<V, R> context = InterceptContext.acquire(interceptPoint, target, arguments);
+            try {
+                return exec(context, context);
+            } catch (LifecycleException e) {
+                // Conflicts of nested transitions are retried by themselves.
+                final OptimisticLockStrategy lock = context.getConflictingLock();
+                if ( null == lock || !lock.retry(target, attempts) ) {
+                    throw e;
+                }
+                InterceptContext.joinNextTransition(context.getBulkTransition());
+            } finally {
+                context.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package net.madz.bcel.intercept;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.LifecycleEvent;
+import net.madz.lifecycle.LifecycleEventHandler;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.events.LifecycleEventBatchHandler;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Bulk entry of the lifecycle engine, applying one transition to many
+ * reactive objects with the overhead shared by the whole batch:
+ * <ul>
+ * <li>the transition method is resolved once per reactive class;</li>
+ * <li>reactive objects are transited in a global lock order, and every lock
+ * taken by the batch, on reactive objects and on related objects, is held
+ * until the whole batch completes, except the read lock of a related object
+ * the batch transits itself, released just before its write lock is taken;</li>
+ * <li>relation constraints are verified once per related object, e.g. one
+ * resource shared by many orders;</li>
+ * <li>lifecycle events are fired together after the batch, in one call if
+ * the event handler is a {@link LifecycleEventBatchHandler}.</li>
+ * </ul>
+ * A failing transition does not stop the batch, its cause is reported in the
+ * {@link Result}. Each transition otherwise behaves as the woven method call.
+ */
+public final class LifecycleEngine {
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    private static final AtomicLong lockSequence = new AtomicLong();
+    /**
+     * Sequence numbers of objects whose identity hash codes collided, weakly
+     * keyed by identity, so that concurrent batches order them alike.
+     */
+    private static final ConcurrentMap<Object, Long> lockSequences = new MapMaker().weakKeys().makeMap();
+    private static final Comparator<Object> LOCK_ORDER = new Comparator<Object>() {
+
+        @Override
+        public int compare(Object o1, Object o2) {
+            final int order = Integer.compare(System.identityHashCode(o1), System.identityHashCode(o2));
+            if ( 0 != order || o1 == o2 ) {
+                return order;
+            }
+            return Long.compare(lockSequenceOf(o1), lockSequenceOf(o2));
+        }
+    };
+
+    private LifecycleEngine() {}
+
+    /**
+     * @param transitionKey
+     *            the transition class, or the transition name as derived from
+     *            the transition method name.
+     * @param arguments
+     *            arguments passed to the transition method of every reactive
+     *            object.
+     */
+    public static <T> Result<T> transitAll(Collection<? extends T> reactiveObjects, Object transitionKey, Object... arguments) {
+        final Object[] transitionArguments = null == arguments ? NO_ARGUMENTS : arguments;
+        final List<T> targets = inLockOrder(reactiveObjects);
+        final HashMap<Class<?>, Method> transitionMethods = new HashMap<>();
+        final BulkTransition bulkTransition = new BulkTransition();
+        final Result<T> result = new Result<>();
+        try {
+            for ( final T target : targets ) {
+                Method transitionMethod = transitionMethods.get(target.getClass());
+                if ( null == transitionMethod ) {
+                    transitionMethod = findTransitionMethod(target.getClass(), transitionKey, transitionArguments);
+                    if ( null == transitionMethod ) {
+                        result.failed(target, new IllegalArgumentException("No transition method " + transitionKey + " found on " + target.getClass()));
+                        continue;
+                    }
+                    transitionMethods.put(target.getClass(), transitionMethod);
+                }
+                transit(transitionMethod, target, transitionArguments, bulkTransition, result);
+            }
+        } finally {
+            bulkTransition.unlockAll();
+            fireEvents(bulkTransition.getEvents());
+        }
+        return result;
+    }
+
+    /**
+     * Calls the woven transition method, so that the transition runs through
+     * the same intercept point as a direct call and joins the batch.
+     */
+    private static <T> void transit(Method transitionMethod, T target, Object[] arguments, BulkTransition bulkTransition, Result<T> result) {
+        InterceptContext.joinNextTransition(bulkTransition);
+        try {
+            transitionMethod.invoke(target, arguments);
+            result.succeeded(target);
+        } catch (InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            result.failed(target, cause instanceof Exception ? (Exception) cause : e);
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            result.failed(target, e);
+        } finally {
+            InterceptContext.joinNextTransition(null);
+        }
+    }
+
+    /**
+     * @return the transition method declared by the class or its nearest
+     *         super class accepting the arguments, or null if there is none.
+     */
+    private static Method findTransitionMethod(Class<?> klass, Object transitionKey, Object[] arguments) {
+        final String transitionName = nameOf(transitionKey);
+        for ( Class<?> type = klass; null != type && Object.class != type; type = type.getSuperclass() ) {
+            for ( final Method method : type.getDeclaredMethods() ) {
+                if ( null == method.getAnnotation(Transition.class) ) {
+                    continue;
+                }
+                final Object key = InterceptPoint.resolveTransitionKey(method);
+                if ( ( key.equals(transitionKey) || nameOf(key).equals(transitionName) ) && accepts(method, arguments) ) {
+                    method.setAccessible(true);
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String nameOf(Object transitionKey) {
+        return transitionKey instanceof Class ? ( (Class<?>) transitionKey ).getSimpleName() : String.valueOf(transitionKey);
+    }
+
+    private static boolean accepts(Method method, Object[] arguments) {
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        if ( parameterTypes.length != arguments.length ) {
+            return false;
+        }
+        for ( int i = 0; i < parameterTypes.length; i++ ) {
+            if ( null != arguments[i] && !parameterTypes[i].isPrimitive() && !parameterTypes[i].isInstance(arguments[i]) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> List<T> inLockOrder(Collection<? extends T> reactiveObjects) {
+        final IdentityHashMap<T, Boolean> distinct = new IdentityHashMap<>();
+        final ArrayList<T> targets = new ArrayList<>(reactiveObjects.size());
+        for ( final T reactiveObject : reactiveObjects ) {
+            if ( null != reactiveObject && null == distinct.put(reactiveObject, Boolean.TRUE) ) {
+                targets.add(reactiveObject);
+            }
+        }
+        Collections.sort(targets, LOCK_ORDER);
+        return targets;
+    }
+
+    private static long lockSequenceOf(Object reactiveObject) {
+        final Long sequence = lockSequences.get(reactiveObject);
+        if ( null != sequence ) {
+            return sequence;
+        }
+        final Long assigned = lockSequence.incrementAndGet();
+        final Long existing = lockSequences.putIfAbsent(reactiveObject, assigned);
+        return null == existing ? assigned : existing;
+    }
+
+    private static void fireEvents(List<LifecycleEvent> events) {
+        if ( events.isEmpty() ) {
+            return;
+        }
+        final LifecycleEventHandler eventHandler = AbsStateMachineRegistry.getInstance().getLifecycleEventHandler();
+        if ( eventHandler instanceof LifecycleEventBatchHandler ) {
+            ( (LifecycleEventBatchHandler) eventHandler ).onEvents(Collections.unmodifiableList(events));
+        } else if ( null != eventHandler ) {
+            for ( final LifecycleEvent event : events ) {
+                eventHandler.onEvent(event);
+            }
+        }
+    }
+
+    public static final class Result<T> {
+
+        private final ArrayList<T> succeeded = new ArrayList<>();
+        private final IdentityHashMap<T, Exception> failures = new IdentityHashMap<>();
+
+        private Result() {}
+
+        private void succeeded(T reactiveObject) {
+            succeeded.add(reactiveObject);
+        }
+
+        private void failed(T reactiveObject, Exception cause) {
+            failures.put(reactiveObject, cause);
+        }
+
+        /**
+         * @return reactive objects transited successfully, in lock order.
+         */
+        public List<T> getSucceeded() {
+            return Collections.unmodifiableList(succeeded);
+        }
+
+        /**
+         * @return causes of failed transitions keyed by reactive object
+         *         identity.
+         */
+        public Map<T, Exception> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        public boolean isAllSucceeded() {
+            return failures.isEmpty();
+        }
+    }
+}
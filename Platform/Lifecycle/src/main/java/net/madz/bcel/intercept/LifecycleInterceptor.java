@@ -2,6 +2,7 @@ package net.madz.bcel.intercept;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,17 +14,36 @@ import net.madz.lifecycle.LifecycleLockStrategry;
 import net.madz.lifecycle.annotations.Null;
 import net.madz.lifecycle.annotations.ReactiveObject;
 import net.madz.lifecycle.annotations.Transition;
-import net.madz.lifecycle.impl.LifecycleContextImpl;
 import net.madz.lifecycle.impl.LifecycleEventImpl;
+import net.madz.lifecycle.index.LifecycleStateIndex;
+import net.madz.lifecycle.journal.TransitionJournal;
+import net.madz.lifecycle.locks.OptimisticLockStrategy;
 import net.madz.lifecycle.meta.instance.StateMachineObject;
-import net.madz.lifecycle.meta.template.StateMetadata;
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
+import net.madz.lifecycle.meta.instance.TransitionPlan;
+import net.madz.lifecycle.meta.template.LifecycleMetaRegistry;
 import net.madz.lifecycle.meta.template.TransitionMetadata;
+import net.madz.lifecycle.metrics.LifecycleMetrics;
+import net.madz.lifecycle.metrics.TransitionSample.Phase;
+import net.madz.lifecycle.timeout.TransitionTimeoutService;
 import net.madz.util.StringUtil;
 import net.madz.verification.VerificationException;
 
 public class LifecycleInterceptor<V, R> extends Interceptor<V, R> {
 
     private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    /**
+     * Per reactive class fast path from the intercepted method to its state
+     * machine object, so that intercepting threads neither rescan annotations
+     * nor contend on any monitor after the first call.
+     */
+    private static final ClassValue<ConcurrentHashMap<Method, StateMachineBinding>> stateMachineBindings = new ClassValue<ConcurrentHashMap<Method, StateMachineBinding>>() {
+
+        @Override
+        protected ConcurrentHashMap<Method, StateMachineBinding> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
 
     public static Class<?> scanMethodsOnClasses(Class<?>[] klasses, final Method method) {
         if ( 0 == klasses.length ) throw new IllegalArgumentException();
@@ -66,13 +86,51 @@ public class LifecycleInterceptor<V, R> extends Interceptor<V, R> {
     @Override
     protected void preExec(InterceptContext<V, R> context) {
         super.preExec(context);
-        final StateMachineObject<?> stateMachine = lookupStateMachine(context);
+        if ( null != AbsStateMachineRegistry.getInstance().getLifecycleMetrics() ) {
+            context.startTiming();
+        }
+        final StateMachineBinding binding = lookupBinding(context);
+        final StateMachineObject<?> stateMachine = binding.stateMachine;
+        context.setStateMachine(stateMachine);
+        context.setTransitionOrdinal(binding.transitionOrdinal);
         if ( isLockEnabled(stateMachine) ) {
             final LifecycleLockStrategry lock = stateMachine.getLifecycleLockStrategy();
-            lock.lockWrite(context.getTarget());
+            final Object target = context.getTarget();
+            final BulkTransition bulkTransition = context.getBulkTransition();
+            if ( null != bulkTransition ) {
+                bulkTransition.releaseReadLocks(target);
+            }
+            lock.lockWrite(target);
+            // Pushed first so that it is popped last, after the related
+            // objects' locks, and only when the write lock is really held.
+            context.pushUnlockable(new Unlockable() {
+
+                @Override
+                public void unlock() {
+                    lock.unlockWrite(target);
+                }
+            });
+            if ( lock instanceof OptimisticLockStrategy ) {
+                // Read before the from state, so that any commit after it
+                // is detected.
+                context.setStateStamp(( (OptimisticLockStrategy) lock ).readStamp(target));
+            }
+        }
+        final boolean timed = context.isTimed();
+        long phaseStart = timed ? System.nanoTime() : 0L;
+        // Set From State Before all instructions. The state name is the
+        // canonical one of the transition table, so later lookups use the
+        // ordinal and name comparisons hit the identity check.
+        final int fromStateOrdinal = stateMachine.evaluateStateOrdinal(context.getTarget());
+        context.setFromStateOrdinal(fromStateOrdinal);
+        if ( StateTransitionTable.UNKNOWN == fromStateOrdinal ) {
+            context.setFromState(stateMachine.evaluateState(context.getTarget()));
+        } else {
+            context.setFromState(stateMachine.getTransitionTable().getStateName(fromStateOrdinal));
+        }
+        if ( timed ) {
+            phaseStart = context.addPhaseNanos(Phase.STATE_EVALUATION, phaseStart);
         }
-        // Set From State Before all instructions.
-        context.setFromState(stateMachine.evaluateState(context.getTarget()));
         if ( logger.isLoggable(Level.FINE) ) {
             logger.fine("intercepting  [" + context.getTarget() + "]" + "\n\tfrom state: [" + context.getFromState() + "] ");
         }
@@ -81,44 +139,64 @@ public class LifecycleInterceptor<V, R> extends Interceptor<V, R> {
             logger.fine("\tStep 1. start validating State [" + context.getFromState() + "]");
         }
         validateStateValidWhiles(stateMachine, context);
+        if ( timed ) {
+            phaseStart = context.addPhaseNanos(Phase.VALID_WHILE, phaseStart);
+        }
         // 2. Validate Transition validity
         if ( logger.isLoggable(Level.FINE) ) {
             logger.fine("\tStep 2. start validating transition: [" + context.getTransitionKey() + "] on state: [" + context.getFromState() + "]");
         }
         validateTransition(stateMachine, context);
+        if ( timed ) {
+            phaseStart = System.nanoTime();
+        }
         // 3. Validate in-bound Relation constraint if next state is predictable
         // before method invocation
         if ( logger.isLoggable(Level.FINE) ) {
             logger.fine("\tStep 3. start validating inbound relation constraint is next state is predictable before method invocation.");
         }
-        if ( nextStateCanBeEvaluatedBeforeTranstion(stateMachine, context) ) {
+        if ( nextStateCanBeEvaluatedBeforeTranstion(context) ) {
             validateNextStateInboundWhile(stateMachine, context);
+            if ( timed ) {
+                phaseStart = context.addPhaseNanos(Phase.INBOUND_WHILE, phaseStart);
+            }
         }
         // 4. Callback before state change
         if ( logger.isLoggable(Level.FINE) ) {
             logger.fine("\tStep 4. start callback before state change from : " + context.getFromState() + " => to : " + context.getToState());
         }
         performCallbacksBeforeStateChange(stateMachine, context);
+        if ( timed ) {
+            context.addPhaseNanos(Phase.PRE_CALLBACKS, phaseStart);
+        }
     }
 
     @Override
     protected void postExec(InterceptContext<V, R> context) {
         super.postExec(context);
         final StateMachineObject<?> stateMachine = lookupStateMachine(context);
+        final boolean timed = context.isTimed();
+        long phaseStart = timed ? System.nanoTime() : 0L;
         try {
             // 5. Validate in-bound Relation constraint if next state is
             // predictable after method invocation.
             if ( logger.isLoggable(Level.FINE) ) {
                 logger.fine("\tStep 5. start validating inbound relation constraint is next state after method invocation.");
             }
-            if ( !nextStateCanBeEvaluatedBeforeTranstion(stateMachine, context) ) {
+            if ( !nextStateCanBeEvaluatedBeforeTranstion(context) ) {
                 validateNextStateInboundWhile(stateMachine, context);
+                if ( timed ) {
+                    phaseStart = context.addPhaseNanos(Phase.INBOUND_WHILE, phaseStart);
+                }
             }
             // 6. Setup next state
             if ( logger.isLoggable(Level.FINE) ) {
                 logger.fine("\tStep 6. Set next state to reactiveObject.");
             }
             setNextState(stateMachine, context);
+            if ( timed ) {
+                phaseStart = context.addPhaseNanos(Phase.STATE_EVALUATION, phaseStart);
+            }
             if ( logger.isLoggable(Level.FINE) ) {
                 logger.fine("\tStep 6. ReactiveObject is tranisited to state: [" + context.getToState() + "]");
             }
@@ -127,21 +205,26 @@ public class LifecycleInterceptor<V, R> extends Interceptor<V, R> {
                 logger.fine("\tStep 7. Start Callback after state change from : " + context.getFromState() + " => to : " + context.getToState());
             }
             performCallbacksAfterStateChange(stateMachine, context);
+            if ( timed ) {
+                context.addPhaseNanos(Phase.POST_CALLBACKS, phaseStart);
+            }
             context.setSuccess(true);
+            scheduleTimeout(stateMachine, context);
         } finally {
             unlockRelationObjects(context);
-            if ( isLockEnabled(stateMachine) ) {
-                final LifecycleLockStrategry lock = stateMachine.getLifecycleLockStrategy();
-                if ( null != lock ) {
-                    lock.unlockWrite(context.getTarget());
-                }
-            }
+            context.forgetRelatedObjectLocks();
             context.end();
             // 8. Fire state change notification events.
             if ( logger.isLoggable(Level.FINE) ) {
                 logger.fine("\tStep 8. Start fire state change event.");
             }
+            if ( timed ) {
+                phaseStart = System.nanoTime();
+            }
             fireLifecycleEvents(stateMachine, context);
+            if ( timed ) {
+                context.addPhaseNanos(Phase.EVENT_FIRE, phaseStart);
+            }
         }
     }
 
@@ -158,18 +241,60 @@ public class LifecycleInterceptor<V, R> extends Interceptor<V, R> {
             }
         }
         unlockRelationObjects(context);
-        final StateMachineObject<?> stateMachine = lookupStateMachine(context);
-        if ( !context.isSuccess() && isLockEnabled(stateMachine) ) {
-            final LifecycleLockStrategry lockStrategry = stateMachine.getLifecycleLockStrategy();
-            if ( null != lockStrategry ) {
-                lockStrategry.unlockWrite(context.getTarget());
-            }
+        context.forgetRelatedObjectLocks();
+        if ( context.isTimed() ) {
+            recordMetrics(context);
+        }
+        appendJournal(context);
+    }
+
+    private void scheduleTimeout(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
+        final TransitionTimeoutService timeoutService = AbsStateMachineRegistry.getInstance().getTransitionTimeoutService();
+        if ( null != timeoutService ) {
+            timeoutService.onStateChanged(stateMachine, context.getTarget(), context.getToState());
+        }
+    }
+
+    private void recordMetrics(InterceptContext<V, R> context) {
+        context.stopTiming();
+        final LifecycleMetrics metrics = AbsStateMachineRegistry.getInstance().getLifecycleMetrics();
+        if ( null == metrics || null == context.getStateMachine() ) {
+            return;
+        }
+        try {
+            metrics.onTransition(context);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Lifecycle metrics failed to record transition: " + context.getTransitionKey(), e);
+        }
+    }
+
+    private void appendJournal(InterceptContext<V, R> context) {
+        final TransitionJournal journal = AbsStateMachineRegistry.getInstance().getTransitionJournal();
+        final StateMachineObject<?> stateMachine = context.getStateMachine();
+        if ( null == journal || null == stateMachine ) {
+            return;
+        }
+        final int toStateOrdinal = null == context.getToState() ? StateTransitionTable.UNKNOWN : stateMachine.getTransitionTable().getStateOrdinal(
+                context.getToState());
+        // Failed transitions do not reach the end of postExec
+        final long endTime = 0L == context.getEndTime() ? System.currentTimeMillis() : context.getEndTime();
+        try {
+            journal.append(stateMachine, context.getTarget(), context.getFromStateOrdinal(), toStateOrdinal, context.getTransitionOrdinal(),
+                    context.getStartTime(), endTime, context.isSuccess());
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Transition journal failed to append transition: " + context.getTransitionKey(), e);
         }
     }
 
     private void fireLifecycleEvents(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
         final LifecycleEventHandler eventHandler = AbsStateMachineRegistry.getInstance().getLifecycleEventHandler();
-        if ( null != eventHandler ) {
+        if ( null == eventHandler ) {
+            return;
+        }
+        final BulkTransition bulkTransition = context.getBulkTransition();
+        if ( null != bulkTransition ) {
+            bulkTransition.addEvent(new LifecycleEventImpl(context));
+        } else {
             eventHandler.onEvent(new LifecycleEventImpl(context));
         }
     }
@@ -178,56 +303,81 @@ public class LifecycleInterceptor<V, R> extends Interceptor<V, R> {
         return null != stateMachine.getLifecycleLockStrategy();
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    private void performCallbacksAfterStateChange(StateMachineObject stateMachine, InterceptContext<V, R> context) {
-        stateMachine.performPostStateChangeCallback(new LifecycleContextImpl(context, stateMachine.getStateConverter()));
+    private void performCallbacksAfterStateChange(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
+        stateMachine.performPostStateChangeCallback(context);
     }
 
-    private void setNextState(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
-        final String stateName = stateMachine.getNextState(context.getTarget(), context.getTransitionKey());
-        stateMachine.setTargetState(context.getTarget(), stateName);
-        context.setToState(stateName);
-    }
+    private void setNextState(final StateMachineObject<?> stateMachine, final InterceptContext<V, R> context) {
+        // A next state judged after method invocation while validating
+        // inbound while constraints is reused, so that the judger runs once.
+        // One judged before method invocation has to be judged again.
+        String stateName = nextStateCanBeEvaluatedBeforeTranstion(context) ? null : context.getToState();
+        if ( null == stateName ) {
+            stateName = stateMachine.getNextState(context.getTarget(), context.getTransitionPlan());
+        }
+        final LifecycleLockStrategry lock = stateMachine.getLifecycleLockStrategy();
+        if ( lock instanceof OptimisticLockStrategy ) {
+            final String nextState = stateName;
+            try {
+                ( (OptimisticLockStrategy) lock ).compareAndSetState(stateMachine, context.getTarget(), context.getStateStamp(), context.getFromState(),
+                        nextState, new Runnable() {
 
-    private void validateNextStateInboundWhile(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
-        stateMachine.validateInboundWhiles(context);
+                            @Override
+                            public void run() {
+                                onStateSet(stateMachine, context, nextState);
+                            }
+                        });
+            } catch (LifecycleException e) {
+                if ( OptimisticLockStrategy.isConflict(e) ) {
+                    context.setConflictingLock((OptimisticLockStrategy) lock);
+                }
+                throw e;
+            }
+        } else {
+            stateMachine.setTargetState(context.getTarget(), stateName);
+            onStateSet(stateMachine, context, stateName);
+        }
+        context.setToState(stateName);
     }
 
-    private boolean nextStateCanBeEvaluatedBeforeTranstion(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
-        if ( hasOnlyOneStateCandidate(stateMachine, context) ) {
-            return true;
-        } else if ( canEvaluateConditionBeforeTransition(stateMachine, context) ) {
-            return true;
+    /**
+     * Drops cached validations and moves the object in the state index, while
+     * the new state cannot be changed by another transition.
+     */
+    private void onStateSet(StateMachineObject<?> stateMachine, InterceptContext<V, R> context, String stateName) {
+        context.invalidateRelatedState(context.getTarget());
+        final LifecycleStateIndex stateIndex = AbsStateMachineRegistry.getInstance().getLifecycleStateIndex();
+        if ( null != stateIndex ) {
+            stateIndex.onStateChanged(stateMachine, context.getTarget(), context.getFromStateOrdinal(), stateMachine.getTransitionTable()
+                    .getStateOrdinal(stateName));
         }
-        return false;
     }
 
-    private boolean canEvaluateConditionBeforeTransition(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
-        return stateMachine.evaluateConditionBeforeTransition(context.getTransitionKey());
+    private void validateNextStateInboundWhile(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
+        stateMachine.validateInboundWhiles(context.getTransitionPlan(), context);
     }
 
-    private boolean hasOnlyOneStateCandidate(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
-        final String stateName = stateMachine.evaluateState(context.getTarget());
-        final StateMetadata state = stateMachine.getMetaType().getState(stateName);
-        if ( state.hasMultipleStateCandidatesOn(context.getTransitionKey()) ) {
-            return false;
-        } else {
-            return true;
-        }
+    private boolean nextStateCanBeEvaluatedBeforeTranstion(InterceptContext<V, R> context) {
+        return context.getTransitionPlan().isNextStateEvaluatedBeforeTransition();
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    private void performCallbacksBeforeStateChange(StateMachineObject stateMachine, InterceptContext<V, R> context) {
-        stateMachine.performPreStateChangeCallback(new LifecycleContextImpl(context, stateMachine.getStateConverter()));
+    private void performCallbacksBeforeStateChange(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
+        stateMachine.performPreStateChangeCallback(context);
     }
 
     private void validateTransition(StateMachineObject<?> stateMachine, InterceptContext<V, R> context) {
-        StateMetadata stateMetadata = stateMachine.getMetaType().getState(context.getFromState());
-        if ( !stateMetadata.isTransitionValid(context.getTransitionKey()) ) {
+        final TransitionPlan plan;
+        if ( StateTransitionTable.UNKNOWN == context.getFromStateOrdinal() ) {
+            plan = stateMachine.getTransitionPlan(context.getFromState(), context.getTransitionOrdinal(), context.getTransitionKey());
+        } else {
+            plan = stateMachine.getTransitionPlan(context.getFromStateOrdinal(), context.getTransitionOrdinal(), context.getTransitionKey());
+        }
+        if ( null == plan ) {
             throw new LifecycleException(getClass(), "lifecycle_common", LifecycleCommonErrors.ILLEGAL_TRANSITION_ON_STATE, context.getTransitionKey(),
                     context.getFromState(), context.getTarget());
         } else {
-            TransitionMetadata transition = stateMetadata.getTransition(context.getTransitionKey());
+            final TransitionMetadata transition = plan.getTransition();
+            context.setTransitionPlan(plan);
             context.setTransitionType(transition.getType());
             context.setTransition(transition.getDottedPath().getName());
         }
@@ -237,12 +387,28 @@ public class LifecycleInterceptor<V, R> extends Interceptor<V, R> {
         stateMachine.validateValidWhiles(context);
     }
 
-    private static synchronized StateMachineObject<?> lookupStateMachine(InterceptContext<?, ?> context) {
-        try {
-            return AbsStateMachineRegistry.getInstance().loadStateMachineObject(extractLifecycleMetaClass(context));
-        } catch (VerificationException e) {
-            throw new IllegalStateException("Should not encounter syntax verification exception at intercepting runtime", e);
+    private static StateMachineObject<?> lookupStateMachine(InterceptContext<?, ?> context) {
+        if ( null != context.getStateMachine() ) {
+            return context.getStateMachine();
+        }
+        return lookupBinding(context).stateMachine;
+    }
+
+    private static StateMachineBinding lookupBinding(InterceptContext<?, ?> context) {
+        final LifecycleMetaRegistry registry = AbsStateMachineRegistry.getInstance();
+        final ConcurrentHashMap<Method, StateMachineBinding> bindings = stateMachineBindings.get(context.getTarget().getClass());
+        StateMachineBinding binding = bindings.get(context.getMethod());
+        if ( null == binding || registry != binding.registry ) {
+            try {
+                final StateMachineObject<?> stateMachine = registry.loadStateMachineObject(extractLifecycleMetaClass(context));
+                binding = new StateMachineBinding(registry, stateMachine, stateMachine.getTransitionTable().getTransitionOrdinal(
+                        context.getTransitionKey()));
+            } catch (VerificationException e) {
+                throw new IllegalStateException("Should not encounter syntax verification exception at intercepting runtime", e);
+            }
+            bindings.put(context.getMethod(), binding);
         }
+        return binding;
     }
 
     private static Class<? extends Object> extractLifecycleMetaClass(InterceptContext<?, ?> context) {
@@ -272,4 +438,17 @@ public class LifecycleInterceptor<V, R> extends Interceptor<V, R> {
             unlockable.unlock();
         }
     }
-}
\ No newline at end of file
+
+    private static final class StateMachineBinding {
+
+        private final LifecycleMetaRegistry registry;
+        private final StateMachineObject<?> stateMachine;
+        private final int transitionOrdinal;
+
+        private StateMachineBinding(LifecycleMetaRegistry registry, StateMachineObject<?> stateMachine, int transitionOrdinal) {
+            this.registry = registry;
+            this.stateMachine = stateMachine;
+            this.transitionOrdinal = transitionOrdinal;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package net.madz.bcel.intercept;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/**
+ * Outcome of relation validations shared by an intercept context, the
+ * transitions nested in it and, within a bulk transition, the whole batch.
+ * Each related object is read locked, its state evaluated and its own valid
+ * while constraints verified once, as long as the lock taken for it is held
+ * and it has not been transited since.
+ *
+ * Every evaluation of a related object's state goes through the cache, so a
+ * transited reactive object without an entry cannot have contributed to any
+ * cached verification.
+ */
+final class RelationValidationCache {
+
+    private final IdentityHashMap<Object, Entry> entries = new IdentityHashMap<>();
+
+    String getEvaluatedState(Object relatedTarget, Object stateMachine) {
+        final Entry entry = entries.get(relatedTarget);
+        final Evaluation evaluation = null == entry ? null : entry.find(stateMachine);
+        return null == evaluation ? null : evaluation.stateName;
+    }
+
+    void setEvaluatedState(Object relatedTarget, Object stateMachine, String stateName) {
+        entry(relatedTarget).evaluation(stateMachine).stateName = stateName;
+    }
+
+    boolean isReadLocked(Object relatedTarget) {
+        final Entry entry = entries.get(relatedTarget);
+        return null != entry && null != entry.lockOwner;
+    }
+
+    /**
+     * @param owner
+     *            the stack holding the unlockable of the read lock.
+     */
+    void setReadLocked(Object relatedTarget, UnlockableStack owner) {
+        entry(relatedTarget).lockOwner = owner;
+    }
+
+    boolean isValidWhilesVerified(Object relatedTarget, Object stateMachine) {
+        final Entry entry = entries.get(relatedTarget);
+        final Evaluation evaluation = null == entry ? null : entry.find(stateMachine);
+        return null != evaluation && evaluation.validWhilesVerified;
+    }
+
+    void setValidWhilesVerified(Object relatedTarget, Object stateMachine) {
+        entry(relatedTarget).evaluation(stateMachine).validWhilesVerified = true;
+    }
+
+    boolean isRelationVerified(Object constraint, Object relatedTarget) {
+        final Entry entry = entries.get(relatedTarget);
+        if ( null == entry || null == entry.verifiedConstraints ) {
+            return false;
+        }
+        for ( final Object verified : entry.verifiedConstraints ) {
+            if ( verified == constraint ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void setRelationVerified(Object constraint, Object relatedTarget) {
+        final Entry entry = entry(relatedTarget);
+        if ( null == entry.verifiedConstraints ) {
+            entry.verifiedConstraints = new ArrayList<>(2);
+        }
+        entry.verifiedConstraints.add(constraint);
+    }
+
+    /**
+     * Forgets the state of a reactive object that has just been transited,
+     * together with every verification that may have depended on it. Its
+     * read lock, if any, is still held.
+     */
+    void invalidate(Object reactiveObject) {
+        final Entry entry = entries.get(reactiveObject);
+        if ( null == entry ) {
+            return;
+        }
+        entry.evaluations = null;
+        clearVerifications();
+    }
+
+    /**
+     * Forgets the related objects whose read locks were held by the owner,
+     * which has just released them.
+     */
+    void releaseReadLocks(UnlockableStack owner) {
+        if ( entries.isEmpty() ) {
+            return;
+        }
+        boolean released = false;
+        for ( final Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            if ( owner == iterator.next().lockOwner ) {
+                iterator.remove();
+                released = true;
+            }
+        }
+        if ( released ) {
+            clearVerifications();
+        }
+    }
+
+    /**
+     * Forgets the related object whose read lock has just been released
+     * ahead of its owner.
+     */
+    void releaseReadLock(Object relatedTarget) {
+        if ( null != entries.remove(relatedTarget) ) {
+            clearVerifications();
+        }
+    }
+
+    void clear() {
+        if ( !entries.isEmpty() ) {
+            entries.clear();
+        }
+    }
+
+    private void clearVerifications() {
+        for ( final Entry entry : entries.values() ) {
+            for ( Evaluation evaluation = entry.evaluations; null != evaluation; evaluation = evaluation.next ) {
+                evaluation.validWhilesVerified = false;
+            }
+            entry.verifiedConstraints = null;
+        }
+    }
+
+    private Entry entry(Object relatedTarget) {
+        Entry entry = entries.get(relatedTarget);
+        if ( null == entry ) {
+            entry = new Entry();
+            entries.put(relatedTarget, entry);
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+
+        private UnlockableStack lockOwner;
+        private Evaluation evaluations;
+        private ArrayList<Object> verifiedConstraints;
+
+        private Evaluation find(Object stateMachine) {
+            for ( Evaluation evaluation = evaluations; null != evaluation; evaluation = evaluation.next ) {
+                if ( evaluation.stateMachine == stateMachine ) {
+                    return evaluation;
+                }
+            }
+            return null;
+        }
+
+        private Evaluation evaluation(Object stateMachine) {
+            Evaluation evaluation = find(stateMachine);
+            if ( null == evaluation ) {
+                evaluation = new Evaluation(stateMachine, evaluations);
+                evaluations = evaluation;
+            }
+            return evaluation;
+        }
+    }
+
+    /**
+     * One business object may implement several state machines, each with its
+     * own state.
+     */
+    private static final class Evaluation {
+
+        private final Object stateMachine;
+        private final Evaluation next;
+        private String stateName;
+        private boolean validWhilesVerified;
+
+        private Evaluation(Object stateMachine, Evaluation next) {
+            this.stateMachine = stateMachine;
+            this.next = next;
+        }
+    }
+}
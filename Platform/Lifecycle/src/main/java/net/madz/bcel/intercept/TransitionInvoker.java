@@ -0,0 +1,10 @@
+package net.madz.bcel.intercept;
+
+/**
+ * Calls the original (renamed) transition method. One stateless instance is
+ * generated per woven transition method and shared by all invocations.
+ */
+public interface TransitionInvoker {
+
+    Object invoke(Object target, Object[] arguments) throws Exception;
+}
@@ -1,13 +1,24 @@
 package net.madz.lifecycle;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,11 +27,17 @@ import net.madz.common.Dumper;
 import net.madz.lifecycle.annotations.CompositeState;
 import net.madz.lifecycle.annotations.LifecycleMeta;
 import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.events.AsyncLifecycleEventDispatcher;
+import net.madz.lifecycle.index.LifecycleStateIndex;
+import net.madz.lifecycle.journal.TransitionJournal;
 import net.madz.lifecycle.meta.builder.StateMachineMetaBuilder;
 import net.madz.lifecycle.meta.impl.builder.StateMachineMetaBuilderImpl;
 import net.madz.lifecycle.meta.instance.StateMachineObject;
 import net.madz.lifecycle.meta.template.LifecycleMetaRegistry;
 import net.madz.lifecycle.meta.template.StateMachineMetadata;
+import net.madz.lifecycle.metrics.LifecycleMetrics;
+import net.madz.lifecycle.snapshot.MetadataSnapshot;
+import net.madz.lifecycle.timeout.TransitionTimeoutService;
 import net.madz.utils.BundleUtils;
 import net.madz.verification.VerificationException;
 import net.madz.verification.VerificationFailure;
@@ -30,6 +47,17 @@ public abstract class AbsStateMachineRegistry implements LifecycleMetaRegistry {
 
     private static Logger logger = Logger.getLogger("Lifecycle Framework");
     private static volatile LifecycleMetaRegistry instance = null;
+    /**
+     * Number of threads building state machines of @LifecycleRegistry. The
+     * default 1 builds them one after another on the constructing thread.
+     */
+    public static final String PARALLELISM_PROPERTY = "net.madz.lifecycle.registry.parallelism";
+    /**
+     * Directory of metadata snapshots. Once set, a registry writes a snapshot
+     * after its state machines are verified, and skips verification on the
+     * next start if none of the classes has changed.
+     */
+    public static final String SNAPSHOT_DIRECTORY_PROPERTY = "net.madz.lifecycle.snapshot.dir";
 
     public static LifecycleMetaRegistry getInstance() {
         if ( null != instance ) {
@@ -88,15 +116,35 @@ public abstract class AbsStateMachineRegistry implements LifecycleMetaRegistry {
      * The key might be String as:
      * The full qualified name corresponds to the dotted path,
      * or simple name, or class full name
+     * 
+     * Both maps are written under the registry monitor during registration,
+     * but read without locking, so that intercepting threads never contend on
+     * the registry once the state machines are registered.
      */
-    protected final HashMap<Object, StateMachineMetadata> typeMap = new HashMap<>();
-    protected final HashMap<Object, StateMachineObject<?>> instanceMap = new HashMap<>();
+    protected final ConcurrentHashMap<Object, StateMachineMetadata> typeMap = new ConcurrentHashMap<>();
+    protected final ConcurrentHashMap<Object, StateMachineObject<?>> instanceMap = new ConcurrentHashMap<>();
     private final LifecycleRegistry lifecycleRegistry;
     private final StateMachineBuilder builderMeta;
-    private LifecycleEventHandler lifecycleEventHandler;
+    private volatile LifecycleEventHandler lifecycleEventHandler;
+    private volatile LifecycleMetrics lifecycleMetrics;
+    private volatile TransitionTimeoutService transitionTimeoutService;
+    private volatile TransitionJournal transitionJournal;
+    private volatile LifecycleStateIndex lifecycleStateIndex;
+    private final ConcurrentHashMap<Class<?>, MetadataLoader> metadataLoaders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Thread, MetadataLoader> waitingLoaders = new ConcurrentHashMap<>();
+    private volatile boolean metadataVerified;
+    private volatile boolean loadedFromSnapshot;
 
+    /**
+     * The registry replaces the current one, which is shut down, since
+     * interception only uses the current registry.
+     */
     protected AbsStateMachineRegistry() throws VerificationException {
+        final LifecycleMetaRegistry previous = instance;
         instance = this;
+        if ( null != previous ) {
+            previous.shutdown();
+        }
         lifecycleRegistry = getClass().getAnnotation(LifecycleRegistry.class);
         builderMeta = getClass().getAnnotation(StateMachineBuilder.class);
         registerStateMachines();
@@ -106,21 +154,160 @@ public abstract class AbsStateMachineRegistry implements LifecycleMetaRegistry {
      * To process all the registered class to build the corresponding state
      * machines.
      */
-    private synchronized void registerStateMachines() throws VerificationException {
+    private void registerStateMachines() throws VerificationException {
         if ( null == lifecycleRegistry || null == builderMeta ) {
             throw new NullPointerException(
                     "A subclass of AbstractStateMachineRegistry must have both @LifecycleRegistry and @StateMachineBuilder annotated on Type: " + getClass());
         }
         final Class<?>[] toRegister = lifecycleRegistry.value();
+        final File snapshotFile = getSnapshotFile();
+        if ( null != snapshotFile && registerFromSnapshot(snapshotFile, toRegister) ) {
+            return;
+        }
+        registerStateMachines(toRegister);
+        if ( null != snapshotFile ) {
+            writeSnapshot(snapshotFile, toRegister);
+        }
+    }
+
+    private void registerStateMachines(final Class<?>[] toRegister) throws VerificationException {
         final VerificationFailureSet failureSet = new VerificationFailureSet();
-        for ( Class<?> clazz : toRegister )
-            registerLifecycleMeta(failureSet, clazz);
+        final int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, 1);
+        if ( 1 >= parallelism || 1 >= toRegister.length ) {
+            for ( Class<?> clazz : toRegister )
+                registerLifecycleMeta(failureSet, clazz);
+        } else {
+            registerInParallel(toRegister, parallelism, failureSet);
+        }
         if ( failureSet.size() > 0 ) {
             failureSet.dump(new Dumper(System.out));
             throw new VerificationException(failureSet);
         }
     }
 
+    private File getSnapshotFile() {
+        final String directory = System.getProperty(SNAPSHOT_DIRECTORY_PROPERTY);
+        if ( null == directory ) {
+            return null;
+        }
+        return new File(directory, getClass().getName() + ".snapshot");
+    }
+
+    /**
+     * @return true if state machines are registered without verification,
+     *         since the snapshot proves they had been verified.
+     */
+    private boolean registerFromSnapshot(File snapshotFile, Class<?>[] toRegister) {
+        final MetadataSnapshot snapshot;
+        final List<Class<?>> frameworkClasses;
+        try {
+            snapshot = MetadataSnapshot.read(snapshotFile);
+            frameworkClasses = MetadataSnapshot.classesInPackageOf(StateMachineMetaBuilderImpl.class);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot read metadata snapshot: " + snapshotFile, e);
+            return false;
+        }
+        if ( null == snapshot || !snapshot.matches(toRegister, frameworkClasses, getClass().getClassLoader()) ) {
+            return false;
+        }
+        metadataVerified = true;
+        try {
+            registerStateMachines(toRegister);
+        } catch (VerificationException | RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot register state machines from metadata snapshot: " + snapshotFile, e);
+        } finally {
+            metadataVerified = false;
+        }
+        if ( snapshot.describes(typeMap.values(), instanceMap.values()) ) {
+            loadedFromSnapshot = true;
+            if ( logger.isLoggable(Level.FINE) ) {
+                logger.fine("Registered state machines without verification from metadata snapshot: " + snapshotFile);
+            }
+            return true;
+        }
+        logger.warning("State machines do not match metadata snapshot, verifying them again: " + snapshotFile);
+        typeMap.clear();
+        instanceMap.clear();
+        return false;
+    }
+
+    private void writeSnapshot(File snapshotFile, Class<?>[] toRegister) {
+        final ArrayList<Class<?>> involvedClasses = new ArrayList<>();
+        involvedClasses.addAll(Arrays.asList(toRegister));
+        for ( final Object key : typeMap.keySet() ) {
+            if ( key instanceof Class ) {
+                involvedClasses.add((Class<?>) key);
+            }
+        }
+        for ( final Object key : instanceMap.keySet() ) {
+            if ( key instanceof Class ) {
+                involvedClasses.add((Class<?>) key);
+            }
+        }
+        // Verification rules are part of the snapshot as well.
+        involvedClasses.add(builderMeta.value());
+        try {
+            involvedClasses.addAll(MetadataSnapshot.classesInPackageOf(StateMachineMetaBuilderImpl.class));
+            MetadataSnapshot.capture(toRegister, involvedClasses, typeMap.values(), instanceMap.values(), getClass().getClassLoader()).write(
+                    snapshotFile);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot write metadata snapshot: " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * @return true if the state machines of @LifecycleRegistry were
+     *         registered from a matching metadata snapshot without
+     *         verification
+     */
+    public boolean isLoadedFromSnapshot() {
+        return loadedFromSnapshot;
+    }
+
+    @Override
+    public boolean isMetadataVerified() {
+        return metadataVerified;
+    }
+
+    /**
+     * Registers each class on a fork join worker. State machines referenced by
+     * more than one class, e.g. super or related state machines, are built
+     * once by whichever worker reaches them first, see
+     * {@link #registerStateMachineMetadata}. Failures are merged in
+     * registration order.
+     */
+    private void registerInParallel(final Class<?>[] toRegister, int parallelism, VerificationFailureSet failureSet) throws VerificationException {
+        final ArrayList<RegistrationTask> tasks = new ArrayList<>(toRegister.length);
+        for ( final Class<?> clazz : toRegister ) {
+            tasks.add(new RegistrationTask(clazz));
+        }
+        final ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, toRegister.length));
+        try {
+            pool.invoke(new RecursiveAction() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        for ( final RegistrationTask task : tasks ) {
+            if ( null != task.exception ) {
+                throw task.exception;
+            }
+            failureSet.addAll(task.failureSet);
+        }
+    }
+
+    /**
+     * Not synchronized: state machines are built at most once by their
+     * loaders, and a caller may wait for a loader of another thread, which
+     * must not be kept from adding its results to the maps meanwhile.
+     */
     public void registerLifecycleMeta(final Class<?> clazz) throws VerificationException {
         if ( logger.isLoggable(Level.FINE) ) {
             logger.fine("registering .. " + clazz);
@@ -135,24 +322,25 @@ public abstract class AbsStateMachineRegistry implements LifecycleMetaRegistry {
 
     private void registerLifecycleMeta(final VerificationFailureSet failureSet, Class<?> clazz) throws VerificationException {
         if ( LifecycleEventHandler.class.isAssignableFrom(clazz) ) {
-            try {
-                this.lifecycleEventHandler = (LifecycleEventHandler) clazz.newInstance();
-            } catch (Exception e) {
-                final String errorMessage = BundleUtils.getBundledMessage(getClass(), "syntax_error",
-                        SyntaxErrors.LIFECYCLE_EVENT_HANDLER_MUST_HAVE_NO_ARG_CONSTRUCTOR, clazz);
-                throw new VerificationException(new VerificationFailure(this, getClass().getName(),
-                        SyntaxErrors.LIFECYCLE_EVENT_HANDLER_MUST_HAVE_NO_ARG_CONSTRUCTOR, errorMessage));
-            }
+            this.lifecycleEventHandler = instantiate(clazz, SyntaxErrors.LIFECYCLE_EVENT_HANDLER_MUST_HAVE_NO_ARG_CONSTRUCTOR);
+        } else if ( LifecycleMetrics.class.isAssignableFrom(clazz) ) {
+            this.lifecycleMetrics = instantiate(clazz, SyntaxErrors.LIFECYCLE_METRICS_MUST_HAVE_NO_ARG_CONSTRUCTOR);
+        } else if ( TransitionTimeoutService.class.isAssignableFrom(clazz) ) {
+            this.transitionTimeoutService = instantiate(clazz, SyntaxErrors.TRANSITION_TIMEOUT_SERVICE_MUST_HAVE_NO_ARG_CONSTRUCTOR);
+        } else if ( TransitionJournal.class.isAssignableFrom(clazz) ) {
+            this.transitionJournal = instantiate(clazz, SyntaxErrors.TRANSITION_JOURNAL_MUST_HAVE_NO_ARG_CONSTRUCTOR);
+        } else if ( LifecycleStateIndex.class.isAssignableFrom(clazz) ) {
+            this.lifecycleStateIndex = instantiate(clazz, SyntaxErrors.LIFECYCLE_STATE_INDEX_MUST_HAVE_NO_ARG_CONSTRUCTOR);
         } else if ( null != clazz.getAnnotation(StateMachine.class) ) {
             if ( isMetaTypeRegistered(clazz) ) {
                 return;
             }
-            createStateMachineMetadata(clazz, null, failureSet);
+            registerStateMachineMetadata(clazz, null, failureSet);
         } else if ( null != clazz.getAnnotation(LifecycleMeta.class) ) {
             final Class<?> stateMachineClass = clazz.getAnnotation(LifecycleMeta.class).value();
             final StateMachineMetadata metaData;
             if ( !isMetaTypeRegistered(stateMachineClass) ) {
-                metaData = createStateMachineMetadata(stateMachineClass, null, failureSet);
+                metaData = registerStateMachineMetadata(stateMachineClass, null, failureSet);
             } else {
                 metaData = loadStateMachineMetadata(stateMachineClass);
             }
@@ -163,7 +351,9 @@ public abstract class AbsStateMachineRegistry implements LifecycleMetaRegistry {
             }
             if ( null == getStateMachineObject(clazz) ) {
                 StateMachineObject<?> stateMachineInstance = metaData.newInstance(clazz);
-                stateMachineInstance.verifyMetaData(failureSet);
+                if ( !metadataVerified ) {
+                    stateMachineInstance.verifyMetaData(failureSet);
+                }
                 addInstance(clazz, stateMachineInstance);
             }
         } else {
@@ -172,6 +362,23 @@ public abstract class AbsStateMachineRegistry implements LifecycleMetaRegistry {
         }
     }
 
+    /**
+     * @return a new instance of a registered service class, e.g. a
+     *         {@link LifecycleEventHandler}
+     * @throws VerificationException
+     *             with the error code if it has no accessible no-arg
+     *             constructor
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T instantiate(Class<?> clazz, String errorCode) throws VerificationException {
+        try {
+            return (T) clazz.newInstance();
+        } catch (Exception e) {
+            final String errorMessage = BundleUtils.getBundledMessage(getClass(), "syntax_error", errorCode, clazz);
+            throw new VerificationException(new VerificationFailure(this, getClass().getName(), errorCode, errorMessage));
+        }
+    }
+
     private boolean isMetaTypeRegistered(Object key) {
         return null != getStateMachineMeta(key);
     }
@@ -210,19 +417,19 @@ public abstract class AbsStateMachineRegistry implements LifecycleMetaRegistry {
         }
     }
 
-    public synchronized Map<Object, StateMachineMetadata> getStateMachineTypes() {
+    public Map<Object, StateMachineMetadata> getStateMachineTypes() {
         return Collections.unmodifiableMap(this.typeMap);
     }
 
-    public synchronized Map<Object, StateMachineObject<?>> getStateMachineInstances() {
+    public Map<Object, StateMachineObject<?>> getStateMachineInstances() {
         return Collections.unmodifiableMap(this.instanceMap);
     }
 
-    public synchronized StateMachineMetadata getStateMachineMeta(Object key) {
+    public StateMachineMetadata getStateMachineMeta(Object key) {
         return this.typeMap.get(key);
     }
 
-    public synchronized StateMachineObject<?> getStateMachineObject(Object key) {
+    public StateMachineObject<?> getStateMachineObject(Object key) {
         return this.instanceMap.get(key);
     }
 
@@ -237,7 +444,9 @@ public abstract class AbsStateMachineRegistry implements LifecycleMetaRegistry {
             }
             final StateMachineMetadata metaData = metaBuilder.build(stateMachineClass, null).getMetaData();
             addTemplate(metaData);
-            if ( null != failureSet ) {
+            if ( metadataVerified ) {
+                return metaData;
+            } else if ( null != failureSet ) {
                 metaData.verifyMetaData(failureSet);
             } else {
                 VerificationFailureSet tmpSet = new VerificationFailureSet();
@@ -277,7 +486,85 @@ public abstract class AbsStateMachineRegistry implements LifecycleMetaRegistry {
     public StateMachineMetadata loadStateMachineMetadata(Class<?> stateMachineClass, StateMachineMetadata owningStateMachine) throws VerificationException {
         StateMachineMetadata stateMachineMeta = getStateMachineMeta(stateMachineClass);
         if ( null != stateMachineMeta ) return stateMachineMeta;
-        return createStateMachineMetadata(stateMachineClass, owningStateMachine, null);
+        return registerStateMachineMetadata(stateMachineClass, owningStateMachine, null);
+    }
+
+    /**
+     * Builds a state machine at most once at a time: the first caller builds
+     * it on its own thread, and concurrent callers wait for that result
+     * instead of building it again.
+     * 
+     * @param failureSet
+     *            collects verification failures of the build if the caller
+     *            is the one building it, otherwise failures are thrown. A
+     *            caller collecting failures that waited for another builder
+     *            gets null, the failures are reported by that builder.
+     */
+    private StateMachineMetadata registerStateMachineMetadata(Class<?> stateMachineClass, StateMachineMetadata owningStateMachine,
+            VerificationFailureSet failureSet) throws VerificationException {
+        final MetadataLoader loader = new MetadataLoader(stateMachineClass, owningStateMachine);
+        final MetadataLoader existingLoader = metadataLoaders.putIfAbsent(stateMachineClass, loader);
+        if ( null != existingLoader ) {
+            final StateMachineMetadata metaData = awaitLoader(stateMachineClass, existingLoader);
+            if ( null != metaData || null != failureSet ) {
+                return metaData;
+            }
+            throw new VerificationException(existingLoader.failureSet);
+        }
+        try {
+            final StateMachineMetadata stateMachineMeta = getStateMachineMeta(stateMachineClass);
+            if ( null != stateMachineMeta ) {
+                loader.complete(stateMachineMeta);
+                return stateMachineMeta;
+            }
+            loader.run();
+        } finally {
+            metadataLoaders.remove(stateMachineClass, loader);
+        }
+        final StateMachineMetadata metaData = loader.await();
+        if ( null != failureSet ) {
+            failureSet.addAll(loader.failureSet);
+        } else if ( 0 < loader.failureSet.size() ) {
+            throw new VerificationException(loader.failureSet);
+        }
+        return metaData;
+    }
+
+    /**
+     * Waits for a state machine built by another caller. The waits of all
+     * threads are tracked, so that state machines referencing each other
+     * fail as on a single thread instead of waiting for each other forever
+     * when they are built by different threads.
+     */
+    private StateMachineMetadata awaitLoader(Class<?> stateMachineClass, MetadataLoader loader) throws VerificationException {
+        final Thread current = Thread.currentThread();
+        waitingLoaders.put(current, loader);
+        try {
+            if ( isWaitingFor(loader, current) ) {
+                throw new IllegalStateException("State machine " + stateMachineClass + " references itself while it is being built.");
+            }
+            return loader.await();
+        } finally {
+            waitingLoaders.remove(current);
+        }
+    }
+
+    /**
+     * @return true if the loader is built by the thread, or waits for it
+     *         through the loaders its builder waits for.
+     */
+    private boolean isWaitingFor(MetadataLoader loader, Thread thread) {
+        MetadataLoader next = loader;
+        for ( int i = waitingLoaders.size(); null != next && 0 <= i; i-- ) {
+            final Thread builder = next.builder;
+            if ( null == builder ) {
+                return false;
+            } else if ( thread == builder ) {
+                return true;
+            }
+            next = waitingLoaders.get(builder);
+        }
+        return false;
     }
 
     private StateMachineMetaBuilder createCompositeBuilder(Class<?> stateMachineClass, StateMachineMetadata owningStateMachine) throws VerificationException {
@@ -298,4 +585,138 @@ public abstract class AbsStateMachineRegistry implements LifecycleMetaRegistry {
     public LifecycleEventHandler getLifecycleEventHandler() {
         return this.lifecycleEventHandler;
     }
+
+    public LifecycleMetrics getLifecycleMetrics() {
+        return this.lifecycleMetrics;
+    }
+
+    public TransitionTimeoutService getTransitionTimeoutService() {
+        return this.transitionTimeoutService;
+    }
+
+    public TransitionJournal getTransitionJournal() {
+        return this.transitionJournal;
+    }
+
+    public LifecycleStateIndex getLifecycleStateIndex() {
+        return this.lifecycleStateIndex;
+    }
+
+    @Override
+    public void shutdown() {
+        final TransitionTimeoutService timeoutService = this.transitionTimeoutService;
+        if ( null != timeoutService ) {
+            timeoutService.shutdown();
+        }
+        final TransitionJournal journal = this.transitionJournal;
+        if ( null != journal ) {
+            journal.close();
+        }
+        final LifecycleEventHandler eventHandler = this.lifecycleEventHandler;
+        if ( eventHandler instanceof AsyncLifecycleEventDispatcher ) {
+            ( (AsyncLifecycleEventDispatcher) eventHandler ).shutdown(AsyncLifecycleEventDispatcher.DEFAULT_SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Waiting for a loader is a managed block, so that a fork join pool
+     * registering in parallel compensates for the blocked worker.
+     */
+    private final class MetadataLoader extends FutureTask<StateMachineMetadata> implements ForkJoinPool.ManagedBlocker {
+
+        private final VerificationFailureSet failureSet;
+        private volatile Thread builder;
+
+        private MetadataLoader(final Class<?> stateMachineClass, final StateMachineMetadata owningStateMachine) {
+            this(stateMachineClass, owningStateMachine, new VerificationFailureSet());
+        }
+
+        private MetadataLoader(final Class<?> stateMachineClass, final StateMachineMetadata owningStateMachine, final VerificationFailureSet failureSet) {
+            super(new Callable<StateMachineMetadata>() {
+
+                @Override
+                public StateMachineMetadata call() throws VerificationException {
+                    return createStateMachineMetadata(stateMachineClass, owningStateMachine, failureSet);
+                }
+            });
+            this.failureSet = failureSet;
+        }
+
+        @Override
+        public void run() {
+            builder = Thread.currentThread();
+            try {
+                super.run();
+            } finally {
+                builder = null;
+            }
+        }
+
+        private void complete(StateMachineMetadata metaData) {
+            set(metaData);
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            try {
+                get();
+            } catch (ExecutionException ignored) {
+                // Rethrown by await
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return isDone();
+        }
+
+        private StateMachineMetadata await() throws VerificationException {
+            boolean interrupted = false;
+            try {
+                while ( true ) {
+                    try {
+                        ForkJoinPool.managedBlock(this);
+                        return get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if ( cause instanceof VerificationException ) {
+                    throw (VerificationException) cause;
+                } else if ( cause instanceof RuntimeException ) {
+                    throw (RuntimeException) cause;
+                } else if ( cause instanceof Error ) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            } finally {
+                if ( interrupted ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+    private final class RegistrationTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final Class<?> clazz;
+        private final VerificationFailureSet failureSet = new VerificationFailureSet();
+        private VerificationException exception;
+
+        private RegistrationTask(Class<?> clazz) {
+            this.clazz = clazz;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                registerLifecycleMeta(failureSet, clazz);
+            } catch (VerificationException e) {
+                this.exception = e;
+            }
+        }
+    }
 }
@@ -0,0 +1,52 @@
+package net.madz.lifecycle;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+
+/**
+ * Converter of enum state indicators, mapping each constant to the simple
+ * name of the state with the same name. Conversions are table lookups that
+ * do not allocate.
+ *
+ * Enum state indicators without a {@link net.madz.lifecycle.annotations.state.Converter}
+ * use this converter, a subclass with a no-arg constructor can be specified
+ * in the annotation as well:
+ *
+ * <pre>
+ * public static class OrderStateConverter extends EnumStateConverter&lt;OrderState&gt; {
+ *
+ *     public OrderStateConverter() {
+ *         super(OrderState.class);
+ *     }
+ * }
+ * </pre>
+ */
+public class EnumStateConverter<E extends Enum<E>> implements StateConverter<E> {
+
+    private final Class<E> enumClass;
+    private final EnumMap<E, String> stateNames;
+    private final HashMap<String, E> constants = new HashMap<>();
+
+    public EnumStateConverter(Class<E> enumClass) {
+        this.enumClass = enumClass;
+        this.stateNames = new EnumMap<>(enumClass);
+        for ( final E constant : enumClass.getEnumConstants() ) {
+            stateNames.put(constant, constant.name());
+            constants.put(constant.name(), constant);
+        }
+    }
+
+    public Class<E> getEnumClass() {
+        return enumClass;
+    }
+
+    @Override
+    public String toState(E t) {
+        return null == t ? null : stateNames.get(t);
+    }
+
+    @Override
+    public E fromState(String state) {
+        return null == state ? null : constants.get(state);
+    }
+}
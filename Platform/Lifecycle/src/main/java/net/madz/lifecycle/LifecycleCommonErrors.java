@@ -44,6 +44,31 @@ public class LifecycleCommonErrors {
      * @param {2} State class
      */
     public static final String INBOUND_WHILE_RELATION_TARGET_IS_NULL = "002-9005";
+    /**
+     * @param {0} lock mode, read or write
+     * @param {1} target object
+     * @param {2} timeout in milliseconds
+     */
+    public static final String LOCK_TIMEOUT = "002-9006";
+    /**
+     * @param {0} lock mode, read or write
+     * @param {1} target object
+     */
+    public static final String LOCK_INTERRUPTED = "002-9007";
+    /**
+     * @param {0} target object
+     */
+    public static final String LOCK_UPGRADE_NOT_SUPPORTED = "002-9008";
+    /**
+     * @param {0} target object
+     * @param {1} from state read before the transition
+     * @param {2} state found when committing the next state
+     */
+    public static final String STATE_CONFLICT = "002-9009";
+    /**
+     * @param {0} target object
+     */
+    public static final String LOCK_LEASE_FAILED = "002-9010";
 
     private LifecycleCommonErrors() {}
 }
@@ -251,6 +251,22 @@ public interface SyntaxErrors {
      * @param {0} Lifecycle Event Handler Class
      */
     public static final String LIFECYCLE_EVENT_HANDLER_MUST_HAVE_NO_ARG_CONSTRUCTOR = "002-3601";
+    /**
+     * @param {0} Lifecycle Metrics Class
+     */
+    public static final String LIFECYCLE_METRICS_MUST_HAVE_NO_ARG_CONSTRUCTOR = "002-3602";
+    /**
+     * @param {0} Transition Timeout Service Class
+     */
+    public static final String TRANSITION_TIMEOUT_SERVICE_MUST_HAVE_NO_ARG_CONSTRUCTOR = "002-3603";
+    /**
+     * @param {0} Transition Journal Class
+     */
+    public static final String TRANSITION_JOURNAL_MUST_HAVE_NO_ARG_CONSTRUCTOR = "002-3604";
+    /**
+     * @param {0} Lifecycle State Index Class
+     */
+    public static final String LIFECYCLE_STATE_INDEX_MUST_HAVE_NO_ARG_CONSTRUCTOR = "002-3605";
     /**
      * @param {0} To state class
      * @param {1} Call back Method
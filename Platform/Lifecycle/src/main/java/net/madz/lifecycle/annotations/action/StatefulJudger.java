@@ -0,0 +1,17 @@
+package net.madz.lifecycle.annotations.action;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link ConditionalTransition} implementation that keeps state
+ * between judgements. Such judgers are instantiated for every evaluation,
+ * while other judgers are instantiated once per state machine and shared by
+ * all threads.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StatefulJudger {
+}
@@ -0,0 +1,293 @@
+package net.madz.lifecycle.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.madz.lifecycle.LifecycleEvent;
+import net.madz.lifecycle.LifecycleEventHandler;
+
+/**
+ * Lifecycle event handler that moves event delivery off the transition
+ * thread. Events are written into a bounded lock free ring buffer, and a
+ * daemon dispatcher thread delivers them in batches to the handlers, in
+ * publishing order. Since the registry instantiates event handlers with
+ * their no-arg constructor, the dispatcher is enabled by registering a
+ * subclass, which passes the handlers and settings to a constructor here:
+ *
+ * <pre>
+ * public class AuditEventDispatcher extends AsyncLifecycleEventDispatcher {
+ * 
+ *     public AuditEventDispatcher() {
+ *         super(4096, 256, BackPressurePolicy.CALLER_RUNS, new AuditStorageHandler(), new BroadcastHandler());
+ *     }
+ * }
+ * </pre>
+ *
+ * Pending events are flushed by {@link #shutdown(long, TimeUnit)}, which is
+ * also registered as a JVM shutdown hook. Handlers are called from the
+ * dispatcher thread, and with {@link BackPressurePolicy#CALLER_RUNS} or after
+ * shutdown also from transition threads, so they have to be thread safe.
+ */
+public class AsyncLifecycleEventDispatcher implements LifecycleEventHandler {
+
+    public static enum BackPressurePolicy {
+        /**
+         * Wait until the dispatcher frees a slot.
+         */
+        BLOCK,
+        /**
+         * Discard the event, see {@link AsyncLifecycleEventDispatcher#getDroppedCount()}.
+         */
+        DROP,
+        /**
+         * Deliver the event to the handlers on the transition thread.
+         */
+        CALLER_RUNS
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 10000L;
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private final AtomicReferenceArray<LifecycleEvent> ring;
+    private final int mask;
+    private final int batchSize;
+    private final BackPressurePolicy policy;
+    private final LifecycleEventHandler[] handlers;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile boolean waiting;
+    private volatile boolean running = true;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread dispatcher;
+    private final Thread shutdownHook;
+
+    public AsyncLifecycleEventDispatcher(LifecycleEventHandler... handlers) {
+        this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, BackPressurePolicy.BLOCK, handlers);
+    }
+
+    /**
+     * @param capacity
+     *            rounded up to a power of two
+     */
+    public AsyncLifecycleEventDispatcher(int capacity, int batchSize, BackPressurePolicy policy, LifecycleEventHandler... handlers) {
+        if ( 0 >= capacity || 0 >= batchSize ) {
+            throw new IllegalArgumentException("Capacity and batch size should be positive: " + capacity + ", " + batchSize);
+        }
+        if ( null == policy ) {
+            throw new NullPointerException("policy");
+        }
+        int size = 1;
+        while ( size < capacity ) {
+            size <<= 1;
+        }
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.batchSize = batchSize;
+        this.policy = policy;
+        this.handlers = handlers.clone();
+        this.dispatcher = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "Lifecycle Event Dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.shutdownHook = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                shutdown(DEFAULT_SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }, "Lifecycle Event Dispatcher Shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public void onEvent(LifecycleEvent event) {
+        if ( !running ) {
+            deliver(Collections.singletonList(event));
+            return;
+        }
+        while ( !offer(event) ) {
+            switch (policy) {
+                case DROP:
+                    dropped.incrementAndGet();
+                    if ( logger.isLoggable(Level.FINE) ) {
+                        logger.fine("Lifecycle event buffer is full, dropped event of " + event.getReactiveObject());
+                    }
+                    return;
+                case CALLER_RUNS:
+                    deliver(Collections.singletonList(event));
+                    return;
+                default:
+                    if ( !running ) {
+                        deliver(Collections.singletonList(event));
+                        return;
+                    }
+                    LockSupport.parkNanos(this, FULL_PARK_NANOS);
+            }
+        }
+        if ( waiting ) {
+            LockSupport.unpark(dispatcher);
+        }
+        if ( !running ) {
+            // Raced with shutdown, the dispatcher may have exited already.
+            flushAfterShutdown();
+        }
+    }
+
+    private synchronized void flushAfterShutdown() {
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        final LifecycleEvent[] batch = new LifecycleEvent[batchSize];
+        int count;
+        while ( 0 < ( count = drain(batch) ) ) {
+            deliver(Arrays.asList(batch).subList(0, count));
+        }
+    }
+
+    private boolean offer(LifecycleEvent event) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if ( sequence - head > mask ) {
+                return false;
+            }
+        } while ( !tail.compareAndSet(sequence, sequence + 1) );
+        ring.lazySet((int) sequence & mask, event);
+        return true;
+    }
+
+    private void dispatch() {
+        final LifecycleEvent[] batch = new LifecycleEvent[batchSize];
+        final List<LifecycleEvent> batchList = Arrays.asList(batch);
+        for ( ;; ) {
+            final boolean stopping = !running;
+            final int count = drain(batch);
+            if ( 0 < count ) {
+                deliver(count == batch.length ? batchList : batchList.subList(0, count));
+                Arrays.fill(batch, 0, count, null);
+            } else if ( stopping && tail.get() == head ) {
+                return;
+            } else {
+                waiting = true;
+                if ( tail.get() == head && running ) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                waiting = false;
+            }
+        }
+    }
+
+    private int drain(LifecycleEvent[] batch) {
+        long sequence = head;
+        int count = 0;
+        while ( count < batch.length ) {
+            final int index = (int) sequence & mask;
+            final LifecycleEvent event = ring.get(index);
+            if ( null == event ) {
+                // Not yet published, or empty
+                break;
+            }
+            ring.lazySet(index, null);
+            batch[count++] = event;
+            sequence++;
+        }
+        head = sequence;
+        return count;
+    }
+
+    private void deliver(List<LifecycleEvent> events) {
+        for ( final LifecycleEventHandler handler : handlers ) {
+            try {
+                if ( handler instanceof LifecycleEventBatchHandler ) {
+                    ( (LifecycleEventBatchHandler) handler ).onEvents(events);
+                } else {
+                    for ( final LifecycleEvent event : events ) {
+                        handler.onEvent(event);
+                    }
+                }
+            } catch (Throwable t) {
+                logger.log(Level.SEVERE, "Lifecycle event handler " + handler + " failed.", t);
+            }
+        }
+        delivered.addAndGet(events.size());
+    }
+
+    /**
+     * Stops accepting events into the buffer and waits until the pending
+     * events are delivered. Events published afterwards are delivered on the
+     * publishing thread.
+     *
+     * @param timeout
+     *            0 or less does not wait, the dispatcher still delivers the
+     *            pending events
+     * @return true if all the pending events were delivered in time
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        if ( Thread.currentThread() != shutdownHook ) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignored) {
+                // JVM is already shutting down
+            }
+        }
+        if ( 0L < timeout ) {
+            try {
+                // Thread.join(0) would wait without limit.
+                dispatcher.join(Math.max(1L, unit.toMillis(timeout)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return !dispatcher.isAlive();
+    }
+
+    public boolean isShutdown() {
+        return !running;
+    }
+
+    public List<LifecycleEventHandler> getHandlers() {
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(handlers)));
+    }
+
+    public BackPressurePolicy getBackPressurePolicy() {
+        return policy;
+    }
+
+    public int getCapacity() {
+        return ring.length();
+    }
+
+    public int getPendingCount() {
+        return (int) ( tail.get() - head );
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,16 @@
+package net.madz.lifecycle.events;
+
+import java.util.List;
+
+import net.madz.lifecycle.LifecycleEvent;
+import net.madz.lifecycle.LifecycleEventHandler;
+
+/**
+ * Event handler receiving events in batches from
+ * {@link AsyncLifecycleEventDispatcher}, e.g. to write them to storage in one
+ * round trip. The events list is only valid during the call.
+ */
+public interface LifecycleEventBatchHandler extends LifecycleEventHandler {
+
+    void onEvents(List<LifecycleEvent> events);
+}
@@ -0,0 +1,208 @@
+package net.madz.lifecycle.index;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
+
+/**
+ * In memory index from the states of a state machine to the ids of the
+ * reactive objects in them, so that "all objects in state X" is answered
+ * without querying storage. It is enabled by registering this class, or a
+ * subclass, in {@code @LifecycleRegistry}.
+ *
+ * The interceptor moves an object between the {@link StateView}s when it
+ * sets the next state. Moves of the same id are serialized by the index,
+ * which also remembers the state each id was last moved to, so an id is in
+ * one view only whatever lock strategy the object uses. That state is the
+ * one of the last move indexed: it is the object's state as long as state
+ * changes of the object are serialized, by a pessimistic lock or the
+ * compare and set of an optimistic one. A concurrent reader may see a moving
+ * object in both states for a moment, never in neither.
+ *
+ * Objects only enter the index by transitions, by {@link #track(StateMachineObject, Object)},
+ * or by the {@link #bootstrap(StateMachineObject)} iterator, which
+ * subclasses override to load the persisted objects, e.g.:
+ *
+ * <pre>
+ * public class TruckStateIndex extends LifecycleStateIndex {
+ * 
+ *     protected Iterator&lt;?&gt; bootstrap(StateMachineObject&lt;?&gt; stateMachine) {
+ *         return ConcreteTruck.class == stateMachine.getPrimaryKey() ? em.createQuery(&quot;from ConcreteTruck&quot;).getResultList().iterator() : null;
+ *     }
+ * 
+ *     protected Object getReactiveObjectId(Object reactiveObject) {
+ *         return ( (ConcreteTruck) reactiveObject ).getId();
+ *     }
+ * }
+ * </pre>
+ */
+public class LifecycleStateIndex {
+
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    private static final int MOVE_STRIPES = 64;
+    private final ConcurrentHashMap<StateMachineObject<?>, IndexedStates> indexedStates = new ConcurrentHashMap<>();
+    private final Object[] moveLocks = new Object[MOVE_STRIPES];
+
+    public LifecycleStateIndex() {
+        for ( int i = 0; i < moveLocks.length; i++ ) {
+            moveLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Called after the interceptor has set the next state of the object. The
+     * object leaves the state it was last indexed in, which is the from state
+     * unless another move of the object has been indexed meanwhile.
+     */
+    public void onStateChanged(StateMachineObject<?> stateMachine, Object reactiveObject, int fromStateOrdinal, int toStateOrdinal) {
+        move(getIndexedStates(stateMachine), getReactiveObjectId(reactiveObject), toStateOrdinal);
+    }
+
+    /**
+     * Adds an object, e.g. a newly created one, in its current state.
+     */
+    public void track(StateMachineObject<?> stateMachine, Object reactiveObject) {
+        onStateChanged(stateMachine, reactiveObject, StateTransitionTable.UNKNOWN, stateMachine.evaluateStateOrdinal(reactiveObject));
+    }
+
+    /**
+     * @return true if the object was in the index
+     */
+    public boolean untrack(StateMachineObject<?> stateMachine, Object reactiveObject) {
+        return StateTransitionTable.UNKNOWN != move(getIndexedStates(stateMachine), getReactiveObjectId(reactiveObject), StateTransitionTable.UNKNOWN);
+    }
+
+    /**
+     * Replaces the objects of the state machine by the given ones, in their
+     * current states. Transitions of the state machine should not run
+     * meanwhile.
+     *
+     * @return number of objects indexed
+     */
+    public int rebuild(StateMachineObject<?> stateMachine, Iterator<?> reactiveObjects) {
+        final IndexedStates states = getIndexedStates(stateMachine);
+        for ( final Object id : states.stateOrdinals.keySet() ) {
+            move(states, id, StateTransitionTable.UNKNOWN);
+        }
+        return index(stateMachine, states, reactiveObjects);
+    }
+
+    public StateView getStateView(StateMachineObject<?> stateMachine, String stateName) {
+        final int stateOrdinal = stateMachine.getTransitionTable().getStateOrdinal(stateName);
+        if ( StateTransitionTable.UNKNOWN == stateOrdinal ) {
+            throw new IllegalArgumentException("No state " + stateName + " in state machine " + stateMachine.getMetaType().getDottedPath());
+        }
+        return getIndexedStates(stateMachine).views[stateOrdinal];
+    }
+
+    public StateView getStateView(StateMachineObject<?> stateMachine, Class<?> stateClass) {
+        return getStateView(stateMachine, stateClass.getSimpleName());
+    }
+
+    public int count(StateMachineObject<?> stateMachine, String stateName) {
+        return getStateView(stateMachine, stateName).count();
+    }
+
+    /**
+     * Called once per state machine, before its views are first used.
+     *
+     * @return the persisted reactive objects of the state machine, or null
+     */
+    protected Iterator<?> bootstrap(StateMachineObject<?> stateMachine) {
+        return null;
+    }
+
+    /**
+     * Identifier of the reactive object in the views. Subclasses return the
+     * business key, the default is the object itself, which keeps indexed
+     * objects reachable until they are untracked.
+     */
+    protected Object getReactiveObjectId(Object reactiveObject) {
+        return reactiveObject;
+    }
+
+    /**
+     * Moves the id to the state under the lock of its stripe, adding it to
+     * the new view before removing it from the old one.
+     *
+     * @return the state ordinal the id was indexed in, or
+     *         {@link StateTransitionTable#UNKNOWN}
+     */
+    private int move(IndexedStates states, Object id, int toStateOrdinal) {
+        synchronized ( moveLocks[( id.hashCode() & 0x7fffffff ) % moveLocks.length] ) {
+            final Integer previous = StateTransitionTable.UNKNOWN == toStateOrdinal ? states.stateOrdinals.remove(id) : states.stateOrdinals
+                    .put(id, toStateOrdinal);
+            if ( StateTransitionTable.UNKNOWN != toStateOrdinal ) {
+                states.views[toStateOrdinal].add(id);
+            }
+            if ( null == previous ) {
+                return StateTransitionTable.UNKNOWN;
+            }
+            if ( previous != toStateOrdinal ) {
+                states.views[previous].remove(id);
+            }
+            return previous;
+        }
+    }
+
+    private IndexedStates getIndexedStates(StateMachineObject<?> stateMachine) {
+        final IndexedStates states = indexedStates.get(stateMachine);
+        if ( null != states ) {
+            return states;
+        }
+        return createIndexedStates(stateMachine);
+    }
+
+    private synchronized IndexedStates createIndexedStates(StateMachineObject<?> stateMachine) {
+        IndexedStates states = indexedStates.get(stateMachine);
+        if ( null != states ) {
+            return states;
+        }
+        final StateTransitionTable table = stateMachine.getTransitionTable();
+        final StateView[] views = new StateView[table.getStateCount()];
+        for ( int i = 0; i < views.length; i++ ) {
+            views[i] = new StateView(table.getStateName(i));
+        }
+        states = new IndexedStates(views);
+        final Iterator<?> reactiveObjects = bootstrap(stateMachine);
+        if ( null != reactiveObjects ) {
+            final int count = index(stateMachine, states, reactiveObjects);
+            if ( logger.isLoggable(Level.FINE) ) {
+                logger.fine("Indexed " + count + " reactive objects of " + stateMachine.getMetaType().getDottedPath());
+            }
+        }
+        indexedStates.put(stateMachine, states);
+        return states;
+    }
+
+    private int index(StateMachineObject<?> stateMachine, IndexedStates states, Iterator<?> reactiveObjects) {
+        int count = 0;
+        while ( reactiveObjects.hasNext() ) {
+            final Object reactiveObject = reactiveObjects.next();
+            final int stateOrdinal = stateMachine.evaluateStateOrdinal(reactiveObject);
+            if ( StateTransitionTable.UNKNOWN != stateOrdinal ) {
+                move(states, getReactiveObjectId(reactiveObject), stateOrdinal);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Views of one state machine, with the state ordinal each id was last
+     * moved to.
+     */
+    private static final class IndexedStates {
+
+        private final StateView[] views;
+        private final ConcurrentHashMap<Object, Integer> stateOrdinals = new ConcurrentHashMap<>();
+
+        private IndexedStates(StateView[] views) {
+            this.views = views;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package net.madz.lifecycle.index;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live view of the ids of the reactive objects in one state of a state
+ * machine. Counting is a read of a counter, and iterating does not lock, it
+ * is weakly consistent with concurrent transitions.
+ */
+public final class StateView {
+
+    private final String stateName;
+    private final Set<Object> ids = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+    private final Set<Object> readOnlyIds = Collections.unmodifiableSet(ids);
+    private final AtomicInteger count = new AtomicInteger();
+
+    StateView(String stateName) {
+        this.stateName = stateName;
+    }
+
+    public String getStateName() {
+        return stateName;
+    }
+
+    public int count() {
+        return count.get();
+    }
+
+    public boolean contains(Object id) {
+        return ids.contains(id);
+    }
+
+    /**
+     * @return unmodifiable live set of the object ids
+     */
+    public Set<Object> getObjectIds() {
+        return readOnlyIds;
+    }
+
+    boolean add(Object id) {
+        if ( ids.add(id) ) {
+            count.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    boolean remove(Object id) {
+        if ( ids.remove(id) ) {
+            count.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "StateView [stateName=" + stateName + ", count=" + count + "]";
+    }
+}
@@ -0,0 +1,170 @@
+package net.madz.lifecycle.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cursor over the records of a {@link TransitionJournal} directory, in
+ * sequence order across segments. {@link #next()} returns null at the end
+ * of the records written so far, and returns later records once they are
+ * appended, so the same reader replays the journal and then tails it.
+ *
+ * A reader is not thread safe, each consumer uses its own one.
+ */
+public class JournalReader implements Closeable {
+
+    public static interface RecordHandler {
+
+        void onRecord(JournalRecord record);
+    }
+
+    private final File directory;
+    private final ArrayList<String> stateMachineNames = new ArrayList<>();
+    private long baseSequence = -1L;
+    private MappedByteBuffer segment;
+    private long fromSequence;
+
+    public JournalReader(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Positions the reader so that {@link #next()} returns the record of the
+     * sequence, or the first one after it.
+     */
+    public void seek(long sequence) {
+        this.fromSequence = sequence;
+        this.segment = null;
+        this.baseSequence = -1L;
+        for ( final File file : JournalSegment.list(directory) ) {
+            final long base = JournalSegment.getBaseSequence(file);
+            if ( base > sequence && 0L <= baseSequence ) {
+                break;
+            }
+            baseSequence = base;
+        }
+        // The segment itself is opened by next(), it may not exist yet.
+        if ( 0L <= baseSequence ) {
+            baseSequence--;
+        }
+    }
+
+    /**
+     * @return the next record, or null if no more records have been written
+     *         yet
+     */
+    public JournalRecord next() throws IOException {
+        while ( true ) {
+            if ( null == segment && !openNextSegment() ) {
+                return null;
+            }
+            final int position = segment.position();
+            final byte type = segment.remaining() > 0 ? segment.get(position) : JournalSegment.EMPTY;
+            switch (type) {
+                case JournalSegment.STATE_MACHINE:
+                    readStateMachine(position);
+                    break;
+                case JournalSegment.TRANSITION:
+                    final JournalRecord record = readTransition(position);
+                    if ( record.getSequence() >= fromSequence ) {
+                        return record;
+                    }
+                    break;
+                case JournalSegment.END_OF_SEGMENT:
+                    if ( !openNextSegment() ) {
+                        return null;
+                    }
+                    break;
+                case JournalSegment.EMPTY:
+                    // Either nothing more is written yet, or the writer
+                    // stopped without an end marker and continued in a new
+                    // segment later.
+                    if ( !openNextSegment() ) {
+                        return null;
+                    }
+                    break;
+                default:
+                    throw new IOException("Corrupt transition journal segment " + JournalSegment.getFile(directory, baseSequence) + " at "
+                            + position + ", record type: " + type);
+            }
+        }
+    }
+
+    /**
+     * Reads the records written so far.
+     *
+     * @return number of records handled
+     */
+    public long replay(RecordHandler handler) throws IOException {
+        long count = 0L;
+        for ( JournalRecord record = next(); null != record; record = next() ) {
+            handler.onRecord(record);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the records written so far and then those appended later, polling
+     * for them, until the thread is interrupted.
+     */
+    public void tail(RecordHandler handler, long pollInterval, TimeUnit unit) throws IOException, InterruptedException {
+        while ( true ) {
+            if ( 0L == replay(handler) ) {
+                unit.sleep(pollInterval);
+            } else if ( Thread.interrupted() ) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // Mapped segments are unmapped once they are garbage collected.
+        this.segment = null;
+    }
+
+    /**
+     * @return false if the current segment is still the last one.
+     */
+    private boolean openNextSegment() throws IOException {
+        File next = null;
+        for ( final File file : JournalSegment.list(directory) ) {
+            if ( JournalSegment.getBaseSequence(file) > baseSequence ) {
+                next = file;
+                break;
+            }
+        }
+        if ( null == next ) {
+            return false;
+        }
+        segment = JournalSegment.open(next);
+        baseSequence = JournalSegment.getBaseSequence(next);
+        stateMachineNames.clear();
+        return true;
+    }
+
+    private void readStateMachine(int position) {
+        final short id = segment.getShort(position + 2);
+        final byte[] name = new byte[segment.getInt(position + 4)];
+        segment.position(position + JournalSegment.STATE_MACHINE_HEADER_SIZE);
+        segment.get(name);
+        while ( stateMachineNames.size() <= id ) {
+            stateMachineNames.add(null);
+        }
+        stateMachineNames.set(id, new String(name, TransitionJournal.UTF8));
+    }
+
+    private JournalRecord readTransition(int position) {
+        final short stateMachineId = segment.getShort(position + 2);
+        final JournalRecord record = new JournalRecord(segment.getLong(position + 24), stateMachineNames.get(stateMachineId), segment.getLong(position + 16),
+                segment.getInt(position + 4), segment.getInt(position + 8), segment.getInt(position + 12), segment.getLong(position + 32),
+                segment.getLong(position + 40), 1 == segment.get(position + 1));
+        segment.position(position + JournalSegment.TRANSITION_SIZE);
+        return record;
+    }
+}
@@ -0,0 +1,81 @@
+package net.madz.lifecycle.journal;
+
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
+
+/**
+ * One transition read back from the journal. States and the transition are
+ * ordinals of the {@link StateTransitionTable} of the state machine, which
+ * resolves them to names, and are {@link StateTransitionTable#UNKNOWN} if
+ * they were not evaluated, e.g. the to state of a failed transition.
+ */
+public final class JournalRecord {
+
+    private final long sequence;
+    private final String stateMachine;
+    private final long reactiveObjectId;
+    private final int fromStateOrdinal;
+    private final int toStateOrdinal;
+    private final int transitionOrdinal;
+    private final long startTime;
+    private final long endTime;
+    private final boolean success;
+
+    JournalRecord(long sequence, String stateMachine, long reactiveObjectId, int fromStateOrdinal, int toStateOrdinal, int transitionOrdinal,
+            long startTime, long endTime, boolean success) {
+        this.sequence = sequence;
+        this.stateMachine = stateMachine;
+        this.reactiveObjectId = reactiveObjectId;
+        this.fromStateOrdinal = fromStateOrdinal;
+        this.toStateOrdinal = toStateOrdinal;
+        this.transitionOrdinal = transitionOrdinal;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.success = success;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return absolute dotted path of the state machine
+     */
+    public String getStateMachine() {
+        return stateMachine;
+    }
+
+    public long getReactiveObjectId() {
+        return reactiveObjectId;
+    }
+
+    public int getFromStateOrdinal() {
+        return fromStateOrdinal;
+    }
+
+    public int getToStateOrdinal() {
+        return toStateOrdinal;
+    }
+
+    public int getTransitionOrdinal() {
+        return transitionOrdinal;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRecord [sequence=" + sequence + ", stateMachine=" + stateMachine + ", reactiveObjectId=" + reactiveObjectId + ", from="
+                + fromStateOrdinal + ", to=" + toStateOrdinal + ", transition=" + transitionOrdinal + ", startTime=" + startTime + ", endTime="
+                + endTime + ", success=" + success + "]";
+    }
+}
@@ -0,0 +1,117 @@
+package net.madz.lifecycle.journal;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Binary layout of journal segment files, shared by the writer and readers.
+ *
+ * A segment is named after the sequence of its first record and starts with
+ * a header of {@link #MAGIC}, {@link #VERSION} and that base sequence. Each
+ * record starts with a type byte, which the writer stores after the rest of
+ * the record, so that a zero type marks the end of the written records:
+ *
+ * <pre>
+ * STATE_MACHINE  type(1) pad(1) id(2) length(4) UTF-8 name(length)
+ * TRANSITION     type(1) outcome(1) state machine id(2) from(4) to(4) transition(4)
+ *                object id(8) sequence(8) start time(8) end time(8)
+ * END_OF_SEGMENT type(1)
+ * </pre>
+ *
+ * State machine records are repeated at the start of every segment, so that
+ * each segment can be read on its own.
+ */
+final class JournalSegment {
+
+    static final int MAGIC = 0x4C434A4E;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final byte EMPTY = 0;
+    static final byte STATE_MACHINE = 1;
+    static final byte TRANSITION = 2;
+    static final byte END_OF_SEGMENT = 3;
+    static final int STATE_MACHINE_HEADER_SIZE = 8;
+    static final int TRANSITION_SIZE = 48;
+    static final String SUFFIX = ".journal";
+    private static final Comparator<File> BY_BASE_SEQUENCE = new Comparator<File>() {
+
+        @Override
+        public int compare(File o1, File o2) {
+            return Long.compare(getBaseSequence(o1), getBaseSequence(o2));
+        }
+    };
+    private static final FileFilter SEGMENT_FILES = new FileFilter() {
+
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && 0L <= getBaseSequence(file);
+        }
+    };
+
+    private JournalSegment() {}
+
+    static File getFile(File directory, long baseSequence) {
+        return new File(directory, String.format("%020d", baseSequence) + SUFFIX);
+    }
+
+    /**
+     * @return -1 if the file is not a journal segment.
+     */
+    static long getBaseSequence(File file) {
+        final String name = file.getName();
+        if ( !name.endsWith(SUFFIX) || name.length() != 20 + SUFFIX.length() ) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(name.substring(0, 20));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * @return segment files of the directory, ordered by base sequence.
+     */
+    static File[] list(File directory) {
+        final File[] files = directory.listFiles(SEGMENT_FILES);
+        if ( null == files ) {
+            return new File[0];
+        }
+        Arrays.sort(files, BY_BASE_SEQUENCE);
+        return files;
+    }
+
+    static MappedByteBuffer create(File file, long baseSequence, int size) throws IOException {
+        final MappedByteBuffer buffer;
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // The mapping stays valid after the file is closed.
+            buffer = raf.getChannel().map(MapMode.READ_WRITE, 0L, size);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, baseSequence);
+        buffer.position(HEADER_SIZE);
+        return buffer;
+    }
+
+    static MappedByteBuffer open(File file) throws IOException {
+        final MappedByteBuffer buffer;
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            buffer = raf.getChannel().map(MapMode.READ_ONLY, 0L, raf.length());
+        }
+        if ( HEADER_SIZE > buffer.limit() || MAGIC != buffer.getInt(0) ) {
+            throw new IOException("Not a transition journal segment: " + file);
+        }
+        if ( VERSION != buffer.getInt(4) ) {
+            throw new IOException("Unsupported transition journal version " + buffer.getInt(4) + ": " + file);
+        }
+        buffer.position(HEADER_SIZE);
+        return buffer;
+    }
+}
@@ -0,0 +1,351 @@
+package net.madz.lifecycle.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+
+/**
+ * Append only transition journal, enabled by registering this class, or a
+ * subclass with other settings, in {@code @LifecycleRegistry}. The
+ * interceptor appends a fixed size binary record for each transition,
+ * successful or not, to memory mapped segment files in the directory, see
+ * {@link JournalSegment} for the layout. A segment that is full is closed
+ * with an end marker, and the next one is named after the sequence of its
+ * first record. Records are read back by {@link JournalReader}, also while
+ * the journal is being written.
+ *
+ * Appending is a copy into the mapped segment. A daemon flusher forces the
+ * written records to storage every flush interval, so that one fsync covers
+ * all records appended meanwhile. With sync commit, an append also waits for
+ * the flush covering its record, and concurrent appends share that flush.
+ * Without it, records appended during the last flush interval before a
+ * crash of the machine may be lost, though not those of a crashed JVM.
+ */
+public class TransitionJournal {
+
+    /**
+     * System property of the directory used by the no-arg constructor.
+     */
+    public static final String DIRECTORY_PROPERTY = "net.madz.lifecycle.journal.dir";
+    public static final String DEFAULT_DIRECTORY = "lifecycle-journal";
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int MIN_SEGMENT_SIZE = 4096;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10L;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    private final File directory;
+    private final int segmentSize;
+    private final long flushIntervalMillis;
+    private final boolean syncCommit;
+    // Guarded by this
+    private final IdentityHashMap<StateMachineObject<?>, Short> stateMachineIds = new IdentityHashMap<>();
+    private final ArrayList<String> stateMachineNames = new ArrayList<>();
+    private MappedByteBuffer segment;
+    private long nextSequence = -1L;
+    private boolean closed;
+    // Guarded by flushMonitor
+    private final Object flushMonitor = new Object();
+    private boolean flushRequested;
+    private final Object forceLock = new Object();
+    private volatile long durableSequence = -1L;
+    private volatile boolean running = true;
+    private final Thread flusher;
+    private final Thread shutdownHook;
+
+    public TransitionJournal() {
+        this(new File(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)), DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS, false);
+    }
+
+    /**
+     * Segments are created on the first append, after those already in the
+     * directory.
+     */
+    public TransitionJournal(File directory, int segmentSize, long flushIntervalMillis, boolean syncCommit) {
+        if ( MIN_SEGMENT_SIZE > segmentSize ) {
+            throw new IllegalArgumentException("Segment size should be at least " + MIN_SEGMENT_SIZE + ": " + segmentSize);
+        }
+        if ( 0L >= flushIntervalMillis ) {
+            throw new IllegalArgumentException("Flush interval should be positive: " + flushIntervalMillis);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.syncCommit = syncCommit;
+        this.flusher = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                runFlusher();
+            }
+        }, "Lifecycle Journal Flusher");
+        this.flusher.setDaemon(true);
+        this.shutdownHook = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                close();
+            }
+        }, "Lifecycle Journal Shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        this.flusher.start();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Called once per intercepted transition, on the transition thread.
+     *
+     * @return sequence of the record
+     * @throws IllegalStateException
+     *             if the journal is closed or the segment cannot be created
+     */
+    public long append(StateMachineObject<?> stateMachine, Object reactiveObject, int fromStateOrdinal, int toStateOrdinal, int transitionOrdinal,
+            long startTime, long endTime, boolean success) {
+        final long reactiveObjectId = getReactiveObjectId(reactiveObject);
+        final long sequence;
+        synchronized (this) {
+            if ( closed ) {
+                throw new IllegalStateException("Transition journal is closed: " + directory);
+            }
+            final short stateMachineId;
+            try {
+                if ( null == segment ) {
+                    recover();
+                    openSegment();
+                }
+                stateMachineId = getStateMachineId(stateMachine);
+                ensureCapacity(JournalSegment.TRANSITION_SIZE);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to append to transition journal: " + directory, e);
+            }
+            sequence = nextSequence++;
+            final int position = segment.position();
+            segment.put(position + 1, success ? (byte) 1 : (byte) 0);
+            segment.putShort(position + 2, stateMachineId);
+            segment.putInt(position + 4, fromStateOrdinal);
+            segment.putInt(position + 8, toStateOrdinal);
+            segment.putInt(position + 12, transitionOrdinal);
+            segment.putLong(position + 16, reactiveObjectId);
+            segment.putLong(position + 24, sequence);
+            segment.putLong(position + 32, startTime);
+            segment.putLong(position + 40, endTime);
+            segment.put(position, JournalSegment.TRANSITION);
+            segment.position(position + JournalSegment.TRANSITION_SIZE);
+        }
+        if ( syncCommit ) {
+            awaitDurable(sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * Identifier of the reactive object in the records. Subclasses return the
+     * business key, the default is the identity hash code, which is only
+     * meaningful within one JVM run.
+     */
+    protected long getReactiveObjectId(Object reactiveObject) {
+        return System.identityHashCode(reactiveObject) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return sequence of the last record forced to storage, or -1
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Forces the records appended so far to storage.
+     */
+    public void flush() {
+        synchronized (forceLock) {
+            final MappedByteBuffer target;
+            final long sequence;
+            synchronized (this) {
+                target = segment;
+                sequence = nextSequence - 1;
+            }
+            if ( null != target && sequence > durableSequence ) {
+                target.force();
+                durableSequence = sequence;
+            }
+        }
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Flushes the records and stops the flusher. Later appends fail. Also
+     * registered as a JVM shutdown hook.
+     */
+    public void close() {
+        synchronized (this) {
+            if ( closed ) {
+                return;
+            }
+            closed = true;
+        }
+        running = false;
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+        }
+        if ( Thread.currentThread() != shutdownHook ) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignored) {
+                // JVM is already shutting down
+            }
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        synchronized (this) {
+            segment = null;
+        }
+    }
+
+    private void runFlusher() {
+        while ( running ) {
+            synchronized (flushMonitor) {
+                if ( !flushRequested && running ) {
+                    try {
+                        flushMonitor.wait(flushIntervalMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                flushRequested = false;
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Failed to flush transition journal: " + directory, e);
+            }
+        }
+    }
+
+    private void awaitDurable(long sequence) {
+        synchronized (flushMonitor) {
+            while ( durableSequence < sequence && running ) {
+                flushRequested = true;
+                flushMonitor.notifyAll();
+                try {
+                    flushMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Continues the sequence after the records already in the directory. A
+     * trailing segment without records is replaced.
+     */
+    private void recover() throws IOException {
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException("Cannot create transition journal directory: " + directory);
+        }
+        nextSequence = 0L;
+        final File[] files = JournalSegment.list(directory);
+        for ( int i = files.length - 1; i >= 0; i-- ) {
+            final long baseSequence = JournalSegment.getBaseSequence(files[i]);
+            long lastSequence = -1L;
+            try (final JournalReader reader = new JournalReader(directory)) {
+                reader.seek(baseSequence);
+                for ( JournalRecord record = reader.next(); null != record; record = reader.next() ) {
+                    lastSequence = record.getSequence();
+                }
+            }
+            if ( 0L <= lastSequence ) {
+                nextSequence = lastSequence + 1;
+                break;
+            }
+            if ( !files[i].delete() ) {
+                nextSequence = baseSequence + 1;
+                break;
+            }
+            nextSequence = baseSequence;
+        }
+        durableSequence = nextSequence - 1;
+        if ( logger.isLoggable(Level.FINE) ) {
+            logger.fine("Transition journal " + directory + " continues at sequence " + nextSequence);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        int dictionarySize = 0;
+        final byte[][] names = new byte[stateMachineNames.size()][];
+        for ( int id = 0; id < names.length; id++ ) {
+            names[id] = stateMachineNames.get(id).getBytes(UTF8);
+            dictionarySize += JournalSegment.STATE_MACHINE_HEADER_SIZE + names[id].length;
+        }
+        if ( segmentSize - JournalSegment.HEADER_SIZE <= dictionarySize + JournalSegment.TRANSITION_SIZE ) {
+            throw new IOException("Segment size " + segmentSize + " is too small for the state machines of the journal: " + directory);
+        }
+        segment = JournalSegment.create(JournalSegment.getFile(directory, nextSequence), nextSequence, segmentSize);
+        for ( int id = 0; id < names.length; id++ ) {
+            writeStateMachine((short) id, names[id]);
+        }
+    }
+
+    /**
+     * @return true if the segment was rolled, which rewrites all state
+     *         machines into the next segment.
+     */
+    private boolean ensureCapacity(int size) throws IOException {
+        // One byte is kept for the end marker.
+        if ( segment.remaining() > size ) {
+            return false;
+        }
+        segment.put(segment.position(), JournalSegment.END_OF_SEGMENT);
+        segment.force();
+        openSegment();
+        return true;
+    }
+
+    private short getStateMachineId(StateMachineObject<?> stateMachine) throws IOException {
+        final Short id = stateMachineIds.get(stateMachine);
+        if ( null != id ) {
+            return id.shortValue();
+        }
+        if ( Short.MAX_VALUE < stateMachineNames.size() ) {
+            throw new IllegalStateException("Too many state machines in transition journal: " + directory);
+        }
+        final short newId = (short) stateMachineNames.size();
+        final byte[] name = stateMachine.getMetaType().getDottedPath().getAbsoluteName().getBytes(UTF8);
+        stateMachineNames.add(new String(name, UTF8));
+        if ( !ensureCapacity(JournalSegment.STATE_MACHINE_HEADER_SIZE + name.length) ) {
+            writeStateMachine(newId, name);
+        }
+        stateMachineIds.put(stateMachine, newId);
+        return newId;
+    }
+
+    private void writeStateMachine(short id, byte[] name) {
+        final int position = segment.position();
+        segment.putShort(position + 2, id);
+        segment.putInt(position + 4, name.length);
+        segment.position(position + JournalSegment.STATE_MACHINE_HEADER_SIZE);
+        segment.put(name);
+        segment.put(position, JournalSegment.STATE_MACHINE);
+    }
+}
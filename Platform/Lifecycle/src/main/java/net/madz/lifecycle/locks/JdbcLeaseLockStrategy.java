@@ -0,0 +1,474 @@
+package net.madz.lifecycle.locks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+import net.madz.lifecycle.LifecycleCommonErrors;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.LifecycleLockStrategry;
+
+/**
+ * Cluster wide lifecycle lock strategy. Nodes sharing one database exclude
+ * each other by leases, rows of the lease table keyed by
+ * {@link #lockKey(Object)}, which are taken with {@code SELECT ... FOR UPDATE}
+ * and expire unless renewed. Within the node owning a lease, threads are
+ * serialized by a local read write lock per key, without database access.
+ *
+ * A daemon renewer extends the leases of the node in one batch per renewal
+ * interval, a third of the lease duration. After the last local unlock, a
+ * lease is kept for the linger time, so that the next transition of the same
+ * object on this node does not access the database. Lingering leases delay
+ * other nodes by up to the linger time, 0 releases them on unlock.
+ *
+ * Each change of the owning node increments the fencing token of the lease,
+ * see {@link #getFencingToken(Object)}, so that storage can reject writes of
+ * a node whose lease expired meanwhile, e.g. after a long GC pause. Expiry
+ * is judged by the clocks of the nodes, which should be synchronized well
+ * within the lease duration.
+ *
+ * The table is created by {@link #createTable()}, or by {@link #DDL} with the
+ * table name. The no-arg constructor looks up the data source under the JNDI
+ * name of the system property {@value #DATA_SOURCE_PROPERTY}, subclasses pass
+ * another data source or settings to the protected constructor.
+ */
+public abstract class JdbcLeaseLockStrategy implements LifecycleLockStrategry {
+
+    public static final String DATA_SOURCE_PROPERTY = "net.madz.lifecycle.lease.datasource";
+    public static final String DEFAULT_DATA_SOURCE = "jdbc/lifecycle";
+    public static final String DEFAULT_TABLE = "LIFECYCLE_LEASE";
+    public static final String DDL = "CREATE TABLE %s (LOCK_KEY VARCHAR(255) NOT NULL PRIMARY KEY, OWNER VARCHAR(64) NOT NULL, "
+            + "FENCING_TOKEN BIGINT NOT NULL, EXPIRES_AT BIGINT NOT NULL)";
+    public static final long DEFAULT_LEASE_MILLIS = 30000L;
+    public static final long DEFAULT_LINGER_MILLIS = 1000L;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000L;
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+    private static final long POLL_MILLIS = 50L;
+    private final DataSource dataSource;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final String table;
+    private final long leaseMillis;
+    private final long lingerMillis;
+    private final long timeoutNanos;
+    private final String selectSql;
+    private final String insertSql;
+    private final String updateSql;
+    private final String renewSql;
+    private final String deleteSql;
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<>();
+    private final Thread renewer;
+    private volatile boolean running = true;
+
+    protected JdbcLeaseLockStrategy() {
+        this(lookupDataSource(System.getProperty(DATA_SOURCE_PROPERTY, DEFAULT_DATA_SOURCE)), DEFAULT_TABLE, DEFAULT_LEASE_MILLIS, DEFAULT_LINGER_MILLIS,
+                DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param timeout
+     *            of acquiring the local lock and the lease each
+     */
+    protected JdbcLeaseLockStrategy(DataSource dataSource, String table, long leaseDuration, long linger, long timeout, TimeUnit unit) {
+        if ( null == dataSource ) {
+            throw new NullPointerException("dataSource");
+        }
+        if ( !table.matches("[A-Za-z_][A-Za-z0-9_]*") ) {
+            throw new IllegalArgumentException("Invalid lease table name: " + table);
+        }
+        if ( 3L > unit.toMillis(leaseDuration) ) {
+            throw new IllegalArgumentException("Lease duration should be at least 3 milliseconds: " + unit.toMillis(leaseDuration));
+        }
+        this.dataSource = dataSource;
+        this.table = table;
+        this.leaseMillis = unit.toMillis(leaseDuration);
+        this.lingerMillis = Math.max(0L, unit.toMillis(linger));
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.selectSql = "SELECT OWNER, FENCING_TOKEN, EXPIRES_AT FROM " + table + " WHERE LOCK_KEY = ? FOR UPDATE";
+        this.insertSql = "INSERT INTO " + table + " (LOCK_KEY, OWNER, FENCING_TOKEN, EXPIRES_AT) VALUES (?, ?, ?, ?)";
+        this.updateSql = "UPDATE " + table + " SET OWNER = ?, FENCING_TOKEN = ?, EXPIRES_AT = ? WHERE LOCK_KEY = ?";
+        this.renewSql = "UPDATE " + table + " SET EXPIRES_AT = ? WHERE LOCK_KEY = ? AND OWNER = ? AND FENCING_TOKEN = ?";
+        this.deleteSql = "DELETE FROM " + table + " WHERE LOCK_KEY = ? AND OWNER = ? AND FENCING_TOKEN = ?";
+        this.renewer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                runRenewer();
+            }
+        }, "Lifecycle Lease Renewer");
+        this.renewer.setDaemon(true);
+        this.renewer.start();
+    }
+
+    private static DataSource lookupDataSource(String jndiName) {
+        try {
+            return (DataSource) new InitialContext().lookup(jndiName);
+        } catch (NamingException e) {
+            throw new IllegalStateException("Cannot look up lease data source " + jndiName, e);
+        }
+    }
+
+    /**
+     * @return the key of the reactive object, which is the same on all
+     *         nodes, e.g. the entity name and id.
+     */
+    protected abstract String lockKey(Object reactiveObject);
+
+    public void createTable() throws SQLException {
+        try (final Connection connection = dataSource.getConnection(); final Statement statement = connection.createStatement()) {
+            statement.execute(String.format(DDL, table));
+        }
+    }
+
+    /**
+     * @return the fencing token of the lease of the object, or -1 if this
+     *         node does not own it.
+     */
+    public long getFencingToken(Object reactiveObject) {
+        final Lease lease = leases.get(lockKey(reactiveObject));
+        if ( null == lease ) {
+            return -1L;
+        }
+        synchronized (lease) {
+            return lease.owned ? lease.token : -1L;
+        }
+    }
+
+    @Override
+    public void lockRead(Object reactiveObject) {
+        acquire(reactiveObject, false);
+    }
+
+    @Override
+    public void unlockRead(Object targetReactiveObject) {
+        release(targetReactiveObject, false);
+    }
+
+    @Override
+    public void lockWrite(Object reactiveObject) {
+        acquire(reactiveObject, true);
+    }
+
+    @Override
+    public void unlockWrite(Object targetReactiveObject) {
+        release(targetReactiveObject, true);
+    }
+
+    /**
+     * Stops renewing and releases the leases of this node.
+     */
+    public void shutdown() {
+        running = false;
+        renewer.interrupt();
+        try {
+            renewer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final List<Lease> owned = new ArrayList<>();
+        final List<Long> ownedTokens = new ArrayList<>();
+        for ( final Lease lease : leases.values() ) {
+            synchronized (lease) {
+                if ( lease.owned ) {
+                    lease.owned = false;
+                    owned.add(lease);
+                    ownedTokens.add(lease.token);
+                }
+            }
+        }
+        try {
+            deleteLeases(owned, ownedTokens);
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Failed to release leases of node " + nodeId + ", they expire within " + leaseMillis + " milliseconds.", e);
+        }
+    }
+
+    private void acquire(Object reactiveObject, boolean write) {
+        final String key = lockKey(reactiveObject);
+        final long deadline = System.nanoTime() + timeoutNanos;
+        while ( true ) {
+            Lease lease = leases.get(key);
+            if ( null == lease ) {
+                final Lease created = new Lease(key);
+                lease = leases.putIfAbsent(key, created);
+                if ( null == lease ) {
+                    lease = created;
+                }
+            }
+            final Lock lock = write ? lease.local.writeLock() : lease.local.readLock();
+            tryLock(lock, reactiveObject, write, deadline);
+            synchronized (lease) {
+                if ( lease.removed ) {
+                    lock.unlock();
+                    continue;
+                }
+                lease.holds++;
+            }
+            try {
+                ensureOwned(lease, reactiveObject, write, deadline);
+            } catch (RuntimeException e) {
+                release(lease, lock);
+                throw e;
+            }
+            return;
+        }
+    }
+
+    private void tryLock(Lock lock, Object reactiveObject, boolean write, long deadline) {
+        try {
+            if ( !lock.tryLock(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS) ) {
+                throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.LOCK_TIMEOUT, write ? WRITE : READ,
+                        reactiveObject, TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.LOCK_INTERRUPTED, new String[] {
+                    write ? WRITE : READ, String.valueOf(reactiveObject) }, e);
+        }
+    }
+
+    private void ensureOwned(Lease lease, Object reactiveObject, boolean write, long deadline) {
+        synchronized (lease) {
+            while ( !lease.owned || lease.expiresAt - leaseMillis / 3 <= System.currentTimeMillis() ) {
+                try {
+                    if ( acquireLease(lease) ) {
+                        return;
+                    }
+                } catch (SQLException e) {
+                    throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.LOCK_LEASE_FAILED, new String[] { String
+                            .valueOf(reactiveObject) }, e);
+                }
+                final long remaining = deadline - System.nanoTime();
+                if ( 0L >= remaining ) {
+                    throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.LOCK_TIMEOUT, write ? WRITE : READ,
+                            reactiveObject, TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+                }
+                try {
+                    lease.wait(Math.max(1L, Math.min(POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(remaining))));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.LOCK_INTERRUPTED, new String[] {
+                            write ? WRITE : READ, String.valueOf(reactiveObject) }, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes or extends the lease row, called with the lease monitor held.
+     *
+     * @return false if another node owns an unexpired lease
+     */
+    private boolean acquireLease(Lease lease) throws SQLException {
+        try (final Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                final long now = System.currentTimeMillis();
+                final long expiresAt = now + leaseMillis;
+                long token;
+                try (final PreparedStatement select = connection.prepareStatement(selectSql)) {
+                    select.setString(1, lease.key);
+                    try (final ResultSet rs = select.executeQuery()) {
+                        if ( !rs.next() ) {
+                            token = 1L;
+                            try (final PreparedStatement insert = connection.prepareStatement(insertSql)) {
+                                insert.setString(1, lease.key);
+                                insert.setString(2, nodeId);
+                                insert.setLong(3, token);
+                                insert.setLong(4, expiresAt);
+                                insert.executeUpdate();
+                            }
+                        } else {
+                            final boolean ownedByThisNode = nodeId.equals(rs.getString(1));
+                            token = rs.getLong(2);
+                            if ( !ownedByThisNode && rs.getLong(3) > now ) {
+                                connection.rollback();
+                                return false;
+                            }
+                            // Extending a lease of this node keeps its token.
+                            if ( !ownedByThisNode || !lease.owned || token != lease.token ) {
+                                token++;
+                            }
+                            try (final PreparedStatement update = connection.prepareStatement(updateSql)) {
+                                update.setString(1, nodeId);
+                                update.setLong(2, token);
+                                update.setLong(3, expiresAt);
+                                update.setString(4, lease.key);
+                                update.executeUpdate();
+                            }
+                        }
+                    }
+                }
+                connection.commit();
+                lease.owned = true;
+                lease.token = token;
+                lease.expiresAt = expiresAt;
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                if ( null != e.getSQLState() && e.getSQLState().startsWith("23") ) {
+                    // Another node inserted the lease row first.
+                    return false;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void release(Object reactiveObject, boolean write) {
+        final Lease lease = leases.get(lockKey(reactiveObject));
+        if ( null == lease ) {
+            throw new IllegalMonitorStateException("No lease of " + reactiveObject + " is held.");
+        }
+        release(lease, write ? lease.local.writeLock() : lease.local.readLock());
+    }
+
+    private void release(Lease lease, Lock lock) {
+        synchronized (lease) {
+            lease.holds--;
+            if ( 0 == lease.holds ) {
+                lease.idleSince = System.currentTimeMillis();
+                if ( 0L == lingerMillis && lease.owned ) {
+                    lease.owned = false;
+                    try {
+                        deleteLeases(Collections.singletonList(lease), Collections.singletonList(lease.token));
+                    } catch (SQLException e) {
+                        logger.log(Level.WARNING, "Failed to release lease " + lease.key + ", it expires within " + leaseMillis + " milliseconds.", e);
+                    }
+                }
+            }
+        }
+        lock.unlock();
+    }
+
+    private void runRenewer() {
+        final long interval = Math.max(1L, Math.min(leaseMillis / 3, 0L == lingerMillis ? Long.MAX_VALUE : lingerMillis));
+        while ( running ) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                renewLeases();
+            } catch (SQLException | RuntimeException e) {
+                logger.log(Level.SEVERE, "Failed to renew leases of node " + nodeId, e);
+            }
+        }
+    }
+
+    /**
+     * Extends the leases in use or lingering in one batch, and releases the
+     * idle ones in another.
+     */
+    private void renewLeases() throws SQLException {
+        final long now = System.currentTimeMillis();
+        final List<Lease> renewing = new ArrayList<>();
+        final List<Long> tokens = new ArrayList<>();
+        final List<Lease> idle = new ArrayList<>();
+        final List<Long> idleTokens = new ArrayList<>();
+        for ( final Lease lease : leases.values() ) {
+            synchronized (lease) {
+                if ( !lease.owned ) {
+                    if ( 0 == lease.holds && !lease.removed ) {
+                        lease.removed = true;
+                        leases.remove(lease.key, lease);
+                    }
+                } else if ( 0 == lease.holds && now - lease.idleSince >= lingerMillis ) {
+                    lease.owned = false;
+                    idle.add(lease);
+                    idleTokens.add(lease.token);
+                } else {
+                    renewing.add(lease);
+                    tokens.add(lease.token);
+                }
+            }
+        }
+        deleteLeases(idle, idleTokens);
+        if ( renewing.isEmpty() ) {
+            return;
+        }
+        final long expiresAt = now + leaseMillis;
+        final int[] counts;
+        try (final Connection connection = dataSource.getConnection(); final PreparedStatement renew = connection.prepareStatement(renewSql)) {
+            connection.setAutoCommit(true);
+            for ( int i = 0; i < renewing.size(); i++ ) {
+                renew.setLong(1, expiresAt);
+                renew.setString(2, renewing.get(i).key);
+                renew.setString(3, nodeId);
+                renew.setLong(4, tokens.get(i));
+                renew.addBatch();
+            }
+            counts = renew.executeBatch();
+        }
+        for ( int i = 0; i < renewing.size(); i++ ) {
+            final Lease lease = renewing.get(i);
+            synchronized (lease) {
+                if ( !lease.owned || lease.token != tokens.get(i) ) {
+                    continue;
+                }
+                if ( 0 == counts[i] ) {
+                    lease.owned = false;
+                    logger.severe("Lease " + lease.key + " of node " + nodeId + " expired and was taken over with fencing token " + lease.token);
+                } else {
+                    lease.expiresAt = expiresAt;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the rows of released leases, matching the tokens recorded under
+     * their monitors when they were released, so that a lease taken again by
+     * this node meanwhile, with a new token, is kept.
+     */
+    private void deleteLeases(List<Lease> released, List<Long> tokens) throws SQLException {
+        if ( released.isEmpty() ) {
+            return;
+        }
+        try (final Connection connection = dataSource.getConnection(); final PreparedStatement delete = connection.prepareStatement(deleteSql)) {
+            connection.setAutoCommit(true);
+            for ( int i = 0; i < released.size(); i++ ) {
+                delete.setString(1, released.get(i).key);
+                delete.setString(2, nodeId);
+                delete.setLong(3, tokens.get(i));
+                delete.addBatch();
+            }
+            delete.executeBatch();
+        }
+    }
+
+    private static final class Lease {
+
+        private final String key;
+        private final ReentrantReadWriteLock local = new ReentrantReadWriteLock();
+        // Guarded by this
+        private int holds;
+        private boolean owned;
+        private boolean removed;
+        private long token;
+        private long expiresAt;
+        private long idleSince;
+
+        private Lease(String key) {
+            this.key = key;
+        }
+    }
+}
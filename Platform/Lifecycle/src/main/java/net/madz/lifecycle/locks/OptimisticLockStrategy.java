@@ -0,0 +1,188 @@
+package net.madz.lifecycle.locks;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.madz.lifecycle.LifecycleCommonErrors;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.LifecycleLockStrategry;
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Optimistic alternative to pessimistic lifecycle lock strategies. No lock
+ * is held while the transition validates and runs the transition method.
+ * Instead the next state is committed by
+ * {@link #compareAndSetState(StateMachineObject, Object, long, String, String, Runnable)},
+ * which fails with {@link LifecycleCommonErrors#STATE_CONFLICT} if another
+ * transition committed a state of the object meanwhile, even one with the
+ * same name, or its state changed otherwise. The conflicting transition has
+ * not set any state nor run any after state change callback yet.
+ *
+ * The transition method has run already, so the transition is invoked again
+ * only if {@link #rollback(Object)} restored the object, e.g. by reloading it
+ * from the persistence context, and as long as {@link #retry(Object, int)}
+ * allows. By default nothing is rolled back and the conflict is thrown.
+ * Related objects are not read locked while relation constraints are
+ * validated.
+ *
+ * The compare and set runs in a short section striped by
+ * {@link #lockKey(Object)}, which makes it atomic among the transitions of
+ * one JVM. Subclasses extend it, e.g. to compare the version of an entity.
+ * The retry count and backoff default to the system properties
+ * {@value #ATTEMPTS_PROPERTY} and {@value #BACKOFF_PROPERTY} (milliseconds,
+ * doubled by each retry), or can be passed by a subclass constructor.
+ */
+public class OptimisticLockStrategy implements LifecycleLockStrategry {
+
+    public static final String ATTEMPTS_PROPERTY = "net.madz.lifecycle.optimistic.attempts";
+    public static final String BACKOFF_PROPERTY = "net.madz.lifecycle.optimistic.backoff";
+    public static final int DEFAULT_ATTEMPTS = 5;
+    public static final long DEFAULT_BACKOFF_MILLIS = 1L;
+    public static final int STRIPES = 64;
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    private final Object[] stripes = new Object[STRIPES];
+    private final ConcurrentMap<Object, AtomicLong> stamps = new MapMaker().weakKeys().makeMap();
+    private final int maxAttempts;
+    private final long backoffNanos;
+
+    public OptimisticLockStrategy() {
+        this(Integer.getInteger(ATTEMPTS_PROPERTY, DEFAULT_ATTEMPTS), Long.getLong(BACKOFF_PROPERTY, DEFAULT_BACKOFF_MILLIS), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxAttempts
+     *            invocations of a transition method, including the first one
+     * @param backoff
+     *            wait before the first retry, 0 retries immediately
+     */
+    protected OptimisticLockStrategy(int maxAttempts, long backoff, TimeUnit unit) {
+        if ( 0 >= maxAttempts ) {
+            throw new IllegalArgumentException("Attempts should be positive: " + maxAttempts);
+        }
+        for ( int i = 0; i < STRIPES; i++ ) {
+            stripes[i] = new Object();
+        }
+        this.maxAttempts = maxAttempts;
+        this.backoffNanos = 0 >= backoff ? 0L : unit.toNanos(backoff);
+    }
+
+    /**
+     * @return the number of states committed on the object so far, to be
+     *         passed back to
+     *         {@link #compareAndSetState(StateMachineObject, Object, long, String, String, Runnable)}
+     */
+    public long readStamp(Object reactiveObject) {
+        return stampOf(reactiveObject).get();
+    }
+
+    /**
+     * Commits the next state if no state has been committed on the object
+     * since the stamp was read and the object is still in the from state.
+     *
+     * @param onCommitted
+     *            run after the state is set, before another transition can
+     *            commit a state of the object, or null
+     * @throws LifecycleException
+     *             with {@link LifecycleCommonErrors#STATE_CONFLICT}
+     */
+    public void compareAndSetState(StateMachineObject<?> stateMachine, Object reactiveObject, long stamp, String fromState, String nextState,
+            Runnable onCommitted) {
+        synchronized (stripes[stripeOf(reactiveObject)]) {
+            final AtomicLong currentStamp = stampOf(reactiveObject);
+            final String currentState = stateMachine.evaluateState(reactiveObject);
+            if ( stamp != currentStamp.get() || ( null == currentState ? null != fromState : !currentState.equals(fromState) ) ) {
+                throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.STATE_CONFLICT, reactiveObject, fromState,
+                        currentState);
+            }
+            stateMachine.setTargetState(reactiveObject, nextState);
+            currentStamp.incrementAndGet();
+            if ( null != onCommitted ) {
+                onCommitted.run();
+            }
+        }
+    }
+
+    public static boolean isConflict(Throwable e) {
+        return e instanceof LifecycleException && LifecycleCommonErrors.STATE_CONFLICT.equals(( (LifecycleException) e ).getErrorCode());
+    }
+
+    /**
+     * Retry policy, called after a transition of the object failed with a
+     * state conflict. Waits for the backoff, doubled by each retry, once the
+     * object is rolled back.
+     *
+     * @param failedAttempts
+     *            invocations of the transition method so far
+     * @return true to invoke the transition method again
+     */
+    public boolean retry(Object reactiveObject, int failedAttempts) {
+        if ( failedAttempts >= maxAttempts || !rollback(reactiveObject) ) {
+            return false;
+        }
+        if ( logger.isLoggable(Level.FINE) ) {
+            logger.fine("State conflict on " + reactiveObject + ", retrying after " + failedAttempts + " attempt(s)");
+        }
+        if ( 0L < backoffNanos ) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(backoffNanos << Math.min(failedAttempts - 1, 16));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Undoes the changes the transition method made, so that it can be
+     * invoked again. Nothing is undone by default.
+     *
+     * @return true if the object was rolled back
+     */
+    protected boolean rollback(Object reactiveObject) {
+        return false;
+    }
+
+    /**
+     * @return the key identifying the reactive object. Keys other than the
+     *         object itself are compared by hashCode, the object itself by
+     *         identity.
+     */
+    protected Object lockKey(Object reactiveObject) {
+        return reactiveObject;
+    }
+
+    private AtomicLong stampOf(Object reactiveObject) {
+        final AtomicLong stamp = stamps.get(reactiveObject);
+        if ( null != stamp ) {
+            return stamp;
+        }
+        final AtomicLong created = new AtomicLong();
+        final AtomicLong existing = stamps.putIfAbsent(reactiveObject, created);
+        return null == existing ? created : existing;
+    }
+
+    private int stripeOf(Object reactiveObject) {
+        final Object key = lockKey(reactiveObject);
+        int hash = key == reactiveObject ? System.identityHashCode(key) : key.hashCode();
+        hash ^= ( hash >>> 16 );
+        return hash & ( STRIPES - 1 );
+    }
+
+    @Override
+    public void lockRead(Object reactiveObject) {}
+
+    @Override
+    public void unlockRead(Object targetReactiveObject) {}
+
+    @Override
+    public void lockWrite(Object reactiveObject) {}
+
+    @Override
+    public void unlockWrite(Object targetReactiveObject) {}
+}
@@ -0,0 +1,266 @@
+package net.madz.lifecycle.locks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.madz.lifecycle.LifecycleCommonErrors;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.LifecycleLockStrategry;
+
+/**
+ * Lifecycle lock strategy that stripes reactive objects over a fixed set of
+ * {@link ReentrantReadWriteLock}s, so that transitions on independent objects
+ * proceed in parallel, while transitions on the same object, and relation
+ * validations reading it, are serialized.
+ *
+ * Objects are keyed by identity by default; override {@link #lockKey(Object)}
+ * to key them by id, so that different instances of one entity share a lock.
+ * The stripe count and timeout default to the system properties
+ * {@value #STRIPES_PROPERTY} and {@value #TIMEOUT_PROPERTY} (milliseconds, 0
+ * or less waits without limit), or can be passed by a subclass constructor.
+ *
+ * Within one thread, stripes are expected to be acquired in ascending order.
+ * A thread acquiring a stripe lower than one it already holds, e.g. locking a
+ * related object after the transition target, can close a wait cycle with
+ * another thread, so such an acquisition always waits at most the timeout
+ * (or {@link #DEFAULT_TIMEOUT_MILLIS} when unlimited), and fails with
+ * {@link LifecycleCommonErrors#LOCK_TIMEOUT} instead of dead locking.
+ *
+ * A read lock cannot be upgraded: writing an object the thread is reading
+ * fails with {@link LifecycleCommonErrors#LOCK_UPGRADE_NOT_SUPPORTED}. Writing
+ * another object that only shares the stripe with the read ones releases the
+ * stripe read locks while waiting for the write lock, as an out of order
+ * acquisition, and takes them back under it.
+ */
+public class StripedReadWriteLockStrategy implements LifecycleLockStrategry {
+
+    public static final String STRIPES_PROPERTY = "net.madz.lifecycle.lock.stripes";
+    public static final String TIMEOUT_PROPERTY = "net.madz.lifecycle.lock.timeout";
+    public static final int DEFAULT_STRIPES = 64;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000L;
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+    private final ReentrantReadWriteLock[] stripes;
+    private final int mask;
+    private final long timeoutNanos;
+    private final ThreadLocal<HeldStripes> heldStripes = new ThreadLocal<HeldStripes>() {
+
+        @Override
+        protected HeldStripes initialValue() {
+            return new HeldStripes(stripes.length);
+        }
+    };
+
+    public StripedReadWriteLockStrategy() {
+        this(Integer.getInteger(STRIPES_PROPERTY, DEFAULT_STRIPES), Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_MILLIS), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param stripeCount
+     *            rounded up to a power of two
+     * @param timeout
+     *            0 or less waits without limit for in order acquisitions
+     */
+    protected StripedReadWriteLockStrategy(int stripeCount, long timeout, TimeUnit unit) {
+        if ( 0 >= stripeCount ) {
+            throw new IllegalArgumentException("Stripe count should be positive: " + stripeCount);
+        }
+        int size = 1;
+        while ( size < stripeCount ) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantReadWriteLock[size];
+        for ( int i = 0; i < size; i++ ) {
+            this.stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.mask = size - 1;
+        this.timeoutNanos = 0 >= timeout ? 0L : unit.toNanos(timeout);
+    }
+
+    /**
+     * @return the key identifying the reactive object. Keys other than the
+     *         object itself are compared by hashCode, the object itself by
+     *         identity.
+     */
+    protected Object lockKey(Object reactiveObject) {
+        return reactiveObject;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public int stripeOf(Object reactiveObject) {
+        return stripeOf(lockKey(reactiveObject), reactiveObject);
+    }
+
+    private int stripeOf(Object key, Object reactiveObject) {
+        int h = key == reactiveObject ? System.identityHashCode(key) : key.hashCode();
+        h ^= ( h >>> 16 );
+        return h & mask;
+    }
+
+    @Override
+    public void lockRead(Object reactiveObject) {
+        acquire(reactiveObject, false);
+    }
+
+    @Override
+    public void unlockRead(Object targetReactiveObject) {
+        release(targetReactiveObject, false);
+    }
+
+    @Override
+    public void lockWrite(Object reactiveObject) {
+        acquire(reactiveObject, true);
+    }
+
+    @Override
+    public void unlockWrite(Object targetReactiveObject) {
+        release(targetReactiveObject, true);
+    }
+
+    private void acquire(Object reactiveObject, boolean write) {
+        final Object key = lockKey(reactiveObject);
+        final int index = stripeOf(key, reactiveObject);
+        final HeldStripes held = heldStripes.get();
+        final ReentrantReadWriteLock stripe = stripes[index];
+        final Lock lock = write ? stripe.writeLock() : stripe.readLock();
+        if ( 0 < held.writes[index] ) {
+            // Write lock holder can re-enter both read and write locks.
+            lock.lock();
+        } else if ( 0 < held.reads[index] ) {
+            if ( !write ) {
+                lock.lock();
+            } else if ( held.isReading(key, key == reactiveObject) ) {
+                throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.LOCK_UPGRADE_NOT_SUPPORTED, reactiveObject);
+            } else {
+                lockWriteOverStripeMates(stripe, held.reads[index], reactiveObject);
+            }
+        } else if ( index > held.highest() ) {
+            tryLock(lock, reactiveObject, write, timeoutNanos);
+        } else {
+            if ( logger.isLoggable(Level.FINE) ) {
+                logger.fine("Acquiring lock stripe " + index + " out of order for " + reactiveObject);
+            }
+            tryLock(lock, reactiveObject, write, outOfOrderTimeoutNanos());
+        }
+        held.increment(index, write, key);
+    }
+
+    private long outOfOrderTimeoutNanos() {
+        return 0L < timeoutNanos ? timeoutNanos : TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * The thread only reads other objects hashed to the stripe, and a read lock
+     * holder would wait for itself on the write lock.
+     */
+    private void lockWriteOverStripeMates(ReentrantReadWriteLock stripe, int reads, Object reactiveObject) {
+        for ( int i = 0; i < reads; i++ ) {
+            stripe.readLock().unlock();
+        }
+        try {
+            tryLock(stripe.writeLock(), reactiveObject, true, outOfOrderTimeoutNanos());
+        } finally {
+            for ( int i = 0; i < reads; i++ ) {
+                stripe.readLock().lock();
+            }
+        }
+    }
+
+    private void tryLock(Lock lock, Object reactiveObject, boolean write, long nanos) {
+        try {
+            if ( 0L >= nanos ) {
+                lock.lockInterruptibly();
+            } else if ( !lock.tryLock(nanos, TimeUnit.NANOSECONDS) ) {
+                throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.LOCK_TIMEOUT, write ? WRITE : READ,
+                        reactiveObject, TimeUnit.NANOSECONDS.toMillis(nanos));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.LOCK_INTERRUPTED, new String[] {
+                    write ? WRITE : READ, String.valueOf(reactiveObject) }, e);
+        }
+    }
+
+    private void release(Object reactiveObject, boolean write) {
+        final Object key = lockKey(reactiveObject);
+        final int index = stripeOf(key, reactiveObject);
+        final ReentrantReadWriteLock stripe = stripes[index];
+        if ( write ) {
+            stripe.writeLock().unlock();
+        } else {
+            stripe.readLock().unlock();
+        }
+        heldStripes.get().decrement(index, write, key, key == reactiveObject);
+    }
+
+    private static final class HeldStripes {
+
+        private final int[] reads;
+        private final int[] writes;
+        private final List<Object> readKeys = new ArrayList<Object>();
+        private int highest = -1;
+
+        private HeldStripes(int size) {
+            this.reads = new int[size];
+            this.writes = new int[size];
+        }
+
+        private int highest() {
+            return highest;
+        }
+
+        private boolean isReading(Object key, boolean identity) {
+            return 0 <= indexOfReadKey(key, identity);
+        }
+
+        private int indexOfReadKey(Object key, boolean identity) {
+            for ( int i = readKeys.size() - 1; i >= 0; i-- ) {
+                final Object readKey = readKeys.get(i);
+                if ( identity ? readKey == key : key.equals(readKey) ) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void increment(int index, boolean write, Object key) {
+            if ( write ) {
+                writes[index]++;
+            } else {
+                reads[index]++;
+                readKeys.add(key);
+            }
+            if ( index > highest ) {
+                highest = index;
+            }
+        }
+
+        private void decrement(int index, boolean write, Object key, boolean identity) {
+            if ( write ) {
+                writes[index]--;
+            } else {
+                reads[index]--;
+                final int i = indexOfReadKey(key, identity);
+                if ( 0 <= i ) {
+                    readKeys.remove(i);
+                }
+            }
+            if ( index == highest && 0 == reads[index] && 0 == writes[index] ) {
+                int i = index - 1;
+                while ( 0 <= i && 0 == reads[i] && 0 == writes[i] ) {
+                    i--;
+                }
+                highest = i;
+            }
+        }
+    }
+}
@@ -8,23 +8,16 @@ public final class FieldEvaluator<T> implements MetaObject.ReadAccessor<T> {
 
     public FieldEvaluator(Field objField) {
         this.objField = objField;
+        this.objField.setAccessible(true);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public T read(Object reactiveObject) {
-        final boolean accessible = objField.isAccessible();
         try {
-            if ( !accessible ) {
-                objField.setAccessible(true);
-            }
             return (T) objField.get(reactiveObject);
         } catch (IllegalArgumentException | IllegalAccessException e) {
             throw new IllegalStateException(e);
-        } finally {
-            if ( !accessible ) {
-                objField.setAccessible(false);
-            }
         }
     }
 }
\ No newline at end of file
@@ -3,30 +3,24 @@ package net.madz.lifecycle.meta;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import net.madz.bcel.MethodAccessor;
+import net.madz.bcel.MethodAccessorGenerator;
+
 public final class PropertyEvaluator<T> implements MetaObject.ReadAccessor<T> {
 
-    private final Method getter;
+    private final MethodAccessor getter;
 
     public PropertyEvaluator(Method objMethod) {
-        this.getter = objMethod;
+        this.getter = MethodAccessorGenerator.create(objMethod);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public T read(Object reactiveObject) {
-        final boolean accessible = getter.isAccessible();
         try {
-            if ( !accessible ) {
-                getter.setAccessible(true);
-                return (T) getter.invoke(reactiveObject);
-            }
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+            return (T) getter.invoke(reactiveObject);
+        } catch (IllegalArgumentException | ClassCastException | InvocationTargetException e) {
             throw new IllegalStateException(e);
-        } finally {
-            if ( !accessible ) {
-                getter.setAccessible(false);
-            }
         }
-        return null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package net.madz.lifecycle.meta.impl.builder;
+
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
+
+/**
+ * State change callbacks of one state machine object compiled per (from
+ * state, to state) ordinal pair, in the order they are invoked: specific
+ * callbacks, from state callbacks, to state callbacks and then common
+ * callbacks. A transition visits only the callbacks that apply to it.
+ */
+final class CallbackDispatchTable {
+
+    static final CallbackObject[] NO_CALLBACKS = new CallbackObject[0];
+    private final StateMachineObjectBuilderImpl<?> stateMachine;
+    private final StateTransitionTable states;
+    private final int stateCount;
+    /**
+     * Indexed with from * (stateCount + 1) + to, where to == stateCount means
+     * that the next state has not been evaluated yet.
+     */
+    private final CallbackObject[][] preStateChangeCallbacks;
+    private final CallbackObject[][] postStateChangeCallbacks;
+
+    CallbackDispatchTable(StateMachineObjectBuilderImpl<?> stateMachine, StateTransitionTable states) {
+        this.stateMachine = stateMachine;
+        this.states = states;
+        this.stateCount = states.getStateCount();
+        this.preStateChangeCallbacks = new CallbackObject[stateCount * ( stateCount + 1 )][];
+        this.postStateChangeCallbacks = new CallbackObject[stateCount * stateCount][];
+        for ( int from = 0; from < stateCount; from++ ) {
+            final String fromState = states.getStateName(from);
+            for ( int to = 0; to < stateCount; to++ ) {
+                final String toState = states.getStateName(to);
+                preStateChangeCallbacks[from * ( stateCount + 1 ) + to] = stateMachine.resolvePreStateChangeCallbacks(fromState, toState);
+                postStateChangeCallbacks[from * stateCount + to] = stateMachine.resolvePostStateChangeCallbacks(fromState, toState);
+            }
+            preStateChangeCallbacks[from * ( stateCount + 1 ) + stateCount] = stateMachine.resolvePreStateChangeCallbacks(fromState, null);
+        }
+    }
+
+    /**
+     * @param fromStateOrdinal
+     *            ordinal of the from state if already known, otherwise
+     *            StateTransitionTable.UNKNOWN.
+     * @param toState
+     *            null if the next state has not been evaluated before the
+     *            transition method invocation.
+     */
+    CallbackObject[] getPreStateChangeCallbacks(int fromStateOrdinal, String fromState, String toState) {
+        final int from = StateTransitionTable.UNKNOWN == fromStateOrdinal ? states.getStateOrdinal(fromState) : fromStateOrdinal;
+        final int to = null == toState ? stateCount : states.getStateOrdinal(toState);
+        if ( StateTransitionTable.UNKNOWN == from || StateTransitionTable.UNKNOWN == to ) {
+            return stateMachine.resolvePreStateChangeCallbacks(fromState, toState);
+        }
+        return preStateChangeCallbacks[from * ( stateCount + 1 ) + to];
+    }
+
+    CallbackObject[] getPostStateChangeCallbacks(int fromStateOrdinal, String fromState, String toState) {
+        final int from = StateTransitionTable.UNKNOWN == fromStateOrdinal ? states.getStateOrdinal(fromState) : fromStateOrdinal;
+        final int to = states.getStateOrdinal(toState);
+        if ( StateTransitionTable.UNKNOWN == from || StateTransitionTable.UNKNOWN == to ) {
+            return stateMachine.resolvePostStateChangeCallbacks(fromState, toState);
+        }
+        return postStateChangeCallbacks[from * stateCount + to];
+    }
+}
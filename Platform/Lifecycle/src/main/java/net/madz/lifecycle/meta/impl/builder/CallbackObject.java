@@ -3,6 +3,8 @@ package net.madz.lifecycle.meta.impl.builder;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import net.madz.bcel.MethodAccessor;
+import net.madz.bcel.MethodAccessorGenerator;
 import net.madz.lifecycle.LifecycleCommonErrors;
 import net.madz.lifecycle.LifecycleContext;
 import net.madz.lifecycle.LifecycleException;
@@ -12,18 +14,22 @@ public class CallbackObject {
     private final String fromStateName;
     private final String toStateName;
     private final Method callbackMethod;
+    private final MethodAccessor callbackAccessor;
 
     public CallbackObject(String fromStateName, String toStateName, Method callbackMethod) {
         super();
         this.fromStateName = fromStateName;
         this.toStateName = toStateName;
         this.callbackMethod = callbackMethod;
+        this.callbackAccessor = MethodAccessorGenerator.create(callbackMethod);
     }
 
     public boolean matches(LifecycleContext<?, ?> callbackContext) {
-        String fromState = callbackContext.getFromStateName();
-        String toStateName = callbackContext.getToStateName();
-        if ( this.fromStateName.equals(fromState) && this.toStateName.equals(toStateName) ) {
+        return matches(callbackContext.getFromStateName(), callbackContext.getToStateName());
+    }
+
+    public boolean matches(String fromState, String toState) {
+        if ( this.fromStateName.equals(fromState) && this.toStateName.equals(toState) ) {
             return true;
         }
         return false;
@@ -32,8 +38,8 @@ public class CallbackObject {
     public void doCallback(LifecycleContext<?, ?> callbackContext) {
         try {
             Object evaluateTarget = evaluateTarget(callbackContext.getTarget());
-            callbackMethod.invoke(evaluateTarget, callbackContext);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+            callbackAccessor.invoke(evaluateTarget, callbackContext);
+        } catch (IllegalArgumentException | ClassCastException | InvocationTargetException e) {
             e.printStackTrace();
             throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.CALLBACK_EXCEPTION_OCCOURRED, callbackMethod, e);
         }
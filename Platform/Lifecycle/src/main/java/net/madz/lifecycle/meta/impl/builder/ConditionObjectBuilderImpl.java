@@ -2,6 +2,8 @@ package net.madz.lifecycle.meta.impl.builder;
 
 import java.lang.reflect.Method;
 
+import net.madz.bcel.MethodAccessor;
+import net.madz.bcel.MethodAccessorGenerator;
 import net.madz.lifecycle.meta.builder.ConditionObjectBuilder;
 import net.madz.lifecycle.meta.builder.StateMachineObjectBuilder;
 import net.madz.lifecycle.meta.instance.ConditionObject;
@@ -13,11 +15,13 @@ import net.madz.verification.VerificationFailureSet;
 public class ConditionObjectBuilderImpl extends ObjectBuilderBase<ConditionObject, StateMachineObject<?>, ConditionMetadata> implements ConditionObjectBuilder {
 
     private Method conditionGetter;
+    private MethodAccessor conditionAccessor;
 
     protected ConditionObjectBuilderImpl(StateMachineObjectBuilder<?> parent, Method method, ConditionMetadata template) {
         super(parent, "ConditionSet." + template.getDottedPath().getName());
         this.setMetaType(template);
         this.conditionGetter = method;
+        this.conditionAccessor = MethodAccessorGenerator.create(method);
     }
 
     @Override
@@ -25,6 +29,11 @@ public class ConditionObjectBuilderImpl extends ObjectBuilderBase<ConditionObjec
         return conditionGetter;
     }
 
+    @Override
+    public MethodAccessor conditionAccessor() {
+        return conditionAccessor;
+    }
+
     @Override
     public void verifyMetaData(VerificationFailureSet verificationSet) {}
 
@@ -0,0 +1,54 @@
+package net.madz.lifecycle.meta.impl.builder;
+
+import net.madz.lifecycle.EnumStateConverter;
+import net.madz.lifecycle.meta.instance.StateMachineObject.ConverterAccessor;
+import net.madz.lifecycle.meta.instance.StateMachineObject.StateAccessor;
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
+
+/**
+ * Maps the constants of an enum state indicator to state ordinals of the
+ * transition table, so that evaluating the state of a reactive object is an
+ * array lookup on the enum ordinal instead of a conversion to the state name
+ * followed by a hashed lookup.
+ */
+final class EnumStateOrdinals {
+
+    static final EnumStateOrdinals NONE = new EnumStateOrdinals(null, new int[0]);
+    private final StateAccessor<?> rawAccessor;
+    private final int[] stateOrdinals;
+
+    private EnumStateOrdinals(StateAccessor<?> rawAccessor, int[] stateOrdinals) {
+        this.rawAccessor = rawAccessor;
+        this.stateOrdinals = stateOrdinals;
+    }
+
+    /**
+     * @return NONE if the state indicator is not converted by an
+     *         {@link EnumStateConverter}.
+     */
+    static EnumStateOrdinals create(StateAccessor<String> stateAccessor, StateTransitionTable table) {
+        if ( !( stateAccessor instanceof ConverterAccessor ) ) {
+            return NONE;
+        }
+        final ConverterAccessor<?> converterAccessor = (ConverterAccessor<?>) stateAccessor;
+        if ( !( converterAccessor.getStateConverter() instanceof EnumStateConverter ) ) {
+            return NONE;
+        }
+        return create((EnumStateConverter<?>) converterAccessor.getStateConverter(), converterAccessor.getRawAccessor(), table);
+    }
+
+    private static <E extends Enum<E>> EnumStateOrdinals create(EnumStateConverter<E> converter, StateAccessor<?> rawAccessor, StateTransitionTable table) {
+        final E[] constants = converter.getEnumClass().getEnumConstants();
+        final int[] stateOrdinals = new int[constants.length];
+        for ( int i = 0; i < constants.length; i++ ) {
+            final String stateName = converter.toState(constants[i]);
+            stateOrdinals[i] = null == stateName ? StateTransitionTable.UNKNOWN : table.getStateOrdinal(stateName);
+        }
+        return new EnumStateOrdinals(rawAccessor, stateOrdinals);
+    }
+
+    int evaluate(Object target) {
+        final Object state = rawAccessor.read(target);
+        return null == state ? StateTransitionTable.UNKNOWN : stateOrdinals[( (Enum<?>) state ).ordinal()];
+    }
+}
@@ -230,8 +230,9 @@ public class StateMachineMetaBuilderImpl extends InheritableAnnotationMetaBuilde
     public StateMachineMetaBuilder build(Class<?> clazz, StateMachineMetadata parent) throws VerificationException {
         super.build(clazz, parent);
         preConfigureStateMachineType(clazz);
-        // Step 1. Syntax Validation
-        {
+        // Step 1. Syntax Validation, unless a metadata snapshot proves the
+        // same bytecode had been verified.
+        if ( !registry.isMetadataVerified() ) {
             verifySyntax(clazz);
         }
         // Step 2. Configure StateMachine
@@ -9,16 +9,15 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.madz.bcel.intercept.InterceptContext;
-import net.madz.bcel.intercept.UnlockableStack;
+import net.madz.lifecycle.EnumStateConverter;
 import net.madz.lifecycle.LifecycleCommonErrors;
 import net.madz.lifecycle.LifecycleContext;
 import net.madz.lifecycle.LifecycleException;
@@ -31,9 +30,11 @@ import net.madz.lifecycle.annotations.StateIndicator;
 import net.madz.lifecycle.annotations.Transition;
 import net.madz.lifecycle.annotations.action.Condition;
 import net.madz.lifecycle.annotations.action.ConditionalTransition;
+import net.madz.lifecycle.annotations.action.StatefulJudger;
 import net.madz.lifecycle.annotations.relation.Parent;
 import net.madz.lifecycle.annotations.relation.Relation;
 import net.madz.lifecycle.annotations.state.Converter;
+import net.madz.lifecycle.impl.LifecycleContextImpl;
 import net.madz.lifecycle.meta.builder.ConditionObjectBuilder;
 import net.madz.lifecycle.meta.builder.StateMachineMetaBuilder;
 import net.madz.lifecycle.meta.builder.StateMachineObjectBuilder;
@@ -51,17 +52,20 @@ import net.madz.lifecycle.meta.impl.builder.helper.StateIndicatorGetterMethodSca
 import net.madz.lifecycle.meta.impl.builder.helper.TransitionMethodScanner;
 import net.madz.lifecycle.meta.instance.ConditionObject;
 import net.madz.lifecycle.meta.instance.FunctionMetadata;
+import net.madz.lifecycle.meta.instance.RelationConstraintGroup;
 import net.madz.lifecycle.meta.instance.RelationObject;
 import net.madz.lifecycle.meta.instance.StateMachineObject;
 import net.madz.lifecycle.meta.instance.StateObject;
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
 import net.madz.lifecycle.meta.instance.TransitionObject;
+import net.madz.lifecycle.meta.instance.TransitionPlan;
+import net.madz.lifecycle.meta.instance.TransitionPlan.RelationParameterBinding;
 import net.madz.lifecycle.meta.template.ConditionMetadata;
 import net.madz.lifecycle.meta.template.RelationConstraintMetadata;
 import net.madz.lifecycle.meta.template.RelationMetadata;
 import net.madz.lifecycle.meta.template.StateMachineMetadata;
 import net.madz.lifecycle.meta.template.StateMetadata;
 import net.madz.lifecycle.meta.template.TransitionMetadata;
-import net.madz.meta.KeySet;
 import net.madz.util.KeyedList;
 import net.madz.util.MethodScanCallback;
 import net.madz.util.MethodScanner;
@@ -86,6 +90,12 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
     private RelationObject parentRelationObject;
     private LifecycleLockStrategry lifecycleLockStrategry;
     private StateConverter<S> stateConverter;
+    private volatile StateTransitionTable transitionTable;
+    private volatile EnumStateOrdinals enumStateOrdinals;
+    private volatile CallbackDispatchTable callbackDispatchTable;
+    private final ConcurrentHashMap<Class<?>, ConditionalTransition<Object>> judgers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ValidWhileGroups> validWhileGroups = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RelationConstraintGroup[]> inboundWhileGroups = new ConcurrentHashMap<>();
 
     public StateMachineObjectBuilderImpl(StateMachineMetaBuilder template, String name) {
         super(null, name);
@@ -228,12 +238,8 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
         if ( String.class.equals(getter.getReturnType()) ) {
             this.stateAccessor = new PropertyAccessor<String>(getter, setter);
         } else {
-            try {
-                this.stateConverter = (StateConverter<S>) getter.getAnnotation(Converter.class).value().newInstance();
-                this.stateAccessor = new ConverterAccessor(stateConverter, new PropertyAccessor(getter, setter));
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new IllegalStateException(e);
-            }
+            this.stateConverter = createStateConverter(getter, getter.getReturnType());
+            this.stateAccessor = new ConverterAccessor(stateConverter, new PropertyAccessor(getter, setter));
         }
     }
 
@@ -242,12 +248,21 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
         if ( String.class.equals(stateField.getType()) ) {
             this.stateAccessor = new FieldStateAccessor<String>(stateField);
         } else {
-            try {
-                this.stateConverter = (StateConverter<S>) stateField.getAnnotation(Converter.class).value().newInstance();
-                this.stateAccessor = new ConverterAccessor(stateConverter, new FieldStateAccessor(stateField));
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new IllegalStateException(e);
-            }
+            this.stateConverter = createStateConverter(stateField, stateField.getType());
+            this.stateAccessor = new ConverterAccessor(stateConverter, new FieldStateAccessor(stateField));
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private StateConverter<S> createStateConverter(AnnotatedElement stateIndicator, Class<?> stateType) {
+        final Converter converterMeta = stateIndicator.getAnnotation(Converter.class);
+        if ( null == converterMeta && stateType.isEnum() ) {
+            return new EnumStateConverter(stateType);
+        }
+        try {
+            return (StateConverter<S>) converterMeta.value().newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -549,7 +564,9 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
             throw new IllegalArgumentException();
         }
         final Converter converterMeta = getter.getAnnotation(Converter.class);
-        if ( null == converterMeta ) {
+        if ( null == converterMeta && stateType.isEnum() ) {
+            return;
+        } else if ( null == converterMeta ) {
             throw newVerificationException(getDottedPath(), SyntaxErrors.STATE_INDICATOR_CONVERTER_NOT_FOUND, getterDeclaringClass, stateType);
         } else {
             Type[] genericInterfaces = converterMeta.value().getGenericInterfaces();
@@ -812,7 +829,9 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
         setPrimaryKey(klass);
         addKey(klass);
         addKeys(getMetaType().getKeySet());
-        verifySyntax(klass);
+        if ( !getRegistry().isMetadataVerified() ) {
+            verifySyntax(klass);
+        }
         configureStateIndicatorAccessor(klass);
         configureConditions(klass);
         configureTransitionObjects(klass);
@@ -835,6 +854,7 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
 
     public void setStateAccessor(StateAccessor<String> accessor) {
         this.stateAccessor = accessor;
+        this.enumStateOrdinals = null;
     }
 
     @Override
@@ -842,50 +862,173 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
         return this.stateAccessor.read(target);
     }
 
+    @Override
+    public int evaluateStateOrdinal(Object target) {
+        final EnumStateOrdinals enumOrdinals = getEnumStateOrdinals();
+        if ( null != enumOrdinals ) {
+            return enumOrdinals.evaluate(target);
+        }
+        final String stateName = evaluateState(target);
+        return null == stateName ? StateTransitionTable.UNKNOWN : getTransitionTable().getStateOrdinal(stateName);
+    }
+
+    private EnumStateOrdinals getEnumStateOrdinals() {
+        EnumStateOrdinals enumOrdinals = enumStateOrdinals;
+        if ( null == enumOrdinals ) {
+            enumOrdinals = EnumStateOrdinals.create(stateAccessor, getTransitionTable());
+            enumStateOrdinals = enumOrdinals;
+        }
+        return enumOrdinals == EnumStateOrdinals.NONE ? null : enumOrdinals;
+    }
+
     @Override
     public void setTargetState(Object target, String state) {
         this.stateAccessor.write(target, state);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public String getNextState(Object target, Object transitionKey) {
         final String stateName = evaluateState(target);
-        final StateObject<S> state = getState(stateName);
-        final FunctionMetadata functionMetadata = state.getMetaType().getFunctionMetadata(transitionKey);
-        if ( null == functionMetadata ) {
+        final TransitionPlan plan = getTransitionPlan(stateName, transitionKey);
+        if ( null == plan ) {
             throw new IllegalArgumentException("Invalid Key or Key not registered: " + transitionKey + " while searching function metadata from state: "
-                    + state);
+                    + getState(stateName));
+        }
+        return getNextState(target, plan);
+    }
+
+    @Override
+    public String getNextState(Object target, TransitionPlan plan) {
+        if ( null != plan.getNextState() ) {
+            return plan.getNextState();
+        }
+        final FunctionMetadata functionMetadata = plan.getFunctionMetadata();
+        if ( null == functionMetadata ) {
+            throw new IllegalArgumentException("Invalid Key or Key not registered: " + plan.getTransitionKey()
+                    + " while searching function metadata from state: " + plan.getFromStateObject());
         }
         if ( 1 < functionMetadata.getNextStates().size() ) {
             final TransitionMetadata transitionMetadata = functionMetadata.getTransition();
             Class<? extends ConditionalTransition<?>> judgerClass = transitionMetadata.getJudgerClass();
             try {
-                ConditionalTransition<Object> conditionalTransition = (ConditionalTransition<Object>) judgerClass.newInstance();
-                final Class<?> nextStateClass = conditionalTransition.doConditionJudge(evaluateJudgeable(target, transitionMetadata));
+                final ConditionalTransition<Object> conditionalTransition = getJudger(judgerClass);
+                final Class<?> nextStateClass = conditionalTransition.doConditionJudge(evaluateJudgeable(target, plan.getConditionObject()));
                 final StateMetadata nextState = handleCompositeStateMachineLinkage(getState(nextStateClass).getMetaType());
                 return nextState.getSimpleName();
             } catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
                 throw new IllegalStateException("Cannot create judger instance of Class: " + judgerClass + ". Please provide no-arg constructor.");
             }
-        } else if ( 1 == functionMetadata.getNextStates().size() ) {
-            StateMetadata nextState = findStateFromBottomToTop(functionMetadata);
-            nextState = handleCompositeStateMachineLinkage(nextState);
-            return nextState.getSimpleName();
         } else {
             throw new IllegalArgumentException("No next states found with fuction: " + functionMetadata);
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private ConditionalTransition<Object> getJudger(Class<? extends ConditionalTransition<?>> judgerClass) throws InstantiationException,
+            IllegalAccessException {
+        if ( null != judgerClass.getAnnotation(StatefulJudger.class) ) {
+            return (ConditionalTransition<Object>) judgerClass.newInstance();
+        }
+        ConditionalTransition<Object> judger = judgers.get(judgerClass);
+        if ( null == judger ) {
+            judger = (ConditionalTransition<Object>) judgerClass.newInstance();
+            final ConditionalTransition<Object> existing = judgers.putIfAbsent(judgerClass, judger);
+            if ( null != existing ) {
+                judger = existing;
+            }
+        }
+        return judger;
+    }
+
+    @Override
+    public StateTransitionTable getTransitionTable() {
+        StateTransitionTable table = transitionTable;
+        if ( null == table ) {
+            synchronized (this) {
+                table = transitionTable;
+                if ( null == table ) {
+                    table = new StateTransitionTable(getMetaType(), getStateSet());
+                    transitionTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public TransitionPlan getTransitionPlan(String fromState, Object transitionKey) {
+        return getTransitionPlan(fromState, getTransitionTable().getTransitionOrdinal(transitionKey), transitionKey);
+    }
+
+    @Override
+    public TransitionPlan getTransitionPlan(String fromState, int transitionOrdinal, Object transitionKey) {
+        return getTransitionPlan(fromState, getTransitionTable().getStateOrdinal(fromState), transitionOrdinal, transitionKey);
+    }
+
+    @Override
+    public TransitionPlan getTransitionPlan(int fromStateOrdinal, int transitionOrdinal, Object transitionKey) {
+        final String fromState = StateTransitionTable.UNKNOWN == fromStateOrdinal ? null : getTransitionTable().getStateName(fromStateOrdinal);
+        return getTransitionPlan(fromState, fromStateOrdinal, transitionOrdinal, transitionKey);
+    }
+
+    private TransitionPlan getTransitionPlan(String fromState, int stateOrdinal, int transitionOrdinal, Object transitionKey) {
+        final StateTransitionTable table = getTransitionTable();
+        if ( StateTransitionTable.UNKNOWN == stateOrdinal || StateTransitionTable.UNKNOWN == transitionOrdinal
+                || !table.isTransitionValid(stateOrdinal, transitionOrdinal) ) {
+            // Illegal transitions are not cached, they end with an exception.
+            return compileTransitionPlan(fromState, transitionKey);
+        }
+        TransitionPlan plan = table.getTransitionPlan(stateOrdinal, transitionOrdinal);
+        if ( null == plan ) {
+            plan = compileTransitionPlan(fromState, transitionKey);
+            if ( null == plan ) {
+                return null;
+            }
+            plan = table.putTransitionPlanIfAbsent(stateOrdinal, transitionOrdinal, plan);
+        }
+        return plan;
+    }
+
+    private TransitionPlan compileTransitionPlan(String fromStateName, Object transitionKey) {
+        final StateMetadata fromState = getMetaType().getState(fromStateName);
+        if ( !fromState.isTransitionValid(transitionKey) ) {
+            return null;
+        }
+        final TransitionMetadata transition = fromState.getTransition(transitionKey);
+        final boolean nextStateEvaluatedBeforeTransition = !fromState.hasMultipleStateCandidatesOn(transitionKey)
+                || evaluateConditionBeforeTransition(transitionKey);
+        final FunctionMetadata functionMetadata = getState(fromStateName).getMetaType().getFunctionMetadata(transitionKey);
+        final HashMap<String, RelationConstraintGroup[]> inboundWhileGroups = new HashMap<>();
+        String nextState = null;
+        ConditionObject conditionObject = null;
+        if ( null != functionMetadata ) {
+            if ( 1 < functionMetadata.getNextStates().size() ) {
+                conditionObject = getConditionObject(functionMetadata.getTransition().getConditionClass());
+                for ( final StateMetadata candidate : functionMetadata.getNextStates() ) {
+                    final StateObject<S> candidateObject = getState(candidate.getPrimaryKey());
+                    if ( null == candidateObject ) {
+                        continue;
+                    }
+                    final String candidateName = handleCompositeStateMachineLinkage(candidateObject.getMetaType()).getSimpleName();
+                    inboundWhileGroups.put(candidateName, getInboundWhileGroups(candidateName));
+                }
+            } else if ( 1 == functionMetadata.getNextStates().size() ) {
+                nextState = handleCompositeStateMachineLinkage(findStateFromBottomToTop(functionMetadata)).getSimpleName();
+                inboundWhileGroups.put(nextState, getInboundWhileGroups(nextState));
+            }
+        }
+        return new TransitionPlan(this, transitionKey, fromState, getState(fromState.getDottedPath()), transition, functionMetadata, nextState,
+                conditionObject, nextStateEvaluatedBeforeTransition, inboundWhileGroups);
+    }
+
     private StateMetadata findStateFromBottomToTop(final FunctionMetadata functionMetadata) {
         StateMetadata nextState = functionMetadata.getNextStates().get(0);
         nextState = getState(nextState.getPrimaryKey()).getMetaType();
         return nextState;
     }
 
-    private Object evaluateJudgeable(Object target, final TransitionMetadata transitionMetadata) throws IllegalAccessException, InvocationTargetException {
-        final ConditionObject conditionObject = getConditionObject(transitionMetadata.getConditionClass());
-        Object getJudgeable = conditionObject.conditionGetter().invoke(target);
+    private Object evaluateJudgeable(Object target, final ConditionObject conditionObject) throws InvocationTargetException {
+        Object getJudgeable = conditionObject.conditionAccessor().invoke(target);
         return getJudgeable;
     }
 
@@ -905,61 +1048,68 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
         return this.conditionObjectList.get(conditionClass);
     }
 
-    @Override
-    public void validateValidWhiles(final InterceptContext<?, ?> context) {
-        // final HashMap<Class<?>, Object> relationsInMethodParameters =
-        // evaluatorRelationsInMethodParameters(context);
-        final Object target = context.getTarget();
-        validateValidWhiles(target, context);
+    private ValidWhileGroups getValidWhileGroups(String stateName) {
+        ValidWhileGroups groups = validWhileGroups.get(stateName);
+        if ( null == groups ) {
+            final StateMetadata state = getMetaType().getState(stateName);
+            groups = new ValidWhileGroups(state, getState(state.getDottedPath()), RelationConstraintGroup.merge(state.getValidWhiles()));
+            final ValidWhileGroups existing = validWhileGroups.putIfAbsent(stateName, groups);
+            if ( null != existing ) {
+                groups = existing;
+            }
+        }
+        return groups;
     }
 
-    @Override
-    public void validateValidWhiles(final Object target, final UnlockableStack stack) {
-        final StateMetadata state = getMetaType().getState(evaluateState(target));
-        final RelationConstraintMetadata[] validWhiles = state.getValidWhiles();
-        final HashMap<String, List<RelationConstraintMetadata>> mergedRelations = mergeRelations(validWhiles);
-        final StateObject<S> stateObject = getState(state.getDottedPath());
-        for ( final Entry<String, List<RelationConstraintMetadata>> relationMetadataEntry : mergedRelations.entrySet() ) {
-            final Object relationInstance = getRelationInstance(target, new HashMap<Class<?>, Object>(), relationMetadataEntry);
-            if ( null == relationInstance ) {
-                for ( final RelationConstraintMetadata item : relationMetadataEntry.getValue() ) {
-                    if ( !item.isNullable() ) {
-                        throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.VALID_WHILE_RELATION_TARGET_IS_NULL,
-                                item.getPrimaryKey(), "nullable = " + item.isNullable(), state.getPrimaryKey());
-                    }
-                }
-                continue;
+    private RelationConstraintGroup[] getInboundWhileGroups(String stateName) {
+        RelationConstraintGroup[] groups = inboundWhileGroups.get(stateName);
+        if ( null == groups ) {
+            groups = RelationConstraintGroup.merge(getMetaType().getState(stateName).getInboundWhiles());
+            final RelationConstraintGroup[] existing = inboundWhileGroups.putIfAbsent(stateName, groups);
+            if ( null != existing ) {
+                groups = existing;
             }
-            stateObject.verifyValidWhile(target, relationMetadataEntry.getValue().toArray(new RelationConstraintMetadata[0]), relationInstance, stack);
         }
+        return groups;
     }
 
-    private Object getRelationInMethodParameters(HashMap<Class<?>, Object> relationsInMethodParameters, KeySet keySet) {
-        Iterator<Object> iterator = keySet.iterator();
-        while ( iterator.hasNext() ) {
-            final Object key = iterator.next();
-            if ( relationsInMethodParameters.containsKey(key) ) {
-                return relationsInMethodParameters.get(key);
-            }
+    @Override
+    public void validateValidWhiles(final InterceptContext<?, ?> context) {
+        final Object target = context.getTarget();
+        if ( null != context.getFromState() ) {
+            validateValidWhiles(target, getValidWhileGroups(context.getFromState()), context);
+        } else {
+            validateValidWhiles(target, context);
         }
-        return null;
     }
 
-    private HashMap<Class<?>, Object> evaluatorRelationsInMethodParameters(InterceptContext<?, ?> context) {
-        final Object[] arguments = context.getArguments();
-        final Method method = context.getMethod();
-        final Annotation[][] parameterAnnotations = method.getParameterAnnotations();
-        final HashMap<Class<?>, Object> relationObjectMap = new HashMap<>();
-        int parameterIndex = 0;
-        for ( Annotation[] annotations : parameterAnnotations ) {
-            for ( Annotation annotation : annotations ) {
-                if ( Relation.class == annotation.annotationType() ) {
-                    relationObjectMap.put(( (Relation) annotation ).value(), arguments[parameterIndex]);
+    @Override
+    public void validateValidWhiles(final Object target, final InterceptContext<?, ?> context) {
+        validateValidWhiles(target, getValidWhileGroups(evaluateState(target)), context);
+    }
+
+    /**
+     * Constraint groups already verified on the same related object while it
+     * is locked, e.g. by an enclosing transition or an earlier transition of a
+     * bulk transition, are skipped.
+     */
+    private void validateValidWhiles(final Object target, final ValidWhileGroups validWhiles, final InterceptContext<?, ?> context) {
+        for ( final RelationConstraintGroup group : validWhiles.groups ) {
+            final Object relationInstance = getEvaluator(group.getRelationKey()).read(target);
+            if ( null == relationInstance ) {
+                if ( !group.isNullable() ) {
+                    final RelationConstraintMetadata item = group.getNonNullableConstraint();
+                    throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.VALID_WHILE_RELATION_TARGET_IS_NULL,
+                            item.getPrimaryKey(), "nullable = " + item.isNullable(), validWhiles.state.getPrimaryKey());
                 }
+                continue;
             }
-            parameterIndex++;
+            if ( context.isRelationVerified(group, relationInstance) ) {
+                continue;
+            }
+            validWhiles.stateObject.verifyValidWhile(target, group, relationInstance, context);
+            context.setRelationVerified(group, relationInstance);
         }
-        return relationObjectMap;
     }
 
     private ReadAccessor<?> getEvaluator(Object relationKey) {
@@ -972,53 +1122,46 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
 
     @Override
     public void validateInboundWhiles(InterceptContext<?, ?> context) {
-        final HashMap<Class<?>, Object> relationsInMethodParameters = evaluatorRelationsInMethodParameters(context);
+        final TransitionPlan plan = getTransitionPlan(evaluateState(context.getTarget()), context.getTransitionKey());
+        if ( null == plan ) {
+            throw new IllegalArgumentException("Invalid Key or Key not registered: " + context.getTransitionKey());
+        }
+        validateInboundWhiles(plan, context);
+    }
+
+    @Override
+    public void validateInboundWhiles(TransitionPlan plan, InterceptContext<?, ?> context) {
         final Object target = context.getTarget();
-        final Object transitionKey = context.getTransitionKey();
-        final StateMetadata state = getMetaType().getState(evaluateState(target));
-        final String nextState = getNextState(target, transitionKey);
-        final StateMetadata nextStateMetadata = getMetaType().getState(nextState);
-        for ( final Entry<String, List<RelationConstraintMetadata>> relationMetadataEntry : mergeRelations(nextStateMetadata.getInboundWhiles()).entrySet() ) {
-            final Object relationTarget = getRelationInstance(target, relationsInMethodParameters, relationMetadataEntry);
+        final String nextState = getNextState(target, plan);
+        RelationConstraintGroup[] groups = plan.getInboundWhileGroups(nextState);
+        final RelationParameterBinding binding;
+        if ( null == groups ) {
+            groups = getInboundWhileGroups(nextState);
+            binding = RelationParameterBinding.create(context.getMethod(), Collections.singleton(groups));
+        } else {
+            binding = plan.getRelationParameterBinding(context.getMethod());
+        }
+        final Object[] arguments = context.getArguments();
+        for ( final RelationConstraintGroup group : groups ) {
+            Object relationTarget = binding.resolve(group, arguments);
             if ( null == relationTarget ) {
-                for ( final RelationConstraintMetadata item : relationMetadataEntry.getValue() ) {
-                    if ( !item.isNullable() ) {
-                        throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.INBOUND_WHILE_RELATION_TARGET_IS_NULL,
-                                item.getPrimaryKey(), "nullable = " + item.isNullable(), state.getPrimaryKey());
-                    }
+                relationTarget = getEvaluator(group.getRelationKey()).read(target);
+            }
+            if ( null == relationTarget ) {
+                if ( !group.isNullable() ) {
+                    final RelationConstraintMetadata item = group.getNonNullableConstraint();
+                    throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.INBOUND_WHILE_RELATION_TARGET_IS_NULL,
+                            item.getPrimaryKey(), "nullable = " + item.isNullable(), plan.getFromState().getPrimaryKey());
                 }
                 continue;
             }
-            getState(state.getDottedPath()).verifyInboundWhile(transitionKey, target, nextState,
-                    relationMetadataEntry.getValue().toArray(new RelationConstraintMetadata[0]), relationTarget, context);
-        }
-        context.setToState(nextState);
-    }
-
-    private Object getRelationInstance(Object contextTarget, final HashMap<Class<?>, Object> relationsInMethodParameters,
-            final Entry<String, List<RelationConstraintMetadata>> relationMetadataEntry) {
-        Object relationObject = getRelationInMethodParameters(relationsInMethodParameters, relationMetadataEntry.getValue().get(0).getKeySet());
-        if ( null == relationObject ) {
-            ReadAccessor<?> evaluator = getEvaluator(relationMetadataEntry.getValue().get(0).getRelationMetadata().getPrimaryKey());
-            relationObject = evaluator.read(contextTarget);
-        }
-        return relationObject;
-    }
-
-    private HashMap<String, List<RelationConstraintMetadata>> mergeRelations(RelationConstraintMetadata[] relations) {
-        final HashMap<String, List<RelationConstraintMetadata>> mergedRelations = new HashMap<>();
-        for ( final RelationConstraintMetadata relationMetadata : relations ) {
-            final String relationKey = relationMetadata.getRelatedStateMachine().getDottedPath().getAbsoluteName();
-            if ( mergedRelations.containsKey(relationKey) ) {
-                final List<RelationConstraintMetadata> list = mergedRelations.get(relationKey);
-                list.add(relationMetadata);
-            } else {
-                final ArrayList<RelationConstraintMetadata> list = new ArrayList<>();
-                list.add(relationMetadata);
-                mergedRelations.put(relationKey, list);
+            if ( context.isRelationVerified(group, relationTarget) ) {
+                continue;
             }
+            plan.getFromStateObject().verifyInboundWhile(plan.getTransitionKey(), target, nextState, group, relationTarget, context);
+            context.setRelationVerified(group, relationTarget);
         }
-        return mergedRelations;
+        context.setToState(nextState);
     }
 
     @Override
@@ -1081,82 +1224,83 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
     }
 
     @Override
-    public void performPreStateChangeCallback(LifecycleContext<?, S> callbackContext) {
-        final String fromState = evaluateFromState(callbackContext);
-        final String toState = evaluateToState(callbackContext);
-        if ( null != toState ) {
-            invokeSpecificPreStateChangeCallbacks(callbackContext);
-        }
-        final StateObject<S> fromStateObject = getState(fromState);
-        fromStateObject.invokeFromPreStateChangeCallbacks(callbackContext);
-        if ( null != toState ) {
-            final StateObject<S> toStateObject = getState(toState);
-            toStateObject.invokeToPreStateChangeCallbacks(callbackContext);
-        }
-        invokeCommonPreStateChangeCallbacks(callbackContext);
+    public void performPreStateChangeCallback(InterceptContext<?, ?> context) {
+        final CallbackObject[] callbacks = getCallbackDispatchTable().getPreStateChangeCallbacks(context.getFromStateOrdinal(), context.getFromState(),
+                context.getToState());
+        invokeCallbacks(callbacks, context);
     }
 
     @Override
-    public void performPostStateChangeCallback(LifecycleContext<?, S> callbackContext) {
-        final String fromState = evaluateFromState(callbackContext);
-        final String toState = evaluateToState(callbackContext);
-        invokeSpecificPostStateChangeCallbacks(callbackContext);
-        final StateObject<S> fromStateObject = getState(fromState);
-        fromStateObject.invokeFromPostStateChangeCallbacks(callbackContext);
-        final StateObject<S> toStateObject = getState(toState);
-        toStateObject.invokeToPostStateChangeCallbacks(callbackContext);
-        invokeCommonPostStateChangeCallbacks(callbackContext);
-    }
-
-    private void invokeCommonPreStateChangeCallbacks(LifecycleContext<?, S> callbackContext) {
-        for ( CallbackObject callbackObject : this.commonPreStateChangeCallbackObjects ) {
+    public void performPostStateChangeCallback(InterceptContext<?, ?> context) {
+        final CallbackObject[] callbacks = getCallbackDispatchTable().getPostStateChangeCallbacks(context.getFromStateOrdinal(), context.getFromState(),
+                context.getToState());
+        invokeCallbacks(callbacks, context);
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void invokeCallbacks(final CallbackObject[] callbacks, final InterceptContext<?, ?> context) {
+        if ( 0 == callbacks.length ) {
+            return;
+        }
+        final LifecycleContext<?, S> callbackContext = new LifecycleContextImpl(context, stateConverter);
+        for ( final CallbackObject callbackObject : callbacks ) {
             callbackObject.doCallback(callbackContext);
         }
     }
 
-    private void invokeSpecificPreStateChangeCallbacks(LifecycleContext<?, S> callbackContext) {
-        for ( CallbackObject callbackObject : this.specificPreStateChangeCallbackObjects ) {
-            if ( callbackObject.matches(callbackContext) ) {
-                callbackObject.doCallback(callbackContext);
+    private CallbackDispatchTable getCallbackDispatchTable() {
+        CallbackDispatchTable table = callbackDispatchTable;
+        if ( null == table ) {
+            synchronized (this) {
+                table = callbackDispatchTable;
+                if ( null == table ) {
+                    table = new CallbackDispatchTable(this, getTransitionTable());
+                    callbackDispatchTable = table;
+                }
             }
         }
+        return table;
     }
 
-    private void invokeCommonPostStateChangeCallbacks(LifecycleContext<?, S> callbackContext) {
-        for ( CallbackObject callbackObject : this.commonPostStateChangeCallbackObjects ) {
-            callbackObject.doCallback(callbackContext);
-        }
+    void resetCallbackDispatchTable() {
+        this.callbackDispatchTable = null;
     }
 
-    private void invokeSpecificPostStateChangeCallbacks(LifecycleContext<?, S> callbackContext) {
-        for ( CallbackObject callbackObject : this.specificPostStateChangeCallbackObjects ) {
-            if ( callbackObject.matches(callbackContext) ) {
-                callbackObject.doCallback(callbackContext);
-            }
+    CallbackObject[] resolvePreStateChangeCallbacks(String fromState, String toState) {
+        final ArrayList<CallbackObject> callbacks = new ArrayList<>();
+        if ( null != toState ) {
+            addMatchingCallbacks(callbacks, specificPreStateChangeCallbackObjects, fromState, toState);
+        }
+        callbacks.addAll(getState(fromState).getFromPreStateChangeCallbacks(fromState));
+        if ( null != toState ) {
+            callbacks.addAll(getState(toState).getToPreStateChangeCallbacks(toState));
         }
+        callbacks.addAll(commonPreStateChangeCallbackObjects);
+        return toCallbackArray(callbacks);
     }
 
-    private String evaluateToState(LifecycleContext<?, S> callbackContext) {
-        if ( null == callbackContext.getToState() ) {
-            return null;
-        }
-        final String toState;
-        if ( null != this.stateConverter ) {
-            toState = stateConverter.toState(callbackContext.getToState());
-        } else {
-            toState = String.valueOf(callbackContext.getToState());
+    CallbackObject[] resolvePostStateChangeCallbacks(String fromState, String toState) {
+        final ArrayList<CallbackObject> callbacks = new ArrayList<>();
+        addMatchingCallbacks(callbacks, specificPostStateChangeCallbackObjects, fromState, toState);
+        callbacks.addAll(getState(fromState).getFromPostStateChangeCallbacks(fromState));
+        callbacks.addAll(getState(toState).getToPostStateChangeCallbacks(toState));
+        callbacks.addAll(commonPostStateChangeCallbackObjects);
+        return toCallbackArray(callbacks);
+    }
+
+    private void addMatchingCallbacks(ArrayList<CallbackObject> callbacks, ArrayList<CallbackObject> candidates, String fromState, String toState) {
+        for ( final CallbackObject callbackObject : candidates ) {
+            if ( callbackObject.matches(fromState, toState) ) {
+                callbacks.add(callbackObject);
+            }
         }
-        return toState;
     }
 
-    private String evaluateFromState(LifecycleContext<?, S> callbackContext) {
-        final String fromState;
-        if ( null != this.stateConverter ) {
-            fromState = stateConverter.toState(callbackContext.getFromState());
-        } else {
-            fromState = String.valueOf(callbackContext.getFromState());
+    private CallbackObject[] toCallbackArray(ArrayList<CallbackObject> callbacks) {
+        if ( callbacks.isEmpty() ) {
+            return CallbackDispatchTable.NO_CALLBACKS;
         }
-        return fromState;
+        return callbacks.toArray(new CallbackObject[callbacks.size()]);
     }
 
     @Override
@@ -1172,20 +1316,37 @@ public class StateMachineObjectBuilderImpl<S> extends ObjectBuilderBase<StateMac
     @Override
     public void addSpecificPreStateChangeCallbackObject(CallbackObject item) {
         this.specificPreStateChangeCallbackObjects.add(item);
+        resetCallbackDispatchTable();
     }
 
     @Override
     public void addCommonPreStateChangeCallbackObject(CallbackObject item) {
         this.commonPreStateChangeCallbackObjects.add(item);
+        resetCallbackDispatchTable();
     }
 
     @Override
     public void addSpecificPostStateChangeCallbackObject(CallbackObject item) {
         this.specificPostStateChangeCallbackObjects.add(item);
+        resetCallbackDispatchTable();
     }
 
     @Override
     public void addCommonPostStateChangeCallbackObject(CallbackObject item) {
         this.commonPostStateChangeCallbackObjects.add(item);
+        resetCallbackDispatchTable();
+    }
+
+    private static final class ValidWhileGroups {
+
+        private final StateMetadata state;
+        private final StateObject<?> stateObject;
+        private final RelationConstraintGroup[] groups;
+
+        private ValidWhileGroups(StateMetadata state, StateObject<?> stateObject, RelationConstraintGroup[] groups) {
+            this.state = state;
+            this.stateObject = stateObject;
+            this.groups = groups;
+        }
     }
 }
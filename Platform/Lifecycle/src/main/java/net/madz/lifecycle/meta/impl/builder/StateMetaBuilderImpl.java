@@ -53,6 +53,7 @@ public class StateMetaBuilderImpl extends InheritableAnnotationMetaBuilderBase<S
     private HashMap<Object, TransitionMetadata> possibleTransitionMap = new HashMap<>();
     private StateMetadata shortcutState;
     private StateTypeEnum type;
+    private int priority;
     private TransitionMetadata corruptTransition;
     private TransitionMetadata recoverTransition;
     private TransitionMetadata redoTransition;
@@ -290,9 +291,11 @@ public class StateMetaBuilderImpl extends InheritableAnnotationMetaBuilderBase<S
         }
         if ( null != clazz.getAnnotation(Corrupted.class) ) {
             setType(StateTypeEnum.Corrupted);
+            this.priority = clazz.getAnnotation(Corrupted.class).recoverPriority();
         }
         if ( null != clazz.getAnnotation(Running.class) ) {
             setType(StateTypeEnum.Running);
+            this.priority = clazz.getAnnotation(Running.class).priority();
         }
         if ( null != clazz.getAnnotation(Stopped.class) ) {
             setType(StateTypeEnum.Stopped);
@@ -523,14 +526,16 @@ public class StateMetaBuilderImpl extends InheritableAnnotationMetaBuilderBase<S
             RelationConstraintMetadata relationMetadata = configureRelationConstraint(findRelatedStateMachine(inboundWhile.relation()), "InboundWhiles."
                     + inboundWhile.relation().getSimpleName(), inboundWhile.relation(),
                     getOnStates(findRelatedStateMachine(inboundWhile.relation()), inboundWhile.on()),
-                    configureErrorMessageObjects(inboundWhile.otherwise(), inboundWhile.relation()), inboundWhile.nullable());
+                    configureErrorMessageObjects(findRelatedStateMachine(inboundWhile.relation()), inboundWhile.otherwise(),
+                            inboundWhile.relation()), inboundWhile.nullable());
             this.inboundWhileRelations.add(relationMetadata);
         }
         for ( ValidWhile validWhile : findDeclaredValidWhiles(clazz) ) {
             RelationConstraintMetadata relationMetadata = configureRelationConstraint(findRelatedStateMachine(validWhile.relation()), "ValidWhiles."
                     + validWhile.relation().getSimpleName(), validWhile.relation(),
                     getOnStates(findRelatedStateMachine(validWhile.relation()), validWhile.on()),
-                    configureErrorMessageObjects(validWhile.otherwise(), validWhile.relation()), validWhile.nullable());
+                    configureErrorMessageObjects(findRelatedStateMachine(validWhile.relation()), validWhile.otherwise(),
+                            validWhile.relation()), validWhile.nullable());
             this.validWhileRelations.add(relationMetadata);
         }
     }
@@ -548,13 +553,13 @@ public class StateMetaBuilderImpl extends InheritableAnnotationMetaBuilderBase<S
         return new RelationConstraintBuilderImpl(this, name, onStates, errorObjects, relatedStateMachine, nullable).build(relationClass, this);
     }
 
-    private LinkedList<ErrorMessageObject> configureErrorMessageObjects(ErrorMessage[] otherwise, Class<?> clz) {
+    private LinkedList<ErrorMessageObject> configureErrorMessageObjects(StateMachineMetadata relatedStateMachine, ErrorMessage[] otherwise, Class<?> clz) {
         LinkedList<ErrorMessageObject> errorObjects = new LinkedList<ErrorMessageObject>();
         for ( ErrorMessage item : otherwise ) {
             LinkedList<StateMetadata> errorStates = new LinkedList<>();
             Class<?>[] states = item.states();
             for ( Class<?> stateClz : states ) {
-                errorStates.add(this.getParent().getState(stateClz));
+                errorStates.add(relatedStateMachine.getState(stateClz.getSimpleName()));
             }
             errorObjects.add(new ErrorMessageObject(item.bundle(), clz, item.code(), errorStates.toArray(new StateMetadata[0])));
         }
@@ -800,4 +805,9 @@ public class StateMetaBuilderImpl extends InheritableAnnotationMetaBuilderBase<S
     public void setType(StateTypeEnum type) {
         this.type = type;
     }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
 }
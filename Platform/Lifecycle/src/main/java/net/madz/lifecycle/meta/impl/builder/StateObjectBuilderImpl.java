@@ -3,20 +3,25 @@ package net.madz.lifecycle.meta.impl.builder;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.MissingResourceException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import net.madz.bcel.intercept.InterceptContext;
 import net.madz.bcel.intercept.Unlockable;
-import net.madz.bcel.intercept.UnlockableStack;
 import net.madz.lifecycle.LifecycleCommonErrors;
-import net.madz.lifecycle.LifecycleContext;
 import net.madz.lifecycle.LifecycleException;
 import net.madz.lifecycle.LifecycleLockStrategry;
 import net.madz.lifecycle.annotations.LifecycleMeta;
 import net.madz.lifecycle.annotations.ReactiveObject;
 import net.madz.lifecycle.meta.builder.StateMachineObjectBuilder;
 import net.madz.lifecycle.meta.builder.StateObjectBuilder;
+import net.madz.lifecycle.meta.instance.CompiledRelationConstraint;
+import net.madz.lifecycle.meta.instance.ErrorMessageObject;
+import net.madz.lifecycle.meta.instance.RelationConstraintGroup;
 import net.madz.lifecycle.meta.instance.StateMachineObject;
 import net.madz.lifecycle.meta.instance.StateObject;
 import net.madz.lifecycle.meta.template.RelationConstraintMetadata;
@@ -26,6 +31,7 @@ import net.madz.verification.VerificationFailureSet;
 
 public class StateObjectBuilderImpl<S> extends ObjectBuilderBase<StateObject<S>, StateMachineObject<S>, StateMetadata> implements StateObjectBuilder<S> {
 
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
     private final HashMap<String, List<CallbackObject>> preFromStateChangeCallbacksMap = new HashMap<>();
     private final HashMap<String, List<CallbackObject>> preToStateChangeCallbacksMap = new HashMap<>();
     private final HashMap<String, List<CallbackObject>> postFromStateChangeCallbacksMap = new HashMap<>();
@@ -46,37 +52,55 @@ public class StateObjectBuilderImpl<S> extends ObjectBuilderBase<StateObject<S>,
     }
 
     @Override
-    public void verifyValidWhile(Object target, RelationConstraintMetadata[] relationMetadataArray, final Object relatedTarget, UnlockableStack stack) {
+    public void verifyValidWhile(Object target, RelationConstraintGroup relation, final Object relatedTarget, InterceptContext<?, ?> context) {
+        final CompiledRelationConstraint constraint = compileRelationConstraint(relation, relatedTarget);
+        final StateMachineObject<?> relatedStateMachineObject = constraint.getRelatedStateMachine();
+        final String relatedStateName = evaluateRelatedState(relatedTarget, context, relatedStateMachineObject);
+        if ( !constraint.isValid(relatedStateName) ) {
+            final Object[] messageVars = new Object[] { target, this.getMetaType().getSimpleName(), relatedTarget, relatedStateName,
+                    constraint.getValidStateNames() };
+            throw newRelationConstraintException(constraint, relatedStateName, LifecycleCommonErrors.STATE_INVALID, messageVars);
+        }
+        validateRelatedValidWhiles(relatedTarget, context, relatedStateMachineObject);
+    }
+
+    /**
+     * Resolves the related state machine object once per class of related
+     * objects, together with the compiled states of the constraint group.
+     */
+    private CompiledRelationConstraint compileRelationConstraint(RelationConstraintGroup relation, final Object relatedTarget) {
+        final Class<?> relatedTargetClass = relatedTarget.getClass();
+        final CompiledRelationConstraint constraint = relation.getCompiledConstraint(relatedTargetClass);
+        if ( null != constraint ) {
+            return constraint;
+        }
         try {
-            final StateMachineObject<?> relatedStateMachineObject = findRelatedStateMachineWithRelatedTarget(relationMetadataArray, relatedTarget);
-            lockRelatedObject(relatedTarget, stack, relatedStateMachineObject);
-            final String relatedStateName = relatedStateMachineObject.evaluateState(relatedTarget);
-            boolean found = false;
-            for ( RelationConstraintMetadata relationMetadata : relationMetadataArray ) {
-                for ( StateMetadata stateMetadata : relationMetadata.getOnStates() ) {
-                    if ( stateMetadata.getKeySet().contains(relatedStateName) ) {
-                        found = true;
-                        break;
-                    }
-                }
-            }
-            if ( !found ) {
-                final LinkedHashSet<String> validRelationStates = new LinkedHashSet<>();
-                for ( RelationConstraintMetadata relationMetadata : relationMetadataArray ) {
-                    for ( StateMetadata metadata : relationMetadata.getOnStates() ) {
-                        validRelationStates.add(metadata.getSimpleName());
-                    }
-                }
-                throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.STATE_INVALID, target, this.getMetaType()
-                        .getSimpleName(), relatedTarget, relatedStateName, Arrays.toString(validRelationStates.toArray(new String[0])));
-            } else {
-                relatedStateMachineObject.validateValidWhiles(relatedTarget, stack);
-            }
+            return relation.compile(relatedTargetClass, findRelatedStateMachineWithRelatedTarget(relation.getConstraints(), relatedTarget));
         } catch (VerificationException e) {
             throw new IllegalStateException("Cannot happen, it should be defect of syntax verification.");
         }
     }
 
+    /**
+     * Reports the error message declared by {@code otherwise} for the related
+     * state, with the same message variables as the default error, or the
+     * default error if the declared bundle or code cannot be found.
+     */
+    private LifecycleException newRelationConstraintException(final CompiledRelationConstraint constraint, final String relatedStateName,
+            final String defaultErrorCode, final Object[] messageVars) {
+        final ErrorMessageObject errorMessage = constraint.getErrorMessage(relatedStateName);
+        if ( null == errorMessage ) {
+            return new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, defaultErrorCode, messageVars);
+        }
+        try {
+            return new LifecycleException(errorMessage.getClassLoaderClass(), errorMessage.getBundle(), errorMessage.getErrorCode(), messageVars);
+        } catch (MissingResourceException e) {
+            logger.log(Level.WARNING, "Cannot find error message " + errorMessage.getErrorCode() + " in bundle " + errorMessage.getBundle()
+                    + ", reporting " + defaultErrorCode + " instead.", e);
+            return new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, defaultErrorCode, messageVars);
+        }
+    }
+
     private StateMachineObject<?> findRelatedStateMachineWithRelatedTarget(RelationConstraintMetadata[] relationMetadataArray, final Object relatedTarget)
             throws VerificationException {
         Class<?> relatedKey = null;
@@ -90,13 +114,28 @@ public class StateObjectBuilderImpl<S> extends ObjectBuilderBase<StateObject<S>,
         return relatedStateMachineObject;
     }
 
-    private void lockRelatedObject(final Object relatedTarget, UnlockableStack stack, final StateMachineObject<?> relatedStateMachineObject) {
-        if ( !relatedStateMachineObject.isLockEnabled() ) {
+    /**
+     * Locks and evaluates the related object once per intercept context, the
+     * state is reused by other constraint groups on the same related object
+     * and by nested transitions until the related object is transited.
+     */
+    private String evaluateRelatedState(final Object relatedTarget, InterceptContext<?, ?> context, final StateMachineObject<?> relatedStateMachineObject) {
+        String relatedStateName = context.getRelatedState(relatedTarget, relatedStateMachineObject);
+        if ( null == relatedStateName ) {
+            lockRelatedObject(relatedTarget, context, relatedStateMachineObject);
+            relatedStateName = relatedStateMachineObject.evaluateState(relatedTarget);
+            context.setRelatedState(relatedTarget, relatedStateMachineObject, relatedStateName);
+        }
+        return relatedStateName;
+    }
+
+    private void lockRelatedObject(final Object relatedTarget, InterceptContext<?, ?> context, final StateMachineObject<?> relatedStateMachineObject) {
+        if ( !relatedStateMachineObject.isLockEnabled() || context.isRelatedObjectLocked(relatedTarget) ) {
             return;
         }
         final LifecycleLockStrategry lifecycleLockStrategy = relatedStateMachineObject.getLifecycleLockStrategy();
         lifecycleLockStrategy.lockRead(relatedTarget);
-        stack.pushUnlockable(new Unlockable() {
+        context.pushRelatedObjectUnlockable(relatedTarget, new Unlockable() {
 
             @Override
             public void unlock() {
@@ -105,37 +144,27 @@ public class StateObjectBuilderImpl<S> extends ObjectBuilderBase<StateObject<S>,
         });
     }
 
+    private void validateRelatedValidWhiles(final Object relatedTarget, InterceptContext<?, ?> context, final StateMachineObject<?> relatedStateMachineObject) {
+        if ( context.isValidWhilesVerified(relatedTarget, relatedStateMachineObject) ) {
+            return;
+        }
+        relatedStateMachineObject.validateValidWhiles(relatedTarget, context);
+        context.setValidWhilesVerified(relatedTarget, relatedStateMachineObject);
+    }
+
     @Override
-    public void verifyInboundWhile(Object transitionKey, Object target, String nextState, RelationConstraintMetadata[] relationMetadataArray,
-            Object relatedTarget, UnlockableStack stack) {
-        try {
-            final StateMachineObject<?> relatedStateMachineObject = findRelatedStateMachineWithRelatedTarget(relationMetadataArray, relatedTarget);
-            lockRelatedObject(relatedTarget, stack, relatedStateMachineObject);
-            final String relatedEvaluateState = relatedStateMachineObject.evaluateState(relatedTarget);
-            boolean find = false;
-            for ( RelationConstraintMetadata relationMetadata : relationMetadataArray ) {
-                for ( StateMetadata stateMetadata : relationMetadata.getOnStates() ) {
-                    if ( stateMetadata.getKeySet().contains(relatedEvaluateState) ) {
-                        find = true;
-                        break;
-                    }
-                }
-            }
-            if ( !find ) {
-                final LinkedHashSet<String> validRelationStates = new LinkedHashSet<>();
-                for ( RelationConstraintMetadata relationMetadata : relationMetadataArray ) {
-                    for ( StateMetadata metadata : relationMetadata.getOnStates() ) {
-                        validRelationStates.add(metadata.getSimpleName());
-                    }
-                }
-                throw new LifecycleException(getClass(), LifecycleCommonErrors.BUNDLE, LifecycleCommonErrors.VIOLATE_INBOUND_WHILE_RELATION_CONSTRAINT,
-                        transitionKey, nextState, target, relatedTarget, relatedEvaluateState, Arrays.toString(validRelationStates.toArray(new String[0])));
-            } else {
-                relatedStateMachineObject.validateValidWhiles(relatedTarget, stack);
-            }
-        } catch (VerificationException e) {
-            throw new IllegalStateException("Cannot happen, it should be defect of syntax verification.");
+    public void verifyInboundWhile(Object transitionKey, Object target, String nextState, RelationConstraintGroup relation, Object relatedTarget,
+            InterceptContext<?, ?> context) {
+        final CompiledRelationConstraint constraint = compileRelationConstraint(relation, relatedTarget);
+        final StateMachineObject<?> relatedStateMachineObject = constraint.getRelatedStateMachine();
+        final String relatedEvaluateState = evaluateRelatedState(relatedTarget, context, relatedStateMachineObject);
+        if ( !constraint.isValid(relatedEvaluateState) ) {
+            final Object[] messageVars = new Object[] { transitionKey, nextState, target, relatedTarget, relatedEvaluateState,
+                    constraint.getValidStateNames() };
+            throw newRelationConstraintException(constraint, relatedEvaluateState, LifecycleCommonErrors.VIOLATE_INBOUND_WHILE_RELATION_CONSTRAINT,
+                    messageVars);
         }
+        validateRelatedValidWhiles(relatedTarget, context, relatedStateMachineObject);
     }
 
     private Class<?> findRelationKey(Object relatedTarget, final RelationConstraintMetadata relationConstraintMetadata) {
@@ -170,37 +199,31 @@ public class StateObjectBuilderImpl<S> extends ObjectBuilderBase<StateObject<S>,
     }
 
     @Override
-    public void invokeFromPreStateChangeCallbacks(LifecycleContext<?, S> callbackContext) {
-        if ( preFromStateChangeCallbacksMap.containsKey(callbackContext.getFromStateName()) ) {
-            interatorInvokeCallback(callbackContext, preFromStateChangeCallbacksMap.get(callbackContext.getFromStateName()));
-        }
+    public List<CallbackObject> getFromPreStateChangeCallbacks(String fromStateName) {
+        return getCallbacks(preFromStateChangeCallbacksMap, fromStateName);
     }
 
     @Override
-    public void invokeToPreStateChangeCallbacks(LifecycleContext<?, S> callbackContext) {
-        if ( preToStateChangeCallbacksMap.containsKey(callbackContext.getToStateName()) ) {
-            interatorInvokeCallback(callbackContext, preToStateChangeCallbacksMap.get(callbackContext.getToStateName()));
-        }
+    public List<CallbackObject> getToPreStateChangeCallbacks(String toStateName) {
+        return getCallbacks(preToStateChangeCallbacksMap, toStateName);
     }
 
     @Override
-    public void invokeFromPostStateChangeCallbacks(LifecycleContext<?, S> callbackContext) {
-        if ( postFromStateChangeCallbacksMap.containsKey(callbackContext.getFromStateName()) ) {
-            interatorInvokeCallback(callbackContext, postFromStateChangeCallbacksMap.get(callbackContext.getFromStateName()));
-        }
+    public List<CallbackObject> getFromPostStateChangeCallbacks(String fromStateName) {
+        return getCallbacks(postFromStateChangeCallbacksMap, fromStateName);
     }
 
     @Override
-    public void invokeToPostStateChangeCallbacks(LifecycleContext<?, S> callbackContext) {
-        if ( postToStateChangeCallbacksMap.containsKey(callbackContext.getToStateName()) ) {
-            interatorInvokeCallback(callbackContext, postToStateChangeCallbacksMap.get(callbackContext.getToStateName()));
-        }
+    public List<CallbackObject> getToPostStateChangeCallbacks(String toStateName) {
+        return getCallbacks(postToStateChangeCallbacksMap, toStateName);
     }
 
-    private void interatorInvokeCallback(final LifecycleContext<?, S> callbackContext, final List<CallbackObject> callbackObjects) {
-        for ( CallbackObject callbackObject : callbackObjects ) {
-            callbackObject.doCallback(callbackContext);
+    private List<CallbackObject> getCallbacks(final HashMap<String, List<CallbackObject>> callbacksMap, final String stateName) {
+        final List<CallbackObject> callbackObjects = callbacksMap.get(stateName);
+        if ( null == callbackObjects ) {
+            return Collections.emptyList();
         }
+        return callbackObjects;
     }
 
     @Override
@@ -213,6 +236,7 @@ public class StateObjectBuilderImpl<S> extends ObjectBuilderBase<StateObject<S>,
             callbackObjects.add(callbackObject);
             this.preToStateChangeCallbacksMap.put(toStateClassName, callbackObjects);
         }
+        resetCallbackDispatchTable();
     }
 
     @Override
@@ -225,6 +249,7 @@ public class StateObjectBuilderImpl<S> extends ObjectBuilderBase<StateObject<S>,
             callbackObjects.add(callbackObject);
             this.preFromStateChangeCallbacksMap.put(fromStateClassName, callbackObjects);
         }
+        resetCallbackDispatchTable();
     }
 
     @Override
@@ -237,6 +262,7 @@ public class StateObjectBuilderImpl<S> extends ObjectBuilderBase<StateObject<S>,
             callbackObjects.add(item);
             this.postToStateChangeCallbacksMap.put(toStateClassName, callbackObjects);
         }
+        resetCallbackDispatchTable();
     }
 
     @Override
@@ -249,5 +275,12 @@ public class StateObjectBuilderImpl<S> extends ObjectBuilderBase<StateObject<S>,
             callbackObjects.add(item);
             this.postFromStateChangeCallbacksMap.put(fromStateClassName, callbackObjects);
         }
+        resetCallbackDispatchTable();
+    }
+
+    private void resetCallbackDispatchTable() {
+        if ( getParent() instanceof StateMachineObjectBuilderImpl ) {
+            ((StateMachineObjectBuilderImpl<?>) getParent()).resetCallbackDispatchTable();
+        }
     }
 }
@@ -0,0 +1,112 @@
+package net.madz.lifecycle.meta.instance;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import net.madz.lifecycle.meta.template.RelationConstraintMetadata;
+import net.madz.lifecycle.meta.template.StateMetadata;
+
+/**
+ * A {@link RelationConstraintGroup} compiled against the
+ * {@link StateTransitionTable} of the related state machine object. The
+ * states allowed by any constraint of the group become a bitset over the
+ * related state ordinals, and the {@code otherwise} error message of every
+ * other state is resolved once, so that validating a related object is a
+ * bit test of its state ordinal.
+ */
+public final class CompiledRelationConstraint {
+
+    private final Class<?> relatedTargetClass;
+    private final StateMachineObject<?> relatedStateMachine;
+    private final StateTransitionTable relatedTable;
+    private final RelationConstraintMetadata[] constraints;
+    private final long[] validStates;
+    private final ErrorMessageObject[] errorMessages;
+    private final String validStateNames;
+
+    CompiledRelationConstraint(RelationConstraintMetadata[] constraints, Class<?> relatedTargetClass, StateMachineObject<?> relatedStateMachine) {
+        this.relatedTargetClass = relatedTargetClass;
+        this.relatedStateMachine = relatedStateMachine;
+        this.relatedTable = relatedStateMachine.getTransitionTable();
+        this.constraints = constraints;
+        final int stateCount = relatedTable.getStateCount();
+        this.validStates = new long[( stateCount + 63 ) >>> 6];
+        this.errorMessages = new ErrorMessageObject[stateCount];
+        for ( int ordinal = 0; ordinal < stateCount; ordinal++ ) {
+            final String stateName = relatedTable.getStateName(ordinal);
+            if ( isOnState(constraints, stateName) ) {
+                validStates[ordinal >>> 6] |= 1L << ordinal;
+            } else {
+                errorMessages[ordinal] = findErrorMessage(constraints, stateName);
+            }
+        }
+        final LinkedHashSet<String> names = new LinkedHashSet<>();
+        for ( final RelationConstraintMetadata constraint : constraints ) {
+            for ( final StateMetadata state : constraint.getOnStates() ) {
+                names.add(state.getSimpleName());
+            }
+        }
+        this.validStateNames = Arrays.toString(names.toArray(new String[names.size()]));
+    }
+
+    public Class<?> getRelatedTargetClass() {
+        return relatedTargetClass;
+    }
+
+    public StateMachineObject<?> getRelatedStateMachine() {
+        return relatedStateMachine;
+    }
+
+    /**
+     * @param relatedState
+     *            evaluated state of the related object
+     * @return true if any constraint of the group allows the state
+     */
+    public boolean isValid(String relatedState) {
+        final int ordinal = relatedTable.getStateOrdinal(relatedState);
+        if ( StateTransitionTable.UNKNOWN == ordinal ) {
+            return null != relatedState && isOnState(constraints, relatedState);
+        }
+        return 0L != ( validStates[ordinal >>> 6] & ( 1L << ordinal ) );
+    }
+
+    /**
+     * @return the error message declared by {@code otherwise} for the state,
+     *         or null to report the default error.
+     */
+    public ErrorMessageObject getErrorMessage(String relatedState) {
+        final int ordinal = relatedTable.getStateOrdinal(relatedState);
+        return StateTransitionTable.UNKNOWN == ordinal ? null : errorMessages[ordinal];
+    }
+
+    /**
+     * @return simple names of the allowed states, as reported by errors
+     */
+    public String getValidStateNames() {
+        return validStateNames;
+    }
+
+    private static boolean isOnState(RelationConstraintMetadata[] constraints, String stateName) {
+        for ( final RelationConstraintMetadata constraint : constraints ) {
+            for ( final StateMetadata state : constraint.getOnStates() ) {
+                if ( state.getKeySet().contains(stateName) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static ErrorMessageObject findErrorMessage(RelationConstraintMetadata[] constraints, String stateName) {
+        for ( final RelationConstraintMetadata constraint : constraints ) {
+            for ( final ErrorMessageObject errorMessage : constraint.getErrorMessageObjects() ) {
+                for ( final StateMetadata state : errorMessage.getErrorStates() ) {
+                    if ( state.getKeySet().contains(stateName) ) {
+                        return errorMessage;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
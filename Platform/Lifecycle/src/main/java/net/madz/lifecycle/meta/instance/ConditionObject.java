@@ -2,6 +2,7 @@ package net.madz.lifecycle.meta.instance;
 
 import java.lang.reflect.Method;
 
+import net.madz.bcel.MethodAccessor;
 import net.madz.lifecycle.meta.MetaObject;
 import net.madz.lifecycle.meta.MultiKeyed;
 import net.madz.lifecycle.meta.template.ConditionMetadata;
@@ -9,4 +10,6 @@ import net.madz.lifecycle.meta.template.ConditionMetadata;
 public interface ConditionObject extends MetaObject<ConditionObject, ConditionMetadata>, MultiKeyed {
 
     Method conditionGetter();
+
+    MethodAccessor conditionAccessor();
 }
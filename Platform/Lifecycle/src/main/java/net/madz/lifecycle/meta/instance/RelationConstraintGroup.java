@@ -0,0 +1,106 @@
+package net.madz.lifecycle.meta.instance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.madz.lifecycle.meta.template.RelationConstraintMetadata;
+import net.madz.meta.KeySet;
+
+/**
+ * Relation constraints (valid-whiles or inbound-whiles) of one state which
+ * point to the same related state machine. Groups are merged once and shared
+ * by all transition plans of the owning state machine object.
+ */
+public final class RelationConstraintGroup {
+
+    public static final RelationConstraintGroup[] EMPTY_GROUPS = new RelationConstraintGroup[0];
+    private final String relatedStateMachineName;
+    private final RelationConstraintMetadata[] constraints;
+    private final Object relationKey;
+    private final KeySet keySet;
+    private final RelationConstraintMetadata nonNullableConstraint;
+    private final ConcurrentHashMap<Class<?>, CompiledRelationConstraint> compiledConstraints = new ConcurrentHashMap<>(2);
+
+    private RelationConstraintGroup(String relatedStateMachineName, List<RelationConstraintMetadata> constraints) {
+        this.relatedStateMachineName = relatedStateMachineName;
+        this.constraints = constraints.toArray(new RelationConstraintMetadata[constraints.size()]);
+        this.relationKey = this.constraints[0].getRelationMetadata().getPrimaryKey();
+        this.keySet = this.constraints[0].getKeySet();
+        RelationConstraintMetadata nonNullable = null;
+        for ( final RelationConstraintMetadata item : this.constraints ) {
+            if ( !item.isNullable() ) {
+                nonNullable = item;
+                break;
+            }
+        }
+        this.nonNullableConstraint = nonNullable;
+    }
+
+    public static RelationConstraintGroup[] merge(RelationConstraintMetadata[] relations) {
+        if ( 0 == relations.length ) {
+            return EMPTY_GROUPS;
+        }
+        final HashMap<String, List<RelationConstraintMetadata>> mergedRelations = new HashMap<>();
+        for ( final RelationConstraintMetadata relationMetadata : relations ) {
+            final String relationKey = relationMetadata.getRelatedStateMachine().getDottedPath().getAbsoluteName();
+            List<RelationConstraintMetadata> list = mergedRelations.get(relationKey);
+            if ( null == list ) {
+                list = new ArrayList<>();
+                mergedRelations.put(relationKey, list);
+            }
+            list.add(relationMetadata);
+        }
+        final RelationConstraintGroup[] groups = new RelationConstraintGroup[mergedRelations.size()];
+        int index = 0;
+        for ( final Entry<String, List<RelationConstraintMetadata>> entry : mergedRelations.entrySet() ) {
+            groups[index++] = new RelationConstraintGroup(entry.getKey(), entry.getValue());
+        }
+        return groups;
+    }
+
+    public String getRelatedStateMachineName() {
+        return relatedStateMachineName;
+    }
+
+    public RelationConstraintMetadata[] getConstraints() {
+        return constraints;
+    }
+
+    public Object getRelationKey() {
+        return relationKey;
+    }
+
+    public KeySet getKeySet() {
+        return keySet;
+    }
+
+    public boolean isNullable() {
+        return null == nonNullableConstraint;
+    }
+
+    public RelationConstraintMetadata getNonNullableConstraint() {
+        return nonNullableConstraint;
+    }
+
+    /**
+     * @return the group compiled for related objects of the class, or null if
+     *         it is not compiled yet.
+     */
+    public CompiledRelationConstraint getCompiledConstraint(Class<?> relatedTargetClass) {
+        return compiledConstraints.get(relatedTargetClass);
+    }
+
+    /**
+     * Compiles the group against the state machine object of related objects
+     * of the class. One is kept per class, so that relations to objects of
+     * several classes do not compile again in turn.
+     */
+    public CompiledRelationConstraint compile(Class<?> relatedTargetClass, StateMachineObject<?> relatedStateMachine) {
+        final CompiledRelationConstraint compiled = new CompiledRelationConstraint(constraints, relatedTargetClass, relatedStateMachine);
+        final CompiledRelationConstraint existing = compiledConstraints.putIfAbsent(relatedTargetClass, compiled);
+        return null == existing ? compiled : existing;
+    }
+}
@@ -4,9 +4,9 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import net.madz.bcel.MethodAccessor;
+import net.madz.bcel.MethodAccessorGenerator;
 import net.madz.bcel.intercept.InterceptContext;
-import net.madz.bcel.intercept.UnlockableStack;
-import net.madz.lifecycle.LifecycleContext;
 import net.madz.lifecycle.LifecycleLockStrategry;
 import net.madz.lifecycle.StateConverter;
 import net.madz.lifecycle.meta.MetaObject;
@@ -37,50 +37,35 @@ public interface StateMachineObject<S> extends MetaObject<StateMachineObject<S>,
 
         public FieldStateAccessor(Field stateField) {
             this.stateField = stateField;
+            this.stateField.setAccessible(true);
         }
 
         @SuppressWarnings("unchecked")
         @Override
         public T read(Object reactiveObject) {
-            final boolean accessible = stateField.isAccessible();
             try {
-                if ( !accessible ) {
-                    stateField.setAccessible(true);
-                }
                 return (T) stateField.get(reactiveObject);
             } catch (IllegalArgumentException | IllegalAccessException e) {
                 throw new IllegalStateException(e);
-            } finally {
-                if ( !accessible ) {
-                    stateField.setAccessible(false);
-                }
             }
         }
 
         @Override
         public void write(Object reactiveObject, T state) {
-            final boolean accessible = stateField.isAccessible();
             try {
-                if ( !accessible ) {
-                    stateField.setAccessible(true);
-                }
                 stateField.set(reactiveObject, state);
             } catch (IllegalArgumentException | IllegalAccessException e) {
                 throw new IllegalStateException(e);
-            } finally {
-                if ( !accessible ) {
-                    stateField.setAccessible(false);
-                }
             }
         }
     }
     public final static class PropertyAccessor<T> implements StateAccessor<T> {
 
-        private final Method getter;
+        private final MethodAccessor getter;
         private final Setter<T> setter;
 
         public PropertyAccessor(Method getter, Setter<T> setter) {
-            this.getter = getter;
+            this.getter = MethodAccessorGenerator.create(getter);
             this.setter = setter;
         }
 
@@ -89,22 +74,14 @@ public interface StateMachineObject<S> extends MetaObject<StateMachineObject<S>,
         public T read(Object reactiveObject) {
             try {
                 return (T) getter.invoke(reactiveObject);
-            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+            } catch (IllegalArgumentException | ClassCastException | InvocationTargetException e) {
                 throw new IllegalStateException(e);
             }
         }
 
         @Override
         public void write(Object reactiveObject, T state) {
-            // try {
-            // setter.setAccessible(true);
             setter.invoke(reactiveObject, state);
-            // } catch (IllegalAccessException | IllegalArgumentException |
-            // InvocationTargetException e) {
-            // throw new IllegalStateException(e);
-            // } finally {
-            // setter.setAccessible(false);
-            // }
         }
     }
     public static interface Setter<T> {
@@ -113,28 +90,25 @@ public interface StateMachineObject<S> extends MetaObject<StateMachineObject<S>,
     }
     public static class EagerSetterImpl<T> implements Setter<T> {
 
-        private final Method setter;
+        private final MethodAccessor setter;
 
         public EagerSetterImpl(Method setter) {
-            this.setter = setter;
+            this.setter = MethodAccessorGenerator.create(setter);
         }
 
         @Override
         public void invoke(Object reactiveObject, T state) {
             try {
-                setter.setAccessible(true);
                 setter.invoke(reactiveObject, state);
-            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+            } catch (IllegalArgumentException | ClassCastException | InvocationTargetException e) {
                 throw new IllegalStateException(e);
-            } finally {
-                setter.setAccessible(false);
             }
         }
     }
     public static class LazySetterImpl<T> implements Setter<T> {
 
         private final Method getter;
-        private volatile Method setterMethod;
+        private volatile MethodAccessor setterAccessor;
 
         public LazySetterImpl(Method getter) {
             this.getter = getter;
@@ -142,20 +116,17 @@ public interface StateMachineObject<S> extends MetaObject<StateMachineObject<S>,
 
         @Override
         public void invoke(Object reactiveObject, T state) {
-            if ( null == setterMethod ) {
+            if ( null == setterAccessor ) {
                 synchronized (this) {
-                    if ( null == setterMethod ) {
-                        setterMethod = findSetter(reactiveObject);
+                    if ( null == setterAccessor ) {
+                        setterAccessor = MethodAccessorGenerator.create(findSetter(reactiveObject));
                     }
                 }
             }
             try {
-                setterMethod.setAccessible(true);
-                setterMethod.invoke(reactiveObject, state);
-            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+                setterAccessor.invoke(reactiveObject, state);
+            } catch (IllegalArgumentException | ClassCastException | InvocationTargetException e) {
                 throw new IllegalStateException(e);
-            } finally {
-                setterMethod.setAccessible(false);
             }
         }
 
@@ -195,18 +166,56 @@ public interface StateMachineObject<S> extends MetaObject<StateMachineObject<S>,
         public void write(Object reactiveObject, String state) {
             rawAccessor.write(reactiveObject, stateConverter.fromState(state));
         }
+
+        public StateConverter<T> getStateConverter() {
+            return stateConverter;
+        }
+
+        public StateAccessor<T> getRawAccessor() {
+            return rawAccessor;
+        }
     }
 
     String evaluateState(Object target);
 
+    /**
+     * @return ordinal of the target's state in the {@link #getTransitionTable()},
+     *         or {@link StateTransitionTable#UNKNOWN} if the state is null or
+     *         not a state of the state machine. Enum state indicators
+     *         converted by {@link net.madz.lifecycle.EnumStateConverter} are
+     *         mapped without converting to state names.
+     */
+    int evaluateStateOrdinal(Object target);
+
     void setTargetState(Object target, String state);
 
     String getNextState(Object target, Object transtionKey);
 
+    TransitionPlan getTransitionPlan(String fromState, Object transitionKey);
+
+    /**
+     * Same as {@link #getTransitionPlan(String, Object)} with the transition
+     * ordinal already resolved from the {@link #getTransitionTable()}, so that
+     * callers that keep the ordinal skip resolving the transition key.
+     */
+    TransitionPlan getTransitionPlan(String fromState, int transitionOrdinal, Object transitionKey);
+
+    /**
+     * Same as {@link #getTransitionPlan(String, int, Object)} with the from
+     * state already resolved by {@link #evaluateStateOrdinal(Object)}.
+     */
+    TransitionPlan getTransitionPlan(int fromStateOrdinal, int transitionOrdinal, Object transitionKey);
+
+    StateTransitionTable getTransitionTable();
+
+    String getNextState(Object target, TransitionPlan plan);
+
     void validateValidWhiles(final InterceptContext<?, ?> context);
 
     void validateInboundWhiles(final InterceptContext<?, ?> context);
 
+    void validateInboundWhiles(final TransitionPlan plan, final InterceptContext<?, ?> context);
+
     boolean evaluateConditionBeforeTransition(Object transtionKey);
 
     LifecycleLockStrategry getLifecycleLockStrategy();
@@ -219,11 +228,16 @@ public interface StateMachineObject<S> extends MetaObject<StateMachineObject<S>,
 
     StateMachineObject<?> getRelatedStateMachine(Object target, Object relativeKey);
 
-    void validateValidWhiles(Object target, UnlockableStack stack);
+    void validateValidWhiles(Object target, InterceptContext<?, ?> context);
 
-    void performPreStateChangeCallback(LifecycleContext<?, S> callbackContext);
+    /**
+     * Invokes the callbacks registered for the from and to states of the
+     * context. The LifecycleContext passed to callbacks is only created when
+     * at least one callback applies.
+     */
+    void performPreStateChangeCallback(InterceptContext<?, ?> context);
 
-    void performPostStateChangeCallback(LifecycleContext<?, S> callbackContext);
+    void performPostStateChangeCallback(InterceptContext<?, ?> context);
 
     StateConverter<S> getStateConverter();
 
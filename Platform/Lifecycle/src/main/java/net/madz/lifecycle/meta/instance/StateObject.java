@@ -1,27 +1,27 @@
 package net.madz.lifecycle.meta.instance;
 
-import net.madz.bcel.intercept.UnlockableStack;
-import net.madz.lifecycle.LifecycleContext;
+import java.util.List;
+
+import net.madz.bcel.intercept.InterceptContext;
 import net.madz.lifecycle.meta.MetaObject;
 import net.madz.lifecycle.meta.MultiKeyed;
 import net.madz.lifecycle.meta.impl.builder.CallbackObject;
-import net.madz.lifecycle.meta.template.RelationConstraintMetadata;
 import net.madz.lifecycle.meta.template.StateMetadata;
 
 public interface StateObject<S> extends MetaObject<StateObject<S>, StateMetadata> , MultiKeyed {
 
-    void verifyValidWhile(Object target, RelationConstraintMetadata[] relation, Object relationInstance, UnlockableStack stack);
+    void verifyValidWhile(Object target, RelationConstraintGroup relation, Object relationInstance, InterceptContext<?, ?> context);
 
-    void verifyInboundWhile(Object transitionKey, Object target, String nextState, RelationConstraintMetadata[] relation, Object relationInstance,
-            UnlockableStack stack);
+    void verifyInboundWhile(Object transitionKey, Object target, String nextState, RelationConstraintGroup relation, Object relationInstance,
+            InterceptContext<?, ?> context);
 
-    void invokeFromPreStateChangeCallbacks(LifecycleContext<?, S> callbackContext);
+    List<CallbackObject> getFromPreStateChangeCallbacks(String fromStateName);
 
-    void invokeToPreStateChangeCallbacks(LifecycleContext<?, S> callbackContext);
+    List<CallbackObject> getToPreStateChangeCallbacks(String toStateName);
 
-    void invokeFromPostStateChangeCallbacks(LifecycleContext<?, S> callbackContext);
+    List<CallbackObject> getFromPostStateChangeCallbacks(String fromStateName);
 
-    void invokeToPostStateChangeCallbacks(LifecycleContext<?, S> callbackContext);
+    List<CallbackObject> getToPostStateChangeCallbacks(String toStateName);
 
     void addPreToCallbackObject(Class<?> stateClass, CallbackObject callbackObject);
 
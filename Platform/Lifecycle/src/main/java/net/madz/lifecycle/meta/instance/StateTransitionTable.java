@@ -0,0 +1,146 @@
+package net.madz.lifecycle.meta.instance;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.madz.lifecycle.meta.template.StateMachineMetadata;
+import net.madz.lifecycle.meta.template.StateMetadata;
+import net.madz.lifecycle.meta.template.TransitionMetadata;
+
+/**
+ * Flattened view of one StateMachineObject: every state and every transition
+ * of the state machine hierarchy, including super and composite state
+ * machines, gets a dense ordinal, and the function of each (state,
+ * transition) pair is resolved once into a matrix. Runtime lookups become
+ * array indexing instead of walking the metadata hierarchy with hashed keys.
+ *
+ * TransitionPlans are compiled lazily by the owning StateMachineObject and
+ * published into the plan cells with compare-and-set.
+ */
+public final class StateTransitionTable {
+
+    public static final int UNKNOWN = -1;
+    private final StateMachineMetadata metaType;
+    private final String[] stateNames;
+    private final HashMap<String, Integer> stateOrdinals = new HashMap<>();
+    private final TransitionMetadata[] transitions;
+    private final IdentityHashMap<TransitionMetadata, Integer> transitionOrdinals = new IdentityHashMap<>();
+    private final ConcurrentHashMap<Object, Integer> transitionKeyOrdinals = new ConcurrentHashMap<>();
+    private final FunctionMetadata[][] functions;
+    private final boolean[][] valid;
+    private final AtomicReferenceArray<TransitionPlan> plans;
+
+    public StateTransitionTable(StateMachineMetadata metaType, StateObject<?>[] states) {
+        this.metaType = metaType;
+        this.stateNames = new String[states.length];
+        for ( int i = 0; i < states.length; i++ ) {
+            stateNames[i] = states[i].getMetaType().getSimpleName();
+            if ( !stateOrdinals.containsKey(stateNames[i]) ) {
+                stateOrdinals.put(stateNames[i], i);
+            }
+        }
+        this.transitions = metaType.getAllTransitions();
+        for ( int i = 0; i < transitions.length; i++ ) {
+            if ( !transitionOrdinals.containsKey(transitions[i]) ) {
+                transitionOrdinals.put(transitions[i], i);
+            }
+        }
+        this.functions = new FunctionMetadata[states.length][transitions.length];
+        this.valid = new boolean[states.length][transitions.length];
+        for ( int s = 0; s < states.length; s++ ) {
+            final StateMetadata state = states[s].getMetaType();
+            for ( int t = 0; t < transitions.length; t++ ) {
+                // An overriding transition may be bound to a state only by
+                // the keys it inherits, so every key has to be tried.
+                for ( final Object transitionKey : transitions[t].getKeySet() ) {
+                    if ( state.isTransitionValid(transitionKey) ) {
+                        valid[s][t] = true;
+                        functions[s][t] = state.getFunctionMetadata(transitionKey);
+                        break;
+                    }
+                }
+            }
+        }
+        this.plans = new AtomicReferenceArray<>(states.length * transitions.length);
+    }
+
+    public int getStateCount() {
+        return stateNames.length;
+    }
+
+    public int getTransitionCount() {
+        return transitions.length;
+    }
+
+    /**
+     * @return ordinal of the state with the simple name, or UNKNOWN.
+     */
+    public int getStateOrdinal(String stateName) {
+        final Integer ordinal = stateOrdinals.get(stateName);
+        return null == ordinal ? UNKNOWN : ordinal.intValue();
+    }
+
+    public String getStateName(int stateOrdinal) {
+        return stateNames[stateOrdinal];
+    }
+
+    /**
+     * @param transitionKey
+     *            any key of the transition, such as its class or its name.
+     * @return ordinal of the transition, or UNKNOWN if the key does not
+     *         resolve to a transition of the state machine.
+     */
+    public int getTransitionOrdinal(Object transitionKey) {
+        Integer ordinal = transitionKeyOrdinals.get(transitionKey);
+        if ( null == ordinal ) {
+            final TransitionMetadata transition = metaType.getTransition(transitionKey);
+            ordinal = null == transition ? null : transitionOrdinals.get(transition);
+            if ( null == ordinal ) {
+                ordinal = UNKNOWN;
+            }
+            transitionKeyOrdinals.putIfAbsent(transitionKey, ordinal);
+        }
+        return ordinal.intValue();
+    }
+
+    public TransitionMetadata getTransition(int transitionOrdinal) {
+        return transitions[transitionOrdinal];
+    }
+
+    public boolean isTransitionValid(int stateOrdinal, int transitionOrdinal) {
+        return valid[stateOrdinal][transitionOrdinal];
+    }
+
+    /**
+     * @return the function of the transition on the state, or null if the
+     *         transition is not valid on the state.
+     */
+    public FunctionMetadata getFunctionMetadata(int stateOrdinal, int transitionOrdinal) {
+        return functions[stateOrdinal][transitionOrdinal];
+    }
+
+    /**
+     * @return the compiled plan, or null if not compiled yet.
+     */
+    public TransitionPlan getTransitionPlan(int stateOrdinal, int transitionOrdinal) {
+        return plans.get(cell(stateOrdinal, transitionOrdinal));
+    }
+
+    /**
+     * @return the plan published into the cell, which is the existing one if
+     *         another thread compiled the same plan first.
+     */
+    public TransitionPlan putTransitionPlanIfAbsent(int stateOrdinal, int transitionOrdinal, TransitionPlan plan) {
+        final int cell = cell(stateOrdinal, transitionOrdinal);
+        if ( plans.compareAndSet(cell, null, plan) ) {
+            return plan;
+        }
+        return plans.get(cell);
+    }
+
+    private int cell(int stateOrdinal, int transitionOrdinal) {
+        return stateOrdinal * transitions.length + transitionOrdinal;
+    }
+}
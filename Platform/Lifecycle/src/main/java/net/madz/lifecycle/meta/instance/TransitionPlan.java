@@ -0,0 +1,174 @@
+package net.madz.lifecycle.meta.instance;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.madz.lifecycle.annotations.relation.Relation;
+import net.madz.lifecycle.meta.template.StateMetadata;
+import net.madz.lifecycle.meta.template.TransitionMetadata;
+
+/**
+ * Immutable execution plan of one transition from one state, compiled once
+ * per (StateMachineObject, fromState, transitionKey) and reused by every
+ * following interception.
+ */
+public final class TransitionPlan {
+
+    private final StateMachineObject<?> stateMachine;
+    private final Object transitionKey;
+    private final StateMetadata fromState;
+    private final StateObject<?> fromStateObject;
+    private final TransitionMetadata transition;
+    private final FunctionMetadata functionMetadata;
+    private final String nextState;
+    private final ConditionObject conditionObject;
+    private final boolean nextStateEvaluatedBeforeTransition;
+    private final Map<String, RelationConstraintGroup[]> inboundWhileGroups;
+    private final ConcurrentHashMap<Method, RelationParameterBinding> relationParameterBindings = new ConcurrentHashMap<>();
+
+    public TransitionPlan(StateMachineObject<?> stateMachine, Object transitionKey, StateMetadata fromState, StateObject<?> fromStateObject,
+            TransitionMetadata transition, FunctionMetadata functionMetadata, String nextState, ConditionObject conditionObject,
+            boolean nextStateEvaluatedBeforeTransition, Map<String, RelationConstraintGroup[]> inboundWhileGroups) {
+        this.stateMachine = stateMachine;
+        this.transitionKey = transitionKey;
+        this.fromState = fromState;
+        this.fromStateObject = fromStateObject;
+        this.transition = transition;
+        this.functionMetadata = functionMetadata;
+        this.nextState = nextState;
+        this.conditionObject = conditionObject;
+        this.nextStateEvaluatedBeforeTransition = nextStateEvaluatedBeforeTransition;
+        this.inboundWhileGroups = Collections.unmodifiableMap(new HashMap<>(inboundWhileGroups));
+    }
+
+    public StateMachineObject<?> getStateMachine() {
+        return stateMachine;
+    }
+
+    public Object getTransitionKey() {
+        return transitionKey;
+    }
+
+    public StateMetadata getFromState() {
+        return fromState;
+    }
+
+    public StateObject<?> getFromStateObject() {
+        return fromStateObject;
+    }
+
+    public TransitionMetadata getTransition() {
+        return transition;
+    }
+
+    public FunctionMetadata getFunctionMetadata() {
+        return functionMetadata;
+    }
+
+    /**
+     * @return the simple name of the next state when there is exactly one
+     *         candidate, otherwise null and the next state has to be judged
+     *         with the condition object.
+     */
+    public String getNextState() {
+        return nextState;
+    }
+
+    public ConditionObject getConditionObject() {
+        return conditionObject;
+    }
+
+    public boolean isNextStateEvaluatedBeforeTransition() {
+        return nextStateEvaluatedBeforeTransition;
+    }
+
+    /**
+     * @return merged inbound-while constraints of the next state, or null if
+     *         the state is not one of the candidates known at compile time.
+     */
+    public RelationConstraintGroup[] getInboundWhileGroups(String nextState) {
+        return inboundWhileGroups.get(nextState);
+    }
+
+    public RelationParameterBinding getRelationParameterBinding(Method method) {
+        RelationParameterBinding binding = relationParameterBindings.get(method);
+        if ( null == binding ) {
+            binding = RelationParameterBinding.create(method, inboundWhileGroups.values());
+            final RelationParameterBinding existing = relationParameterBindings.putIfAbsent(method, binding);
+            if ( null != existing ) {
+                binding = existing;
+            }
+        }
+        return binding;
+    }
+
+    /**
+     * Maps relation constraint groups to the index of the transition method
+     * parameter annotated with the matching @Relation.
+     */
+    public static final class RelationParameterBinding {
+
+        public static final RelationParameterBinding EMPTY = new RelationParameterBinding(new IdentityHashMap<RelationConstraintGroup, Integer>());
+        private final IdentityHashMap<RelationConstraintGroup, Integer> parameterIndexes;
+
+        private RelationParameterBinding(IdentityHashMap<RelationConstraintGroup, Integer> parameterIndexes) {
+            this.parameterIndexes = parameterIndexes;
+        }
+
+        public static RelationParameterBinding create(Method method, Iterable<RelationConstraintGroup[]> groupsCollection) {
+            final HashMap<Class<?>, Integer> relationParameters = scanRelationParameters(method);
+            if ( relationParameters.isEmpty() ) {
+                return EMPTY;
+            }
+            final IdentityHashMap<RelationConstraintGroup, Integer> parameterIndexes = new IdentityHashMap<>();
+            for ( final RelationConstraintGroup[] groups : groupsCollection ) {
+                for ( final RelationConstraintGroup group : groups ) {
+                    final Integer index = findParameterIndex(relationParameters, group);
+                    if ( null != index ) {
+                        parameterIndexes.put(group, index);
+                    }
+                }
+            }
+            if ( parameterIndexes.isEmpty() ) {
+                return EMPTY;
+            }
+            return new RelationParameterBinding(parameterIndexes);
+        }
+
+        public static HashMap<Class<?>, Integer> scanRelationParameters(Method method) {
+            final HashMap<Class<?>, Integer> relationParameters = new HashMap<>();
+            int parameterIndex = 0;
+            for ( Annotation[] annotations : method.getParameterAnnotations() ) {
+                for ( Annotation annotation : annotations ) {
+                    if ( Relation.class == annotation.annotationType() ) {
+                        relationParameters.put(( (Relation) annotation ).value(), parameterIndex);
+                    }
+                }
+                parameterIndex++;
+            }
+            return relationParameters;
+        }
+
+        public static Integer findParameterIndex(HashMap<Class<?>, Integer> relationParameters, RelationConstraintGroup group) {
+            for ( final Object key : group.getKeySet() ) {
+                if ( relationParameters.containsKey(key) ) {
+                    return relationParameters.get(key);
+                }
+            }
+            return null;
+        }
+
+        public Object resolve(RelationConstraintGroup group, Object[] arguments) {
+            final Integer index = parameterIndexes.get(group);
+            if ( null == index ) {
+                return null;
+            }
+            return arguments[index];
+        }
+    }
+}
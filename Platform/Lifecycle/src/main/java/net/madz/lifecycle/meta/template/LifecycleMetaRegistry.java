@@ -1,7 +1,11 @@
 package net.madz.lifecycle.meta.template;
 
 import net.madz.lifecycle.LifecycleEventHandler;
+import net.madz.lifecycle.index.LifecycleStateIndex;
+import net.madz.lifecycle.journal.TransitionJournal;
 import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.metrics.LifecycleMetrics;
+import net.madz.lifecycle.timeout.TransitionTimeoutService;
 import net.madz.verification.VerificationException;
 
 public interface LifecycleMetaRegistry {
@@ -13,4 +17,26 @@ public interface LifecycleMetaRegistry {
     StateMachineObject<?> loadStateMachineObject(Class<?> returnType) throws VerificationException;
 
     LifecycleEventHandler getLifecycleEventHandler();
+
+    LifecycleMetrics getLifecycleMetrics();
+
+    TransitionTimeoutService getTransitionTimeoutService();
+
+    TransitionJournal getTransitionJournal();
+
+    LifecycleStateIndex getLifecycleStateIndex();
+
+    /**
+     * @return true while state machines are built from classes that had
+     *         passed verification with the same bytecode, so that builders
+     *         can skip syntax verification.
+     */
+    boolean isMetadataVerified();
+
+    /**
+     * Stops the background services of the registry, such as the transition
+     * timeout service, the transition journal and an asynchronous event
+     * dispatcher.
+     */
+    void shutdown();
 }
@@ -90,4 +90,10 @@ public interface StateMetadata extends Recoverable, MetaType<StateMetadata> {
     RelationConstraintMetadata[] getInboundWhiles();
 
     void setType(StateTypeEnum type);
+
+    /**
+     * @return priority of @Running or recoverPriority of @Corrupted states,
+     *         otherwise 0
+     */
+    int getPriority();
 }
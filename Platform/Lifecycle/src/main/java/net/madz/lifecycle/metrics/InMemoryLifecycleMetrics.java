@@ -0,0 +1,328 @@
+package net.madz.lifecycle.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.metrics.TransitionSample.Phase;
+
+/**
+ * Default {@link LifecycleMetrics}, aggregating counters, failure counts and
+ * per phase latency histograms in memory for every state machine and
+ * transition. Aggregates are registered as MXBeans in the platform MBean
+ * server under the {@value #JMX_DOMAIN} domain when first recorded.
+ */
+public class InMemoryLifecycleMetrics implements LifecycleMetrics {
+
+    public static final String JMX_DOMAIN = "net.madz.lifecycle";
+    public static final String TOTAL = "TOTAL";
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    private static final Phase[] PHASES = Phase.values();
+    private final ConcurrentHashMap<StateMachineObject<?>, StateMachineMetrics> stateMachineMetrics = new ConcurrentHashMap<>();
+    private final boolean jmxEnabled;
+
+    public InMemoryLifecycleMetrics() {
+        this(true);
+    }
+
+    public InMemoryLifecycleMetrics(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    @Override
+    public void onTransition(TransitionSample sample) {
+        final StateMachineMetrics machineMetrics = getStateMachineMetrics(sample.getStateMachine());
+        final TransitionMetrics transitionMetrics = machineMetrics.getTransitionMetrics(sample.getTransitionKey());
+        final String errorCode = sample.isSuccess() ? null : errorCodeOf(sample.getFailureCause());
+        machineMetrics.record(errorCode);
+        transitionMetrics.record(sample, errorCode);
+    }
+
+    private static String errorCodeOf(Throwable failureCause) {
+        if ( failureCause instanceof LifecycleException ) {
+            return ( (LifecycleException) failureCause ).getErrorCode();
+        } else if ( null == failureCause ) {
+            return "Unknown";
+        } else {
+            return failureCause.getClass().getName();
+        }
+    }
+
+    public StateMachineMetrics getStateMachineMetrics(StateMachineObject<?> stateMachine) {
+        StateMachineMetrics metrics = stateMachineMetrics.get(stateMachine);
+        if ( null == metrics ) {
+            final StateMachineMetrics created = new StateMachineMetrics(stateMachine.getDottedPath().getAbsoluteName());
+            metrics = stateMachineMetrics.putIfAbsent(stateMachine, created);
+            if ( null == metrics ) {
+                metrics = created;
+                created.objectName = registerMBean(created, "type=StateMachine,name=" + ObjectName.quote(created.name));
+            }
+        }
+        return metrics;
+    }
+
+    public Collection<StateMachineMetrics> getStateMachineMetrics() {
+        return Collections.unmodifiableCollection(stateMachineMetrics.values());
+    }
+
+    public void reset() {
+        for ( final StateMachineMetrics metrics : stateMachineMetrics.values() ) {
+            metrics.reset();
+            for ( final TransitionMetrics transitionMetrics : metrics.transitionMetrics.values() ) {
+                transitionMetrics.reset();
+            }
+        }
+    }
+
+    /**
+     * Unregisters all MXBeans of this instance.
+     */
+    public void close() {
+        if ( !jmxEnabled ) {
+            return;
+        }
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for ( final StateMachineMetrics metrics : stateMachineMetrics.values() ) {
+            unregisterMBean(server, metrics.objectName);
+            for ( final TransitionMetrics transitionMetrics : metrics.transitionMetrics.values() ) {
+                unregisterMBean(server, transitionMetrics.objectName);
+            }
+        }
+    }
+
+    private void unregisterMBean(MBeanServer server, ObjectName objectName) {
+        try {
+            if ( null != objectName && server.isRegistered(objectName) ) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Cannot unregister MBean " + objectName, e);
+        }
+    }
+
+    private ObjectName registerMBean(Object mbean, String properties) {
+        if ( !jmxEnabled ) {
+            return null;
+        }
+        try {
+            final ObjectName objectName = new ObjectName(JMX_DOMAIN + ":" + properties);
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            // Latest registry wins, e.g. after state machines are reloaded.
+            unregisterMBean(server, objectName);
+            server.registerMBean(mbean, objectName);
+            return objectName;
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Cannot register lifecycle metrics MBean: " + properties, e);
+            return null;
+        }
+    }
+
+    private static Map<String, Long> snapshot(ConcurrentHashMap<String, AtomicLong> counters) {
+        final TreeMap<String, Long> result = new TreeMap<>();
+        for ( final Map.Entry<String, AtomicLong> entry : counters.entrySet() ) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    private static void increment(ConcurrentHashMap<String, AtomicLong> counters, String key) {
+        AtomicLong counter = counters.get(key);
+        if ( null == counter ) {
+            final AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(key, created);
+            if ( null == counter ) {
+                counter = created;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    public class StateMachineMetrics implements StateMachineMetricsMXBean {
+
+        private final String name;
+        private final AtomicLong transitionCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final ConcurrentHashMap<String, AtomicLong> failureCounts = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Object, TransitionMetrics> transitionMetrics = new ConcurrentHashMap<>();
+        private volatile ObjectName objectName;
+
+        private StateMachineMetrics(String name) {
+            this.name = name;
+        }
+
+        private void record(String errorCode) {
+            transitionCount.incrementAndGet();
+            if ( null != errorCode ) {
+                failureCount.incrementAndGet();
+                increment(failureCounts, errorCode);
+            }
+        }
+
+        public TransitionMetrics getTransitionMetrics(Object transitionKey) {
+            TransitionMetrics metrics = transitionMetrics.get(transitionKey);
+            if ( null == metrics ) {
+                final String transition = transitionKey instanceof Class ? ( (Class<?>) transitionKey ).getSimpleName() : String.valueOf(transitionKey);
+                final TransitionMetrics created = new TransitionMetrics(name, transition);
+                metrics = transitionMetrics.putIfAbsent(transitionKey, created);
+                if ( null == metrics ) {
+                    metrics = created;
+                    created.objectName = registerMBean(created, "type=Transition,stateMachine=" + ObjectName.quote(name) + ",name="
+                            + ObjectName.quote(transition));
+                }
+            }
+            return metrics;
+        }
+
+        public Collection<TransitionMetrics> getTransitionMetrics() {
+            return Collections.unmodifiableCollection(transitionMetrics.values());
+        }
+
+        @Override
+        public String getStateMachine() {
+            return name;
+        }
+
+        @Override
+        public long getTransitionCount() {
+            return transitionCount.get();
+        }
+
+        @Override
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+
+        @Override
+        public Map<String, Long> getFailureCounts() {
+            return snapshot(failureCounts);
+        }
+
+        @Override
+        public void reset() {
+            transitionCount.set(0L);
+            failureCount.set(0L);
+            failureCounts.clear();
+        }
+    }
+    public static class TransitionMetrics implements TransitionMetricsMXBean {
+
+        private final String stateMachine;
+        private final String transition;
+        private final AtomicLong transitionCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final ConcurrentHashMap<String, AtomicLong> failureCounts = new ConcurrentHashMap<>();
+        private final LatencyHistogram[] phaseHistograms = new LatencyHistogram[PHASES.length];
+        private final LatencyHistogram totalHistogram = new LatencyHistogram();
+        private volatile ObjectName objectName;
+
+        private TransitionMetrics(String stateMachine, String transition) {
+            this.stateMachine = stateMachine;
+            this.transition = transition;
+            for ( int i = 0; i < phaseHistograms.length; i++ ) {
+                phaseHistograms[i] = new LatencyHistogram();
+            }
+        }
+
+        private void record(TransitionSample sample, String errorCode) {
+            transitionCount.incrementAndGet();
+            if ( null != errorCode ) {
+                failureCount.incrementAndGet();
+                increment(failureCounts, errorCode);
+            }
+            for ( final Phase phase : PHASES ) {
+                final long nanos = sample.getPhaseNanos(phase);
+                if ( 0L < nanos ) {
+                    phaseHistograms[phase.ordinal()].record(nanos);
+                }
+            }
+            totalHistogram.record(sample.getDurationNanos());
+        }
+
+        public LatencyHistogram getHistogram(Phase phase) {
+            return phaseHistograms[phase.ordinal()];
+        }
+
+        public LatencyHistogram getTotalHistogram() {
+            return totalHistogram;
+        }
+
+        @Override
+        public String getStateMachine() {
+            return stateMachine;
+        }
+
+        @Override
+        public String getTransition() {
+            return transition;
+        }
+
+        @Override
+        public long getTransitionCount() {
+            return transitionCount.get();
+        }
+
+        @Override
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+
+        @Override
+        public Map<String, Long> getFailureCounts() {
+            return snapshot(failureCounts);
+        }
+
+        @Override
+        public Map<String, Long> getMeanNanos() {
+            final LinkedHashMap<String, Long> result = new LinkedHashMap<>();
+            for ( final Phase phase : PHASES ) {
+                result.put(phase.name(), getHistogram(phase).getMeanNanos());
+            }
+            result.put(TOTAL, totalHistogram.getMeanNanos());
+            return result;
+        }
+
+        @Override
+        public Map<String, Long> getPercentile99Nanos() {
+            final LinkedHashMap<String, Long> result = new LinkedHashMap<>();
+            for ( final Phase phase : PHASES ) {
+                result.put(phase.name(), getHistogram(phase).getPercentileNanos(99D));
+            }
+            result.put(TOTAL, totalHistogram.getPercentileNanos(99D));
+            return result;
+        }
+
+        @Override
+        public Map<String, Long> getMaxNanos() {
+            final LinkedHashMap<String, Long> result = new LinkedHashMap<>();
+            for ( final Phase phase : PHASES ) {
+                result.put(phase.name(), getHistogram(phase).getMaxNanos());
+            }
+            result.put(TOTAL, totalHistogram.getMaxNanos());
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            transitionCount.set(0L);
+            failureCount.set(0L);
+            failureCounts.clear();
+            for ( final LatencyHistogram histogram : phaseHistograms ) {
+                histogram.reset();
+            }
+            totalHistogram.reset();
+        }
+    }
+}
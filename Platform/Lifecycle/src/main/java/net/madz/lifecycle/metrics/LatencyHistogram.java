@@ -0,0 +1,78 @@
+package net.madz.lifecycle.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with power of two nanosecond buckets, bucket
+ * i counting latencies in [2^(i-1), 2^i). Percentiles are reported as the
+ * upper bound of the bucket, so they are accurate within a factor of two.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        final long value = Math.max(0L, nanos);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+        count.incrementAndGet();
+        totalNanos.addAndGet(value);
+        long max = maxNanos.get();
+        while ( value > max && !maxNanos.compareAndSet(max, value) ) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        final long n = count.get();
+        return 0L == n ? 0L : totalNanos.get() / n;
+    }
+
+    /**
+     * @param percentile
+     *            in (0, 100]
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = 0L;
+        for ( int i = 0; i < BUCKETS; i++ ) {
+            total += buckets.get(i);
+        }
+        if ( 0L == total ) {
+            return 0L;
+        }
+        final long rank = (long) Math.ceil(total * percentile / 100D);
+        long seen = 0L;
+        for ( int i = 0; i < BUCKETS; i++ ) {
+            seen += buckets.get(i);
+            if ( seen >= rank ) {
+                return 0 == i ? 0L : Math.min(( 1L << i ) - 1, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    public void reset() {
+        for ( int i = 0; i < BUCKETS; i++ ) {
+            buckets.set(i, 0L);
+        }
+        count.set(0L);
+        totalNanos.set(0L);
+        maxNanos.set(0L);
+    }
+}
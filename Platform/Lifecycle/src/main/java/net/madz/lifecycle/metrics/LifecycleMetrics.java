@@ -0,0 +1,23 @@
+package net.madz.lifecycle.metrics;
+
+/**
+ * Metrics SPI of the lifecycle engine. An implementation is enabled by
+ * registering its class, which must have a no-arg constructor, in
+ * {@code @LifecycleRegistry} like a lifecycle event handler. While no
+ * implementation is registered, the engine takes no timings at all.
+ *
+ * {@link #onTransition(TransitionSample)} is called once per intercepted
+ * transition, successful or not, on the transition thread after the event
+ * has been fired, so implementations have to be thread safe and cheap.
+ *
+ * @see InMemoryLifecycleMetrics
+ */
+public interface LifecycleMetrics {
+
+    /**
+     * @param sample
+     *            is only valid during the call, since the engine reuses it
+     *            for later transitions.
+     */
+    void onTransition(TransitionSample sample);
+}
@@ -0,0 +1,20 @@
+package net.madz.lifecycle.metrics;
+
+import java.util.Map;
+
+public interface StateMachineMetricsMXBean {
+
+    String getStateMachine();
+
+    long getTransitionCount();
+
+    long getFailureCount();
+
+    /**
+     * @return failure counts by LifecycleCommonErrors code, or by exception
+     *         class name for failures other than LifecycleException
+     */
+    Map<String, Long> getFailureCounts();
+
+    void reset();
+}
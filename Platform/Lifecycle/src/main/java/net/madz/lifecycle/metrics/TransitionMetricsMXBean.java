@@ -0,0 +1,32 @@
+package net.madz.lifecycle.metrics;
+
+import java.util.Map;
+
+public interface TransitionMetricsMXBean {
+
+    String getStateMachine();
+
+    String getTransition();
+
+    long getTransitionCount();
+
+    long getFailureCount();
+
+    /**
+     * @return failure counts by LifecycleCommonErrors code, or by exception
+     *         class name for failures other than LifecycleException
+     */
+    Map<String, Long> getFailureCounts();
+
+    /**
+     * @return mean nanoseconds by phase name, and TOTAL for the whole
+     *         transition
+     */
+    Map<String, Long> getMeanNanos();
+
+    Map<String, Long> getPercentile99Nanos();
+
+    Map<String, Long> getMaxNanos();
+
+    void reset();
+}
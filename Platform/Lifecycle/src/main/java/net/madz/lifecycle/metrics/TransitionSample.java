@@ -0,0 +1,51 @@
+package net.madz.lifecycle.metrics;
+
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+
+/**
+ * Timings and outcome of one intercepted transition, with nanosecond
+ * resolution per {@link Phase}.
+ */
+public interface TransitionSample {
+
+    public static enum Phase {
+        /**
+         * Evaluating the from state, and the next state after the method.
+         */
+        STATE_EVALUATION,
+        /**
+         * Checking @ValidWhile relation constraints, including locking the
+         * related objects.
+         */
+        VALID_WHILE,
+        /**
+         * Checking @InboundWhile relation constraints of the next state.
+         */
+        INBOUND_WHILE,
+        PRE_CALLBACKS,
+        /**
+         * The transition method body.
+         */
+        METHOD,
+        POST_CALLBACKS,
+        EVENT_FIRE
+    }
+
+    StateMachineObject<?> getStateMachine();
+
+    /**
+     * @return transition key, either the transition class or name
+     */
+    Object getTransitionKey();
+
+    boolean isSuccess();
+
+    /**
+     * @return null if the transition succeeded
+     */
+    Throwable getFailureCause();
+
+    long getPhaseNanos(Phase phase);
+
+    long getDurationNanos();
+}
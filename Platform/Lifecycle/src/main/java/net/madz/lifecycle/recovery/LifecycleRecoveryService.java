@@ -0,0 +1,329 @@
+package net.madz.lifecycle.recovery;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.madz.bcel.MethodAccessor;
+import net.madz.bcel.MethodAccessorGenerator;
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.IRecoverableIterator;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.meta.instance.TransitionObject;
+import net.madz.lifecycle.meta.template.LifecycleMetaRegistry;
+import net.madz.lifecycle.meta.template.StateMetadata;
+import net.madz.lifecycle.meta.template.StateMetadata.StateTypeEnum;
+import net.madz.lifecycle.meta.template.TransitionMetadata;
+import net.madz.verification.VerificationException;
+
+/**
+ * Startup recovery of reactive objects left in-flight by a crash.
+ * 
+ * <ol>
+ * <li>Scanning: the persisted reactive objects are read from an
+ * {@link IRecoverableIterator} on the calling thread.</li>
+ * <li>Corrupting: objects in @Running states are moved to @Corrupted states
+ * with their Corrupt transitions, before any of them is recovered.</li>
+ * <li>Recovering: objects in @Corrupted states are resumed with their Recover
+ * transitions, or restarted with their Redo transitions if no Recover
+ * transition is defined. Objects are recovered in descending
+ * {@code @Corrupted(recoverPriority)} and then descending
+ * {@code @Running(priority)} of the state they were corrupted from; a priority
+ * level is finished before the next one starts.</li>
+ * </ol>
+ * 
+ * Corrupting and recovering run on a {@link ForkJoinPool}, and each task only
+ * holds objects of one state machine, split into batches of at most
+ * batchSize objects. All transitions are invoked through the transition
+ * methods, so that they are intercepted like any other transition. A failed
+ * object is counted and logged, and does not stop the others.
+ */
+public class LifecycleRecoveryService {
+
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    private final int parallelism;
+    private final int batchSize;
+    private final ConcurrentHashMap<Method, MethodAccessor> accessors = new ConcurrentHashMap<>();
+    private volatile RecoveryProgress progress;
+
+    public LifecycleRecoveryService() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    public LifecycleRecoveryService(int parallelism, int batchSize) {
+        if ( 0 >= parallelism || 0 >= batchSize ) {
+            throw new IllegalArgumentException("parallelism and batchSize must be positive.");
+        }
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return progress of the running or last finished recovery, or null if
+     *         recovery was never started
+     */
+    public RecoveryProgress getProgress() {
+        return progress;
+    }
+
+    public RecoveryProgress recover(IRecoverableIterator<?> iterator) {
+        return recover(AbsStateMachineRegistry.getInstance(), iterator);
+    }
+
+    public RecoveryProgress recover(LifecycleMetaRegistry registry, IRecoverableIterator<?> iterator) {
+        final RecoveryProgress progress = new RecoveryProgress();
+        this.progress = progress;
+        final LinkedHashMap<StateMachineObject<?>, List<RecoverableEntry>> toCorrupt = new LinkedHashMap<>();
+        final ConcurrentLinkedQueue<RecoverableEntry> toRecover = new ConcurrentLinkedQueue<>();
+        scan(registry, iterator, progress, toCorrupt, toRecover);
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            progress.setStage(RecoveryProgress.Stage.Corrupting);
+            pool.invoke(new StateMachineTasks(toCorrupt, new CorruptAction(progress, toRecover)));
+            progress.setStage(RecoveryProgress.Stage.Recovering);
+            for ( final Map<StateMachineObject<?>, List<RecoverableEntry>> level : groupByPriority(toRecover).descendingMap().values() ) {
+                pool.invoke(new StateMachineTasks(level, new RecoverAction(progress)));
+            }
+        } finally {
+            pool.shutdown();
+            progress.setStage(RecoveryProgress.Stage.Finished);
+        }
+        if ( logger.isLoggable(Level.INFO) ) {
+            logger.info("Lifecycle recovery finished: " + progress);
+        }
+        return progress;
+    }
+
+    private void scan(LifecycleMetaRegistry registry, IRecoverableIterator<?> iterator, RecoveryProgress progress,
+            Map<StateMachineObject<?>, List<RecoverableEntry>> toCorrupt, ConcurrentLinkedQueue<RecoverableEntry> toRecover) {
+        final HashMap<Class<?>, StateMachineObject<?>> stateMachines = new HashMap<>();
+        while ( iterator.hasNext() ) {
+            final Object reactiveObject = iterator.next();
+            progress.onScanned();
+            final StateMachineObject<?> stateMachine = findStateMachine(registry, stateMachines, reactiveObject);
+            if ( null == stateMachine ) {
+                progress.onSkipped();
+                continue;
+            }
+            final StateMetadata state = stateMachine.getMetaType().getState(stateMachine.evaluateState(reactiveObject));
+            if ( null == state ) {
+                progress.onSkipped();
+            } else if ( StateTypeEnum.Running == state.getType() && state.hasCorruptTransition() ) {
+                List<RecoverableEntry> entries = toCorrupt.get(stateMachine);
+                if ( null == entries ) {
+                    entries = new ArrayList<>();
+                    toCorrupt.put(stateMachine, entries);
+                }
+                entries.add(new RecoverableEntry(stateMachine, reactiveObject, state.getPriority()));
+            } else if ( StateTypeEnum.Corrupted == state.getType() ) {
+                toRecover.add(new RecoverableEntry(stateMachine, reactiveObject, 0));
+                progress.onPending();
+            } else {
+                progress.onSkipped();
+            }
+        }
+    }
+
+    private StateMachineObject<?> findStateMachine(LifecycleMetaRegistry registry, HashMap<Class<?>, StateMachineObject<?>> stateMachines,
+            Object reactiveObject) {
+        final Class<?> reactiveClass = reactiveObject.getClass();
+        if ( stateMachines.containsKey(reactiveClass) ) {
+            return stateMachines.get(reactiveClass);
+        }
+        StateMachineObject<?> stateMachine = null;
+        try {
+            stateMachine = registry.loadStateMachineObject(reactiveClass);
+        } catch (VerificationException e) {
+            logger.log(Level.WARNING, "Cannot recover objects of " + reactiveClass + " without valid state machine.", e);
+        }
+        stateMachines.put(reactiveClass, stateMachine);
+        return stateMachine;
+    }
+
+    private TreeMap<Long, Map<StateMachineObject<?>, List<RecoverableEntry>>> groupByPriority(ConcurrentLinkedQueue<RecoverableEntry> toRecover) {
+        final TreeMap<Long, Map<StateMachineObject<?>, List<RecoverableEntry>>> levels = new TreeMap<>();
+        for ( final RecoverableEntry entry : toRecover ) {
+            final StateMetadata state = entry.stateMachine.getMetaType().getState(entry.stateMachine.evaluateState(entry.reactiveObject));
+            final int recoverPriority = null == state ? 0 : state.getPriority();
+            final Long key = ( (long) recoverPriority << 32 ) + ( (long) entry.runningPriority - Integer.MIN_VALUE );
+            Map<StateMachineObject<?>, List<RecoverableEntry>> level = levels.get(key);
+            if ( null == level ) {
+                level = new LinkedHashMap<>();
+                levels.put(key, level);
+            }
+            List<RecoverableEntry> entries = level.get(entry.stateMachine);
+            if ( null == entries ) {
+                entries = new ArrayList<>();
+                level.put(entry.stateMachine, entries);
+            }
+            entries.add(entry);
+        }
+        return levels;
+    }
+
+    private void fire(StateMachineObject<?> stateMachine, TransitionMetadata transition, Object reactiveObject) throws Throwable {
+        final TransitionObject transitionObject = stateMachine.getTransition(transition.getPrimaryKey());
+        final Method method = null == transitionObject ? null : transitionObject.getTransitionMethod();
+        if ( null == method || 0 < method.getParameterTypes().length ) {
+            throw new IllegalStateException("No transition method without arguments is defined for " + transition.getDottedPath() + " on "
+                    + reactiveObject.getClass());
+        }
+        MethodAccessor accessor = accessors.get(method);
+        if ( null == accessor ) {
+            accessor = MethodAccessorGenerator.create(method);
+            accessors.putIfAbsent(method, accessor);
+        }
+        try {
+            accessor.invoke(reactiveObject);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void logFailure(String action, RecoverableEntry entry, Throwable e) {
+        if ( e instanceof LifecycleException ) {
+            logger.warning("Cannot " + action + " " + entry.reactiveObject + ": " + e.getMessage());
+        } else {
+            logger.log(Level.SEVERE, "Cannot " + action + " " + entry.reactiveObject, e);
+        }
+    }
+
+    private static final class RecoverableEntry {
+
+        private final StateMachineObject<?> stateMachine;
+        private final Object reactiveObject;
+        private final int runningPriority;
+
+        private RecoverableEntry(StateMachineObject<?> stateMachine, Object reactiveObject, int runningPriority) {
+            this.stateMachine = stateMachine;
+            this.reactiveObject = reactiveObject;
+            this.runningPriority = runningPriority;
+        }
+    }
+    private static interface EntryAction {
+
+        void perform(RecoverableEntry entry);
+    }
+    private final class CorruptAction implements EntryAction {
+
+        private final RecoveryProgress progress;
+        private final ConcurrentLinkedQueue<RecoverableEntry> toRecover;
+
+        private CorruptAction(RecoveryProgress progress, ConcurrentLinkedQueue<RecoverableEntry> toRecover) {
+            this.progress = progress;
+            this.toRecover = toRecover;
+        }
+
+        @Override
+        public void perform(RecoverableEntry entry) {
+            final StateMachineObject<?> stateMachine = entry.stateMachine;
+            try {
+                final StateMetadata state = stateMachine.getMetaType().getState(stateMachine.evaluateState(entry.reactiveObject));
+                fire(stateMachine, state.getCorruptTransition(), entry.reactiveObject);
+            } catch (Throwable e) {
+                logFailure("corrupt", entry, e);
+                progress.onFailed(false);
+                return;
+            }
+            progress.onCorrupted();
+            final StateMetadata corrupted = stateMachine.getMetaType().getState(stateMachine.evaluateState(entry.reactiveObject));
+            if ( null != corrupted && StateTypeEnum.Corrupted == corrupted.getType() ) {
+                toRecover.add(entry);
+                progress.onPending();
+            }
+        }
+    }
+    private final class RecoverAction implements EntryAction {
+
+        private final RecoveryProgress progress;
+
+        private RecoverAction(RecoveryProgress progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        public void perform(RecoverableEntry entry) {
+            final StateMachineObject<?> stateMachine = entry.stateMachine;
+            final boolean redo;
+            try {
+                final StateMetadata state = stateMachine.getMetaType().getState(stateMachine.evaluateState(entry.reactiveObject));
+                redo = !state.hasRecoverTransition();
+                if ( redo && !state.hasRedoTransition() ) {
+                    throw new IllegalStateException("Neither Recover nor Redo transition is defined on state " + state.getDottedPath());
+                }
+                fire(stateMachine, redo ? state.getRedoTransition() : state.getRecoverTransition(), entry.reactiveObject);
+            } catch (Throwable e) {
+                logFailure("recover", entry, e);
+                progress.onFailed(true);
+                return;
+            }
+            progress.onCompleted(stateMachine.getMetaType().getDottedPath().getAbsoluteName(), redo);
+        }
+    }
+    /**
+     * Forks one task per state machine.
+     */
+    private final class StateMachineTasks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final Map<StateMachineObject<?>, List<RecoverableEntry>> entriesByStateMachine;
+        private final EntryAction action;
+
+        private StateMachineTasks(Map<StateMachineObject<?>, List<RecoverableEntry>> entriesByStateMachine, EntryAction action) {
+            this.entriesByStateMachine = entriesByStateMachine;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            final ArrayList<BatchTask> tasks = new ArrayList<>(entriesByStateMachine.size());
+            for ( final List<RecoverableEntry> entries : entriesByStateMachine.values() ) {
+                tasks.add(new BatchTask(entries, 0, entries.size(), action));
+            }
+            invokeAll(tasks);
+        }
+    }
+    /**
+     * Splits entries of one state machine until a batch fits batchSize.
+     */
+    private final class BatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final List<RecoverableEntry> entries;
+        private final int from;
+        private final int to;
+        private final EntryAction action;
+
+        private BatchTask(List<RecoverableEntry> entries, int from, int to, EntryAction action) {
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if ( to - from <= batchSize ) {
+                for ( int i = from; i < to; i++ ) {
+                    action.perform(entries.get(i));
+                }
+            } else {
+                final int middle = ( from + to ) >>> 1;
+                invokeAll(new BatchTask(entries, from, middle, action), new BatchTask(entries, middle, to, action));
+            }
+        }
+    }
+}
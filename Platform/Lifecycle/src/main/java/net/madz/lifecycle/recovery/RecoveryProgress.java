@@ -0,0 +1,143 @@
+package net.madz.lifecycle.recovery;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one {@link LifecycleRecoveryService#recover} run. Counters are
+ * updated by the recovering threads and can be read at any time from other
+ * threads, e.g. for a startup progress page.
+ */
+public class RecoveryProgress {
+
+    public static enum Stage {
+        Scanning,
+        Corrupting,
+        Recovering,
+        Finished
+    }
+
+    private volatile Stage stage = Stage.Scanning;
+    private final long startTime = System.currentTimeMillis();
+    private volatile long endTime;
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong corrupted = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong redone = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> completedByStateMachine = new ConcurrentHashMap<>();
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public long getScannedCount() {
+        return scanned.get();
+    }
+
+    /**
+     * @return objects neither in @Running nor in @Corrupted states, and
+     *         objects without state machine
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    public long getCorruptedCount() {
+        return corrupted.get();
+    }
+
+    /**
+     * @return objects waiting for Recover or Redo transitions
+     */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    public long getRecoveredCount() {
+        return recovered.get();
+    }
+
+    public long getRedoneCount() {
+        return redone.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return recovered and redone objects keyed by state machine name
+     */
+    public Map<String, Long> getCompletedCounts() {
+        final HashMap<String, Long> result = new HashMap<>();
+        for ( final Entry<String, AtomicLong> entry : completedByStateMachine.entrySet() ) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    public long getElapsedMillis() {
+        return ( 0L == endTime ? System.currentTimeMillis() : endTime ) - startTime;
+    }
+
+    void setStage(Stage stage) {
+        if ( Stage.Finished == stage ) {
+            this.endTime = System.currentTimeMillis();
+        }
+        this.stage = stage;
+    }
+
+    void onScanned() {
+        scanned.incrementAndGet();
+    }
+
+    void onSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    void onCorrupted() {
+        corrupted.incrementAndGet();
+    }
+
+    void onPending() {
+        pending.incrementAndGet();
+    }
+
+    void onCompleted(String stateMachine, boolean redo) {
+        pending.decrementAndGet();
+        if ( redo ) {
+            redone.incrementAndGet();
+        } else {
+            recovered.incrementAndGet();
+        }
+        AtomicLong counter = completedByStateMachine.get(stateMachine);
+        if ( null == counter ) {
+            final AtomicLong newCounter = new AtomicLong();
+            counter = completedByStateMachine.putIfAbsent(stateMachine, newCounter);
+            if ( null == counter ) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    void onFailed(boolean wasPending) {
+        if ( wasPending ) {
+            pending.decrementAndGet();
+        }
+        failed.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "RecoveryProgress [stage=" + stage + ", scanned=" + scanned + ", skipped=" + skipped + ", corrupted=" + corrupted + ", pending=" + pending
+                + ", recovered=" + recovered + ", redone=" + redone + ", failed=" + failed + ", elapsedMillis=" + getElapsedMillis() + "]";
+    }
+}
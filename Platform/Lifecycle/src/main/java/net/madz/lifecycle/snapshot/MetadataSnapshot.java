@@ -0,0 +1,363 @@
+package net.madz.lifecycle.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.meta.instance.TransitionObject;
+import net.madz.lifecycle.meta.template.ConditionMetadata;
+import net.madz.lifecycle.meta.template.StateMachineMetadata;
+import net.madz.lifecycle.meta.template.StateMetadata;
+import net.madz.lifecycle.meta.template.TransitionMetadata;
+
+/**
+ * Compact binary record of a verified registration: the registered classes,
+ * a SHA-256 digest of the bytecode of every class the state machines were
+ * built from, including classes only referenced by annotation values such as
+ * condition judgers, and the shape of each built state machine, i.e. its states,
+ * transitions, conditions and transition methods.
+ * 
+ * A registry whose registered classes and digest match a snapshot has
+ * already passed verification with exactly the same bytecode, so it builds
+ * the state machines without the syntax verification, and then compares the
+ * built shape with the snapshot before trusting the result.
+ */
+public final class MetadataSnapshot {
+
+    private static final int MAGIC = 0x4C435331;
+    private static final int FORMAT_VERSION = 1;
+    private final List<String> registeredClasses;
+    private final List<String> involvedClasses;
+    private final byte[] digest;
+    private final List<String> shape;
+
+    private MetadataSnapshot(List<String> registeredClasses, List<String> involvedClasses, byte[] digest, List<String> shape) {
+        this.registeredClasses = registeredClasses;
+        this.involvedClasses = involvedClasses;
+        this.digest = digest;
+        this.shape = shape;
+    }
+
+    /**
+     * @param involvedClasses
+     *            classes the state machines were built from, including
+     *            framework classes that define the verification rules
+     */
+    public static MetadataSnapshot capture(Class<?>[] registeredClasses, Collection<Class<?>> involvedClasses,
+            Collection<StateMachineMetadata> stateMachines, Collection<StateMachineObject<?>> stateMachineObjects, ClassLoader classLoader)
+            throws IOException {
+        final TreeSet<String> involved = new TreeSet<>();
+        for ( final Class<?> clazz : involvedClasses ) {
+            collectClassNames(clazz, involved);
+        }
+        final ArrayList<String> involvedList = new ArrayList<>(involved);
+        return new MetadataSnapshot(namesOf(registeredClasses), involvedList, digest(involvedList, classLoader), shapeOf(stateMachines,
+                stateMachineObjects));
+    }
+
+    /**
+     * Lists the classes of the package of the anchor class and its
+     * subpackages, e.g. all meta builders defining the verification rules, so
+     * that a snapshot does not match after any of them changes. The classes
+     * are read from the directory or jar file the anchor class is loaded
+     * from.
+     */
+    public static List<Class<?>> classesInPackageOf(Class<?> anchor) throws IOException {
+        final String packagePath = anchor.getPackage().getName().replace('.', '/') + "/";
+        final ClassLoader classLoader = anchor.getClassLoader();
+        final URL url = classLoader.getResource(anchor.getName().replace('.', '/') + ".class");
+        if ( null == url ) {
+            throw new IOException("Cannot locate bytecode of " + anchor.getName());
+        }
+        final TreeSet<String> classNames = new TreeSet<>();
+        if ( "file".equals(url.getProtocol()) ) {
+            try {
+                collectClassFiles(new File(url.toURI()).getParentFile(), packagePath, classNames);
+            } catch (URISyntaxException e) {
+                throw new IOException("Cannot list classes of package " + packagePath + " in " + url, e);
+            }
+        } else if ( "jar".equals(url.getProtocol()) ) {
+            final JarURLConnection connection = (JarURLConnection) url.openConnection();
+            connection.setUseCaches(false);
+            try (JarFile jarFile = connection.getJarFile()) {
+                for ( final Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+                    final String name = entries.nextElement().getName();
+                    if ( name.startsWith(packagePath) && name.endsWith(".class") ) {
+                        classNames.add(name);
+                    }
+                }
+            }
+        } else {
+            throw new IOException("Cannot list classes of package " + packagePath + " in " + url);
+        }
+        final ArrayList<Class<?>> classes = new ArrayList<>(classNames.size());
+        for ( final String classFile : classNames ) {
+            final String className = classFile.substring(0, classFile.length() - ".class".length()).replace('/', '.');
+            try {
+                classes.add(Class.forName(className, false, classLoader));
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Cannot load " + className, e);
+            }
+        }
+        return classes;
+    }
+
+    private static void collectClassFiles(File directory, String path, Set<String> classFiles) {
+        final File[] files = directory.listFiles();
+        if ( null == files ) {
+            return;
+        }
+        for ( final File file : files ) {
+            if ( file.isDirectory() ) {
+                collectClassFiles(file, path + file.getName() + "/", classFiles);
+            } else if ( file.getName().endsWith(".class") ) {
+                classFiles.add(path + file.getName());
+            }
+        }
+    }
+
+    /**
+     * @return null if the file does not exist or is not a readable snapshot
+     */
+    public static MetadataSnapshot read(File file) throws IOException {
+        if ( !file.isFile() ) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if ( MAGIC != input.readInt() || FORMAT_VERSION != input.readInt() ) {
+                return null;
+            }
+            final List<String> registeredClasses = readStrings(input);
+            final List<String> involvedClasses = readStrings(input);
+            final byte[] digest = new byte[input.readInt()];
+            input.readFully(digest);
+            final List<String> shape = readStrings(input);
+            return new MetadataSnapshot(registeredClasses, involvedClasses, digest, shape);
+        }
+    }
+
+    public void write(File file) throws IOException {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException("Cannot create directory: " + directory);
+        }
+        final File tmpFile = new File(directory, file.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            writeStrings(output, registeredClasses);
+            writeStrings(output, involvedClasses);
+            output.writeInt(digest.length);
+            output.write(digest);
+            writeStrings(output, shape);
+        }
+        if ( file.exists() && !file.delete() || !tmpFile.renameTo(file) ) {
+            throw new IOException("Cannot replace snapshot: " + file);
+        }
+    }
+
+    /**
+     * @param frameworkClasses
+     *            current framework classes defining the verification rules,
+     *            which all have to be involved in the snapshot
+     * @return true if the same classes are registered and none of the
+     *         involved classes has changed since the snapshot was taken
+     */
+    public boolean matches(Class<?>[] registeredClasses, Collection<Class<?>> frameworkClasses, ClassLoader classLoader) {
+        if ( !this.registeredClasses.equals(namesOf(registeredClasses)) ) {
+            return false;
+        }
+        for ( final Class<?> frameworkClass : frameworkClasses ) {
+            if ( !involvedClasses.contains(frameworkClass.getName()) ) {
+                return false;
+            }
+        }
+        try {
+            return Arrays.equals(digest, digest(involvedClasses, classLoader));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if state machines built without verification have the
+     *         same shape as the verified ones
+     */
+    public boolean describes(Collection<StateMachineMetadata> stateMachines, Collection<StateMachineObject<?>> stateMachineObjects) {
+        return shape.equals(shapeOf(stateMachines, stateMachineObjects));
+    }
+
+    public List<String> getRegisteredClasses() {
+        return Collections.unmodifiableList(registeredClasses);
+    }
+
+    private static void collectClassNames(Class<?> clazz, Set<String> names) {
+        if ( null == clazz || clazz.isPrimitive() || clazz.isArray() || null == clazz.getClassLoader() || !names.add(clazz.getName()) ) {
+            return;
+        }
+        collectClassNames(clazz.getSuperclass(), names);
+        for ( final Class<?> interfaze : clazz.getInterfaces() ) {
+            collectClassNames(interfaze, names);
+        }
+        for ( final Class<?> declaredClass : clazz.getDeclaredClasses() ) {
+            collectClassNames(declaredClass, names);
+        }
+        collectClassNames(clazz.getDeclaredAnnotations(), names);
+        final ArrayList<AccessibleObject> members = new ArrayList<>();
+        members.addAll(Arrays.asList(clazz.getDeclaredFields()));
+        members.addAll(Arrays.asList(clazz.getDeclaredConstructors()));
+        members.addAll(Arrays.asList(clazz.getDeclaredMethods()));
+        for ( final AccessibleObject member : members ) {
+            collectClassNames(member.getDeclaredAnnotations(), names);
+        }
+        for ( final Method method : clazz.getDeclaredMethods() ) {
+            for ( final Annotation[] parameterAnnotations : method.getParameterAnnotations() ) {
+                collectClassNames(parameterAnnotations, names);
+            }
+        }
+    }
+
+    /**
+     * Collects classes referenced by annotation values, e.g. judgers of
+     * {@code @Conditional} or classes of nested annotations.
+     */
+    private static void collectClassNames(Annotation[] annotations, Set<String> names) {
+        for ( final Annotation annotation : annotations ) {
+            for ( final Method attribute : annotation.annotationType().getDeclaredMethods() ) {
+                attribute.setAccessible(true);
+                try {
+                    collectValueClassNames(attribute.invoke(annotation), names);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new IllegalStateException("Cannot read " + attribute + " of " + annotation, e);
+                }
+            }
+        }
+    }
+
+    private static void collectValueClassNames(Object value, Set<String> names) {
+        if ( value instanceof Class<?> ) {
+            collectClassNames((Class<?>) value, names);
+        } else if ( value instanceof Annotation ) {
+            collectClassNames(new Annotation[] { (Annotation) value }, names);
+        } else if ( null != value && value.getClass().isArray() && !value.getClass().getComponentType().isPrimitive() ) {
+            for ( int i = 0; i < Array.getLength(value); i++ ) {
+                collectValueClassNames(Array.get(value, i), names);
+            }
+        }
+    }
+
+    private static byte[] digest(List<String> classNames, ClassLoader classLoader) throws IOException {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final byte[] buffer = new byte[8192];
+        for ( final String className : classNames ) {
+            messageDigest.update(className.getBytes("UTF-8"));
+            final InputStream input = classLoader.getResourceAsStream(className.replace('.', '/') + ".class");
+            if ( null == input ) {
+                throw new IOException("Cannot read bytecode of " + className);
+            }
+            try {
+                for ( int length = input.read(buffer); length >= 0; length = input.read(buffer) ) {
+                    messageDigest.update(buffer, 0, length);
+                }
+            } finally {
+                input.close();
+            }
+        }
+        return messageDigest.digest();
+    }
+
+    private static List<String> shapeOf(Collection<StateMachineMetadata> stateMachines, Collection<StateMachineObject<?>> stateMachineObjects) {
+        final TreeMap<String, String> shapes = new TreeMap<>();
+        for ( final StateMachineMetadata stateMachine : stateMachines ) {
+            final StringBuilder builder = new StringBuilder();
+            for ( final StateMetadata state : stateMachine.getAllStates() ) {
+                builder.append(state.getDottedPath().getName()).append(':').append(state.getType()).append(state.isInitial() ? ":initial" : "")
+                        .append(state.isFinal() ? ":final" : "").append(';');
+            }
+            builder.append('|');
+            for ( final TransitionMetadata transition : stateMachine.getAllTransitions() ) {
+                builder.append(transition.getDottedPath().getName()).append(':').append(transition.getType()).append(':').append(transition.getTimeout())
+                        .append(';');
+            }
+            builder.append('|');
+            for ( final ConditionMetadata condition : stateMachine.getAllCondtions() ) {
+                builder.append(condition.getDottedPath().getName()).append(';');
+            }
+            shapes.put("M " + stateMachine.getDottedPath().getAbsoluteName(), builder.toString());
+        }
+        for ( final StateMachineObject<?> stateMachineObject : stateMachineObjects ) {
+            final TreeSet<String> methods = new TreeSet<>();
+            for ( final TransitionObject transition : stateMachineObject.getTransitionSet() ) {
+                methods.add(transition.getDottedPath().getName() + "=" + transition.getTransitionMethod().getName());
+            }
+            shapes.put("O " + stateMachineObject.getDottedPath().getAbsoluteName(), methods.toString());
+        }
+        final ArrayList<String> result = new ArrayList<>(shapes.size() * 2);
+        for ( final String key : shapes.keySet() ) {
+            result.add(key);
+            result.add(shapes.get(key));
+        }
+        return result;
+    }
+
+    private static List<String> namesOf(Class<?>[] classes) {
+        final ArrayList<String> names = new ArrayList<>(classes.length);
+        for ( final Class<?> clazz : classes ) {
+            names.add(clazz.getName());
+        }
+        return names;
+    }
+
+    private static List<String> readStrings(DataInputStream input) throws IOException {
+        final int size = input.readInt();
+        final ArrayList<String> result = new ArrayList<>(size);
+        for ( int i = 0; i < size; i++ ) {
+            final byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            result.add(new String(bytes, "UTF-8"));
+        }
+        return result;
+    }
+
+    private static void writeStrings(DataOutputStream output, List<String> strings) throws IOException {
+        output.writeInt(strings.size());
+        for ( final String string : strings ) {
+            final byte[] bytes = string.getBytes("UTF-8");
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package net.madz.lifecycle.timeout;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hierarchical timing wheel tracking large numbers of pending deadlines with
+ * O(1) scheduling and cancellation. Level 0 has one bucket per tick, and each
+ * higher level has buckets spanning a whole rotation of the level below;
+ * deadlines cascade down one level when the lower wheel wraps around. With
+ * the default 100 milliseconds tick, 256 buckets and 4 levels, deadlines up
+ * to about 13 years are tracked exactly, longer ones are re-cascaded.
+ *
+ * Scheduling and cancelling only enqueue requests, the single ticker thread
+ * owns the wheels and applies them once per tick, so that callers never
+ * contend on bucket lists. Expired tasks are handed to the executor.
+ */
+public class HierarchicalTimingWheel {
+
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    private static final int INIT = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    private final long tickNanos;
+    private final int wheelBits;
+    private final int mask;
+    private final Bucket[][] wheels;
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Deadline> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Deadline> pendingCancels = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final long startNanos;
+    private final Thread ticker;
+    private volatile boolean running = true;
+    // Owned by the ticker thread
+    private long currentTick;
+
+    /**
+     * @param wheelSize
+     *            buckets per level, rounded up to a power of two
+     */
+    public HierarchicalTimingWheel(long tick, TimeUnit unit, int wheelSize, int levels, Executor executor) {
+        if ( 0 >= tick || 0 >= wheelSize || 0 >= levels ) {
+            throw new IllegalArgumentException("Tick, wheel size and levels should be positive: " + tick + ", " + wheelSize + ", " + levels);
+        }
+        int bits = 0;
+        while ( ( 1 << bits ) < wheelSize ) {
+            bits++;
+        }
+        if ( bits * levels >= 63 ) {
+            throw new IllegalArgumentException("Wheels too large: " + wheelSize + " ^ " + levels);
+        }
+        this.tickNanos = unit.toNanos(tick);
+        this.wheelBits = bits;
+        this.mask = ( 1 << bits ) - 1;
+        this.wheels = new Bucket[levels][1 << bits];
+        for ( final Bucket[] wheel : wheels ) {
+            for ( int i = 0; i < wheel.length; i++ ) {
+                wheel[i] = new Bucket();
+            }
+        }
+        this.executor = executor;
+        this.startNanos = System.nanoTime();
+        this.ticker = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                tick();
+            }
+        }, "Lifecycle Timing Wheel");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    public Deadline schedule(Runnable task, long delay, TimeUnit unit) {
+        if ( !running ) {
+            throw new IllegalStateException("Timing wheel has been stopped.");
+        }
+        final long elapsed = System.nanoTime() - startNanos + Math.max(0L, unit.toNanos(delay));
+        final Deadline deadline = new Deadline(this, task, ( elapsed + tickNanos - 1 ) / tickNanos);
+        pendingCount.incrementAndGet();
+        pendingAdds.add(deadline);
+        return deadline;
+    }
+
+    /**
+     * @return number of deadlines neither expired nor cancelled
+     */
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Stops the ticker, pending deadlines never expire.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+
+    private void tick() {
+        while ( running ) {
+            final long nowTick = ( System.nanoTime() - startNanos ) / tickNanos;
+            while ( currentTick < nowTick ) {
+                advance(currentTick + 1);
+            }
+            final long nextTickNanos = startNanos + ( currentTick + 1 ) * tickNanos;
+            LockSupport.parkNanos(this, nextTickNanos - System.nanoTime());
+        }
+    }
+
+    private void advance(long tick) {
+        currentTick = tick;
+        for ( int level = wheels.length - 1; level > 0; level-- ) {
+            if ( 0 == ( tick & ( ( 1L << ( wheelBits * level ) ) - 1 ) ) ) {
+                final Bucket bucket = wheels[level][(int) ( tick >>> ( wheelBits * level ) ) & mask];
+                Deadline deadline;
+                while ( null != ( deadline = bucket.poll() ) ) {
+                    place(deadline);
+                }
+            }
+        }
+        Deadline deadline;
+        while ( null != ( deadline = pendingCancels.poll() ) ) {
+            if ( null != deadline.bucket ) {
+                deadline.bucket.remove(deadline);
+            }
+        }
+        while ( null != ( deadline = pendingAdds.poll() ) ) {
+            if ( INIT == deadline.state.get() ) {
+                place(deadline);
+            }
+        }
+        final Bucket bucket = wheels[0][(int) tick & mask];
+        while ( null != ( deadline = bucket.poll() ) ) {
+            if ( deadline.deadlineTick > tick ) {
+                // Beyond the wheels' range, to be cascaded again
+                place(deadline);
+                continue;
+            }
+            deadline.expire();
+        }
+    }
+
+    private void place(Deadline deadline) {
+        final long ticks = Math.max(0L, deadline.deadlineTick - currentTick);
+        int level = 0;
+        while ( level < wheels.length - 1 && ticks >= ( 1L << ( wheelBits * ( level + 1 ) ) ) ) {
+            level++;
+        }
+        long tick = Math.max(deadline.deadlineTick, currentTick);
+        final long range = 1L << ( wheelBits * wheels.length );
+        if ( ticks >= range ) {
+            tick = currentTick + range - 1;
+        }
+        wheels[level][(int) ( tick >>> ( wheelBits * level ) ) & mask].add(deadline);
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Deadline {
+
+        private final HierarchicalTimingWheel wheel;
+        private final Runnable task;
+        private final long deadlineTick;
+        private final AtomicInteger state = new AtomicInteger(INIT);
+        // Owned by the ticker thread
+        private Bucket bucket;
+        private Deadline prev;
+        private Deadline next;
+
+        private Deadline(HierarchicalTimingWheel wheel, Runnable task, long deadlineTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * @return true if the task will not run because of this call
+         */
+        public boolean cancel() {
+            if ( !state.compareAndSet(INIT, CANCELLED) ) {
+                return false;
+            }
+            wheel.pendingCount.decrementAndGet();
+            wheel.pendingCancels.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return CANCELLED == state.get();
+        }
+
+        public boolean isExpired() {
+            return EXPIRED == state.get();
+        }
+
+        private void expire() {
+            if ( !state.compareAndSet(INIT, EXPIRED) ) {
+                return;
+            }
+            wheel.pendingCount.decrementAndGet();
+            try {
+                wheel.executor.execute(task);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Cannot execute expired task " + task, e);
+            }
+        }
+    }
+    /**
+     * Doubly linked list of deadlines, accessed by the ticker thread only.
+     */
+    private static final class Bucket {
+
+        private Deadline head;
+
+        private void add(Deadline deadline) {
+            deadline.bucket = this;
+            deadline.prev = null;
+            deadline.next = head;
+            if ( null != head ) {
+                head.prev = deadline;
+            }
+            head = deadline;
+        }
+
+        private void remove(Deadline deadline) {
+            if ( this != deadline.bucket ) {
+                return;
+            }
+            if ( null != deadline.prev ) {
+                deadline.prev.next = deadline.next;
+            } else {
+                head = deadline.next;
+            }
+            if ( null != deadline.next ) {
+                deadline.next.prev = deadline.prev;
+            }
+            deadline.bucket = null;
+            deadline.prev = null;
+            deadline.next = null;
+        }
+
+        private Deadline poll() {
+            final Deadline deadline = head;
+            if ( null != deadline ) {
+                remove(deadline);
+            }
+            return deadline;
+        }
+    }
+}
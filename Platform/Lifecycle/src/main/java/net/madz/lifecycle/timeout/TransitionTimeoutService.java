@@ -0,0 +1,272 @@
+package net.madz.lifecycle.timeout;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.madz.bcel.MethodAccessor;
+import net.madz.bcel.MethodAccessorGenerator;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.meta.instance.TransitionObject;
+import net.madz.lifecycle.meta.template.StateMetadata;
+import net.madz.lifecycle.meta.template.StateMetadata.StateTypeEnum;
+import net.madz.lifecycle.meta.template.TransitionMetadata;
+import net.madz.lifecycle.meta.template.TransitionMetadata.TransitionTypeEnum;
+
+/**
+ * Enforces @Timeout of @Fail and @Corrupt transitions leaving @Running and
+ * @Waiting states. It is enabled by registering this class, or a subclass
+ * with other settings, in {@code @LifecycleRegistry}.
+ *
+ * When a reactive object enters such a state through an intercepted
+ * transition, a deadline of the shortest timeout is scheduled on a
+ * {@link HierarchicalTimingWheel}; leaving the state cancels it. When the
+ * deadline expires while the object is still in the state, the timed
+ * transition method is invoked on a bounded worker pool, so it runs through
+ * the normal interception path, including locking and validation. Objects
+ * already in such states before the service knows about them, e.g. loaded
+ * from storage, are tracked with {@link #track(StateMachineObject, Object)}.
+ */
+public class TransitionTimeoutService {
+
+    private static final Logger logger = Logger.getLogger("Lifecycle Framework");
+    public static final long DEFAULT_TICK_MILLIS = 100L;
+    public static final int DEFAULT_WHEEL_SIZE = 256;
+    public static final int DEFAULT_LEVELS = 4;
+    public static final int DEFAULT_WORKERS = 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final TimedTransition NO_TIMED_TRANSITION = new TimedTransition(null, 0L);
+    private final HierarchicalTimingWheel wheel;
+    private final ThreadPoolExecutor workers;
+    private final ConcurrentHashMap<IdentityKey, HierarchicalTimingWheel.Deadline> deadlines = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<StateMetadata, TimedTransition> timedTransitions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Method, MethodAccessor> accessors = new ConcurrentHashMap<>();
+
+    public TransitionTimeoutService() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE, DEFAULT_LEVELS, DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Expired deadlines beyond the queue capacity run on the ticker thread,
+     * which delays later deadlines instead of dropping timeouts.
+     */
+    protected TransitionTimeoutService(long tick, TimeUnit unit, int wheelSize, int levels, int workerCount, int queueCapacity) {
+        final AtomicInteger workerSeq = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "Lifecycle Timeout Worker-" + workerSeq.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.wheel = new HierarchicalTimingWheel(tick, unit, wheelSize, levels, workers);
+    }
+
+    /**
+     * Called after each successful intercepted transition.
+     */
+    public void onStateChanged(StateMachineObject<?> stateMachine, Object reactiveObject, String toState) {
+        final IdentityKey key = new IdentityKey(reactiveObject);
+        final HierarchicalTimingWheel.Deadline previous = deadlines.remove(key);
+        if ( null != previous ) {
+            previous.cancel();
+        }
+        final TimedTransition timedTransition = findTimedTransition(stateMachine, toState);
+        if ( null == timedTransition.transition ) {
+            return;
+        }
+        final TimeoutTask task = new TimeoutTask(key, stateMachine, reactiveObject, toState, timedTransition);
+        final HierarchicalTimingWheel.Deadline deadline = wheel.schedule(task, timedTransition.timeout, TimeUnit.MILLISECONDS);
+        final HierarchicalTimingWheel.Deadline raced = deadlines.put(key, deadline);
+        if ( null != raced ) {
+            raced.cancel();
+        }
+        task.setDeadline(deadline);
+    }
+
+    /**
+     * Starts tracking the current state of a reactive object.
+     */
+    public void track(StateMachineObject<?> stateMachine, Object reactiveObject) {
+        onStateChanged(stateMachine, reactiveObject, stateMachine.evaluateState(reactiveObject));
+    }
+
+    /**
+     * @return true if a pending deadline of the object was cancelled
+     */
+    public boolean untrack(Object reactiveObject) {
+        final HierarchicalTimingWheel.Deadline deadline = deadlines.remove(new IdentityKey(reactiveObject));
+        return null != deadline && deadline.cancel();
+    }
+
+    public long getPendingCount() {
+        return wheel.getPendingCount();
+    }
+
+    /**
+     * @return number of objects with a deadline that has not run yet
+     */
+    public int getTrackedCount() {
+        return deadlines.size();
+    }
+
+    public boolean isShutdown() {
+        return workers.isShutdown();
+    }
+
+    /**
+     * Stops the ticker and the workers and forgets the pending deadlines.
+     * Called by {@link net.madz.lifecycle.AbsStateMachineRegistry#shutdown()}.
+     */
+    public void shutdown() {
+        wheel.stop();
+        workers.shutdown();
+        deadlines.clear();
+    }
+
+    private TimedTransition findTimedTransition(StateMachineObject<?> stateMachine, String stateName) {
+        final StateMetadata state = stateMachine.getMetaType().getState(stateName);
+        if ( null == state ) {
+            return NO_TIMED_TRANSITION;
+        }
+        TimedTransition timedTransition = timedTransitions.get(state);
+        if ( null == timedTransition ) {
+            timedTransition = NO_TIMED_TRANSITION;
+            if ( StateTypeEnum.Running == state.getType() || StateTypeEnum.Waiting == state.getType() ) {
+                for ( final TransitionMetadata transition : state.getPossibleLeavingTransitions() ) {
+                    if ( 0L >= transition.getTimeout() ) {
+                        continue;
+                    }
+                    if ( TransitionTypeEnum.Fail != transition.getType() && TransitionTypeEnum.Corrupt != transition.getType() ) {
+                        continue;
+                    }
+                    if ( null == timedTransition.transition || transition.getTimeout() < timedTransition.timeout ) {
+                        timedTransition = new TimedTransition(transition, transition.getTimeout());
+                    }
+                }
+            }
+            timedTransitions.putIfAbsent(state, timedTransition);
+        }
+        return timedTransition;
+    }
+
+    private void fire(StateMachineObject<?> stateMachine, Object reactiveObject, String stateName, TimedTransition timedTransition) {
+        if ( !stateName.equals(stateMachine.evaluateState(reactiveObject)) ) {
+            return;
+        }
+        final TransitionObject transitionObject = stateMachine.getTransition(timedTransition.transition.getPrimaryKey());
+        final Method method = null == transitionObject ? null : transitionObject.getTransitionMethod();
+        if ( null == method || 0 < method.getParameterTypes().length ) {
+            logger.warning("Cannot fire timed transition " + timedTransition.transition.getDottedPath() + " on " + reactiveObject
+                    + ", since no transition method without arguments is defined.");
+            return;
+        }
+        MethodAccessor accessor = accessors.get(method);
+        if ( null == accessor ) {
+            accessor = MethodAccessorGenerator.create(method);
+            accessors.putIfAbsent(method, accessor);
+        }
+        if ( logger.isLoggable(Level.FINE) ) {
+            logger.fine("Timeout of state " + stateName + " on " + reactiveObject + ", firing " + method.getName());
+        }
+        try {
+            accessor.invoke(reactiveObject);
+        } catch (InvocationTargetException e) {
+            if ( e.getCause() instanceof LifecycleException ) {
+                // Lost the race with another transition, e.g. the object left
+                // the state after the check above.
+                if ( logger.isLoggable(Level.FINE) ) {
+                    logger.log(Level.FINE, "Timed transition " + method.getName() + " on " + reactiveObject + " was rejected.", e.getCause());
+                }
+            } else {
+                logger.log(Level.SEVERE, "Timed transition " + method.getName() + " on " + reactiveObject + " failed.", e.getCause());
+            }
+        }
+    }
+
+    private static final class TimedTransition {
+
+        private final TransitionMetadata transition;
+        private final long timeout;
+
+        private TimedTransition(TransitionMetadata transition, long timeout) {
+            this.transition = transition;
+            this.timeout = timeout;
+        }
+    }
+    private final class TimeoutTask implements Runnable {
+
+        private final IdentityKey key;
+        private final StateMachineObject<?> stateMachine;
+        private final Object reactiveObject;
+        private final String stateName;
+        private final TimedTransition timedTransition;
+        private volatile HierarchicalTimingWheel.Deadline deadline;
+        private volatile boolean expired;
+
+        private TimeoutTask(IdentityKey key, StateMachineObject<?> stateMachine, Object reactiveObject, String stateName,
+                TimedTransition timedTransition) {
+            this.key = key;
+            this.stateMachine = stateMachine;
+            this.reactiveObject = reactiveObject;
+            this.stateName = stateName;
+            this.timedTransition = timedTransition;
+        }
+
+        /**
+         * Called once the deadline is registered. Whichever of this and
+         * {@link #run()} comes last removes the expired deadline, so that the
+         * object is not kept reachable when the timed transition is rejected
+         * or fails.
+         */
+        private void setDeadline(HierarchicalTimingWheel.Deadline deadline) {
+            this.deadline = deadline;
+            if ( expired ) {
+                deadlines.remove(key, deadline);
+            }
+        }
+
+        @Override
+        public void run() {
+            expired = true;
+            final HierarchicalTimingWheel.Deadline registered = deadline;
+            if ( null != registered ) {
+                deadlines.remove(key, registered);
+            }
+            try {
+                fire(stateMachine, reactiveObject, stateName, timedTransition);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Timeout of state " + stateName + " on " + reactiveObject + " failed.", e);
+            }
+        }
+    }
+    private static final class IdentityKey {
+
+        private final Object reactiveObject;
+
+        private IdentityKey(Object reactiveObject) {
+            this.reactiveObject = reactiveObject;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(reactiveObject);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof IdentityKey && ( (IdentityKey) obj ).reactiveObject == reactiveObject;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.LifecycleEvent;
+import net.madz.lifecycle.LifecycleEventHandler;
+import net.madz.lifecycle.events.AsyncLifecycleEventDispatcher;
+import net.madz.lifecycle.events.AsyncLifecycleEventDispatcher.BackPressurePolicy;
+import net.madz.lifecycle.events.LifecycleEventBatchHandler;
+import net.madz.lifecycle.meta.template.TransitionMetadata.TransitionTypeEnum;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class AsyncLifecycleEventDispatcherTests {
+
+    private static class TestEvent implements LifecycleEvent {
+
+        private final int sequence;
+
+        private TestEvent(int sequence) {
+            this.sequence = sequence;
+        }
+
+        @Override
+        public Object getReactiveObject() {
+            return sequence;
+        }
+
+        @Override
+        public String fromState() {
+            return "From";
+        }
+
+        @Override
+        public String toState() {
+            return "To";
+        }
+
+        @Override
+        public String transition() {
+            return "Transit";
+        }
+
+        @Override
+        public TransitionTypeEnum transitionType() {
+            return TransitionTypeEnum.Common;
+        }
+
+        @Override
+        public long startTime() {
+            return 0L;
+        }
+
+        @Override
+        public long endTime() {
+            return 0L;
+        }
+    }
+    private static class RecordingHandler implements LifecycleEventHandler {
+
+        final List<LifecycleEvent> events = Collections.synchronizedList(new ArrayList<LifecycleEvent>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+        @Override
+        public void onEvent(LifecycleEvent event) {
+            events.add(event);
+            threads.add(Thread.currentThread());
+        }
+    }
+    private static class RecordingBatchHandler extends RecordingHandler implements LifecycleEventBatchHandler {
+
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public void onEvents(List<LifecycleEvent> events) {
+            batchSizes.add(events.size());
+            for ( final LifecycleEvent event : events ) {
+                onEvent(event);
+            }
+        }
+    }
+    private static class BlockingHandler implements LifecycleEventHandler {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void onEvent(LifecycleEvent event) {
+            if ( 0 == entered.getCount() ) {
+                return;
+            }
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static class RegisteredDispatcher extends AsyncLifecycleEventDispatcher {
+
+        public RegisteredDispatcher() {
+            super(new RecordingHandler());
+        }
+    }
+    @LifecycleRegistry({ RegisteredDispatcher.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    @Test
+    public void test_events_delivered_in_order_to_all_handlers_on_shutdown() {
+        final RecordingHandler first = new RecordingHandler();
+        final RecordingBatchHandler second = new RecordingBatchHandler();
+        final AsyncLifecycleEventDispatcher dispatcher = new AsyncLifecycleEventDispatcher(16, 4, BackPressurePolicy.BLOCK, first, second);
+        for ( int i = 0; i < 100; i++ ) {
+            dispatcher.onEvent(new TestEvent(i));
+        }
+        assertTrue(dispatcher.shutdown(10, TimeUnit.SECONDS));
+        assertEquals(100, dispatcher.getDeliveredCount());
+        assertEquals(100, first.events.size());
+        assertEquals(100, second.events.size());
+        for ( int i = 0; i < 100; i++ ) {
+            assertEquals(i, ( (TestEvent) first.events.get(i) ).sequence);
+            assertEquals(i, ( (TestEvent) second.events.get(i) ).sequence);
+        }
+        for ( final Integer batchSize : second.batchSizes ) {
+            assertTrue(batchSize <= 4);
+        }
+        for ( final Thread thread : first.threads ) {
+            assertNotSame(Thread.currentThread(), thread);
+        }
+    }
+
+    @Test
+    public void test_drop_policy_discards_events_when_full() throws InterruptedException {
+        final BlockingHandler blocking = new BlockingHandler();
+        final AsyncLifecycleEventDispatcher dispatcher = new AsyncLifecycleEventDispatcher(2, 1, BackPressurePolicy.DROP, blocking);
+        dispatcher.onEvent(new TestEvent(0));
+        assertTrue(blocking.entered.await(10, TimeUnit.SECONDS));
+        for ( int i = 1; i <= 5; i++ ) {
+            dispatcher.onEvent(new TestEvent(i));
+        }
+        assertEquals(3, dispatcher.getDroppedCount());
+        blocking.release.countDown();
+        assertTrue(dispatcher.shutdown(10, TimeUnit.SECONDS));
+        assertEquals(3, dispatcher.getDeliveredCount());
+    }
+
+    @Test
+    public void test_caller_runs_policy_delivers_on_caller_thread_when_full() throws InterruptedException {
+        final BlockingHandler blocking = new BlockingHandler();
+        final RecordingHandler recording = new RecordingHandler();
+        final AsyncLifecycleEventDispatcher dispatcher = new AsyncLifecycleEventDispatcher(1, 1, BackPressurePolicy.CALLER_RUNS, blocking, recording);
+        dispatcher.onEvent(new TestEvent(0));
+        assertTrue(blocking.entered.await(10, TimeUnit.SECONDS));
+        dispatcher.onEvent(new TestEvent(1));
+        dispatcher.onEvent(new TestEvent(2));
+        assertEquals(1, recording.events.size());
+        assertSame(Thread.currentThread(), recording.threads.get(0));
+        blocking.release.countDown();
+        dispatcher.onEvent(new TestEvent(3));
+        assertTrue(dispatcher.shutdown(10, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.getDroppedCount());
+        assertEquals(4, recording.events.size());
+    }
+
+    @Test
+    public void test_events_after_shutdown_delivered_on_caller_thread() {
+        final RecordingHandler recording = new RecordingHandler();
+        final AsyncLifecycleEventDispatcher dispatcher = new AsyncLifecycleEventDispatcher(recording);
+        assertTrue(dispatcher.shutdown(10, TimeUnit.SECONDS));
+        dispatcher.onEvent(new TestEvent(0));
+        assertEquals(1, recording.events.size());
+        assertSame(Thread.currentThread(), recording.threads.get(0));
+    }
+
+    @Test(timeout = 10000L)
+    public void test_shutdown_without_timeout_does_not_wait() throws InterruptedException {
+        final BlockingHandler blocking = new BlockingHandler();
+        final AsyncLifecycleEventDispatcher dispatcher = new AsyncLifecycleEventDispatcher(blocking);
+        dispatcher.onEvent(new TestEvent(0));
+        assertTrue(blocking.entered.await(10, TimeUnit.SECONDS));
+        assertFalse(dispatcher.shutdown(0, TimeUnit.SECONDS));
+        blocking.release.countDown();
+        assertTrue(dispatcher.shutdown(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_replaced_registry_shuts_down_dispatcher() throws VerificationException {
+        final AsyncLifecycleEventDispatcher dispatcher = (AsyncLifecycleEventDispatcher) new Registry().getLifecycleEventHandler();
+        final AsyncLifecycleEventDispatcher current = (AsyncLifecycleEventDispatcher) new Registry().getLifecycleEventHandler();
+        try {
+            assertTrue(dispatcher.isShutdown());
+            assertFalse(current.isShutdown());
+        } finally {
+            current.shutdown(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package net.madz.lifecycle.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.madz.lifecycle.LifecycleLockStrategry;
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.Functions;
+import net.madz.lifecycle.annotations.LifecycleLock;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.relation.RelateTo;
+import net.madz.lifecycle.annotations.relation.Relation;
+import net.madz.lifecycle.annotations.relation.RelationSet;
+import net.madz.lifecycle.annotations.relation.ValidWhile;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+
+public class BulkTransitionTestMetadata extends EngineTestBase {
+
+    public static class CountingLock implements LifecycleLockStrategry {
+
+        static final AtomicInteger readLocks = new AtomicInteger();
+        static final AtomicInteger writeLocks = new AtomicInteger();
+        static final AtomicInteger held = new AtomicInteger();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        @Override
+        public void lockRead(Object reactiveObject) {
+            lock.readLock().lock();
+            readLocks.incrementAndGet();
+            held.incrementAndGet();
+        }
+
+        @Override
+        public void unlockRead(Object targetReactiveObject) {
+            held.decrementAndGet();
+            lock.readLock().unlock();
+        }
+
+        @Override
+        public void lockWrite(Object reactiveObject) {
+            lock.writeLock().lock();
+            writeLocks.incrementAndGet();
+            held.incrementAndGet();
+        }
+
+        @Override
+        public void unlockWrite(Object targetReactiveObject) {
+            held.decrementAndGet();
+            lock.writeLock().unlock();
+        }
+
+        static void reset() {
+            readLocks.set(0);
+            writeLocks.set(0);
+            held.set(0);
+        }
+    }
+    @StateMachine
+    static interface PlantLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Functions({ @Function(transition = PlantLifecycle.Transitions.Close.class, value = Closed.class),
+                    @Function(transition = PlantLifecycle.Transitions.Cancel.class, value = Closed.class) })
+            static interface Open {}
+            @End
+            static interface Closed {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Close {}
+            static interface Cancel {}
+        }
+    }
+    @StateMachine
+    static interface PlantOrderLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Functions({ @Function(transition = PlantOrderLifecycle.Transitions.Confirm.class, value = Confirmed.class),
+                    @Function(transition = PlantOrderLifecycle.Transitions.Cancel.class, value = Canceled.class) })
+            @ValidWhile(on = { PlantLifecycle.States.Open.class }, relation = PlantOrderLifecycle.Relations.PlantRelation.class)
+            static interface Draft {}
+            @Function(transition = PlantOrderLifecycle.Transitions.Cancel.class, value = Canceled.class)
+            static interface Confirmed {}
+            @End
+            static interface Canceled {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Confirm {}
+            static interface Cancel {}
+        }
+        @RelationSet
+        static interface Relations {
+
+            @RelateTo(PlantLifecycle.class)
+            static interface PlantRelation {}
+        }
+    }
+    @LifecycleMeta(PlantLifecycle.class)
+    @LifecycleLock(CountingLock.class)
+    public static class Plant extends ReactiveObject {
+
+        public Plant() {
+            initialState(PlantLifecycle.States.Open.class.getSimpleName());
+        }
+
+        @Transition
+        public void close() {}
+
+        @Transition
+        public void cancel() {}
+    }
+    @LifecycleMeta(PlantOrderLifecycle.class)
+    @LifecycleLock(CountingLock.class)
+    public static class PlantOrder extends ReactiveObject {
+
+        @Relation(PlantOrderLifecycle.Relations.PlantRelation.class)
+        private final Plant plant;
+        private final boolean rejected;
+        private String note;
+
+        public PlantOrder(Plant plant) {
+            this(plant, false);
+        }
+
+        public PlantOrder(Plant plant, boolean rejected) {
+            initialState(PlantOrderLifecycle.States.Draft.class.getSimpleName());
+            this.plant = plant;
+            this.rejected = rejected;
+        }
+
+        @Transition
+        public void confirm(String note) {
+            if ( rejected ) {
+                throw new IllegalStateException("Rejected: " + note);
+            }
+            this.note = note;
+        }
+
+        @Transition
+        public void cancel() {}
+
+        public String getNote() {
+            return note;
+        }
+    }
+}
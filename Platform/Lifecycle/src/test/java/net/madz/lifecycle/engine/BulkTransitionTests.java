@@ -0,0 +1,148 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import net.madz.bcel.intercept.LifecycleEngine;
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.LifecycleEvent;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.events.LifecycleEventBatchHandler;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class BulkTransitionTests extends BulkTransitionTestMetadata {
+
+    public static class RecordingBatchHandler implements LifecycleEventBatchHandler {
+
+        static final List<Integer> batchSizes = new ArrayList<>();
+        static final List<LifecycleEvent> singleEvents = new ArrayList<>();
+
+        @Override
+        public void onEvent(LifecycleEvent event) {
+            singleEvents.add(event);
+        }
+
+        @Override
+        public void onEvents(List<LifecycleEvent> events) {
+            batchSizes.add(events.size());
+        }
+    }
+
+    @LifecycleRegistry({ PlantOrder.class, Plant.class, RecordingBatchHandler.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    private static List<PlantOrder> createOrders(Plant plant, int count) {
+        final ArrayList<PlantOrder> orders = new ArrayList<>();
+        for ( int i = 0; i < count; i++ ) {
+            orders.add(new PlantOrder(plant));
+        }
+        return orders;
+    }
+
+    @Test
+    public void test_transit_all_verifies_shared_relation_once() throws VerificationException {
+        new Registry();
+        final Plant plant = new Plant();
+        final List<PlantOrder> orders = createOrders(plant, 5);
+        CountingLock.reset();
+        final LifecycleEngine.Result<PlantOrder> result = LifecycleEngine.transitAll(orders, PlantOrderLifecycle.Transitions.Confirm.class,
+                "end of shift");
+        assertTrue(result.isAllSucceeded());
+        assertEquals(5, result.getSucceeded().size());
+        for ( final PlantOrder order : orders ) {
+            assertState(PlantOrderLifecycle.States.Confirmed.class, order);
+            assertEquals("end of shift", order.getNote());
+        }
+        assertEquals(1, CountingLock.readLocks.get());
+        assertEquals(5, CountingLock.writeLocks.get());
+        assertEquals(0, CountingLock.held.get());
+    }
+
+    @Test
+    public void test_transit_all_fires_events_in_one_batch() throws VerificationException {
+        new Registry();
+        RecordingBatchHandler.batchSizes.clear();
+        RecordingBatchHandler.singleEvents.clear();
+        final List<PlantOrder> orders = createOrders(new Plant(), 3);
+        final LifecycleEngine.Result<PlantOrder> result = LifecycleEngine.transitAll(orders, "Cancel");
+        assertTrue(result.isAllSucceeded());
+        for ( final PlantOrder order : orders ) {
+            assertState(PlantOrderLifecycle.States.Canceled.class, order);
+        }
+        assertEquals(Arrays.asList(3), RecordingBatchHandler.batchSizes);
+        assertEquals(0, RecordingBatchHandler.singleEvents.size());
+    }
+
+    @Test
+    public void test_transit_all_reports_failures_and_continues() throws VerificationException {
+        new Registry();
+        final Plant plant = new Plant();
+        final PlantOrder rejected = new PlantOrder(plant, true);
+        final List<PlantOrder> orders = createOrders(plant, 2);
+        final PlantOrder confirmed = orders.get(0);
+        confirmed.confirm("early");
+        orders.add(rejected);
+        CountingLock.reset();
+        final LifecycleEngine.Result<PlantOrder> result = LifecycleEngine.transitAll(orders, PlantOrderLifecycle.Transitions.Confirm.class, "late");
+        assertFalse(result.isAllSucceeded());
+        assertEquals(Arrays.asList(orders.get(1)), result.getSucceeded());
+        assertEquals(2, result.getFailures().size());
+        assertTrue(result.getFailures().get(confirmed) instanceof LifecycleException);
+        assertTrue(result.getFailures().get(rejected) instanceof IllegalStateException);
+        assertState(PlantOrderLifecycle.States.Confirmed.class, orders.get(1));
+        assertState(PlantOrderLifecycle.States.Draft.class, rejected);
+        assertEquals("early", confirmed.getNote());
+        assertEquals(0, CountingLock.held.get());
+    }
+
+    @Test
+    public void test_transit_all_fails_unknown_transition() throws VerificationException {
+        new Registry();
+        final List<PlantOrder> orders = createOrders(new Plant(), 1);
+        final LifecycleEngine.Result<PlantOrder> result = LifecycleEngine.transitAll(orders, "Ship");
+        assertTrue(result.getFailures().get(orders.get(0)) instanceof IllegalArgumentException);
+        assertState(PlantOrderLifecycle.States.Draft.class, orders.get(0));
+    }
+
+    @Test(timeout = 60000)
+    public void test_transit_all_mixing_related_objects_does_not_dead_lock() throws VerificationException {
+        new Registry();
+        int canceledBeforePlant = 0;
+        for ( int i = 0; i < 20; i++ ) {
+            final Plant plant = new Plant();
+            final List<ReactiveObject> batch = new ArrayList<ReactiveObject>(createOrders(plant, 8));
+            batch.add(plant);
+            CountingLock.reset();
+            final LifecycleEngine.Result<ReactiveObject> result = LifecycleEngine.transitAll(batch, "Cancel");
+            assertState(PlantLifecycle.States.Closed.class, plant);
+            assertEquals(0, CountingLock.held.get());
+            // Orders ordered after the plant see it closed, those before it
+            // were canceled while it was read locked by the batch.
+            for ( final ReactiveObject order : result.getSucceeded() ) {
+                if ( order != plant ) {
+                    assertState(PlantOrderLifecycle.States.Canceled.class, order);
+                    canceledBeforePlant++;
+                }
+            }
+            for ( final Map.Entry<ReactiveObject, Exception> failure : result.getFailures().entrySet() ) {
+                assertTrue(failure.getValue() instanceof LifecycleException);
+                assertState(PlantOrderLifecycle.States.Draft.class, failure.getKey());
+            }
+        }
+        assertTrue(0 < canceledBeforePlant);
+    }
+}
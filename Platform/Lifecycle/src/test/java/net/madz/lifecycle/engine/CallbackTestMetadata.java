@@ -130,6 +130,35 @@ public class CallbackTestMetadata extends EngineTestBase {
             this.callbackInvokeCounter++;
         }
     }
+    @LifecycleMeta(CallbackStateMachine.class)
+    public static class PostCallbackInDispatchOrder extends CallbackObjectBase {
+
+        private final List<String> invokedCallbacks = new ArrayList<>();
+
+        @PostStateChange(from = CallbackStateMachine.States.New.class, to = CallbackStateMachine.States.Started.class)
+        public void fromNewToStarted(LifecycleContext<PostCallbackInDispatchOrder, String> context) {
+            invokedCallbacks.add("specific");
+        }
+
+        @PostStateChange(from = CallbackStateMachine.States.New.class)
+        public void fromNewToAny(LifecycleContext<PostCallbackInDispatchOrder, String> context) {
+            invokedCallbacks.add("from");
+        }
+
+        @PostStateChange(to = CallbackStateMachine.States.Started.class)
+        public void fromAnyToStarted(LifecycleContext<PostCallbackInDispatchOrder, String> context) {
+            invokedCallbacks.add("to");
+        }
+
+        @PostStateChange
+        public void fromAnyToAny(LifecycleContext<PostCallbackInDispatchOrder, String> context) {
+            invokedCallbacks.add("common");
+        }
+
+        public List<String> getInvokedCallbacks() {
+            return invokedCallbacks;
+        }
+    }
     @StateMachine
     public static interface InvoiceStateMachineMeta {
 
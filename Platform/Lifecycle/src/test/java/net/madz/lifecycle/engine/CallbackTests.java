@@ -3,6 +3,7 @@ package net.madz.lifecycle.engine;
 import static org.junit.Assert.assertEquals;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 
 import org.junit.Test;
 
@@ -38,6 +39,16 @@ public class CallbackTests extends CallbackTestMetadata {
         assertEquals(1, o.getCallbackInvokeCounter());
     }
 
+    @Test
+    public void test_post_state_change_callbacks_dispatched_in_order_per_state_pair() {
+        final PostCallbackInDispatchOrder o = new PostCallbackInDispatchOrder();
+        o.start();
+        assertEquals(Arrays.asList("specific", "from", "to", "common"), o.getInvokedCallbacks());
+        o.getInvokedCallbacks().clear();
+        o.finish();
+        assertEquals(Arrays.asList("common"), o.getInvokedCallbacks());
+    }
+
     @Test
     public void test_standalone_post_state_change_callback_from_any_to_any() {
         final PostCallbackFromAnyToAny o = new PostCallbackFromAnyToAny();
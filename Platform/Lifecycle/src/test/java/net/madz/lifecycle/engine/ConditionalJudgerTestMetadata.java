@@ -0,0 +1,184 @@
+package net.madz.lifecycle.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.Functions;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.action.Condition;
+import net.madz.lifecycle.annotations.action.ConditionSet;
+import net.madz.lifecycle.annotations.action.Conditional;
+import net.madz.lifecycle.annotations.action.ConditionalTransition;
+import net.madz.lifecycle.annotations.action.StatefulJudger;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+
+public class ConditionalJudgerTestMetadata extends EngineTestBase {
+
+    @StateMachine
+    static interface MeterLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Functions({ @Function(transition = MeterLifecycle.Transitions.Measure.class, value = { Low.class, High.class }),
+                    @Function(transition = MeterLifecycle.Transitions.Retire.class, value = Retired.class) })
+            static interface Idle {}
+            @Function(transition = MeterLifecycle.Transitions.Reset.class, value = Idle.class)
+            static interface Low {}
+            @Function(transition = MeterLifecycle.Transitions.Reset.class, value = Idle.class)
+            static interface High {}
+            @End
+            static interface Retired {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            @Conditional(condition = MeterLifecycle.Conditions.Volume.class, judger = VolumeJudger.class, postEval = true)
+            static interface Measure {}
+            static interface Reset {}
+            static interface Retire {}
+        }
+        @ConditionSet
+        static interface Conditions {
+
+            static interface Volume {
+
+                int getVolume();
+            }
+        }
+    }
+    public static class VolumeJudger implements ConditionalTransition<MeterLifecycle.Conditions.Volume> {
+
+        static final AtomicInteger instances = new AtomicInteger();
+        static final AtomicInteger judgements = new AtomicInteger();
+
+        public VolumeJudger() {
+            instances.incrementAndGet();
+        }
+
+        @Override
+        public Class<?> doConditionJudge(MeterLifecycle.Conditions.Volume volume) {
+            judgements.incrementAndGet();
+            return volume.getVolume() > 10 ? MeterLifecycle.States.High.class : MeterLifecycle.States.Low.class;
+        }
+    }
+    @LifecycleMeta(MeterLifecycle.class)
+    public static class Meter extends ReactiveObject implements MeterLifecycle.Conditions.Volume {
+
+        private int volume;
+
+        public Meter() {
+            initialState(MeterLifecycle.States.Idle.class.getSimpleName());
+        }
+
+        @Condition(MeterLifecycle.Conditions.Volume.class)
+        public MeterLifecycle.Conditions.Volume getVolumeCondition() {
+            return this;
+        }
+
+        @Override
+        public int getVolume() {
+            return volume;
+        }
+
+        @Transition
+        public void measure(int volume) {
+            this.volume = volume;
+        }
+
+        @Transition
+        public void reset() {}
+
+        @Transition
+        public void retire() {}
+    }
+    @StateMachine
+    static interface GaugeLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Functions({ @Function(transition = GaugeLifecycle.Transitions.Read.class, value = { Normal.class, Alarm.class }),
+                    @Function(transition = GaugeLifecycle.Transitions.Retire.class, value = Retired.class) })
+            static interface Ready {}
+            @Function(transition = GaugeLifecycle.Transitions.Clear.class, value = Ready.class)
+            static interface Normal {}
+            @Function(transition = GaugeLifecycle.Transitions.Clear.class, value = Ready.class)
+            static interface Alarm {}
+            @End
+            static interface Retired {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            @Conditional(condition = GaugeLifecycle.Conditions.Reading.class, judger = ConsecutiveReadingJudger.class, postEval = true)
+            static interface Read {}
+            static interface Clear {}
+            static interface Retire {}
+        }
+        @ConditionSet
+        static interface Conditions {
+
+            static interface Reading {
+
+                int getReading();
+            }
+        }
+    }
+    @StatefulJudger
+    public static class ConsecutiveReadingJudger implements ConditionalTransition<GaugeLifecycle.Conditions.Reading> {
+
+        static final AtomicInteger instances = new AtomicInteger();
+        private int judged;
+
+        public ConsecutiveReadingJudger() {
+            instances.incrementAndGet();
+        }
+
+        @Override
+        public Class<?> doConditionJudge(GaugeLifecycle.Conditions.Reading reading) {
+            // A fresh instance judges exactly once.
+            if ( 0 < judged++ ) {
+                throw new IllegalStateException("Stateful judger reused.");
+            }
+            return reading.getReading() > 100 ? GaugeLifecycle.States.Alarm.class : GaugeLifecycle.States.Normal.class;
+        }
+    }
+    @LifecycleMeta(GaugeLifecycle.class)
+    public static class Gauge extends ReactiveObject implements GaugeLifecycle.Conditions.Reading {
+
+        private int reading;
+
+        public Gauge() {
+            initialState(GaugeLifecycle.States.Ready.class.getSimpleName());
+        }
+
+        @Condition(GaugeLifecycle.Conditions.Reading.class)
+        public GaugeLifecycle.Conditions.Reading getReadingCondition() {
+            return this;
+        }
+
+        @Override
+        public int getReading() {
+            return reading;
+        }
+
+        @Transition
+        public void read(int reading) {
+            this.reading = reading;
+        }
+
+        @Transition
+        public void clear() {}
+
+        @Transition
+        public void retire() {}
+    }
+}
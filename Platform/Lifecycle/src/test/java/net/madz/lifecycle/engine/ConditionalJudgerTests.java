@@ -0,0 +1,50 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class ConditionalJudgerTests extends ConditionalJudgerTestMetadata {
+
+    @LifecycleRegistry({ Meter.class, Gauge.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    @Test
+    public void test_stateless_judger_instantiated_once_and_judges_once_per_transition() throws VerificationException {
+        new Registry();
+        VolumeJudger.instances.set(0);
+        VolumeJudger.judgements.set(0);
+        final Meter meter = new Meter();
+        meter.measure(20);
+        assertEquals(MeterLifecycle.States.High.class.getSimpleName(), meter.getState());
+        meter.reset();
+        meter.measure(5);
+        assertEquals(MeterLifecycle.States.Low.class.getSimpleName(), meter.getState());
+        assertEquals(2, VolumeJudger.judgements.get());
+        assertEquals(1, VolumeJudger.instances.get());
+        new Meter().measure(1);
+        assertEquals(1, VolumeJudger.instances.get());
+    }
+
+    @Test
+    public void test_stateful_judger_instantiated_per_judgement() throws VerificationException {
+        new Registry();
+        ConsecutiveReadingJudger.instances.set(0);
+        final Gauge gauge = new Gauge();
+        gauge.read(200);
+        assertEquals(GaugeLifecycle.States.Alarm.class.getSimpleName(), gauge.getState());
+        gauge.clear();
+        gauge.read(50);
+        assertEquals(GaugeLifecycle.States.Normal.class.getSimpleName(), gauge.getState());
+        assertEquals(2, ConsecutiveReadingJudger.instances.get());
+    }
+}
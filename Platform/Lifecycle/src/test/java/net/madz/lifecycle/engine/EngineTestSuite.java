@@ -7,5 +7,11 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({ EngineCoreFunctionPositiveTests.class, EngineCoreFunctionNegativeTests.class, EngineCoreCompositeStateMachinePositiveTests.class,
         EngineCoreCompositeStateMachineNegativeTests.class, CallbackTests.class, LifecycleLockTests.class, LifecycleEventTests.class, ReturnTypeTests.class,
-        StateSetterTests.class, MultipleStateMachineTests.class })
+        StateSetterTests.class, MultipleStateMachineTests.class, TransitionPlanTests.class,
+        MethodAccessorTests.class, OfflineWeaverTests.class, TransformerPreScanTests.class,
+        AsyncLifecycleEventDispatcherTests.class, LifecycleMetricsTests.class, TransitionTimeoutTests.class,
+        LifecycleRecoveryTests.class, ParallelRegistrationTests.class, MetadataSnapshotTests.class, ConditionalJudgerTests.class,
+        BulkTransitionTests.class, RelationValidationCacheTests.class, EnumStateTests.class, JournalTests.class,
+        StateIndexTests.class, OptimisticLockTests.class, JdbcLeaseLockTests.class,
+        RelationConstraintTests.class })
 public class EngineTestSuite {}
@@ -0,0 +1,106 @@
+package net.madz.lifecycle.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.madz.lifecycle.EnumStateConverter;
+import net.madz.lifecycle.LifecycleContext;
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.Functions;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateIndicator;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.callback.PostStateChange;
+import net.madz.lifecycle.annotations.state.Converter;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+
+public class EnumStateTestMetadata extends EngineTestBase {
+
+    public static enum TicketState {
+        Open,
+        Resolved,
+        Closed
+    }
+    public static class TicketStateConverter extends EnumStateConverter<TicketState> {
+
+        public TicketStateConverter() {
+            super(TicketState.class);
+        }
+    }
+    @StateMachine
+    static interface TicketLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = TicketLifecycle.Transitions.Resolve.class, value = Resolved.class)
+            static interface Open {}
+            @Functions({ @Function(transition = TicketLifecycle.Transitions.Reopen.class, value = Open.class),
+                    @Function(transition = TicketLifecycle.Transitions.Close.class, value = Closed.class) })
+            static interface Resolved {}
+            @End
+            static interface Closed {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Resolve {}
+            static interface Reopen {}
+            static interface Close {}
+        }
+    }
+    @LifecycleMeta(TicketLifecycle.class)
+    public static class Ticket {
+
+        @StateIndicator
+        private TicketState state = TicketState.Open;
+        private final List<TicketState> resolvedFrom = new ArrayList<>();
+
+        public TicketState getState() {
+            return state;
+        }
+
+        public List<TicketState> getResolvedFrom() {
+            return resolvedFrom;
+        }
+
+        @Transition
+        public void resolve() {}
+
+        @Transition
+        public void reopen() {}
+
+        @Transition
+        public void close() {}
+
+        @PostStateChange(to = TicketLifecycle.States.Resolved.class)
+        public void onResolved(LifecycleContext<Ticket, TicketState> context) {
+            resolvedFrom.add(context.getFromState());
+        }
+    }
+    @LifecycleMeta(TicketLifecycle.class)
+    public static class ConvertedTicket {
+
+        @StateIndicator
+        @Converter(TicketStateConverter.class)
+        private TicketState state = TicketState.Open;
+
+        public TicketState getState() {
+            return state;
+        }
+
+        @Transition
+        public void resolve() {}
+
+        @Transition
+        public void reopen() {}
+
+        @Transition
+        public void close() {}
+    }
+}
@@ -0,0 +1,71 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class EnumStateTests extends EnumStateTestMetadata {
+
+    @LifecycleRegistry({ Ticket.class, ConvertedTicket.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    @Test
+    public void test_enum_state_indicator_without_converter() throws VerificationException {
+        new Registry();
+        final Ticket ticket = new Ticket();
+        ticket.resolve();
+        assertEquals(TicketState.Resolved, ticket.getState());
+        ticket.reopen();
+        assertEquals(TicketState.Open, ticket.getState());
+        ticket.resolve();
+        ticket.close();
+        assertEquals(TicketState.Closed, ticket.getState());
+        assertEquals(Arrays.asList(TicketState.Open, TicketState.Open), ticket.getResolvedFrom());
+    }
+
+    @Test
+    public void test_enum_state_indicator_with_enum_state_converter() throws VerificationException {
+        new Registry();
+        final ConvertedTicket ticket = new ConvertedTicket();
+        ticket.resolve();
+        ticket.close();
+        assertEquals(TicketState.Closed, ticket.getState());
+    }
+
+    @Test
+    public void test_enum_state_ordinal_matches_transition_table() throws VerificationException {
+        final Registry registry = new Registry();
+        final StateMachineObject<?> stateMachine = registry.loadStateMachineObject(Ticket.class);
+        final StateTransitionTable table = stateMachine.getTransitionTable();
+        final Ticket ticket = new Ticket();
+        assertEquals(table.getStateOrdinal("Open"), stateMachine.evaluateStateOrdinal(ticket));
+        ticket.resolve();
+        assertEquals(table.getStateOrdinal("Resolved"), stateMachine.evaluateStateOrdinal(ticket));
+        assertEquals("Resolved", stateMachine.evaluateState(ticket));
+    }
+
+    @Test
+    public void test_enum_state_converter_round_trip() {
+        final TicketStateConverter converter = new TicketStateConverter();
+        for ( final TicketState state : TicketState.values() ) {
+            assertEquals(state.name(), converter.toState(state));
+            assertEquals(state, converter.fromState(converter.toState(state)));
+        }
+        assertNull(converter.toState(null));
+        assertNull(converter.fromState("Unknown"));
+    }
+}
@@ -0,0 +1,90 @@
+package net.madz.lifecycle.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.LifecycleLock;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+import net.madz.lifecycle.locks.JdbcLeaseLockStrategy;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+public class JdbcLeaseLockTestMetadata extends EngineTestBase {
+
+    static final DataSource DATA_SOURCE = createDataSource();
+
+    private static DataSource createDataSource() {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:lifecycle_lease;DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+
+    /**
+     * One lease lock strategy instance plays one cluster node.
+     */
+    public static class NodeLeaseLock extends JdbcLeaseLockStrategy {
+
+        public NodeLeaseLock() {
+            this(0L);
+        }
+
+        public NodeLeaseLock(long lingerMillis) {
+            super(DATA_SOURCE, DEFAULT_TABLE, 3000L, lingerMillis, 300L, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected String lockKey(Object reactiveObject) {
+            return reactiveObject.getClass().getSimpleName() + "#" + ( (Crane) reactiveObject ).getId();
+        }
+    }
+    @StateMachine
+    static interface CraneLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = CraneLifecycle.Transitions.Lift.class, value = Lifting.class)
+            static interface Idle {}
+            @Function(transition = CraneLifecycle.Transitions.Lower.class, value = Done.class)
+            static interface Lifting {}
+            @End
+            static interface Done {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Lift {}
+            static interface Lower {}
+        }
+    }
+    @LifecycleMeta(CraneLifecycle.class)
+    @LifecycleLock(NodeLeaseLock.class)
+    public static class Crane extends ReactiveObject {
+
+        private final long id;
+
+        public Crane(long id) {
+            this.id = id;
+            initialState(CraneLifecycle.States.Idle.class.getSimpleName());
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        @Transition
+        public void lift() {}
+
+        @Transition
+        public void lower() {}
+    }
+}
@@ -0,0 +1,181 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.LifecycleCommonErrors;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.locks.JdbcLeaseLockStrategy;
+import net.madz.verification.VerificationException;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class JdbcLeaseLockTests extends JdbcLeaseLockTestMetadata {
+
+    @LifecycleRegistry({ Crane.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    @BeforeClass
+    public static void createLeaseTable() throws SQLException {
+        final NodeLeaseLock lock = new NodeLeaseLock();
+        try {
+            lock.createTable();
+        } finally {
+            lock.shutdown();
+        }
+    }
+
+    @Before
+    public void deleteLeases() throws SQLException {
+        execute("DELETE FROM " + JdbcLeaseLockStrategy.DEFAULT_TABLE);
+    }
+
+    @Test
+    public void test_lease_excludes_other_node() throws Exception {
+        final NodeLeaseLock first = new NodeLeaseLock();
+        final NodeLeaseLock second = new NodeLeaseLock();
+        final Crane crane = new Crane(1L);
+        try {
+            first.lockWrite(crane);
+            final long firstToken = first.getFencingToken(crane);
+            assertEquals(LifecycleCommonErrors.LOCK_TIMEOUT, lockOnAnotherThread(second, crane).getErrorCode());
+            first.unlockWrite(crane);
+            assertEquals(-1L, first.getFencingToken(crane));
+            assertEquals(0, countLeases());
+            second.lockWrite(crane);
+            assertTrue(second.getFencingToken(crane) > 0L);
+            assertEquals(1, countLeases());
+            second.unlockWrite(crane);
+            assertTrue(firstToken > 0L);
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    @Test
+    public void test_reentrant_and_lingering_lease_keeps_fencing_token() throws Exception {
+        final NodeLeaseLock first = new NodeLeaseLock(60000L);
+        final NodeLeaseLock second = new NodeLeaseLock();
+        final Crane crane = new Crane(2L);
+        try {
+            first.lockWrite(crane);
+            final long token = first.getFencingToken(crane);
+            first.lockRead(crane);
+            first.lockWrite(crane);
+            first.unlockWrite(crane);
+            first.unlockRead(crane);
+            first.unlockWrite(crane);
+            first.lockWrite(crane);
+            assertEquals(token, first.getFencingToken(crane));
+            assertEquals(token, queryFencingToken(crane));
+            first.unlockWrite(crane);
+            assertEquals(LifecycleCommonErrors.LOCK_TIMEOUT, lockOnAnotherThread(second, crane).getErrorCode());
+            first.shutdown();
+            assertEquals(0, countLeases());
+            second.lockWrite(crane);
+            second.unlockWrite(crane);
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    @Test
+    public void test_expired_lease_is_taken_over_with_next_fencing_token() throws Exception {
+        final NodeLeaseLock first = new NodeLeaseLock(60000L);
+        final NodeLeaseLock second = new NodeLeaseLock();
+        final Crane crane = new Crane(3L);
+        try {
+            first.lockWrite(crane);
+            final long token = first.getFencingToken(crane);
+            // As if the first node stopped renewing its lease
+            execute("UPDATE " + JdbcLeaseLockStrategy.DEFAULT_TABLE + " SET EXPIRES_AT = 0");
+            second.lockWrite(crane);
+            assertEquals(token + 1, second.getFencingToken(crane));
+            final long deadline = System.currentTimeMillis() + 5000L;
+            while ( -1L != first.getFencingToken(crane) && System.currentTimeMillis() < deadline ) {
+                Thread.sleep(50L);
+            }
+            assertEquals(-1L, first.getFencingToken(crane));
+            second.unlockWrite(crane);
+            first.unlockWrite(crane);
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    @Test
+    public void test_transitions_hold_lease() throws VerificationException, SQLException {
+        new Registry();
+        final Crane crane = new Crane(4L);
+        crane.lift();
+        crane.lower();
+        assertEquals(CraneLifecycle.States.Done.class.getSimpleName(), crane.getState());
+        assertEquals(0, countLeases());
+    }
+
+    private LifecycleException lockOnAnotherThread(final NodeLeaseLock lock, final Crane crane) throws InterruptedException {
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            executorService.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    lock.lockWrite(crane);
+                    lock.unlockWrite(crane);
+                    return null;
+                }
+            }).get();
+            fail("Lease of another node should not be acquired");
+            return null;
+        } catch (ExecutionException e) {
+            return (LifecycleException) e.getCause();
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (final Connection connection = DATA_SOURCE.getConnection(); final Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    private static int countLeases() throws SQLException {
+        try (final Connection connection = DATA_SOURCE.getConnection(); final Statement statement = connection.createStatement();
+                final ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + JdbcLeaseLockStrategy.DEFAULT_TABLE)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static long queryFencingToken(Crane crane) throws SQLException {
+        try (final Connection connection = DATA_SOURCE.getConnection(); final Statement statement = connection.createStatement();
+                final ResultSet rs = statement.executeQuery("SELECT FENCING_TOKEN FROM " + JdbcLeaseLockStrategy.DEFAULT_TABLE + " WHERE LOCK_KEY = 'Crane#"
+                        + crane.getId() + "'")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package net.madz.lifecycle.engine;
+
+import java.io.File;
+
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+import net.madz.lifecycle.journal.TransitionJournal;
+
+public class JournalTestMetadata extends EngineTestBase {
+
+    @StateMachine
+    static interface ParcelLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = ParcelLifecycle.Transitions.Pay.class, value = Paid.class)
+            static interface Created {}
+            @Function(transition = ParcelLifecycle.Transitions.Ship.class, value = Shipped.class)
+            static interface Paid {}
+            @End
+            static interface Shipped {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Pay {}
+            static interface Ship {}
+        }
+    }
+    @LifecycleMeta(ParcelLifecycle.class)
+    public static class Parcel extends ReactiveObject {
+
+        private final long id;
+
+        public Parcel(long id) {
+            this.id = id;
+            initialState(ParcelLifecycle.States.Created.class.getSimpleName());
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        @Transition
+        public void pay() {}
+
+        @Transition
+        public void ship() {}
+    }
+    public static class ParcelJournal extends TransitionJournal {
+
+        static volatile File directory;
+
+        public ParcelJournal() {
+            this(directory);
+        }
+
+        public ParcelJournal(File directory) {
+            super(directory, MIN_SEGMENT_SIZE, 5L, true);
+        }
+
+        @Override
+        protected long getReactiveObjectId(Object reactiveObject) {
+            return ( (Parcel) reactiveObject ).getId();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.journal.JournalReader;
+import net.madz.lifecycle.journal.JournalRecord;
+import net.madz.lifecycle.journal.TransitionJournal;
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
+import net.madz.verification.VerificationException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JournalTests extends JournalTestMetadata {
+
+    @LifecycleRegistry({ Parcel.class, ParcelJournal.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("lifecycle-journal").toFile();
+        ParcelJournal.directory = directory;
+    }
+
+    @After
+    public void deleteDirectory() {
+        final File[] files = directory.listFiles();
+        if ( null != files ) {
+            for ( final File file : files ) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void test_intercepted_transitions_are_journaled() throws Exception {
+        final Registry registry = new Registry();
+        final TransitionJournal journal = registry.getTransitionJournal();
+        assertNotNull(journal);
+        try {
+            final Parcel parcel = new Parcel(42L);
+            parcel.pay();
+            try {
+                parcel.pay();
+                fail("Pay is not valid in state Paid");
+            } catch (LifecycleException expected) {}
+            parcel.ship();
+        } finally {
+            journal.close();
+        }
+        final StateMachineObject<?> stateMachine = registry.loadStateMachineObject(Parcel.class);
+        final StateTransitionTable table = stateMachine.getTransitionTable();
+        final List<JournalRecord> records = readAll(new JournalReader(directory));
+        assertEquals(3, records.size());
+        final JournalRecord paid = records.get(0);
+        assertEquals(0L, paid.getSequence());
+        assertEquals(stateMachine.getMetaType().getDottedPath().getAbsoluteName(), paid.getStateMachine());
+        assertEquals(42L, paid.getReactiveObjectId());
+        assertEquals(table.getStateOrdinal(ParcelLifecycle.States.Created.class.getSimpleName()), paid.getFromStateOrdinal());
+        assertEquals(table.getStateOrdinal(ParcelLifecycle.States.Paid.class.getSimpleName()), paid.getToStateOrdinal());
+        assertEquals(table.getTransitionOrdinal(ParcelLifecycle.Transitions.Pay.class), paid.getTransitionOrdinal());
+        assertTrue(paid.isSuccess());
+        assertTrue(paid.getStartTime() <= paid.getEndTime());
+        final JournalRecord rejected = records.get(1);
+        assertFalse(rejected.isSuccess());
+        assertEquals(table.getStateOrdinal(ParcelLifecycle.States.Paid.class.getSimpleName()), rejected.getFromStateOrdinal());
+        final JournalRecord shipped = records.get(2);
+        assertTrue(shipped.isSuccess());
+        assertEquals(table.getStateOrdinal(ParcelLifecycle.States.Shipped.class.getSimpleName()), shipped.getToStateOrdinal());
+        assertEquals(2L, journal.getDurableSequence());
+    }
+
+    @Test
+    public void test_replaced_registry_closes_journal() throws Exception {
+        final TransitionJournal journal = new Registry().getTransitionJournal();
+        final TransitionJournal current = new Registry().getTransitionJournal();
+        try {
+            assertTrue(journal.isClosed());
+            assertFalse(current.isClosed());
+        } finally {
+            current.close();
+        }
+    }
+
+    @Test
+    public void test_segments_roll_and_reader_seeks() throws Exception {
+        final StateMachineObject<?> stateMachine = new Registry().loadStateMachineObject(Parcel.class);
+        final ParcelJournal journal = new ParcelJournal(directory);
+        try {
+            for ( int i = 0; i < 500; i++ ) {
+                assertEquals(i, journal.append(stateMachine, new Parcel(i), 0, 1, 0, i, i + 1, true));
+            }
+        } finally {
+            journal.close();
+        }
+        assertTrue(directory.listFiles().length > 1);
+        final List<JournalRecord> all = readAll(new JournalReader(directory));
+        assertEquals(500, all.size());
+        for ( int i = 0; i < all.size(); i++ ) {
+            assertEquals(i, all.get(i).getSequence());
+            assertEquals(i, all.get(i).getReactiveObjectId());
+            assertNotNull(all.get(i).getStateMachine());
+        }
+        final JournalReader reader = new JournalReader(directory);
+        reader.seek(321L);
+        final List<JournalRecord> tail = readAll(reader);
+        assertEquals(179, tail.size());
+        assertEquals(321L, tail.get(0).getSequence());
+    }
+
+    @Test
+    public void test_reader_tails_records_appended_later() throws Exception {
+        final StateMachineObject<?> stateMachine = new Registry().loadStateMachineObject(Parcel.class);
+        final ParcelJournal journal = new ParcelJournal(directory);
+        try (final JournalReader reader = new JournalReader(directory)) {
+            assertNull(reader.next());
+            journal.append(stateMachine, new Parcel(1L), 0, 1, 0, 0L, 0L, true);
+            assertEquals(0L, reader.next().getSequence());
+            assertNull(reader.next());
+            for ( int i = 2; i < 200; i++ ) {
+                journal.append(stateMachine, new Parcel(i), 0, 1, 0, 0L, 0L, true);
+            }
+            for ( int i = 2; i < 200; i++ ) {
+                assertEquals(i, reader.next().getReactiveObjectId());
+            }
+            assertNull(reader.next());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void test_sequence_continues_after_reopen() throws Exception {
+        final StateMachineObject<?> stateMachine = new Registry().loadStateMachineObject(Parcel.class);
+        ParcelJournal journal = new ParcelJournal(directory);
+        try {
+            journal.append(stateMachine, new Parcel(1L), 0, 1, 0, 0L, 0L, true);
+            journal.append(stateMachine, new Parcel(2L), 0, 1, 0, 0L, 0L, true);
+        } finally {
+            journal.close();
+        }
+        journal = new ParcelJournal(directory);
+        try {
+            assertEquals(2L, journal.append(stateMachine, new Parcel(3L), 0, 1, 0, 0L, 0L, true));
+        } finally {
+            journal.close();
+        }
+        final List<JournalRecord> records = readAll(new JournalReader(directory));
+        assertEquals(3, records.size());
+        assertEquals(3L, records.get(2).getReactiveObjectId());
+    }
+
+    private static List<JournalRecord> readAll(JournalReader reader) throws IOException {
+        final List<JournalRecord> records = new ArrayList<>();
+        try {
+            reader.replay(new JournalReader.RecordHandler() {
+
+                @Override
+                public void onRecord(JournalRecord record) {
+                    records.add(record);
+                }
+            });
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+}
@@ -1,5 +1,6 @@
 package net.madz.lifecycle.engine;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Logger;
@@ -26,6 +27,7 @@ import net.madz.lifecycle.annotations.state.End;
 import net.madz.lifecycle.annotations.state.Initial;
 import net.madz.lifecycle.annotations.state.LifecycleOverride;
 import net.madz.lifecycle.annotations.state.ShortCut;
+import net.madz.lifecycle.locks.StripedReadWriteLockStrategy;
 import net.madz.verification.VerificationException;
 
 import org.junit.BeforeClass;
@@ -181,6 +183,56 @@ public class LifecycleLockTestMetadata extends EngineTestBase {
             counter.incrementAndGet();
         }
     }
+    @LifecycleMeta(LockingStateMachine.class)
+    @LifecycleLock(StripedReadWriteLockStrategy.class)
+    static class StripedLockingReactiveObject extends ReactiveObject implements ILockingReactiveObject {
+
+        public StripedLockingReactiveObject() {
+            initialState(LockingStateMachine.States.Created.class.getSimpleName());
+        }
+
+        private volatile AtomicInteger counter = new AtomicInteger(0);
+
+        public int getCounter() {
+            return counter.intValue();
+        }
+
+        @Transition
+        public void start() {
+            counter.incrementAndGet();
+        }
+
+        @Transition
+        public void stop() {
+            counter.incrementAndGet();
+        }
+
+        @Transition
+        public void cancel() {
+            counter.incrementAndGet();
+        }
+    }
+    static class ShortTimeoutStripedLock extends StripedReadWriteLockStrategy {
+
+        public ShortTimeoutStripedLock() {
+            super(4, 50L, TimeUnit.MILLISECONDS);
+        }
+    }
+    static class Identified {
+
+        private final long id;
+
+        Identified(long id) {
+            this.id = id;
+        }
+    }
+    static class IdKeyedStripedLock extends ShortTimeoutStripedLock {
+
+        @Override
+        protected Object lockKey(Object reactiveObject) {
+            return ( (Identified) reactiveObject ).id;
+        }
+    }
     // ///////////////////////////////////////////////////////
     // Hierarchical Relations
     // ///////////////////////////////////////////////////////
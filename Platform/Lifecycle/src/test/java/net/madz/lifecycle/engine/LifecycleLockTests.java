@@ -14,6 +14,7 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import net.madz.lifecycle.LifecycleCommonErrors;
 import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.locks.StripedReadWriteLockStrategy;
 
 import org.junit.Test;
 
@@ -29,6 +30,130 @@ public class LifecycleLockTests extends LifecycleLockTestMetadata {
         doConcurrent(SimpleLockingReactiveObject.class);
     }
 
+    @Test
+    public void test_striped_lock() throws Throwable {
+        doConcurrent(StripedLockingReactiveObject.class);
+    }
+
+    @Test
+    public void test_striped_lock_times_out() throws Throwable {
+        final ShortTimeoutStripedLock lock = new ShortTimeoutStripedLock();
+        final Object object = new Object();
+        final LifecycleException e = lockOnAnotherThread(lock, object, object);
+        assertEquals(LifecycleCommonErrors.LOCK_TIMEOUT, e.getErrorCode());
+    }
+
+    @Test
+    public void test_striped_lock_keyed_by_id() throws Throwable {
+        final IdKeyedStripedLock lock = new IdKeyedStripedLock();
+        final Identified first = new Identified(1L);
+        final Identified second = new Identified(1L);
+        assertEquals(lock.stripeOf(first), lock.stripeOf(second));
+        final LifecycleException e = lockOnAnotherThread(lock, first, second);
+        assertEquals(LifecycleCommonErrors.LOCK_TIMEOUT, e.getErrorCode());
+    }
+
+    @Test
+    public void test_striped_lock_reentrant_on_same_stripe() {
+        final ShortTimeoutStripedLock lock = new ShortTimeoutStripedLock();
+        final Object object = new Object();
+        lock.lockWrite(object);
+        lock.lockRead(object);
+        lock.lockWrite(object);
+        lock.unlockWrite(object);
+        lock.unlockRead(object);
+        lock.unlockWrite(object);
+        lock.lockRead(object);
+        try {
+            lock.lockWrite(object);
+            fail("Upgrading read lock to write lock should fail");
+        } catch (LifecycleException e) {
+            assertEquals(LifecycleCommonErrors.LOCK_UPGRADE_NOT_SUPPORTED, e.getErrorCode());
+        } finally {
+            lock.unlockRead(object);
+        }
+    }
+
+    @Test
+    public void test_striped_lock_upgrade_on_same_key() {
+        final IdKeyedStripedLock lock = new IdKeyedStripedLock();
+        final Identified first = new Identified(1L);
+        final Identified second = new Identified(1L);
+        lock.lockRead(first);
+        try {
+            lock.lockWrite(second);
+            fail("Upgrading read lock to write lock should fail");
+        } catch (LifecycleException e) {
+            assertEquals(LifecycleCommonErrors.LOCK_UPGRADE_NOT_SUPPORTED, e.getErrorCode());
+        } finally {
+            lock.unlockRead(first);
+        }
+    }
+
+    @Test
+    public void test_striped_lock_write_over_read_of_stripe_mate() throws Throwable {
+        final IdKeyedStripedLock lock = new IdKeyedStripedLock();
+        final Identified read = new Identified(1L);
+        final Identified written = new Identified(1L + lock.getStripeCount());
+        assertEquals(lock.stripeOf(read), lock.stripeOf(written));
+        lock.lockRead(read);
+        try {
+            lock.lockWrite(written);
+            final ExecutorService executorService = Executors.newSingleThreadExecutor();
+            try {
+                final LifecycleException e = executorService.submit(new Callable<LifecycleException>() {
+
+                    @Override
+                    public LifecycleException call() throws Exception {
+                        try {
+                            lock.lockRead(read);
+                            lock.unlockRead(read);
+                            return null;
+                        } catch (LifecycleException e) {
+                            return e;
+                        }
+                    }
+                }).get();
+                assertEquals(LifecycleCommonErrors.LOCK_TIMEOUT, e.getErrorCode());
+            } finally {
+                lock.unlockWrite(written);
+                executorService.shutdown();
+            }
+            try {
+                lock.lockWrite(read);
+                fail("Upgrading read lock to write lock should fail");
+            } catch (LifecycleException e) {
+                assertEquals(LifecycleCommonErrors.LOCK_UPGRADE_NOT_SUPPORTED, e.getErrorCode());
+            }
+        } finally {
+            lock.unlockRead(read);
+        }
+    }
+
+    private LifecycleException lockOnAnotherThread(final StripedReadWriteLockStrategy lock, final Object heldObject, final Object requestedObject)
+            throws Exception {
+        lock.lockWrite(heldObject);
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            return executorService.submit(new Callable<LifecycleException>() {
+
+                @Override
+                public LifecycleException call() throws Exception {
+                    try {
+                        lock.lockWrite(requestedObject);
+                        lock.unlockWrite(requestedObject);
+                        return null;
+                    } catch (LifecycleException e) {
+                        return e;
+                    }
+                }
+            }).get();
+        } finally {
+            lock.unlockWrite(heldObject);
+            executorService.shutdown();
+        }
+    }
+
     private void doConcurrent(Class<? extends ILockingReactiveObject> klass) throws Throwable {
         final ExecutorService executorService = Executors.newFixedThreadPool(7);
         for ( int i = 0; i < 100; i++ ) {
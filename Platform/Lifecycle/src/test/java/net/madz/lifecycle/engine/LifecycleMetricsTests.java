@@ -0,0 +1,110 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.LifecycleCommonErrors;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.ContractObject;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.CustomerObject;
+import net.madz.lifecycle.metrics.InMemoryLifecycleMetrics;
+import net.madz.lifecycle.metrics.InMemoryLifecycleMetrics.StateMachineMetrics;
+import net.madz.lifecycle.metrics.InMemoryLifecycleMetrics.TransitionMetrics;
+import net.madz.lifecycle.metrics.LatencyHistogram;
+import net.madz.lifecycle.metrics.TransitionSample.Phase;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class LifecycleMetricsTests extends EngineTestBase {
+
+    @Test
+    public void test_transition_metrics() throws Exception {
+        @LifecycleRegistry({ CustomerObject.class, ContractObject.class, InMemoryLifecycleMetrics.class })
+        @StateMachineBuilder
+        class Registry extends AbsStateMachineRegistry {
+
+            protected Registry() throws VerificationException {}
+        }
+        final Registry registry = new Registry();
+        final InMemoryLifecycleMetrics metrics = (InMemoryLifecycleMetrics) registry.getLifecycleMetrics();
+        assertNotNull(metrics);
+        try {
+            final CustomerObject customer = new CustomerObject();
+            final ContractObject contract = new ContractObject(customer);
+            customer.confirm();
+            contract.confirm();
+            contract.startService();
+            try {
+                customer.renew();
+                fail("Renew is not allowed on InService state");
+            } catch (LifecycleException e) {
+                assertEquals(LifecycleCommonErrors.ILLEGAL_TRANSITION_ON_STATE, e.getErrorCode());
+            }
+            final StateMachineMetrics customerMetrics = metrics.getStateMachineMetrics(registry.loadStateMachineObject(CustomerObject.class));
+            assertEquals(2, customerMetrics.getTransitionCount());
+            assertEquals(1, customerMetrics.getFailureCount());
+            assertEquals(Long.valueOf(1L), customerMetrics.getFailureCounts().get(LifecycleCommonErrors.ILLEGAL_TRANSITION_ON_STATE));
+            final StateMachineMetrics contractMetrics = metrics.getStateMachineMetrics(registry.loadStateMachineObject(ContractObject.class));
+            assertEquals(2, contractMetrics.getTransitionCount());
+            assertEquals(0, contractMetrics.getFailureCount());
+            final TransitionMetrics confirm = findTransitionMetrics(contractMetrics, "Confirm");
+            assertEquals(1, confirm.getTransitionCount());
+            assertRecorded(confirm, Phase.STATE_EVALUATION, Phase.INBOUND_WHILE, Phase.METHOD);
+            final TransitionMetrics startService = findTransitionMetrics(contractMetrics, "StartService");
+            assertRecorded(startService, Phase.STATE_EVALUATION, Phase.VALID_WHILE, Phase.INBOUND_WHILE, Phase.METHOD);
+            assertTrue(startService.getTotalHistogram().getMeanNanos() >= startService.getHistogram(Phase.METHOD).getMeanNanos());
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final Set<ObjectName> names = server.queryNames(new ObjectName(InMemoryLifecycleMetrics.JMX_DOMAIN + ":type=Transition,*"), null);
+            assertTrue(names.size() >= 3);
+            final ObjectName startServiceName = new ObjectName(InMemoryLifecycleMetrics.JMX_DOMAIN + ":type=Transition,stateMachine="
+                    + ObjectName.quote(contractMetrics.getStateMachine()) + ",name=" + ObjectName.quote(startService.getTransition()));
+            assertEquals(1L, server.getAttribute(startServiceName, "TransitionCount"));
+        } finally {
+            metrics.close();
+        }
+    }
+
+    @Test
+    public void test_latency_histogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for ( int i = 1; i <= 100; i++ ) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50500L, histogram.getMeanNanos());
+        assertEquals(100000L, histogram.getMaxNanos());
+        final long p50 = histogram.getPercentileNanos(50D);
+        assertTrue(p50 >= 50000L && p50 < 100000L);
+        assertEquals(100000L, histogram.getPercentileNanos(100D));
+    }
+
+    private TransitionMetrics findTransitionMetrics(StateMachineMetrics machineMetrics, String transition) {
+        for ( final TransitionMetrics metrics : machineMetrics.getTransitionMetrics() ) {
+            if ( transition.equalsIgnoreCase(metrics.getTransition()) ) {
+                return metrics;
+            }
+        }
+        fail("No metrics of transition " + transition + " in " + machineMetrics.getStateMachine());
+        return null;
+    }
+
+    private void assertRecorded(TransitionMetrics metrics, Phase... phases) {
+        final Map<String, Long> maxNanos = metrics.getMaxNanos();
+        for ( final Phase phase : phases ) {
+            assertTrue(phase + " of " + metrics.getTransition(), 0L < maxNanos.get(phase.name()));
+        }
+    }
+}
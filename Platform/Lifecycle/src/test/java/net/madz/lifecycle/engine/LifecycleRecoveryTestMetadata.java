@@ -0,0 +1,135 @@
+package net.madz.lifecycle.engine;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.Functions;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.action.Corrupt;
+import net.madz.lifecycle.annotations.action.Recover;
+import net.madz.lifecycle.annotations.action.Redo;
+import net.madz.lifecycle.annotations.state.Corrupted;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+import net.madz.lifecycle.annotations.state.Running;
+
+public class LifecycleRecoveryTestMetadata extends EngineTestBase {
+
+    static final ConcurrentLinkedQueue<Object> recoveryLog = new ConcurrentLinkedQueue<>();
+
+    @StateMachine
+    static interface PlantOrderLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Functions({ @Function(transition = PlantOrderLifecycle.Transitions.Start.class, value = Producing.class),
+                    @Function(transition = PlantOrderLifecycle.Transitions.Expedite.class, value = Expedited.class) })
+            static interface Created {}
+            @Running(priority = 1)
+            @Functions({ @Function(transition = PlantOrderLifecycle.Transitions.Finish.class, value = Finished.class),
+                    @Function(transition = PlantOrderLifecycle.Transitions.Interrupt.class, value = Interrupted.class) })
+            static interface Producing {}
+            @Running(priority = 5)
+            @Functions({ @Function(transition = PlantOrderLifecycle.Transitions.Finish.class, value = Finished.class),
+                    @Function(transition = PlantOrderLifecycle.Transitions.Interrupt.class, value = Interrupted.class) })
+            static interface Expedited {}
+            @Corrupted
+            @Function(transition = PlantOrderLifecycle.Transitions.Resume.class, value = Producing.class)
+            static interface Interrupted {}
+            @End
+            static interface Finished {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Start {}
+            static interface Expedite {}
+            static interface Finish {}
+            @Corrupt
+            static interface Interrupt {}
+            @Recover
+            static interface Resume {}
+        }
+    }
+    @LifecycleMeta(PlantOrderLifecycle.class)
+    public static class PlantOrder extends ReactiveObject {
+
+        public PlantOrder(String state) {
+            initialState(state);
+        }
+
+        @Transition
+        public void start() {}
+
+        @Transition
+        public void expedite() {}
+
+        @Transition
+        public void finish() {}
+
+        @Transition
+        public void interrupt() {}
+
+        @Transition
+        public void resume() {
+            recoveryLog.add(this);
+        }
+    }
+    @StateMachine
+    static interface VehicleOrderLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = VehicleOrderLifecycle.Transitions.Dispatch.class, value = Delivering.class)
+            static interface Scheduled {}
+            @Running
+            @Functions({ @Function(transition = VehicleOrderLifecycle.Transitions.Deliver.class, value = Delivered.class),
+                    @Function(transition = VehicleOrderLifecycle.Transitions.Stall.class, value = Stalled.class) })
+            static interface Delivering {}
+            @Corrupted(recoverPriority = 10)
+            @Function(transition = VehicleOrderLifecycle.Transitions.Redispatch.class, value = Delivering.class)
+            static interface Stalled {}
+            @End
+            static interface Delivered {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Dispatch {}
+            static interface Deliver {}
+            @Corrupt
+            static interface Stall {}
+            @Redo
+            static interface Redispatch {}
+        }
+    }
+    @LifecycleMeta(VehicleOrderLifecycle.class)
+    public static class VehicleOrder extends ReactiveObject {
+
+        public VehicleOrder(String state) {
+            initialState(state);
+        }
+
+        @Transition
+        public void dispatch() {}
+
+        @Transition
+        public void deliver() {}
+
+        @Transition
+        public void stall() {}
+
+        @Transition
+        public void redispatch() {
+            recoveryLog.add(this);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.IRecoverableIterator;
+import net.madz.lifecycle.recovery.LifecycleRecoveryService;
+import net.madz.lifecycle.recovery.RecoveryProgress;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class LifecycleRecoveryTests extends LifecycleRecoveryTestMetadata {
+
+    @LifecycleRegistry({ PlantOrder.class, VehicleOrder.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+    private static class ListIterator<E> implements IRecoverableIterator<E> {
+
+        private final Iterator<E> iterator;
+
+        private ListIterator(List<E> list) {
+            this.iterator = list.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void test_recover_in_priority_order() throws VerificationException {
+        new Registry();
+        recoveryLog.clear();
+        final ArrayList<ReactiveObject> persisted = new ArrayList<>();
+        final ArrayList<PlantOrder> producing = new ArrayList<>();
+        final ArrayList<PlantOrder> expedited = new ArrayList<>();
+        final ArrayList<VehicleOrder> delivering = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ ) {
+            producing.add(new PlantOrder(PlantOrderLifecycle.States.Producing.class.getSimpleName()));
+            expedited.add(new PlantOrder(PlantOrderLifecycle.States.Expedited.class.getSimpleName()));
+            delivering.add(new VehicleOrder(VehicleOrderLifecycle.States.Delivering.class.getSimpleName()));
+        }
+        persisted.addAll(producing);
+        persisted.addAll(expedited);
+        persisted.addAll(delivering);
+        final PlantOrder interrupted = new PlantOrder(PlantOrderLifecycle.States.Interrupted.class.getSimpleName());
+        persisted.add(interrupted);
+        final PlantOrder finished = new PlantOrder(PlantOrderLifecycle.States.Finished.class.getSimpleName());
+        persisted.add(finished);
+        final VehicleOrder scheduled = new VehicleOrder(VehicleOrderLifecycle.States.Scheduled.class.getSimpleName());
+        persisted.add(scheduled);
+        final LifecycleRecoveryService service = new LifecycleRecoveryService(4, 8);
+        final RecoveryProgress progress = service.recover(new ListIterator<>(persisted));
+        assertEquals(RecoveryProgress.Stage.Finished, progress.getStage());
+        assertEquals(303L, progress.getScannedCount());
+        assertEquals(2L, progress.getSkippedCount());
+        assertEquals(300L, progress.getCorruptedCount());
+        assertEquals(201L, progress.getRecoveredCount());
+        assertEquals(100L, progress.getRedoneCount());
+        assertEquals(0L, progress.getFailedCount());
+        assertEquals(0L, progress.getPendingCount());
+        for ( final PlantOrder order : producing ) {
+            assertEquals(PlantOrderLifecycle.States.Producing.class.getSimpleName(), order.getState());
+        }
+        for ( final PlantOrder order : expedited ) {
+            assertEquals(PlantOrderLifecycle.States.Producing.class.getSimpleName(), order.getState());
+        }
+        for ( final VehicleOrder order : delivering ) {
+            assertEquals(VehicleOrderLifecycle.States.Delivering.class.getSimpleName(), order.getState());
+        }
+        assertEquals(PlantOrderLifecycle.States.Producing.class.getSimpleName(), interrupted.getState());
+        assertEquals(PlantOrderLifecycle.States.Finished.class.getSimpleName(), finished.getState());
+        assertEquals(VehicleOrderLifecycle.States.Scheduled.class.getSimpleName(), scheduled.getState());
+        // Corrupted recoverPriority first, then Running priority
+        final ArrayList<Object> log = new ArrayList<>(recoveryLog);
+        assertEquals(301, log.size());
+        assertTrue(delivering.containsAll(log.subList(0, 100)));
+        assertTrue(expedited.containsAll(log.subList(100, 200)));
+        assertTrue(producing.containsAll(log.subList(200, 300)));
+        assertSame(interrupted, log.get(300));
+        assertEquals(Long.valueOf(100L), progress.getCompletedCounts().get(stateMachineName(VehicleOrder.class)));
+        assertEquals(Long.valueOf(201L), progress.getCompletedCounts().get(stateMachineName(PlantOrder.class)));
+    }
+
+    private static String stateMachineName(Class<?> reactiveClass) throws VerificationException {
+        return AbsStateMachineRegistry.getInstance().loadStateMachineObject(reactiveClass).getMetaType().getDottedPath().getAbsoluteName();
+    }
+}
@@ -0,0 +1,129 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.engine.ConditionalJudgerTestMetadata.Meter;
+import net.madz.lifecycle.engine.ConditionalJudgerTestMetadata.VolumeJudger;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.ContractObject;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.CustomerObject;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.CustomerStateMachine;
+import net.madz.lifecycle.meta.impl.builder.RelationConstraintBuilderImpl;
+import net.madz.lifecycle.meta.impl.builder.StateMachineMetaBuilderImpl;
+import net.madz.lifecycle.meta.impl.builder.StateObjectBuilderImpl;
+import net.madz.lifecycle.snapshot.MetadataSnapshot;
+import net.madz.verification.VerificationException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetadataSnapshotTests extends EngineTestBase {
+
+    @LifecycleRegistry({ CustomerObject.class, ContractObject.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+    @LifecycleRegistry(Meter.class)
+    @StateMachineBuilder
+    static class JudgerRegistry extends AbsStateMachineRegistry {
+
+        protected JudgerRegistry() throws VerificationException {}
+    }
+
+    private File directory;
+
+    @Before
+    public void createSnapshotDirectory() throws IOException {
+        directory = File.createTempFile("lifecycle", "snapshot");
+        assertTrue(directory.delete() && directory.mkdirs());
+        System.setProperty(AbsStateMachineRegistry.SNAPSHOT_DIRECTORY_PROPERTY, directory.getAbsolutePath());
+    }
+
+    @After
+    public void deleteSnapshotDirectory() {
+        System.clearProperty(AbsStateMachineRegistry.SNAPSHOT_DIRECTORY_PROPERTY);
+        final File[] files = directory.listFiles();
+        if ( null != files ) {
+            for ( final File file : files ) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void test_warm_start_skips_verification() throws Exception {
+        final Registry cold = new Registry();
+        assertFalse(cold.isLoadedFromSnapshot());
+        final File snapshotFile = new File(directory, Registry.class.getName() + ".snapshot");
+        assertTrue(snapshotFile.isFile());
+        final MetadataSnapshot snapshot = MetadataSnapshot.read(snapshotFile);
+        assertNotNull(snapshot);
+        assertEquals(2, snapshot.getRegisteredClasses().size());
+        final List<Class<?>> frameworkClasses = MetadataSnapshot.classesInPackageOf(StateMachineMetaBuilderImpl.class);
+        assertTrue(frameworkClasses.contains(RelationConstraintBuilderImpl.class));
+        assertTrue(frameworkClasses.contains(StateObjectBuilderImpl.class));
+        assertTrue(snapshot.matches(new Class<?>[] { CustomerObject.class, ContractObject.class }, frameworkClasses, getClass().getClassLoader()));
+        assertFalse(snapshot.matches(new Class<?>[] { ContractObject.class }, frameworkClasses, getClass().getClassLoader()));
+        final List<Class<?>> upgradedClasses = new ArrayList<>(frameworkClasses);
+        upgradedClasses.add(MetadataSnapshotTests.class);
+        assertFalse(snapshot.matches(new Class<?>[] { CustomerObject.class, ContractObject.class }, upgradedClasses, getClass().getClassLoader()));
+        final Registry warm = new Registry();
+        assertTrue(warm.isLoadedFromSnapshot());
+        assertFalse(warm.isMetadataVerified());
+        assertNotNull(warm.getStateMachineMeta(CustomerStateMachine.class));
+        final CustomerObject customer = new CustomerObject();
+        customer.confirm();
+        assertEquals(CustomerStateMachine.States.Confirmed.ConfirmedStates.InService.class.getSimpleName(), customer.getState());
+    }
+
+    @Test
+    public void test_unreadable_snapshot_falls_back_to_verification() throws Exception {
+        new Registry();
+        final File snapshotFile = new File(directory, Registry.class.getName() + ".snapshot");
+        try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            file.writeInt(0);
+        }
+        final Registry registry = new Registry();
+        assertFalse(registry.isLoadedFromSnapshot());
+        assertTrue(new Registry().isLoadedFromSnapshot());
+    }
+
+    @Test
+    public void test_changed_judger_does_not_match() throws Exception {
+        new JudgerRegistry();
+        final MetadataSnapshot snapshot = MetadataSnapshot.read(new File(directory, JudgerRegistry.class.getName() + ".snapshot"));
+        assertNotNull(snapshot);
+        final Class<?>[] registeredClasses = new Class<?>[] { Meter.class };
+        final List<Class<?>> frameworkClasses = MetadataSnapshot.classesInPackageOf(StateMachineMetaBuilderImpl.class);
+        assertTrue(snapshot.matches(registeredClasses, frameworkClasses, getClass().getClassLoader()));
+        final String judgerResource = VolumeJudger.class.getName().replace('.', '/') + ".class";
+        final ClassLoader changedJudgerLoader = new ClassLoader(getClass().getClassLoader()) {
+
+            @Override
+            public InputStream getResourceAsStream(String name) {
+                if ( judgerResource.equals(name) ) {
+                    return new ByteArrayInputStream(new byte[] { 0 });
+                }
+                return super.getResourceAsStream(name);
+            }
+        };
+        assertFalse(snapshot.matches(registeredClasses, frameworkClasses, changedJudgerLoader));
+    }
+}
@@ -0,0 +1,71 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+
+import net.madz.bcel.MethodAccessor;
+import net.madz.bcel.MethodAccessorGenerator;
+
+import org.junit.Test;
+
+public class MethodAccessorTests {
+
+    public static class Bean {
+
+        private int count;
+        private String state;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            if ( null == state ) {
+                throw new IllegalArgumentException("state");
+            }
+            this.state = state;
+        }
+    }
+
+    @Test
+    public void test_generated_accessor_boxes_and_unboxes() throws Throwable {
+        final Bean bean = new Bean();
+        final MethodAccessor setter = MethodAccessorGenerator.create(Bean.class.getMethod("setCount", int.class));
+        final MethodAccessor getter = MethodAccessorGenerator.create(Bean.class.getMethod("getCount"));
+        assertTrue(getter.getClass().getName().startsWith(Bean.class.getName() + "$$MethodAccessor$"));
+        assertNull(setter.invoke(bean, 3));
+        assertEquals(3, getter.invoke(bean));
+    }
+
+    @Test
+    public void test_generated_accessor_wraps_target_exception() throws Throwable {
+        final Bean bean = new Bean();
+        final MethodAccessor setter = MethodAccessorGenerator.create(Bean.class.getMethod("setState", String.class));
+        setter.invoke(bean, "Draft");
+        assertSame("Draft", MethodAccessorGenerator.create(Bean.class.getMethod("getState")).invoke(bean));
+        try {
+            setter.invoke(bean, null);
+            fail("InvocationTargetException expected");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getTargetException() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_generated_accessor_rejects_wrong_arity() throws Throwable {
+        MethodAccessorGenerator.create(Bean.class.getMethod("getCount")).invoke(new Bean(), 1);
+    }
+}
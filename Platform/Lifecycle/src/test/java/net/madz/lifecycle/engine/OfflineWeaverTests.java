@@ -0,0 +1,43 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import net.madz.bcel.MethodInterceptor;
+import net.madz.bcel.OfflineWeaver;
+import net.madz.lifecycle.engine.CoreFuntionTestMetadata.Customer;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.junit.Test;
+
+public class OfflineWeaverTests {
+
+    @Test
+    public void test_offline_weaving_writes_inner_classes_and_skips_woven_classes() throws Throwable {
+        final File classesDirectory = Files.createTempDirectory("lifecycle-weaving").toFile();
+        final String classFileName = Customer.class.getName().replace('.', File.separatorChar) + ".class";
+        final File classFile = new File(classesDirectory, classFileName);
+        classFile.getParentFile().mkdirs();
+        copyOriginalClassFile(classFile);
+        // test classes are already woven when built with offline-weaving
+        assumeFalse(MethodInterceptor.isIntercepted(new ClassParser(classFile.getAbsolutePath()).parse()));
+        assertEquals(1, OfflineWeaver.weave(classesDirectory));
+        assertTrue(MethodInterceptor.isIntercepted(new ClassParser(classFile.getAbsolutePath()).parse()));
+        // Customer has four @Transition methods, each with one generated
+        // inner class next to the woven class.
+        assertEquals(5, classFile.getParentFile().listFiles().length);
+        assertEquals(0, OfflineWeaver.weave(classesDirectory));
+    }
+
+    private void copyOriginalClassFile(File classFile) throws IOException {
+        try (final InputStream input = Customer.class.getResourceAsStream(classFile.getName())) {
+            Files.copy(input, classFile.toPath());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package net.madz.lifecycle.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.LifecycleLock;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+import net.madz.lifecycle.locks.OptimisticLockStrategy;
+
+public class OptimisticLockTestMetadata extends EngineTestBase {
+
+    public static class RetryingLock extends OptimisticLockStrategy {
+
+        public RetryingLock() {
+            super(3, 0L, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected boolean rollback(Object reactiveObject) {
+            ( (Switch) reactiveObject ).rollbacks.incrementAndGet();
+            return true;
+        }
+    }
+    public static class NoRollbackLock extends OptimisticLockStrategy {
+
+        public NoRollbackLock() {
+            super(3, 0L, TimeUnit.MILLISECONDS);
+        }
+    }
+    public static class SingleAttemptLock extends OptimisticLockStrategy {
+
+        public SingleAttemptLock() {
+            super(1, 0L, TimeUnit.MILLISECONDS);
+        }
+    }
+    @StateMachine
+    static interface SwitchLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = SwitchLifecycle.Transitions.Flip.class, value = On.class)
+            static interface Off {}
+            @Function(transition = SwitchLifecycle.Transitions.Flip.class, value = Off.class)
+            static interface On {}
+            @End
+            static interface Broken {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Flip {}
+        }
+    }
+    public abstract static class Switch extends ReactiveObject {
+
+        private final AtomicInteger invocations = new AtomicInteger();
+        /**
+         * Number of flips, during which another thread flips the switch, too.
+         */
+        final AtomicInteger interferences = new AtomicInteger();
+        /**
+         * Flips of the other thread per interference.
+         */
+        final AtomicInteger interferingFlips = new AtomicInteger(1);
+        final AtomicInteger rollbacks = new AtomicInteger();
+
+        public Switch() {
+            initialState(SwitchLifecycle.States.Off.class.getSimpleName());
+        }
+
+        public int getInvocations() {
+            return invocations.get();
+        }
+
+        public abstract void flip();
+
+        protected void interfere() {
+            invocations.incrementAndGet();
+            if ( Thread.currentThread() instanceof Interferer || 0 >= interferences.getAndDecrement() ) {
+                return;
+            }
+            final Interferer interferer = new Interferer(this);
+            interferer.start();
+            try {
+                interferer.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+    private static final class Interferer extends Thread {
+
+        private final Switch target;
+
+        private Interferer(Switch target) {
+            this.target = target;
+        }
+
+        @Override
+        public void run() {
+            for ( int i = 0; i < target.interferingFlips.get(); i++ ) {
+                target.flip();
+            }
+        }
+    }
+    @LifecycleMeta(SwitchLifecycle.class)
+    @LifecycleLock(RetryingLock.class)
+    public static class RetryingSwitch extends Switch {
+
+        @Override
+        @Transition
+        public void flip() {
+            interfere();
+        }
+    }
+    @LifecycleMeta(SwitchLifecycle.class)
+    @LifecycleLock(SingleAttemptLock.class)
+    public static class SingleAttemptSwitch extends Switch {
+
+        @Override
+        @Transition
+        public void flip() {
+            interfere();
+        }
+    }
+    @LifecycleMeta(SwitchLifecycle.class)
+    @LifecycleLock(NoRollbackLock.class)
+    public static class NoRollbackSwitch extends Switch {
+
+        @Override
+        @Transition
+        public void flip() {
+            interfere();
+        }
+    }
+}
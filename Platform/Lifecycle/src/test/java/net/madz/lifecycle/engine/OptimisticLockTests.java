@@ -0,0 +1,99 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.LifecycleCommonErrors;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class OptimisticLockTests extends OptimisticLockTestMetadata {
+
+    @LifecycleRegistry({ RetryingSwitch.class, SingleAttemptSwitch.class, NoRollbackSwitch.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    private static final String OFF = SwitchLifecycle.States.Off.class.getSimpleName();
+    private static final String ON = SwitchLifecycle.States.On.class.getSimpleName();
+
+    @Test
+    public void test_transition_without_conflict_commits_once() throws VerificationException {
+        new Registry();
+        final RetryingSwitch lamp = new RetryingSwitch();
+        lamp.flip();
+        assertEquals(ON, lamp.getState());
+        lamp.flip();
+        assertEquals(OFF, lamp.getState());
+        assertEquals(2, lamp.getInvocations());
+    }
+
+    @Test
+    public void test_conflicting_transition_is_retried() throws VerificationException {
+        new Registry();
+        final RetryingSwitch lamp = new RetryingSwitch();
+        lamp.interferences.set(2);
+        // Each of the first two attempts is overtaken by a flip of another
+        // thread, which does not wait for any lock. The third one commits.
+        lamp.flip();
+        assertEquals(5, lamp.getInvocations());
+        assertEquals(2, lamp.rollbacks.get());
+        assertEquals(ON, lamp.getState());
+    }
+
+    @Test
+    public void test_conflict_fails_when_attempts_are_exhausted() throws VerificationException {
+        new Registry();
+        final SingleAttemptSwitch lamp = new SingleAttemptSwitch();
+        lamp.interferences.set(1);
+        try {
+            lamp.flip();
+            fail("Flip should lose the state conflict");
+        } catch (LifecycleException e) {
+            assertEquals(LifecycleCommonErrors.STATE_CONFLICT, e.getErrorCode());
+        }
+        assertEquals(ON, lamp.getState());
+        assertEquals(2, lamp.getInvocations());
+    }
+
+    @Test
+    public void test_conflict_is_not_retried_without_rollback() throws VerificationException {
+        new Registry();
+        final NoRollbackSwitch lamp = new NoRollbackSwitch();
+        lamp.interferences.set(1);
+        try {
+            lamp.flip();
+            fail("Flip should lose the state conflict");
+        } catch (LifecycleException e) {
+            assertEquals(LifecycleCommonErrors.STATE_CONFLICT, e.getErrorCode());
+        }
+        // The transition method ran once, plus the interfering flip.
+        assertEquals(2, lamp.getInvocations());
+        assertEquals(ON, lamp.getState());
+    }
+
+    @Test
+    public void test_conflict_is_detected_when_state_is_back_to_from_state() throws VerificationException {
+        new Registry();
+        final SingleAttemptSwitch lamp = new SingleAttemptSwitch();
+        lamp.interferences.set(1);
+        lamp.interferingFlips.set(2);
+        // The other thread flips the switch on and off again, so only the
+        // stamp tells that the state changed.
+        try {
+            lamp.flip();
+            fail("Flip should lose the state conflict");
+        } catch (LifecycleException e) {
+            assertEquals(LifecycleCommonErrors.STATE_CONFLICT, e.getErrorCode());
+        }
+        assertEquals(OFF, lamp.getState());
+        assertEquals(3, lamp.getInvocations());
+    }
+}
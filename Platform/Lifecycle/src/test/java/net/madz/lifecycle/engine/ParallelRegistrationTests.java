@@ -0,0 +1,177 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.SyntaxErrors;
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.relation.RelateTo;
+import net.madz.lifecycle.annotations.relation.RelationSet;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+import net.madz.lifecycle.engine.CallbackTestMetadata.Invoice;
+import net.madz.lifecycle.engine.CallbackTestMetadata.InvoiceItem;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.ContractObject;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.ContractStateMachine;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.CustomerObject;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.CustomerStateMachine;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.InformativeStateMachine;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.OrderObject;
+import net.madz.lifecycle.engine.LifecycleLockTestMetadata.ResourceObject;
+import net.madz.lifecycle.meta.template.StateMachineMetadata;
+import net.madz.verification.VerificationException;
+import net.madz.verification.VerificationFailure;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParallelRegistrationTests extends EngineTestBase {
+
+    private static String parallelism;
+
+    @StateMachine
+    static interface PingStateMachine {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = PingStateMachine.Transitions.Hit.class, value = Done.class)
+            static interface Ready {}
+            @End
+            static interface Done {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Hit {}
+        }
+        @RelationSet
+        static interface Relations {
+
+            @RelateTo(PongStateMachine.class)
+            static interface Pong {}
+        }
+    }
+    @StateMachine
+    static interface PongStateMachine {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = PongStateMachine.Transitions.Hit.class, value = Done.class)
+            static interface Ready {}
+            @End
+            static interface Done {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Hit {}
+        }
+        @RelationSet
+        static interface Relations {
+
+            @RelateTo(PingStateMachine.class)
+            static interface Ping {}
+        }
+    }
+
+    @BeforeClass
+    public static void enableParallelRegistration() {
+        parallelism = System.setProperty(AbsStateMachineRegistry.PARALLELISM_PROPERTY, "4");
+    }
+
+    @AfterClass
+    public static void restoreParallelism() {
+        if ( null == parallelism ) {
+            System.clearProperty(AbsStateMachineRegistry.PARALLELISM_PROPERTY);
+        } else {
+            System.setProperty(AbsStateMachineRegistry.PARALLELISM_PROPERTY, parallelism);
+        }
+    }
+
+    @Test
+    public void test_shared_state_machines_are_built_once() throws VerificationException {
+        @LifecycleRegistry({ OrderObject.class, ContractObject.class, CustomerObject.class, ResourceObject.class, CustomerStateMachine.class })
+        @StateMachineBuilder
+        class Registry extends AbsStateMachineRegistry {
+
+            protected Registry() throws VerificationException {}
+        }
+        final Registry registry = new Registry();
+        assertNotNull(registry.getStateMachineObject(OrderObject.class));
+        assertNotNull(registry.getStateMachineObject(ContractObject.class));
+        assertNotNull(registry.getStateMachineObject(CustomerObject.class));
+        assertNotNull(registry.getStateMachineObject(ResourceObject.class));
+        final StateMachineMetadata informative = registry.getStateMachineMeta(InformativeStateMachine.class);
+        assertNotNull(informative);
+        assertSame(informative, registry.getStateMachineMeta(CustomerStateMachine.class).getSuper());
+        assertSame(informative, registry.getStateMachineMeta(ContractStateMachine.class).getSuper());
+        assertSame(registry.getStateMachineMeta(CustomerStateMachine.class), registry.loadStateMachineObject(CustomerObject.class).getMetaType());
+    }
+
+    @Test
+    public void test_failures_are_merged() {
+        @LifecycleRegistry({ ContractObject.class, String.class, CustomerObject.class, Integer.class })
+        @StateMachineBuilder
+        class Registry extends AbsStateMachineRegistry {
+
+            protected Registry() throws VerificationException {}
+        }
+        try {
+            new Registry();
+            fail("Classes without state machine should not be registered.");
+        } catch (VerificationException e) {
+            // Failures of the same registry and error code are equal.
+            assertEquals(1, e.getVerificationFailureSet().size());
+            final VerificationFailure failure = e.getVerificationFailureSet().iterator().next();
+            assertEquals(SyntaxErrors.REGISTERED_META_ERROR, failure.getErrorCode());
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void test_state_machines_referencing_each_other_fail_without_deadlock() throws VerificationException {
+        @LifecycleRegistry({ PingStateMachine.class, PongStateMachine.class })
+        @StateMachineBuilder
+        class Registry extends AbsStateMachineRegistry {
+
+            protected Registry() throws VerificationException {}
+        }
+        // Both machines are built on the same thread or on different ones,
+        // depending on scheduling, and fail the same way.
+        for ( int i = 0; i < 50; i++ ) {
+            try {
+                new Registry();
+                fail("State machines referencing each other cannot be built.");
+            } catch (IllegalStateException expected) {}
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void test_callback_observing_class_of_another_worker_does_not_dead_lock() throws VerificationException {
+        @LifecycleRegistry({ Invoice.class, InvoiceItem.class })
+        @StateMachineBuilder
+        class Registry extends AbsStateMachineRegistry {
+
+            protected Registry() throws VerificationException {}
+        }
+        // The callback of Invoice observes InvoiceItem, which is loaded while
+        // another worker may be building its state machine.
+        for ( int i = 0; i < 200; i++ ) {
+            final Registry registry = new Registry();
+            assertSame(registry.getStateMachineMeta(CallbackTestMetadata.InvoiceItemStateMachineMeta.class), registry.getStateMachineObject(InvoiceItem.class).getMetaType());
+            assertNotNull(registry.getStateMachineObject(Invoice.class));
+        }
+    }
+}
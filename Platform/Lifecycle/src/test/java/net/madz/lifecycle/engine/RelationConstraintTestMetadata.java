@@ -0,0 +1,122 @@
+package net.madz.lifecycle.engine;
+
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.Functions;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.relation.ErrorMessage;
+import net.madz.lifecycle.annotations.relation.InboundWhile;
+import net.madz.lifecycle.annotations.relation.RelateTo;
+import net.madz.lifecycle.annotations.relation.Relation;
+import net.madz.lifecycle.annotations.relation.RelationSet;
+import net.madz.lifecycle.annotations.relation.ValidWhile;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+
+public class RelationConstraintTestMetadata extends EngineTestBase {
+
+    static final String BUNDLE = "relation_constraint_test";
+    static final String MISSING_BUNDLE = "scheduling";
+
+    @StateMachine
+    static interface SiloLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Functions({ @Function(transition = SiloLifecycle.Transitions.Refill.class, value = Refilling.class),
+                    @Function(transition = SiloLifecycle.Transitions.Drain.class, value = Drained.class) })
+            static interface Open {}
+            @Function(transition = SiloLifecycle.Transitions.Service.class, value = Maintained.class)
+            static interface Refilling {}
+            @Function(transition = SiloLifecycle.Transitions.Close.class, value = Closed.class)
+            static interface Maintained {}
+            @End
+            static interface Closed {}
+            @End
+            static interface Drained {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Refill {}
+            static interface Drain {}
+            static interface Service {}
+            static interface Close {}
+        }
+    }
+    @StateMachine
+    static interface BatchLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = BatchLifecycle.Transitions.Mix.class, value = Mixing.class)
+            @ValidWhile(relation = BatchLifecycle.Relations.SiloRelation.class, on = { SiloLifecycle.States.Open.class,
+                    SiloLifecycle.States.Refilling.class }, otherwise = {
+                    @ErrorMessage(states = { SiloLifecycle.States.Maintained.class }, bundle = BUNDLE, code = "900-0001"),
+                    @ErrorMessage(states = { SiloLifecycle.States.Drained.class }, bundle = MISSING_BUNDLE, code = "900-0003") })
+            static interface Queued {}
+            @Function(transition = BatchLifecycle.Transitions.Pour.class, value = Poured.class)
+            static interface Mixing {}
+            @End
+            @InboundWhile(relation = BatchLifecycle.Relations.SiloRelation.class, on = { SiloLifecycle.States.Open.class,
+                    SiloLifecycle.States.Maintained.class }, otherwise = { @ErrorMessage(states = { SiloLifecycle.States.Closed.class },
+                    bundle = BUNDLE, code = "900-0002") })
+            static interface Poured {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Mix {}
+            static interface Pour {}
+        }
+        @RelationSet
+        static interface Relations {
+
+            @RelateTo(SiloLifecycle.class)
+            static interface SiloRelation {}
+        }
+    }
+    @LifecycleMeta(SiloLifecycle.class)
+    public static class Silo extends ReactiveObject {
+
+        public Silo() {
+            initialState(SiloLifecycle.States.Open.class.getSimpleName());
+        }
+
+        @Transition
+        public void refill() {}
+
+        @Transition
+        public void drain() {}
+
+        @Transition
+        public void service() {}
+
+        @Transition
+        public void close() {}
+    }
+    @LifecycleMeta(BatchLifecycle.class)
+    public static class Batch extends ReactiveObject {
+
+        @Relation(BatchLifecycle.Relations.SiloRelation.class)
+        private final Silo silo;
+
+        public Batch(Silo silo) {
+            initialState(BatchLifecycle.States.Queued.class.getSimpleName());
+            this.silo = silo;
+        }
+
+        @Transition
+        public void mix() {}
+
+        @Transition
+        public void pour() {}
+    }
+}
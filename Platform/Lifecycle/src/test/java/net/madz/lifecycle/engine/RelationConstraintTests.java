@@ -0,0 +1,118 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.LifecycleCommonErrors;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class RelationConstraintTests extends RelationConstraintTestMetadata {
+
+    @LifecycleRegistry({ Batch.class, Silo.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    @Test
+    public void test_valid_while_on_any_of_states() throws VerificationException {
+        new Registry();
+        final Silo silo = new Silo();
+        final Batch first = new Batch(silo);
+        first.mix();
+        assertState(BatchLifecycle.States.Mixing.class, first);
+        silo.refill();
+        final Batch second = new Batch(silo);
+        second.mix();
+        assertState(BatchLifecycle.States.Mixing.class, second);
+    }
+
+    @Test
+    public void test_valid_while_otherwise_error_message() throws VerificationException {
+        new Registry();
+        final Silo silo = new Silo();
+        silo.refill();
+        silo.service();
+        final Batch batch = new Batch(silo);
+        try {
+            batch.mix();
+            fail("Batch must not mix while its silo is maintained.");
+        } catch (LifecycleException e) {
+            assertEquals("900-0001", e.getErrorCode());
+            assertEquals(BUNDLE, e.getBundle());
+            assertEquals("Silo Maintained is under maintenance.", e.getMessage());
+        }
+        assertState(BatchLifecycle.States.Queued.class, batch);
+    }
+
+    @Test
+    public void test_valid_while_default_error_without_otherwise() throws VerificationException {
+        new Registry();
+        final Silo silo = new Silo();
+        silo.refill();
+        silo.service();
+        silo.close();
+        final Batch batch = new Batch(silo);
+        try {
+            batch.mix();
+            fail("Batch must not mix while its silo is closed.");
+        } catch (LifecycleException e) {
+            assertEquals(LifecycleCommonErrors.STATE_INVALID, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void test_valid_while_default_error_when_otherwise_bundle_is_missing() throws VerificationException {
+        new Registry();
+        final Silo silo = new Silo();
+        silo.drain();
+        final Batch batch = new Batch(silo);
+        try {
+            batch.mix();
+            fail("Batch must not mix while its silo is drained.");
+        } catch (LifecycleException e) {
+            assertEquals(LifecycleCommonErrors.STATE_INVALID, e.getErrorCode());
+        }
+        assertState(BatchLifecycle.States.Queued.class, batch);
+    }
+
+    @Test
+    public void test_inbound_while_otherwise_error_message() throws VerificationException {
+        new Registry();
+        final Silo silo = new Silo();
+        final Batch batch = new Batch(silo);
+        batch.mix();
+        silo.refill();
+        silo.service();
+        silo.close();
+        try {
+            batch.pour();
+            fail("Batch must not be poured while its silo is closed.");
+        } catch (LifecycleException e) {
+            assertEquals("900-0002", e.getErrorCode());
+        }
+        assertState(BatchLifecycle.States.Mixing.class, batch);
+    }
+
+    @Test
+    public void test_inbound_while_default_error_without_otherwise() throws VerificationException {
+        new Registry();
+        final Silo silo = new Silo();
+        final Batch batch = new Batch(silo);
+        batch.mix();
+        silo.refill();
+        try {
+            batch.pour();
+            fail("Batch must not be poured while its silo is refilling.");
+        } catch (LifecycleException e) {
+            assertEquals(LifecycleCommonErrors.VIOLATE_INBOUND_WHILE_RELATION_CONSTRAINT, e.getErrorCode());
+        }
+    }
+}
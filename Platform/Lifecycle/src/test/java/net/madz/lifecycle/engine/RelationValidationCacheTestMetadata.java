@@ -0,0 +1,243 @@
+package net.madz.lifecycle.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.madz.lifecycle.LifecycleLockStrategry;
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.Functions;
+import net.madz.lifecycle.annotations.LifecycleLock;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.relation.InboundWhile;
+import net.madz.lifecycle.annotations.relation.RelateTo;
+import net.madz.lifecycle.annotations.relation.Relation;
+import net.madz.lifecycle.annotations.relation.RelationSet;
+import net.madz.lifecycle.annotations.relation.ValidWhile;
+import net.madz.lifecycle.annotations.relation.ValidWhiles;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+
+public class RelationValidationCacheTestMetadata extends EngineTestBase {
+
+    public static class ResourceLock implements LifecycleLockStrategry {
+
+        static final AtomicInteger readLocks = new AtomicInteger();
+        static final AtomicInteger held = new AtomicInteger();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        @Override
+        public void lockRead(Object reactiveObject) {
+            lock.readLock().lock();
+            readLocks.incrementAndGet();
+            held.incrementAndGet();
+        }
+
+        @Override
+        public void unlockRead(Object targetReactiveObject) {
+            held.decrementAndGet();
+            lock.readLock().unlock();
+        }
+
+        @Override
+        public void lockWrite(Object reactiveObject) {
+            lock.writeLock().lock();
+            held.incrementAndGet();
+        }
+
+        @Override
+        public void unlockWrite(Object targetReactiveObject) {
+            held.decrementAndGet();
+            lock.writeLock().unlock();
+        }
+
+        static void reset() {
+            readLocks.set(0);
+            held.set(0);
+        }
+    }
+    @StateMachine
+    static interface MixerLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = MixerLifecycle.Transitions.Retire.class, value = Retired.class)
+            static interface Idle {}
+            @End
+            static interface Retired {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Retire {}
+        }
+    }
+    @StateMachine
+    static interface TruckLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = TruckLifecycle.Transitions.Park.class, value = Parked.class)
+            static interface Idle {}
+            @End
+            static interface Parked {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Park {}
+        }
+    }
+    @StateMachine
+    static interface DeliveryLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = DeliveryLifecycle.Transitions.Dispatch.class, value = Dispatched.class)
+            @ValidWhile(on = { MixerLifecycle.States.Idle.class }, relation = DeliveryLifecycle.Relations.MixerRelation.class)
+            static interface Draft {}
+            @Functions({ @Function(transition = DeliveryLifecycle.Transitions.Load.class, value = Loaded.class),
+                    @Function(transition = DeliveryLifecycle.Transitions.Finish.class, value = Finished.class) })
+            @ValidWhiles({ @ValidWhile(on = { MixerLifecycle.States.Idle.class }, relation = DeliveryLifecycle.Relations.MixerRelation.class),
+                    @ValidWhile(on = { TruckLifecycle.States.Idle.class }, relation = DeliveryLifecycle.Relations.TruckRelation.class) })
+            @InboundWhile(on = { MixerLifecycle.States.Idle.class }, relation = DeliveryLifecycle.Relations.MixerRelation.class)
+            static interface Dispatched {}
+            @End
+            static interface Loaded {}
+            @End
+            static interface Finished {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Dispatch {}
+            static interface Load {}
+            static interface Finish {}
+        }
+        @RelationSet
+        static interface Relations {
+
+            @RelateTo(MixerLifecycle.class)
+            static interface MixerRelation {}
+            @RelateTo(TruckLifecycle.class)
+            static interface TruckRelation {}
+        }
+    }
+    @StateMachine
+    static interface LegLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = LegLifecycle.Transitions.Close.class, value = Closed.class)
+            @ValidWhiles({ @ValidWhile(on = { MixerLifecycle.States.Idle.class }, relation = LegLifecycle.Relations.MixerRelation.class),
+                    @ValidWhile(on = { TruckLifecycle.States.Idle.class }, relation = LegLifecycle.Relations.TruckRelation.class) })
+            static interface Open {}
+            @End
+            static interface Closed {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Close {}
+        }
+        @RelationSet
+        static interface Relations {
+
+            @RelateTo(MixerLifecycle.class)
+            static interface MixerRelation {}
+            @RelateTo(TruckLifecycle.class)
+            static interface TruckRelation {}
+        }
+    }
+    @LifecycleMeta(MixerLifecycle.class)
+    @LifecycleLock(ResourceLock.class)
+    public static class Mixer extends ReactiveObject {
+
+        public Mixer() {
+            initialState(MixerLifecycle.States.Idle.class.getSimpleName());
+        }
+
+        @Transition
+        public void retire() {}
+    }
+    @LifecycleMeta(TruckLifecycle.class)
+    public static class Truck extends ReactiveObject {
+
+        public Truck() {
+            initialState(TruckLifecycle.States.Idle.class.getSimpleName());
+        }
+
+        @Transition
+        public void park() {}
+    }
+    @LifecycleMeta(LegLifecycle.class)
+    public static class Leg extends ReactiveObject {
+
+        @Relation(LegLifecycle.Relations.MixerRelation.class)
+        private final Mixer mixer;
+        @Relation(LegLifecycle.Relations.TruckRelation.class)
+        private final Truck truck;
+
+        public Leg(Mixer mixer, Truck truck) {
+            initialState(LegLifecycle.States.Open.class.getSimpleName());
+            this.mixer = mixer;
+            this.truck = truck;
+        }
+
+        @Transition
+        public void close() {}
+    }
+    @LifecycleMeta(DeliveryLifecycle.class)
+    public static class Delivery extends ReactiveObject {
+
+        @Relation(DeliveryLifecycle.Relations.MixerRelation.class)
+        private final Mixer mixer;
+        @Relation(DeliveryLifecycle.Relations.TruckRelation.class)
+        private final Truck truck;
+        private final List<Leg> legs = new ArrayList<>();
+
+        public Delivery(Mixer mixer, Truck truck, int legCount) {
+            initialState(DeliveryLifecycle.States.Draft.class.getSimpleName());
+            this.mixer = mixer;
+            this.truck = truck;
+            for ( int i = 0; i < legCount; i++ ) {
+                legs.add(new Leg(mixer, truck));
+            }
+        }
+
+        @Transition
+        public void dispatch() {}
+
+        @Transition
+        public void load() {
+            for ( final Leg leg : legs ) {
+                leg.close();
+            }
+        }
+
+        @Transition
+        public void finish() {
+            truck.park();
+            for ( final Leg leg : legs ) {
+                leg.close();
+            }
+        }
+
+        public List<Leg> getLegs() {
+            return legs;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.LifecycleException;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class RelationValidationCacheTests extends RelationValidationCacheTestMetadata {
+
+    @LifecycleRegistry({ Delivery.class, Leg.class, Mixer.class, Truck.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    @Test
+    public void test_related_object_locked_once_per_transition() throws VerificationException {
+        new Registry();
+        final Delivery delivery = new Delivery(new Mixer(), new Truck(), 0);
+        ResourceLock.reset();
+        delivery.dispatch();
+        assertState(DeliveryLifecycle.States.Dispatched.class, delivery);
+        // Valid while of Draft and inbound while of Dispatched share one lock
+        assertEquals(1, ResourceLock.readLocks.get());
+        assertEquals(0, ResourceLock.held.get());
+    }
+
+    @Test
+    public void test_nested_transitions_reuse_related_object_lock() throws VerificationException {
+        new Registry();
+        final Delivery delivery = new Delivery(new Mixer(), new Truck(), 3);
+        delivery.dispatch();
+        ResourceLock.reset();
+        delivery.load();
+        assertState(DeliveryLifecycle.States.Loaded.class, delivery);
+        for ( final Leg leg : delivery.getLegs() ) {
+            assertState(LegLifecycle.States.Closed.class, leg);
+        }
+        assertEquals(1, ResourceLock.readLocks.get());
+        assertEquals(0, ResourceLock.held.get());
+    }
+
+    @Test
+    public void test_transited_related_object_is_evaluated_again() throws VerificationException {
+        new Registry();
+        final Delivery delivery = new Delivery(new Mixer(), new Truck(), 1);
+        delivery.dispatch();
+        ResourceLock.reset();
+        try {
+            delivery.finish();
+            fail("Leg must not close after its truck has been parked.");
+        } catch (LifecycleException e) {
+            assertState(LegLifecycle.States.Open.class, delivery.getLegs().get(0));
+        }
+        assertEquals(0, ResourceLock.held.get());
+    }
+}
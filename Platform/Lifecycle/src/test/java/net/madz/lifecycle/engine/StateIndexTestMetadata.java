@@ -0,0 +1,85 @@
+package net.madz.lifecycle.engine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.Functions;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+import net.madz.lifecycle.index.LifecycleStateIndex;
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+
+public class StateIndexTestMetadata extends EngineTestBase {
+
+    @StateMachine
+    static interface TankerLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Functions({ @Function(transition = TankerLifecycle.Transitions.Load.class, value = Loaded.class),
+                    @Function(transition = TankerLifecycle.Transitions.Retire.class, value = Retired.class) })
+            static interface Empty {}
+            @Function(transition = TankerLifecycle.Transitions.Unload.class, value = Empty.class)
+            static interface Loaded {}
+            @End
+            static interface Retired {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Load {}
+            static interface Unload {}
+            static interface Retire {}
+        }
+    }
+    @LifecycleMeta(TankerLifecycle.class)
+    public static class Tanker extends ReactiveObject {
+
+        private final long id;
+
+        public Tanker(long id) {
+            this(id, TankerLifecycle.States.Empty.class.getSimpleName());
+        }
+
+        public Tanker(long id, String state) {
+            this.id = id;
+            initialState(state);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        @Transition
+        public void load() {}
+
+        @Transition
+        public void unload() {}
+
+        @Transition
+        public void retire() {}
+    }
+    public static class TankerStateIndex extends LifecycleStateIndex {
+
+        static final List<Tanker> persisted = new ArrayList<>();
+
+        @Override
+        protected Iterator<?> bootstrap(StateMachineObject<?> stateMachine) {
+            return persisted.iterator();
+        }
+
+        @Override
+        protected Object getReactiveObjectId(Object reactiveObject) {
+            return ( (Tanker) reactiveObject ).getId();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.index.LifecycleStateIndex;
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
+import net.madz.verification.VerificationException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StateIndexTests extends StateIndexTestMetadata {
+
+    @LifecycleRegistry({ Tanker.class, TankerStateIndex.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    private static final String EMPTY = TankerLifecycle.States.Empty.class.getSimpleName();
+    private static final String LOADED = TankerLifecycle.States.Loaded.class.getSimpleName();
+    private static final String RETIRED = TankerLifecycle.States.Retired.class.getSimpleName();
+
+    @Before
+    public void clearPersisted() {
+        TankerStateIndex.persisted.clear();
+    }
+
+    @Test
+    public void test_transitions_move_objects_between_state_views() throws VerificationException {
+        final Registry registry = new Registry();
+        final LifecycleStateIndex index = registry.getLifecycleStateIndex();
+        assertNotNull(index);
+        final StateMachineObject<?> stateMachine = registry.loadStateMachineObject(Tanker.class);
+        final Tanker first = new Tanker(1L);
+        final Tanker second = new Tanker(2L);
+        first.load();
+        second.load();
+        assertEquals(2, index.count(stateMachine, LOADED));
+        assertEquals(new HashSet<Object>(Arrays.asList(1L, 2L)), new HashSet<Object>(index.getStateView(stateMachine, LOADED).getObjectIds()));
+        first.unload();
+        assertEquals(1, index.count(stateMachine, LOADED));
+        assertEquals(1, index.count(stateMachine, EMPTY));
+        assertTrue(index.getStateView(stateMachine, TankerLifecycle.States.Empty.class).contains(1L));
+        first.retire();
+        assertEquals(0, index.count(stateMachine, EMPTY));
+        assertEquals(1, index.count(stateMachine, RETIRED));
+    }
+
+    @Test
+    public void test_bootstrap_indexes_persisted_objects() throws VerificationException {
+        TankerStateIndex.persisted.add(new Tanker(10L));
+        TankerStateIndex.persisted.add(new Tanker(11L, LOADED));
+        TankerStateIndex.persisted.add(new Tanker(12L, RETIRED));
+        final Registry registry = new Registry();
+        final LifecycleStateIndex index = registry.getLifecycleStateIndex();
+        final StateMachineObject<?> stateMachine = registry.loadStateMachineObject(Tanker.class);
+        assertEquals(1, index.count(stateMachine, EMPTY));
+        assertEquals(1, index.count(stateMachine, LOADED));
+        assertEquals(1, index.count(stateMachine, RETIRED));
+        TankerStateIndex.persisted.get(1).unload();
+        assertEquals(2, index.count(stateMachine, EMPTY));
+        assertEquals(0, index.count(stateMachine, LOADED));
+    }
+
+    @Test
+    public void test_track_untrack_and_rebuild() throws VerificationException {
+        final Registry registry = new Registry();
+        final LifecycleStateIndex index = registry.getLifecycleStateIndex();
+        final StateMachineObject<?> stateMachine = registry.loadStateMachineObject(Tanker.class);
+        final Tanker tanker = new Tanker(20L);
+        index.track(stateMachine, tanker);
+        assertEquals(1, index.count(stateMachine, EMPTY));
+        assertTrue(index.untrack(stateMachine, tanker));
+        assertFalse(index.untrack(stateMachine, tanker));
+        assertEquals(0, index.count(stateMachine, EMPTY));
+        index.track(stateMachine, tanker);
+        assertEquals(2, index.rebuild(stateMachine, Arrays.asList(new Tanker(21L, LOADED), new Tanker(22L, LOADED)).iterator()));
+        assertEquals(0, index.count(stateMachine, EMPTY));
+        assertEquals(2, index.count(stateMachine, LOADED));
+    }
+
+    @Test
+    public void test_counts_stay_consistent_under_concurrent_transitions() throws Exception {
+        final Registry registry = new Registry();
+        final LifecycleStateIndex index = registry.getLifecycleStateIndex();
+        final StateMachineObject<?> stateMachine = registry.loadStateMachineObject(Tanker.class);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for ( int i = 0; i < 4; i++ ) {
+                final long firstId = i * 100L;
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() {
+                        for ( long id = firstId; id < firstId + 100L; id++ ) {
+                            final Tanker tanker = new Tanker(id);
+                            tanker.load();
+                            tanker.unload();
+                            if ( 0L == id % 2 ) {
+                                tanker.load();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for ( final Future<Void> future : futures ) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200, index.count(stateMachine, EMPTY));
+        assertEquals(200, index.count(stateMachine, LOADED));
+        assertEquals(200, index.getStateView(stateMachine, LOADED).getObjectIds().size());
+    }
+
+    @Test
+    public void test_interleaved_moves_of_one_object_keep_it_in_one_view() throws Exception {
+        final Registry registry = new Registry();
+        final LifecycleStateIndex index = registry.getLifecycleStateIndex();
+        final StateMachineObject<?> stateMachine = registry.loadStateMachineObject(Tanker.class);
+        final StateTransitionTable table = stateMachine.getTransitionTable();
+        final int empty = table.getStateOrdinal(EMPTY);
+        final Tanker tanker = new Tanker(30L);
+        index.track(stateMachine, tanker);
+        // Two unlocked transitions both saw the tanker empty.
+        index.onStateChanged(stateMachine, tanker, empty, table.getStateOrdinal(LOADED));
+        index.onStateChanged(stateMachine, tanker, empty, table.getStateOrdinal(RETIRED));
+        assertEquals(0, index.count(stateMachine, EMPTY));
+        assertEquals(0, index.count(stateMachine, LOADED));
+        assertEquals(1, index.count(stateMachine, RETIRED));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for ( int i = 0; i < 4; i++ ) {
+                final int toState = i % table.getStateCount();
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() {
+                        for ( int j = 0; j < 1000; j++ ) {
+                            index.onStateChanged(stateMachine, tanker, empty, toState);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for ( final Future<Void> future : futures ) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, index.count(stateMachine, EMPTY) + index.count(stateMachine, LOADED) + index.count(stateMachine, RETIRED));
+    }
+}
@@ -0,0 +1,48 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.madz.bcel.BCELClassFileTransformer;
+import net.madz.lifecycle.engine.CoreFuntionTestMetadata.Customer;
+
+import org.junit.Test;
+
+public class TransformerPreScanTests {
+
+    @Test
+    public void test_pre_scan_accepts_lifecycle_class() throws IOException {
+        assertTrue(BCELClassFileTransformer.hasCandidateAnnotation(readClassFile(Customer.class)));
+    }
+
+    @Test
+    public void test_pre_scan_rejects_plain_class() throws IOException {
+        assertFalse(BCELClassFileTransformer.hasCandidateAnnotation(readClassFile(TransformerPreScanTests.class)));
+        assertFalse(BCELClassFileTransformer.hasCandidateAnnotation(readClassFile(EngineTestBase.class)));
+    }
+
+    @Test
+    public void test_statistics_count_scanned_classes() {
+        final BCELClassFileTransformer.Statistics statistics = BCELClassFileTransformer.getStatistics();
+        // nothing is counted when test classes are woven at build time
+        assumeTrue(0 < statistics.getScannedClasses());
+        assertTrue(0 < statistics.getTransformedClasses());
+        assertTrue(statistics.getScannedClasses() >= statistics.getRejectedClasses() + statistics.getTransformedClasses());
+    }
+
+    private byte[] readClassFile(Class<?> klass) throws IOException {
+        final String classFileName = klass.getName().substring(klass.getPackage().getName().length() + 1) + ".class";
+        try (final InputStream input = klass.getResourceAsStream(classFileName); final ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            final byte[] buffer = new byte[4096];
+            for ( int length = input.read(buffer); length >= 0; length = input.read(buffer) ) {
+                output.write(buffer, 0, length);
+            }
+            return output.toByteArray();
+        }
+    }
+}
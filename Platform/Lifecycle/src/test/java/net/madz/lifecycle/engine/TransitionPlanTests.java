@@ -0,0 +1,96 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.madz.bcel.intercept.DefaultStateMachineRegistry;
+import net.madz.lifecycle.meta.instance.StateMachineObject;
+import net.madz.lifecycle.meta.instance.StateTransitionTable;
+import net.madz.lifecycle.meta.instance.TransitionPlan;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class TransitionPlanTests extends CoreFuntionTestMetadata {
+
+    @Test
+    public void test_transition_plan_compiled_once_per_state_and_transition() throws VerificationException {
+        final StateMachineObject<?> stateMachine = DefaultStateMachineRegistry.getInstance().loadStateMachineObject(Customer.class);
+        final String draft = CustomerLifecycleMeta.States.Draft.class.getSimpleName();
+        final TransitionPlan plan = stateMachine.getTransitionPlan(draft, "Activate");
+        assertNotNull(plan);
+        assertSame(plan, stateMachine.getTransitionPlan(draft, "Activate"));
+        assertEquals(CustomerLifecycleMeta.States.Active.class.getSimpleName(), plan.getNextState());
+        assertTrue(plan.isNextStateEvaluatedBeforeTransition());
+        final Customer customer = new Customer();
+        customer.activate();
+        assertSame(plan, stateMachine.getTransitionPlan(draft, "Activate"));
+        assertEquals(CustomerLifecycleMeta.States.Active.class.getSimpleName(), customer.getState());
+    }
+
+    @Test
+    public void test_transition_plan_absent_for_illegal_transition() throws VerificationException {
+        final StateMachineObject<?> stateMachine = DefaultStateMachineRegistry.getInstance().loadStateMachineObject(Customer.class);
+        assertNull(stateMachine.getTransitionPlan(CustomerLifecycleMeta.States.Draft.class.getSimpleName(), "Suspend"));
+    }
+
+    @Test
+    public void test_transition_table_assigns_dense_ordinals() throws VerificationException {
+        final StateMachineObject<?> stateMachine = DefaultStateMachineRegistry.getInstance().loadStateMachineObject(Customer.class);
+        final StateTransitionTable table = stateMachine.getTransitionTable();
+        assertSame(table, stateMachine.getTransitionTable());
+        assertEquals(4, table.getStateCount());
+        assertEquals(4, table.getTransitionCount());
+        for ( int ordinal = 0; ordinal < table.getStateCount(); ordinal++ ) {
+            assertEquals(ordinal, table.getStateOrdinal(table.getStateName(ordinal)));
+        }
+        final int activate = table.getTransitionOrdinal("Activate");
+        assertTrue(0 <= activate && activate < table.getTransitionCount());
+        assertEquals(activate, table.getTransitionOrdinal(CustomerLifecycleMeta.Transitions.Activate.class));
+        assertEquals(StateTransitionTable.UNKNOWN, table.getTransitionOrdinal("Unknown"));
+        assertEquals(StateTransitionTable.UNKNOWN, table.getStateOrdinal("Unknown"));
+    }
+
+    @Test
+    public void test_transition_table_function_matrix() throws VerificationException {
+        final StateMachineObject<?> stateMachine = DefaultStateMachineRegistry.getInstance().loadStateMachineObject(Customer.class);
+        final StateTransitionTable table = stateMachine.getTransitionTable();
+        final int draft = table.getStateOrdinal(CustomerLifecycleMeta.States.Draft.class.getSimpleName());
+        final int activate = table.getTransitionOrdinal("Activate");
+        final int suspend = table.getTransitionOrdinal("Suspend");
+        assertTrue(table.isTransitionValid(draft, activate));
+        assertNotNull(table.getFunctionMetadata(draft, activate));
+        assertEquals(CustomerLifecycleMeta.States.Active.class.getSimpleName(), table.getFunctionMetadata(draft, activate).getNextStates().get(0)
+                .getSimpleName());
+        assertFalse(table.isTransitionValid(draft, suspend));
+        assertNull(table.getFunctionMetadata(draft, suspend));
+    }
+
+    @Test
+    public void test_transition_plan_by_ordinal_shares_plan_cell() throws VerificationException {
+        final StateMachineObject<?> stateMachine = DefaultStateMachineRegistry.getInstance().loadStateMachineObject(Customer.class);
+        final String active = CustomerLifecycleMeta.States.Active.class.getSimpleName();
+        final int cancel = stateMachine.getTransitionTable().getTransitionOrdinal("Cancel");
+        final TransitionPlan plan = stateMachine.getTransitionPlan(active, cancel, "Cancel");
+        assertNotNull(plan);
+        assertSame(plan, stateMachine.getTransitionPlan(active, "Cancel"));
+        assertSame(plan, stateMachine.getTransitionPlan(active, CustomerLifecycleMeta.Transitions.Cancel.class));
+        assertNull(stateMachine.getTransitionPlan(CustomerLifecycleMeta.States.Canceled.class.getSimpleName(), cancel, "Cancel"));
+    }
+
+    @Test
+    public void test_transition_table_resolves_overriding_transition() throws VerificationException {
+        final StateMachineObject<?> stateMachine = DefaultStateMachineRegistry.getInstance().loadStateMachineObject(
+                KeyBoardObjectPostValidateCondition.class);
+        final StateTransitionTable table = stateMachine.getTransitionTable();
+        final int readingInput = table.getStateOrdinal(KeyBoardLifecycleMetadataPostValidateCondition.States.ReadingInput.class.getSimpleName());
+        final int pressAnyKey = table.getTransitionOrdinal("PressAnyKey");
+        assertTrue(table.isTransitionValid(readingInput, pressAnyKey));
+        assertSame(table.getTransition(pressAnyKey), stateMachine.getMetaType().getTransition(
+                KeyBoardLifecycleMetadataPostValidateCondition.Transitions.PressAnyKey.class));
+    }
+}
@@ -0,0 +1,75 @@
+package net.madz.lifecycle.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.Functions;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.action.Fail;
+import net.madz.lifecycle.annotations.action.Timeout;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+import net.madz.lifecycle.annotations.state.Running;
+import net.madz.lifecycle.timeout.TransitionTimeoutService;
+
+public class TransitionTimeoutTestMetadata extends EngineTestBase {
+
+    @StateMachine
+    static interface JobLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = JobLifecycle.Transitions.Start.class, value = Executing.class)
+            static interface Queued {}
+            @Running
+            @Functions({ @Function(transition = JobLifecycle.Transitions.Finish.class, value = Done.class),
+                    @Function(transition = JobLifecycle.Transitions.Expire.class, value = Expired.class) })
+            static interface Executing {}
+            @End
+            static interface Done {}
+            @End
+            static interface Expired {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Start {}
+            static interface Finish {}
+            @Fail
+            @Timeout(200L)
+            static interface Expire {}
+        }
+    }
+    @LifecycleMeta(JobLifecycle.class)
+    public static class Job extends ReactiveObject {
+
+        public Job() {
+            initialState(JobLifecycle.States.Queued.class.getSimpleName());
+        }
+
+        public Job(String state) {
+            initialState(state);
+        }
+
+        @Transition
+        public void start() {}
+
+        @Transition
+        public void finish() {}
+
+        @Transition
+        public void expire() {}
+    }
+    public static class FastTimeoutService extends TransitionTimeoutService {
+
+        public FastTimeoutService() {
+            super(10L, TimeUnit.MILLISECONDS, 16, 3, 2, 16);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package net.madz.lifecycle.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.LifecycleRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry.StateMachineBuilder;
+import net.madz.lifecycle.engine.TransitionTimeoutTestMetadata.FastTimeoutService;
+import net.madz.lifecycle.engine.TransitionTimeoutTestMetadata.Job;
+import net.madz.lifecycle.engine.TransitionTimeoutTestMetadata.JobLifecycle;
+import net.madz.lifecycle.timeout.HierarchicalTimingWheel;
+import net.madz.lifecycle.timeout.TransitionTimeoutService;
+import net.madz.verification.VerificationException;
+
+import org.junit.Test;
+
+public class TransitionTimeoutTests extends TransitionTimeoutTestMetadata {
+
+    @LifecycleRegistry({ Job.class, FastTimeoutService.class })
+    @StateMachineBuilder
+    static class Registry extends AbsStateMachineRegistry {
+
+        protected Registry() throws VerificationException {}
+    }
+
+    @Test
+    public void test_timeout_fires_fail_transition() throws Exception {
+        final TransitionTimeoutService service = new Registry().getTransitionTimeoutService();
+        assertNotNull(service);
+        try {
+            final Job job = new Job();
+            job.start();
+            assertEquals(JobLifecycle.States.Executing.class.getSimpleName(), job.getState());
+            assertEquals(1L, service.getPendingCount());
+            awaitState(job, JobLifecycle.States.Expired.class.getSimpleName(), 5000L);
+            assertEquals(0L, service.getPendingCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void test_leaving_state_cancels_timeout() throws Exception {
+        final TransitionTimeoutService service = new Registry().getTransitionTimeoutService();
+        try {
+            final Job job = new Job();
+            job.start();
+            job.finish();
+            Thread.sleep(400L);
+            assertEquals(JobLifecycle.States.Done.class.getSimpleName(), job.getState());
+            assertEquals(0L, service.getPendingCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void test_track_loaded_object() throws Exception {
+        final Registry registry = new Registry();
+        final TransitionTimeoutService service = registry.getTransitionTimeoutService();
+        try {
+            final Job job = new Job(JobLifecycle.States.Executing.class.getSimpleName());
+            service.track(registry.loadStateMachineObject(Job.class), job);
+            awaitState(job, JobLifecycle.States.Expired.class.getSimpleName(), 5000L);
+            final Job untracked = new Job(JobLifecycle.States.Executing.class.getSimpleName());
+            service.track(registry.loadStateMachineObject(Job.class), untracked);
+            assertTrue(service.untrack(untracked));
+            Thread.sleep(400L);
+            assertEquals(JobLifecycle.States.Executing.class.getSimpleName(), untracked.getState());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void test_rejected_timeout_forgets_object() throws Exception {
+        final Registry registry = new Registry();
+        final TransitionTimeoutService service = registry.getTransitionTimeoutService();
+        try {
+            // The object left the state without an intercepted transition.
+            final Job job = new Job(JobLifecycle.States.Done.class.getSimpleName());
+            service.onStateChanged(registry.loadStateMachineObject(Job.class), job, JobLifecycle.States.Executing.class.getSimpleName());
+            assertEquals(1, service.getTrackedCount());
+            final long deadline = System.currentTimeMillis() + 5000L;
+            while ( 0 < service.getTrackedCount() && System.currentTimeMillis() < deadline ) {
+                Thread.sleep(10L);
+            }
+            assertEquals(0, service.getTrackedCount());
+            assertEquals(JobLifecycle.States.Done.class.getSimpleName(), job.getState());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void test_replaced_registry_shuts_down_timeout_service() throws Exception {
+        final TransitionTimeoutService service = new Registry().getTransitionTimeoutService();
+        final TransitionTimeoutService current = new Registry().getTransitionTimeoutService();
+        try {
+            assertTrue(service.isShutdown());
+            assertFalse(current.isShutdown());
+        } finally {
+            current.shutdown();
+        }
+    }
+
+    @Test
+    public void test_timing_wheel_cascades_and_cancels() throws Exception {
+        final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(1L, TimeUnit.MILLISECONDS, 8, 3, new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        try {
+            final int count = 200;
+            final CountDownLatch expired = new CountDownLatch(count / 2);
+            final AtomicInteger fired = new AtomicInteger();
+            final List<HierarchicalTimingWheel.Deadline> deadlines = new ArrayList<>();
+            for ( int i = 0; i < count; i++ ) {
+                deadlines.add(wheel.schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        fired.incrementAndGet();
+                        expired.countDown();
+                    }
+                }, 5L + i * 2L, TimeUnit.MILLISECONDS));
+            }
+            for ( int i = 1; i < count; i += 2 ) {
+                assertTrue(deadlines.get(i).cancel());
+            }
+            assertTrue(expired.await(10L, TimeUnit.SECONDS));
+            Thread.sleep(50L);
+            assertEquals(count / 2, fired.get());
+            assertEquals(0L, wheel.getPendingCount());
+            for ( int i = 0; i < count; i += 2 ) {
+                assertTrue(deadlines.get(i).isExpired());
+                assertFalse(deadlines.get(i).cancel());
+            }
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    private static void awaitState(Job job, String state, long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        while ( !state.equals(job.getState()) && System.currentTimeMillis() < deadline ) {
+            Thread.sleep(10L);
+        }
+        assertEquals(state, job.getState());
+    }
+}
@@ -0,0 +1,390 @@
+package net.madz.lifecycle.benchmark;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.madz.bcel.intercept.DefaultStateMachineRegistry;
+import net.madz.lifecycle.AbsStateMachineRegistry;
+import net.madz.lifecycle.LifecycleLockStrategry;
+import net.madz.lifecycle.annotations.CompositeState;
+import net.madz.lifecycle.annotations.Function;
+import net.madz.lifecycle.annotations.Functions;
+import net.madz.lifecycle.annotations.LifecycleLock;
+import net.madz.lifecycle.annotations.LifecycleMeta;
+import net.madz.lifecycle.annotations.StateIndicator;
+import net.madz.lifecycle.annotations.StateMachine;
+import net.madz.lifecycle.annotations.StateSet;
+import net.madz.lifecycle.annotations.Transition;
+import net.madz.lifecycle.annotations.TransitionSet;
+import net.madz.lifecycle.annotations.action.Condition;
+import net.madz.lifecycle.annotations.action.ConditionSet;
+import net.madz.lifecycle.annotations.action.Conditional;
+import net.madz.lifecycle.annotations.action.ConditionalTransition;
+import net.madz.lifecycle.annotations.relation.InboundWhile;
+import net.madz.lifecycle.annotations.relation.RelateTo;
+import net.madz.lifecycle.annotations.relation.Relation;
+import net.madz.lifecycle.annotations.relation.RelationSet;
+import net.madz.lifecycle.annotations.relation.ValidWhile;
+import net.madz.lifecycle.annotations.state.End;
+import net.madz.lifecycle.annotations.state.Initial;
+import net.madz.lifecycle.annotations.state.ShortCut;
+import net.madz.verification.VerificationException;
+
+/**
+ * State machines and reactive objects measured by {@link TransitionBenchmarks}.
+ * Every scenario has a cycle, so that one benchmark operation performs a
+ * round trip of two transitions and leaves the object in its starting state.
+ */
+public class BenchmarkLifecycleMetadata {
+
+    public static void registerLifecycleMetadata() throws VerificationException {
+        final AbsStateMachineRegistry registry = DefaultStateMachineRegistry.getInstance();
+        registry.registerLifecycleMeta(Toggle.class);
+        registry.registerLifecycleMeta(Worker.class);
+        registry.registerLifecycleMeta(Shipment.class);
+        registry.registerLifecycleMeta(Account.class);
+        registry.registerLifecycleMeta(Subscription.class);
+        registry.registerLifecycleMeta(LockedToggle.class);
+    }
+
+    public abstract static class ReactiveObject {
+
+        @StateIndicator
+        private String state = null;
+
+        protected void initialState(String stateName) {
+            if ( null == state ) {
+                this.state = stateName;
+            } else {
+                throw new IllegalStateException("Cannot call initialState method after state had been intialized.");
+            }
+        }
+
+        public String getState() {
+            return state;
+        }
+    }
+    // ///////////////////////////////////////////////////////////////////////////////
+    // Simple
+    // ///////////////////////////////////////////////////////////////////////////////
+    @StateMachine
+    static interface ToggleLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = ToggleLifecycle.Transitions.TurnOn.class, value = On.class)
+            static interface Off {}
+            @Functions({ @Function(transition = ToggleLifecycle.Transitions.TurnOff.class, value = Off.class),
+                    @Function(transition = ToggleLifecycle.Transitions.Retire.class, value = Retired.class) })
+            static interface On {}
+            @End
+            static interface Retired {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface TurnOn {}
+            static interface TurnOff {}
+            static interface Retire {}
+        }
+    }
+    @LifecycleMeta(ToggleLifecycle.class)
+    public static class Toggle extends ReactiveObject {
+
+        public Toggle() {
+            initialState(ToggleLifecycle.States.Off.class.getSimpleName());
+        }
+
+        @Transition
+        public void turnOn() {}
+
+        @Transition
+        public void turnOff() {}
+
+        @Transition
+        public void retire() {}
+    }
+    // ///////////////////////////////////////////////////////////////////////////////
+    // Conditional
+    // ///////////////////////////////////////////////////////////////////////////////
+    @StateMachine
+    static interface WorkerLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = WorkerLifecycle.Transitions.Process.class, value = { Working.class, Overloaded.class })
+            static interface Idle {}
+            @Functions({ @Function(transition = WorkerLifecycle.Transitions.Complete.class, value = Idle.class),
+                    @Function(transition = WorkerLifecycle.Transitions.Close.class, value = Closed.class) })
+            static interface Working {}
+            @Function(transition = WorkerLifecycle.Transitions.Complete.class, value = Idle.class)
+            static interface Overloaded {}
+            @End
+            static interface Closed {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            @Conditional(condition = WorkerLifecycle.Conditions.Load.class, judger = LoadJudger.class, postEval = false)
+            static interface Process {}
+            static interface Complete {}
+            static interface Close {}
+        }
+        @ConditionSet
+        static interface Conditions {
+
+            static interface Load {
+
+                boolean isOverloaded();
+            }
+        }
+    }
+    public static class LoadJudger implements ConditionalTransition<WorkerLifecycle.Conditions.Load> {
+
+        @Override
+        public Class<?> doConditionJudge(WorkerLifecycle.Conditions.Load load) {
+            if ( load.isOverloaded() ) {
+                return WorkerLifecycle.States.Overloaded.class;
+            } else {
+                return WorkerLifecycle.States.Working.class;
+            }
+        }
+    }
+    @LifecycleMeta(WorkerLifecycle.class)
+    public static class Worker extends ReactiveObject implements WorkerLifecycle.Conditions.Load {
+
+        private int pendingJobs;
+
+        public Worker() {
+            initialState(WorkerLifecycle.States.Idle.class.getSimpleName());
+        }
+
+        @Condition(WorkerLifecycle.Conditions.Load.class)
+        public WorkerLifecycle.Conditions.Load getLoad() {
+            return this;
+        }
+
+        @Override
+        public boolean isOverloaded() {
+            return pendingJobs > 16;
+        }
+
+        @Transition
+        public void process() {
+            pendingJobs++;
+        }
+
+        @Transition
+        public void complete() {
+            pendingJobs = 0;
+        }
+
+        @Transition
+        public void close() {}
+    }
+    // ///////////////////////////////////////////////////////////////////////////////
+    // Composite State
+    // ///////////////////////////////////////////////////////////////////////////////
+    @StateMachine
+    static interface ShipmentLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = ShipmentLifecycle.Transitions.Start.class, value = Started.class)
+            static interface Created {}
+            @CompositeState
+            @Function(transition = ShipmentLifecycle.Transitions.Cancel.class, value = Canceled.class)
+            static interface Started {
+
+                @StateSet
+                static interface SubStates {
+
+                    @Initial
+                    @Function(transition = ShipmentLifecycle.States.Started.SubTransitions.Prepare.class, value = Prepared.class)
+                    static interface Preparing {}
+                    @Functions({ @Function(transition = ShipmentLifecycle.States.Started.SubTransitions.Rework.class, value = Preparing.class),
+                            @Function(transition = ShipmentLifecycle.States.Started.SubTransitions.Ship.class, value = Shipped.class) })
+                    static interface Prepared {}
+                    @End
+                    @ShortCut(ShipmentLifecycle.States.Finished.class)
+                    static interface Shipped {}
+                }
+                @TransitionSet
+                static interface SubTransitions {
+
+                    static interface Prepare {}
+                    static interface Rework {}
+                    static interface Ship {}
+                }
+            }
+            @End
+            static interface Finished {}
+            @End
+            static interface Canceled {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Start {}
+            static interface Cancel {}
+        }
+    }
+    @LifecycleMeta(ShipmentLifecycle.class)
+    public static class Shipment extends ReactiveObject {
+
+        public Shipment() {
+            initialState(ShipmentLifecycle.States.Created.class.getSimpleName());
+        }
+
+        @Transition
+        public void start() {}
+
+        @Transition
+        public void cancel() {}
+
+        @Transition
+        public void prepare() {}
+
+        @Transition
+        public void rework() {}
+
+        @Transition
+        public void ship() {}
+    }
+    // ///////////////////////////////////////////////////////////////////////////////
+    // Relation Constrained
+    // ///////////////////////////////////////////////////////////////////////////////
+    @StateMachine
+    static interface AccountLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = AccountLifecycle.Transitions.Close.class, value = Closed.class)
+            static interface Active {}
+            @End
+            static interface Closed {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Close {}
+        }
+    }
+    @LifecycleMeta(AccountLifecycle.class)
+    public static class Account extends ReactiveObject {
+
+        public Account() {
+            initialState(AccountLifecycle.States.Active.class.getSimpleName());
+        }
+
+        @Transition
+        public void close() {}
+    }
+    @StateMachine
+    static interface SubscriptionLifecycle {
+
+        @StateSet
+        static interface States {
+
+            @Initial
+            @Function(transition = SubscriptionLifecycle.Transitions.Activate.class, value = Subscribed.class)
+            @ValidWhile(on = { AccountLifecycle.States.Active.class }, relation = SubscriptionLifecycle.Relations.AccountRelation.class)
+            static interface Pending {}
+            @Functions({ @Function(transition = SubscriptionLifecycle.Transitions.Suspend.class, value = Pending.class),
+                    @Function(transition = SubscriptionLifecycle.Transitions.Terminate.class, value = Terminated.class) })
+            @ValidWhile(on = { AccountLifecycle.States.Active.class }, relation = SubscriptionLifecycle.Relations.AccountRelation.class)
+            @InboundWhile(on = { AccountLifecycle.States.Active.class }, relation = SubscriptionLifecycle.Relations.AccountRelation.class)
+            static interface Subscribed {}
+            @End
+            static interface Terminated {}
+        }
+        @TransitionSet
+        static interface Transitions {
+
+            static interface Activate {}
+            static interface Suspend {}
+            static interface Terminate {}
+        }
+        @RelationSet
+        static interface Relations {
+
+            @RelateTo(AccountLifecycle.class)
+            static interface AccountRelation {}
+        }
+    }
+    @LifecycleMeta(SubscriptionLifecycle.class)
+    public static class Subscription extends ReactiveObject {
+
+        @Relation(SubscriptionLifecycle.Relations.AccountRelation.class)
+        private final Account account;
+
+        public Subscription(Account account) {
+            this.account = account;
+            initialState(SubscriptionLifecycle.States.Pending.class.getSimpleName());
+        }
+
+        public Account getAccount() {
+            return account;
+        }
+
+        @Transition
+        public void activate() {}
+
+        @Transition
+        public void suspend() {}
+
+        @Transition
+        public void terminate() {}
+    }
+    // ///////////////////////////////////////////////////////////////////////////////
+    // Lock Enabled
+    // ///////////////////////////////////////////////////////////////////////////////
+    public static class GlobalReadWriteLock implements LifecycleLockStrategry {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        @Override
+        public void lockRead(Object reactiveObject) {
+            lock.readLock().lock();
+        }
+
+        @Override
+        public void unlockRead(Object targetReactiveObject) {
+            lock.readLock().unlock();
+        }
+
+        @Override
+        public void lockWrite(Object reactiveObject) {
+            lock.writeLock().lock();
+        }
+
+        @Override
+        public void unlockWrite(Object targetReactiveObject) {
+            lock.writeLock().unlock();
+        }
+    }
+    @LifecycleMeta(ToggleLifecycle.class)
+    @LifecycleLock(GlobalReadWriteLock.class)
+    public static class LockedToggle extends ReactiveObject {
+
+        public LockedToggle() {
+            initialState(ToggleLifecycle.States.Off.class.getSimpleName());
+        }
+
+        @Transition
+        public void turnOn() {}
+
+        @Transition
+        public void turnOff() {}
+
+        @Transition
+        public void retire() {}
+    }
+}
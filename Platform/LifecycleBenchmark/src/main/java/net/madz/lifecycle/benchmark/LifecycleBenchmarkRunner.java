@@ -0,0 +1,29 @@
+package net.madz.lifecycle.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link TransitionBenchmarks} with 1, 4 and 16 threads, and reports
+ * allocation rate per operation with the GC profiler.
+ *
+ * Usage: java -jar target/benchmarks.jar [benchmarkRegex]
+ */
+public class LifecycleBenchmarkRunner {
+
+    private static final int[] THREADS = { 1, 4, 16 };
+
+    public static void main(String[] args) throws RunnerException {
+        final String include = 0 < args.length ? args[0] : TransitionBenchmarks.class.getSimpleName();
+        for ( final int threads : THREADS ) {
+            final Options options = new OptionsBuilder().include(include).threads(threads).addProfiler(GCProfiler.class)
+                    .result("lifecycle-benchmark-" + threads + "-threads.json").resultFormat(ResultFormatType.JSON)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package net.madz.lifecycle.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.madz.lifecycle.benchmark.BenchmarkLifecycleMetadata.Account;
+import net.madz.lifecycle.benchmark.BenchmarkLifecycleMetadata.LockedToggle;
+import net.madz.lifecycle.benchmark.BenchmarkLifecycleMetadata.Shipment;
+import net.madz.lifecycle.benchmark.BenchmarkLifecycleMetadata.Subscription;
+import net.madz.lifecycle.benchmark.BenchmarkLifecycleMetadata.Toggle;
+import net.madz.lifecycle.benchmark.BenchmarkLifecycleMetadata.Worker;
+import net.madz.verification.VerificationException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transition hot path benchmarks. Each operation performs one round trip of
+ * two transitions on a thread local reactive object, so that the object
+ * never reaches an end state and allocation and lock contention come from
+ * the engine only.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class TransitionBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Registry {
+
+        @Setup(Level.Trial)
+        public void register() throws VerificationException {
+            BenchmarkLifecycleMetadata.registerLifecycleMetadata();
+        }
+    }
+    @State(Scope.Thread)
+    public static class Objects {
+
+        Toggle toggle;
+        Worker worker;
+        Shipment shipment;
+        Subscription subscription;
+        LockedToggle lockedToggle;
+
+        @Setup(Level.Iteration)
+        public void create(Registry registry) {
+            toggle = new Toggle();
+            worker = new Worker();
+            shipment = new Shipment();
+            shipment.start();
+            subscription = new Subscription(new Account());
+            lockedToggle = new LockedToggle();
+        }
+    }
+
+    @Benchmark
+    public String simple(Objects objects) {
+        final Toggle toggle = objects.toggle;
+        toggle.turnOn();
+        toggle.turnOff();
+        return toggle.getState();
+    }
+
+    @Benchmark
+    public String conditional(Objects objects) {
+        final Worker worker = objects.worker;
+        worker.process();
+        worker.complete();
+        return worker.getState();
+    }
+
+    @Benchmark
+    public String compositeState(Objects objects) {
+        final Shipment shipment = objects.shipment;
+        shipment.prepare();
+        shipment.rework();
+        return shipment.getState();
+    }
+
+    @Benchmark
+    public String relationConstrained(Objects objects) {
+        final Subscription subscription = objects.subscription;
+        subscription.activate();
+        subscription.suspend();
+        return subscription.getState();
+    }
+
+    @Benchmark
+    public String lockEnabled(Objects objects) {
+        final LockedToggle lockedToggle = objects.lockedToggle;
+        lockedToggle.turnOn();
+        lockedToggle.turnOff();
+        return lockedToggle.getState();
+    }
+}